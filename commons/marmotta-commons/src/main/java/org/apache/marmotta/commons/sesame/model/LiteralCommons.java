@@ -121,6 +121,77 @@ public class LiteralCommons {
         return hasher.hash().toString();
     }
 
+    /**
+     * Create a 128bit literal key for a literal with the given content, language and type. The key is computed
+     * without copying the content, so this method should be preferred over the string cache keys for looking up
+     * literals with potentially long content.
+     *
+     * @param content  string content representing the literal
+     * @param language language of the literal (optional)
+     * @param type     datatype URI of the literal (optional)
+     * @return a 128bit hash key for the literal
+     */
+    public static LiteralKey createLiteralKey(String content, String language, String type) {
+        return LiteralKey.create(content, language, type);
+    }
+
+    /**
+     * Create a 128bit literal key for a literal with the given content, locale and type.
+     *
+     * @param content  string content representing the literal
+     * @param language language of the literal (optional)
+     * @param type     datatype URI of the literal (optional)
+     * @return a 128bit hash key for the literal
+     */
+    public static LiteralKey createLiteralKey(String content, Locale language, String type) {
+        return LiteralKey.create(content, language != null ? language.getLanguage() : null, type);
+    }
+
+    /**
+     * Create a 128bit literal key for the literal passed as argument, taking content, language and datatype URI.
+     *
+     * @param l the literal to create the key for
+     * @return a 128bit hash key for the literal
+     */
+    public static LiteralKey createLiteralKey(Literal l) {
+        return LiteralKey.create(l.getLabel(), l.getLanguage(), l.getDatatype() != null ? l.getDatatype().stringValue() : null);
+    }
+
+    /**
+     * Create a 128bit literal key for a date literal from the instant (with a precision of seconds) and the timezone
+     * of the date, without formatting it. Note that this key is different from the key of a literal with the
+     * formatted date as content.
+     *
+     * @param date date object of the date literal
+     * @param type datatype URI of the literal
+     * @return a 128bit hash key for the literal
+     */
+    public static LiteralKey createLiteralKey(DateTime date, String type) {
+        final long millis = date.getMillis();
+        final long seconds = millis - ((millis % 1000) + 1000) % 1000;
+        return LiteralKey.create(seconds, date.getZone().getOffset(millis), type);
+    }
+
+    /**
+     * Check whether the literal has the given content, language and datatype, e.g. to verify that a literal found
+     * in a cache by its {@link LiteralKey} is the requested one. Languages are compared case insensitive.
+     *
+     * @param l        the literal to check
+     * @param content  string content of the requested literal
+     * @param language language of the requested literal (optional)
+     * @param type     datatype URI of the requested literal (optional)
+     * @return true if the literal matches
+     */
+    public static boolean matches(Literal l, String content, String language, String type) {
+        if(language != null ? !language.equalsIgnoreCase(l.getLanguage()) : l.getLanguage() != null) {
+            return false;
+        }
+        if(type != null ? l.getDatatype() == null || !type.equals(l.getDatatype().stringValue()) : l.getDatatype() != null) {
+            return false;
+        }
+        return content.equals(l.getLabel());
+    }
+
     /**
      * Return the appropriate XSD type for RDF literals for the provided Java class.
      * @param clazz the Class
@@ -17,56 +17,210 @@
 
 package org.apache.marmotta.commons.sesame.model;
 
+import java.io.Serializable;
+
 /**
- * Add file description here!
+ * A fixed-size 128bit cache key for literals, computed by streaming the content, language and datatype of a literal
+ * through the 128bit variant of MurmurHash3 (see {@link LiteralCommons#createLiteralKey(String, String, String)}).
+ * Unlike the string keys created by {@link LiteralCommons#createCacheKey(String, String, String)}, computing a key
+ * does not copy or encode the literal content, and the hash uses a fixed seed so that keys are the same in every JVM
+ * (as required by distributed caches).
+ * <p/>
+ * Different literals may (very rarely) have the same key, so a literal found in a cache under a key needs to be
+ * compared with the requested content, language and datatype before it is used.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
-public class LiteralKey {
+public final class LiteralKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int SEED = 0x4b695769;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
 
-    private Object value;
+    // field marker written instead of the content length for date literals
+    private static final int DATE_MARKER = -2;
 
-    private String type;
+    private final long mostSignificantBits;
 
-    private String lang;
+    private final long leastSignificantBits;
 
-    public LiteralKey(Object value, String type, String lang) {
-        this.value = value;
-        this.type = type != null ? type.intern() : null;
-        this.lang = lang != null ? lang.intern() : null;
+    public LiteralKey(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
     }
 
-    public String getLang() {
-        return lang;
+    /**
+     * Compute the key of a literal with the given content, language and datatype. The language is compared case
+     * insensitive.
+     *
+     * @param content  string content of the literal
+     * @param language language of the literal (optional)
+     * @param type     datatype URI of the literal (optional)
+     */
+    static LiteralKey create(String content, String language, String type) {
+        final Murmur3 hasher = new Murmur3(SEED);
+        hasher.putString(content, false);
+        hasher.putString(language, true);
+        hasher.putString(type, false);
+        return hasher.finish();
     }
 
-    public String getType() {
-        return type;
+    /**
+     * Compute the key of a date literal from the instant (in milliseconds) and the timezone offset of the date.
+     *
+     * @param millis the instant of the date
+     * @param offset the timezone offset in milliseconds
+     * @param type   datatype URI of the literal
+     */
+    static LiteralKey create(long millis, int offset, String type) {
+        final Murmur3 hasher = new Murmur3(SEED);
+        hasher.putInt(DATE_MARKER);
+        hasher.putInt((int) millis);
+        hasher.putInt((int) (millis >>> 32));
+        hasher.putInt(offset);
+        hasher.putString(null, false);
+        hasher.putString(type, false);
+        return hasher.finish();
     }
 
-    public Object getValue() {
-        return value;
+    /**
+     * The first 64 bits of the key.
+     */
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    /**
+     * The last 64 bits of the key.
+     */
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        LiteralKey that = (LiteralKey) o;
+        if (!(o instanceof LiteralKey)) return false;
 
-        if (lang != null ? !lang.equals(that.lang) : that.lang != null) return false;
-        if (type != null ? !type.equals(that.type) : that.type != null) return false;
-        if (!value.equals(that.value)) return false;
-
-        return true;
+        final LiteralKey that = (LiteralKey) o;
+        return mostSignificantBits == that.mostSignificantBits && leastSignificantBits == that.leastSignificantBits;
     }
 
     @Override
     public int hashCode() {
-        int result = value.hashCode();
-        result = 31 * result + (type != null ? type.hashCode() : 0);
-        result = 31 * result + (lang != null ? lang.hashCode() : 0);
-        return result;
+        // the bits are uniformly distributed already
+        return (int) mostSignificantBits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * MurmurHash3_x64_128 over a stream of 16bit characters, with the characters of a 16 byte block in little endian
+     * order (the same result as Guava's {@code Hashing.murmur3_128(seed)} with {@code putChar} for each character).
+     * Strings are written with their length first, so that the fields cannot be shifted against each other.
+     */
+    private static final class Murmur3 {
+        private long h1, h2;
+        private long k1, k2;
+        private int pos;
+        private long chars;
+
+        private Murmur3(int seed) {
+            h1 = seed;
+            h2 = seed;
+        }
+
+        private void putString(String s, boolean lowerCase) {
+            if(s == null) {
+                putInt(-1);
+            } else {
+                final int length = s.length();
+                putInt(length);
+                for(int i = 0; i < length; i++) {
+                    final char c = s.charAt(i);
+                    putChar(lowerCase ? Character.toLowerCase(c) : c);
+                }
+            }
+        }
+
+        private void putInt(int i) {
+            putChar((char) i);
+            putChar((char) (i >>> 16));
+        }
+
+        private void putChar(char c) {
+            if(pos < 4) {
+                k1 |= (long) c << (pos << 4);
+            } else {
+                k2 |= (long) c << ((pos - 4) << 4);
+            }
+            chars++;
+            if(++pos == 8) {
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+
+                k1 = 0;
+                k2 = 0;
+                pos = 0;
+            }
+        }
+
+        private LiteralKey finish() {
+            if(pos > 0) {
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            final long length = chars << 1;
+            h1 ^= length;
+            h2 ^= length;
+
+            h1 += h2;
+            h2 += h1;
+
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+
+            h1 += h2;
+            h2 += h1;
+
+            return new LiteralKey(h1, h2);
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
     }
 }
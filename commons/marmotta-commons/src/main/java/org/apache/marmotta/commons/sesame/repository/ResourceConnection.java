@@ -44,6 +44,19 @@ public interface ResourceConnection extends SailConnection {
      */
     RepositoryResult<URI> getResources(String prefix) throws RepositoryException;
 
+    /**
+     * Return a page of the resources contained in this repository matching the given prefix, ordered by their URI.
+     * Pages can either be selected by offset or, more efficiently for deep pages, by passing the last URI of the
+     * previous page as {@code after} (keyset pagination).
+     *
+     * @param prefix the prefix the URIs of the resources start with
+     * @param after  only return resources with a URI ordered after this URI, null to start with the first resource
+     * @param offset the number of resources to skip (after {@code after})
+     * @param limit  the maximum number of resources to return, 0 for no limit
+     * @return
+     */
+    RepositoryResult<URI> getResources(String prefix, String after, int offset, int limit) throws RepositoryException;
+
     /**
      * Return the Sesame URI with the given uri identifier if it exists, or null if it does not exist.
      *
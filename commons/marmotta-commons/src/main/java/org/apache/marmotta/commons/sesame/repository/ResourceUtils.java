@@ -306,6 +306,21 @@ public class ResourceUtils {
      * @param limit
      */
     public static Iterable<URI> listResourcesByPrefix(final RepositoryConnection con, final String prefix, final int offset, final int limit) {
+        return listResourcesByPrefix(con, prefix, null, offset, limit);
+    }
+
+    /**
+     * List a page of the resources with the given prefix, ordered by their URI. Instead of an offset, the last URI
+     * of the previous page can be passed as {@code after}, which avoids skipping over the resources of all previous
+     * pages (keyset pagination). If the underlying connection is a ResourceConnection, the paging is done by the
+     * triple store; otherwise all resources are filtered, and only the page is kept in memory for ordering.
+     *
+     * @param prefix the prefix
+     * @param after  only list resources ordered after this URI, null to start with the first resource
+     * @param offset the number of resources to skip (after {@code after})
+     * @param limit  the maximum number of resources to list, 0 for no limit
+     */
+    public static Iterable<URI> listResourcesByPrefix(final RepositoryConnection con, final String prefix, final String after, final int offset, final int limit) {
         final ResourceConnection rcon = getWrappedResourceConnection(con);
 
         if(rcon != null) {
@@ -313,15 +328,7 @@ public class ResourceUtils {
                 @Override
                 public Iterator<URI> iterator() {
                     try {
-                        Iterator<URI> result = ResultUtils.unwrap(rcon.getResources(prefix));
-
-                        Iterators.advance(result,offset);
-
-                        if(limit > 0) {
-                            return Iterators.limit(result,limit);
-                        } else {
-                            return result;
-                        }
+                        return ResultUtils.unwrap(rcon.getResources(prefix, after, offset, limit));
                     } catch (RepositoryException e) {
                         ExceptionUtils.handleRepositoryException(e,ResourceUtils.class);
                         return Iterators.emptyIterator();
@@ -340,7 +347,8 @@ public class ResourceUtils {
                                     new Predicate<Resource>() {
                                         @Override
                                         public boolean apply(Resource input) {
-                                            return input instanceof URI && input.stringValue().startsWith(prefix);
+                                            return input instanceof URI && input.stringValue().startsWith(prefix)
+                                                    && (after == null || input.stringValue().compareTo(after) > 0);
                                         }
                                     }
                             ),
@@ -352,13 +360,29 @@ public class ResourceUtils {
                             }
                     );
 
-                    Iterators.advance(result,offset);
-
-                    if(limit > 0) {
-                        return Iterators.limit(result,limit);
-                    } else {
+                    if(after == null && limit <= 0) {
+                        // complete listing, no need to order
+                        Iterators.advance(result,offset);
                         return result;
                     }
+
+                    // keep the first offset+limit resources in URI order
+                    final int size = limit > 0 ? offset + limit : Integer.MAX_VALUE;
+                    final TreeMap<String,URI> page = new TreeMap<>();
+                    while(result.hasNext()) {
+                        URI uri = result.next();
+                        if(page.size() < size) {
+                            page.put(uri.stringValue(), uri);
+                        } else if(uri.stringValue().compareTo(page.lastKey()) < 0) {
+                            page.put(uri.stringValue(), uri);
+                            if(page.size() > size) {
+                                page.pollLastEntry();
+                            }
+                        }
+                    }
+                    Iterator<URI> ordered = page.values().iterator();
+                    Iterators.advance(ordered,offset);
+                    return ordered;
                 }
             };
         }
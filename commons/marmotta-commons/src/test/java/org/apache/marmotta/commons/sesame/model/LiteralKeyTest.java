@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.model;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.openrdf.model.Literal;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Test the 128bit literal keys
+ */
+public class LiteralKeyTest {
+
+    private static Logger log = LoggerFactory.getLogger(LiteralKeyTest.class);
+
+    /**
+     * The streaming hash needs to be the same as MurmurHash3 over the length-prefixed fields.
+     */
+    @Test
+    public void testReferenceHash() {
+        for(int i = 0; i < 100; i++) {
+            String content = RandomStringUtils.random(i * 7);
+            String language = i % 3 == 0 ? null : "en";
+            String type = i % 2 == 0 ? null : Namespaces.NS_XSD + "string";
+
+            Hasher hasher = Hashing.murmur3_128(LiteralKey.SEED).newHasher();
+            putString(hasher, content);
+            putString(hasher, language);
+            putString(hasher, type);
+            ByteBuffer expected = ByteBuffer.wrap(hasher.hash().asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+
+            LiteralKey key = LiteralCommons.createLiteralKey(content, language, type);
+            Assert.assertEquals(expected.getLong(0), key.getMostSignificantBits());
+            Assert.assertEquals(expected.getLong(8), key.getLeastSignificantBits());
+        }
+    }
+
+    private static void putString(Hasher hasher, String s) {
+        if(s == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(s.length());
+            hasher.putUnencodedChars(s);
+        }
+    }
+
+    @Test
+    public void testFields() {
+        // moving characters between fields changes the key
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey("ab", "c", null), LiteralCommons.createLiteralKey("a", "bc", null));
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey("abc", null, null), LiteralCommons.createLiteralKey("abc", "", null));
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey("abc", "en", null), LiteralCommons.createLiteralKey("abc", null, "en"));
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey("abc", null, null), LiteralCommons.createLiteralKey("ABC", null, null));
+
+        // languages are case insensitive
+        Assert.assertEquals(LiteralCommons.createLiteralKey("abc", "en", null), LiteralCommons.createLiteralKey("abc", "EN", null));
+    }
+
+    @Test
+    public void testLiteral() {
+        ValueFactory vf = ValueFactoryImpl.getInstance();
+
+        String value = RandomStringUtils.random(128);
+        Literal plain = vf.createLiteral(value);
+        Literal lang  = vf.createLiteral(value, "de");
+        Literal typed = vf.createLiteral(value, vf.createURI(Namespaces.NS_XSD + "string"));
+
+        Assert.assertEquals(LiteralCommons.createLiteralKey(value, (String)null, null), LiteralCommons.createLiteralKey(plain));
+        Assert.assertEquals(LiteralCommons.createLiteralKey(value, "de", null), LiteralCommons.createLiteralKey(lang));
+        Assert.assertEquals(LiteralCommons.createLiteralKey(value, (String)null, Namespaces.NS_XSD + "string"), LiteralCommons.createLiteralKey(typed));
+
+        Assert.assertTrue(LiteralCommons.matches(plain, value, null, null));
+        Assert.assertTrue(LiteralCommons.matches(lang, value, "DE", null));
+        Assert.assertTrue(LiteralCommons.matches(typed, value, null, Namespaces.NS_XSD + "string"));
+        Assert.assertFalse(LiteralCommons.matches(plain, value, "de", null));
+        Assert.assertFalse(LiteralCommons.matches(lang, value, null, null));
+        Assert.assertFalse(LiteralCommons.matches(typed, value, null, null));
+        Assert.assertFalse(LiteralCommons.matches(plain, value + "x", null, null));
+    }
+
+    @Test
+    public void testDate() {
+        String type = Namespaces.NS_XSD + "dateTime";
+        DateTime date = new DateTime(2014, 6, 1, 12, 30, 15, 250, DateTimeZone.forOffsetHours(2));
+
+        Assert.assertEquals(LiteralCommons.createLiteralKey(date, type), LiteralCommons.createLiteralKey(date.withMillisOfSecond(0), type));
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey(date, type), LiteralCommons.createLiteralKey(date.plusSeconds(1), type));
+        Assert.assertNotEquals(LiteralCommons.createLiteralKey(date, type), LiteralCommons.createLiteralKey(date.withZone(DateTimeZone.UTC), type));
+
+        // dates before 1970 are truncated to the second as well
+        DateTime old = new DateTime(1900, 1, 1, 0, 0, 0, 500, DateTimeZone.UTC);
+        Assert.assertEquals(LiteralCommons.createLiteralKey(old, type), LiteralCommons.createLiteralKey(old.withMillisOfSecond(0), type));
+    }
+
+    /**
+     * Compare the memory allocated for the string cache keys and the literal keys of 1KB abstracts.
+     */
+    @Test
+    public void testAllocation() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        String[] abstracts = new String[1000];
+        for(int i = 0; i < abstracts.length; i++) {
+            abstracts[i] = RandomStringUtils.randomAlphabetic(1024);
+        }
+        final String type = Namespaces.NS_XSD + "string";
+        final long rounds = 100 * abstracts.length;
+
+        // warm up
+        long sink = 0;
+        for(int i = 0; i < rounds; i++) {
+            sink += LiteralCommons.createCacheKey(abstracts[i % abstracts.length], "en", type).length();
+            sink += LiteralCommons.createLiteralKey(abstracts[i % abstracts.length], "en", type).hashCode();
+        }
+
+        long threadId = Thread.currentThread().getId();
+
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < rounds; i++) {
+            sink += LiteralCommons.createCacheKey(abstracts[i % abstracts.length], "en", type).length();
+        }
+        long stringBytes = (threads.getThreadAllocatedBytes(threadId) - start) / rounds;
+
+        start = threads.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < rounds; i++) {
+            sink += LiteralCommons.createLiteralKey(abstracts[i % abstracts.length], "en", type).hashCode();
+        }
+        long keyBytes = (threads.getThreadAllocatedBytes(threadId) - start) / rounds;
+
+        log.info("allocated bytes per key of a 1KB literal: {} (string cache key), {} (literal key) [{}]", stringBytes, keyBytes, sink);
+
+        Assert.assertTrue("literal keys should allocate much less than string keys", keyBytes * 4 < stringBytes);
+    }
+}
@@ -103,6 +103,49 @@ public class ResourceUtilsTest {
     }
 
 
+    /**
+     * Test listing resources by prefix in pages ordered by URI, selected by the last URI of the previous page
+     */
+    @Test
+    public void testListResourcesByPrefixAfter() throws RepositoryException {
+        RepositoryConnection connection = repository.getConnection();
+
+        try {
+            List<String> page1 = ImmutableList.copyOf(
+                    Iterables.transform(
+                            ResourceUtils.listResourcesByPrefix(connection, "http://localhost:8080/LMF/resource/", null, 0, 2),
+                            new Function<Resource, String>() {
+                                @Override
+                                public String apply(Resource input) {
+                                    return input.stringValue();
+                                }
+                            }
+                    )
+            );
+            Assert.assertEquals(ImmutableList.of(
+                    "http://localhost:8080/LMF/resource/anna_schmidt",
+                    "http://localhost:8080/LMF/resource/hans_meier"
+            ), page1);
+
+            List<String> page2 = ImmutableList.copyOf(
+                    Iterables.transform(
+                            ResourceUtils.listResourcesByPrefix(connection, "http://localhost:8080/LMF/resource/", page1.get(1), 0, 2),
+                            new Function<Resource, String>() {
+                                @Override
+                                public String apply(Resource input) {
+                                    return input.stringValue();
+                                }
+                            }
+                    )
+            );
+            Assert.assertEquals(ImmutableList.of(
+                    "http://localhost:8080/LMF/resource/sepp_huber"
+            ), page2);
+        } finally {
+            connection.close();
+        }
+    }
+
     /**
      * Test if listing resources yields the correct results
      */
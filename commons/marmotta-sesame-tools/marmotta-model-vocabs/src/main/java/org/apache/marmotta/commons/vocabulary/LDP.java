@@ -197,6 +197,29 @@ public class LDP {
      */
     public static final URI NonRDFSource;
 
+    /**
+     * Page
+     * <p>
+     * {@code http://www.w3.org/ns/ldp#Page}.
+     * <p>
+     * URI signifying that the resource is an in-sequence page resource, as
+     * defined by LDP Paging.
+     *
+     * @see <a href="http://www.w3.org/ns/ldp#Page">Page</a>
+     */
+    public static final URI Page;
+
+    /**
+     * pageSequence
+     * <p>
+     * {@code http://www.w3.org/ns/ldp#pageSequence}.
+     * <p>
+     * Link to a page sequence resource, as defined by LDP Paging.
+     *
+     * @see <a href="http://www.w3.org/ns/ldp#pageSequence">pageSequence</a>
+     */
+    public static final URI pageSequence;
+
     /**
      * PreferContainment
      * <p>
@@ -292,6 +315,8 @@ public class LDP {
         membershipResource = factory.createURI(LDP.NAMESPACE, "membershipResource");
         MemberSubject = factory.createURI(LDP.NAMESPACE, "MemberSubject");
         NonRDFSource = factory.createURI(LDP.NAMESPACE, "NonRDFSource");
+        Page = factory.createURI(LDP.NAMESPACE, "Page");
+        pageSequence = factory.createURI(LDP.NAMESPACE, "pageSequence");
         PreferContainment = factory.createURI(LDP.NAMESPACE, "PreferContainment");
         PreferEmptyContainer = factory.createURI(LDP.NAMESPACE, "PreferEmptyContainer");
         PreferMembership = factory.createURI(LDP.NAMESPACE, "PreferMembership");
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.transactions.api;
+
+/**
+ * What an asynchronously dispatched transaction listener does when its queue of pending events is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * the committing thread waits until the listener has caught up; no events are lost
+     */
+    BLOCK,
+
+    /**
+     * the new event is discarded; only suitable for listeners that can tolerate missing changes
+     */
+    DROP,
+
+    /**
+     * the new event is merged with the last pending event into a single transaction; the listener sees all
+     * changes, but not every single commit
+     */
+    COALESCE
+}
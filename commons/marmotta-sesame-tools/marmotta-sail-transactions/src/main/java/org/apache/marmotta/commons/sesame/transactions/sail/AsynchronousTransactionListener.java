@@ -0,0 +1,372 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.transactions.sail;
+
+import org.apache.marmotta.commons.sesame.transactions.api.OverflowPolicy;
+import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.openrdf.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a transaction listener so that commits and rollbacks are delivered asynchronously by a dedicated thread,
+ * in the order in which they were dispatched. The committing thread only adds the event to a bounded queue; when
+ * the queue is full, the {@link OverflowPolicy} decides whether the committing thread waits, the event is dropped
+ * or it is merged with the last pending event.
+ * <p/>
+ * {@link #beforeCommit(TransactionData)} is still called synchronously, since it takes part in the transaction.
+ * Listeners that need to see the effect of a commit before the commit returns (e.g. to invalidate caches) should
+ * not be wrapped.
+ * <p/>
+ * The queue depth, lag and event counters are published in JMX (see {@link AsynchronousTransactionListenerMBean})
+ * until the listener is shut down.
+ */
+public class AsynchronousTransactionListener implements TransactionListener, AsynchronousTransactionListenerMBean {
+
+    private static Logger log = LoggerFactory.getLogger(AsynchronousTransactionListener.class);
+
+    private final String name;
+
+    private final TransactionListener delegate;
+
+    private final OverflowPolicy policy;
+
+    private final BlockingDeque<Event> queue;
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    /**
+     * dispatch time (System.nanoTime()) of the event currently delivered, 0 if none
+     */
+    private volatile long inFlightSince = 0;
+
+    private final AtomicLong delivered = new AtomicLong(), dropped = new AtomicLong(), coalesced = new AtomicLong(), failed = new AtomicLong();
+
+    private volatile long maxLag = 0;
+
+    /**
+     * name under which the metrics are registered in JMX, null if they are not registered
+     */
+    private ObjectName mbeanName;
+
+    /**
+     * @param name     name of the listener, used for the worker thread and in log messages
+     * @param delegate the listener receiving the events
+     * @param capacity maximum number of pending events
+     * @param policy   what to do with new events while the queue is full
+     */
+    public AsynchronousTransactionListener(String name, TransactionListener delegate, int capacity, OverflowPolicy policy) {
+        this.name     = name;
+        this.delegate = delegate;
+        this.policy   = policy;
+        this.queue    = new LinkedBlockingDeque<>(Math.max(1, capacity));
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        }, "Transaction Listener " + name);
+        worker.setDaemon(true);
+        worker.start();
+
+        registerMBean();
+    }
+
+    /**
+     * Register the metrics with the platform MBean server as
+     * org.apache.marmotta.commons.sesame.transactions:type=AsynchronousTransactionListener,name=[listener name]
+     */
+    private void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("org.apache.marmotta.commons.sesame.transactions:type=AsynchronousTransactionListener,name=" + ObjectName.quote(this.name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(name)) {
+                log.warn("a transaction listener named {} is already registered in JMX, not publishing the metrics of this listener", this.name);
+            } else {
+                server.registerMBean(this, name);
+                mbeanName = name;
+            }
+        } catch (JMException e) {
+            log.warn("could not register transaction listener {} in JMX: {}", this.name, e.getMessage());
+        }
+    }
+
+    private synchronized void unregisterMBean() {
+        if(mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                log.warn("could not unregister transaction listener {} from JMX: {}", name, e.getMessage());
+            }
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Called synchronously before the transaction commits.
+     */
+    @Override
+    public void beforeCommit(TransactionData data) {
+        delegate.beforeCommit(data);
+    }
+
+    /**
+     * Queue the transaction data for delivery to the wrapped listener.
+     */
+    @Override
+    public void afterCommit(TransactionData data) {
+        dispatch(new Event(data, true));
+    }
+
+    /**
+     * Queue the transaction data for delivery to the wrapped listener.
+     */
+    @Override
+    public void rollback(TransactionData data) {
+        dispatch(new Event(data, false));
+    }
+
+    private void dispatch(Event event) {
+        // running is checked under the queue lock taken by shutdown(), so no event is accepted after the worker
+        // has been told to stop
+        synchronized (queue) {
+            try {
+                if(running) {
+                    switch (policy) {
+                        case DROP:
+                            if(!queue.offerLast(event)) {
+                                log.debug("queue of transaction listener {} is full, dropping event", name);
+                                dropped.incrementAndGet();
+                            }
+                            return;
+                        case COALESCE:
+                            boolean queued;
+                            while(!(queued = queue.offerLast(event))) {
+                                Event last = queue.pollLast();
+                                if(last == null) {
+                                    continue;
+                                }
+                                if(last.commit != event.commit) {
+                                    // commits and rollbacks cannot be merged, wait for the listener
+                                    queue.offerLast(last);
+                                    break;
+                                }
+                                event = new Event(merge(last.data, event.data), event.commit, last.dispatched);
+                                coalesced.incrementAndGet();
+                            }
+                            if(queued) {
+                                return;
+                            }
+                            // fall through
+                        default:
+                            // wait for the listener; waiting releases the lock, so shutdown() can proceed
+                            while(running && !queue.offerLast(event)) {
+                                queue.wait(10);
+                            }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("interrupted while waiting for transaction listener {}, dropping event", name);
+                dropped.incrementAndGet();
+                return;
+            }
+            if(!running) {
+                log.warn("transaction listener {} has been shut down, dropping event", name);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void deliver() {
+        while(running || !queue.isEmpty()) {
+            Event event;
+            try {
+                event = queue.pollFirst(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                if(running) {
+                    continue;
+                }
+                break;
+            }
+            if(event == null) {
+                continue;
+            }
+
+            inFlightSince = event.dispatched;
+            try {
+                if(event.commit) {
+                    delegate.afterCommit(event.data);
+                } else {
+                    delegate.rollback(event.data);
+                }
+                delivered.incrementAndGet();
+            } catch (RuntimeException ex) {
+                log.error("transaction listener " + name + " failed", ex);
+                failed.incrementAndGet();
+            } finally {
+                long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.dispatched);
+                if(lag > maxLag) {
+                    maxLag = lag;
+                }
+                inFlightSince = 0;
+            }
+        }
+    }
+
+    /**
+     * Merge two consecutive transactions into one, as if the second had been part of the first.
+     */
+    private static TransactionData merge(TransactionData first, TransactionData second) {
+        TransactionData merged = new TransactionData();
+        for(Statement triple : first.getRemovedTriples()) {
+            merged.removeTriple(triple);
+        }
+        for(Statement triple : first.getAddedTriples()) {
+            merged.addTriple(triple);
+        }
+        for(Statement triple : second.getRemovedTriples()) {
+            // a triple added by the first and removed by the second transaction never existed for the listener
+            if(!merged.getAddedTriples().remove(triple)) {
+                merged.getRemovedTriples().add(triple);
+            }
+        }
+        for(Statement triple : second.getAddedTriples()) {
+            merged.addTriple(triple);
+        }
+        merged.setCommitTime(second.getCommitTime());
+        return merged;
+    }
+
+    /**
+     * Stop accepting events and wait until the pending events have been delivered or the timeout expired.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return true if all events have been delivered
+     */
+    public boolean shutdown(long timeout) {
+        synchronized (queue) {
+            running = false;
+            queue.notifyAll();
+        }
+        unregisterMBean();
+        try {
+            worker.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(worker.isAlive()) {
+            log.warn("transaction listener {} did not finish within {} ms, {} events not delivered", name, timeout, queue.size());
+            worker.interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public TransactionListener getDelegate() {
+        return delegate;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Number of events waiting for delivery.
+     */
+    @Override
+    public int getPendingEvents() {
+        return queue.size();
+    }
+
+    /**
+     * Time in milliseconds since the oldest event that has not been fully delivered was dispatched, 0 if the
+     * listener has caught up.
+     */
+    @Override
+    public long getLag() {
+        long since = inFlightSince;
+        Event head = queue.peekFirst();
+        if(since == 0 && head != null) {
+            since = head.dispatched;
+        }
+        return since == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+
+    /**
+     * Maximum time in milliseconds between dispatching and delivering an event.
+     */
+    @Override
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public long getDeliveredEvents() {
+        return delivered.get();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getCoalescedEvents() {
+        return coalesced.get();
+    }
+
+    @Override
+    public long getFailedEvents() {
+        return failed.get();
+    }
+
+    private static class Event {
+        private final TransactionData data;
+        private final boolean commit;
+        private final long dispatched;
+
+        private Event(TransactionData data, boolean commit) {
+            this(data, commit, System.nanoTime());
+        }
+
+        private Event(TransactionData data, boolean commit, long dispatched) {
+            this.data       = data;
+            this.commit     = commit;
+            this.dispatched = dispatched;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.transactions.sail;
+
+/**
+ * The delivery metrics of an {@link AsynchronousTransactionListener}, published in JMX as
+ * org.apache.marmotta.commons.sesame.transactions:type=AsynchronousTransactionListener,name=[listener name].
+ * Times are given in milliseconds.
+ */
+public interface AsynchronousTransactionListenerMBean {
+
+    String getName();
+
+    /**
+     * Number of events waiting for delivery.
+     */
+    int getPendingEvents();
+
+    /**
+     * Time since the oldest event that has not been fully delivered was dispatched, 0 if the listener has caught up.
+     */
+    long getLag();
+
+    /**
+     * Maximum time between dispatching and delivering an event.
+     */
+    long getMaxLag();
+
+    long getDeliveredEvents();
+
+    long getDroppedEvents();
+
+    long getCoalescedEvents();
+
+    long getFailedEvents();
+}
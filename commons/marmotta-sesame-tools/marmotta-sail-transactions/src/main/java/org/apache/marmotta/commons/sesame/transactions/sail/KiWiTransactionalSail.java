@@ -24,8 +24,8 @@ import org.openrdf.sail.NotifyingSailConnection;
 import org.openrdf.sail.SailException;
 import org.openrdf.sail.helpers.NotifyingSailWrapper;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This is an extended version of the KiWi triple store with support for transaction tracking. It offers the
@@ -36,10 +36,19 @@ import java.util.List;
  * extended transactions provided by the KiWiTransactionalStore are only necessary for getting access to the
  * transaction data and triggering actions on commit or rollback.s
  * <p/>
+ * Listeners are notified synchronously by the committing thread. Slow listeners that do not need to take part in
+ * the transaction can be wrapped in an {@link AsynchronousTransactionListener}; such listeners are shut down
+ * together with the sail.
+ * <p/>
  * Author: Sebastian Schaffert
  */
 public class KiWiTransactionalSail extends NotifyingSailWrapper implements TransactionalSail {
 
+    /**
+     * maximum time in milliseconds to wait for asynchronous listeners to deliver their pending events on shutdown
+     */
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
     private List<TransactionListener> listeners;
 
     private boolean transactionsEnabled;
@@ -47,7 +56,8 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
     public KiWiTransactionalSail(NotifyingSail base) {
         super(base);
 
-        this.listeners           = new ArrayList<TransactionListener>();
+        // connections iterate over the listeners while committing
+        this.listeners           = new CopyOnWriteArrayList<TransactionListener>();
         this.transactionsEnabled = true;
     }
 
@@ -68,7 +78,14 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
      * @param listener the listener to remove
      */
     public void removeTransactionListener(TransactionListener listener) {
-        listeners.remove(listener);
+        for(TransactionListener l : listeners) {
+            if(l == listener || (l instanceof AsynchronousTransactionListener && ((AsynchronousTransactionListener) l).getDelegate() == listener)) {
+                listeners.remove(l);
+                if(l instanceof AsynchronousTransactionListener) {
+                    ((AsynchronousTransactionListener) l).shutdown(SHUTDOWN_TIMEOUT);
+                }
+            }
+        }
     }
 
     /**
@@ -89,6 +106,19 @@ public class KiWiTransactionalSail extends NotifyingSailWrapper implements Trans
         this.transactionsEnabled = transactionsEnabled;
     }
 
+    /**
+     * Shut down the asynchronous listeners after delivering their pending events, then the wrapped sail.
+     */
+    @Override
+    public void shutDown() throws SailException {
+        for(TransactionListener l : listeners) {
+            if(l instanceof AsynchronousTransactionListener) {
+                ((AsynchronousTransactionListener) l).shutdown(SHUTDOWN_TIMEOUT);
+            }
+        }
+        super.shutDown();
+    }
+
     /**
      * Returns a store-specific SailConnection object.
      *
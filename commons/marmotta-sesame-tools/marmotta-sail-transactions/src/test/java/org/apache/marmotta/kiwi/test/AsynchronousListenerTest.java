@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test;
+
+import org.apache.marmotta.commons.sesame.transactions.api.OverflowPolicy;
+import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.commons.sesame.transactions.sail.AsynchronousTransactionListener;
+import org.apache.marmotta.commons.sesame.transactions.sail.KiWiTransactionalSail;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test asynchronous delivery of transaction events with the different overflow policies.
+ */
+public class AsynchronousListenerTest {
+
+    private Repository repository;
+
+    private KiWiTransactionalSail tstore;
+
+    private BlockingListener listener;
+
+    @Before
+    public void initDatabase() throws RepositoryException {
+        tstore = new KiWiTransactionalSail(new MemoryStore());
+        listener = new BlockingListener();
+        repository = new SailRepository(tstore);
+        repository.initialize();
+    }
+
+    @After
+    public void dropDatabase() throws RepositoryException {
+        listener.release.countDown();
+        repository.shutDown();
+    }
+
+    @Test
+    public void testOrderedDelivery() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("test", listener, 100, OverflowPolicy.BLOCK);
+        tstore.addTransactionListener(async);
+
+        // the listener is blocked, but commits must not wait for it
+        for(int i = 0; i < 10; i++) {
+            commit(i);
+        }
+        Assert.assertEquals(0, listener.received.size());
+        Assert.assertTrue(async.getPendingEvents() >= 9);
+        Assert.assertEquals(10, listener.beforeCommits);
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+
+        Assert.assertEquals(10, async.getDeliveredEvents());
+        Assert.assertEquals(0, async.getLag());
+        for(int i = 0; i < 10; i++) {
+            Assert.assertEquals(1, listener.received.get(i).getAddedTriples().size());
+            Assert.assertEquals(Integer.toString(i), listener.received.get(i).getAddedTriples().iterator().next().getObject().stringValue());
+        }
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("test", listener, 2, OverflowPolicy.COALESCE);
+        tstore.addTransactionListener(async);
+
+        for(int i = 0; i < 10; i++) {
+            commit(i);
+        }
+        Assert.assertTrue(async.getCoalescedEvents() > 0);
+        Assert.assertTrue(async.getPendingEvents() > 0);
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+
+        // every change is delivered exactly once, in fewer transactions
+        int triples = 0;
+        for(TransactionData data : listener.received) {
+            triples += data.getAddedTriples().size();
+        }
+        Assert.assertEquals(10, triples);
+        Assert.assertEquals(10 - async.getCoalescedEvents(), listener.received.size());
+    }
+
+    @Test
+    public void testCoalesceAddedThenRemoved() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("test", listener, 1, OverflowPolicy.COALESCE);
+        tstore.addTransactionListener(async);
+
+        commit(0);
+        commit(1);
+        remove(1);
+        Assert.assertTrue(async.getCoalescedEvents() > 0);
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+
+        // the triple added and removed while the events were merged must not be reported at all
+        int added = 0, removed = 0;
+        for(TransactionData data : listener.received) {
+            added   += data.getAddedTriples().size();
+            removed += data.getRemovedTriples().size();
+        }
+        Assert.assertEquals(1, added);
+        Assert.assertEquals(0, removed);
+    }
+
+    @Test
+    public void testDispatchAfterShutdown() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("test", listener, 100, OverflowPolicy.BLOCK);
+        tstore.addTransactionListener(async);
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+
+        commit(0);
+        Assert.assertEquals(1, async.getDroppedEvents());
+        Assert.assertEquals(0, async.getPendingEvents());
+        Assert.assertEquals(0, listener.received.size());
+    }
+
+    /**
+     * The metrics are published in JMX while the listener is running.
+     */
+    @Test
+    public void testMBean() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("jmx", listener, 100, OverflowPolicy.BLOCK);
+        tstore.addTransactionListener(async);
+
+        ObjectName name = new ObjectName("org.apache.marmotta.commons.sesame.transactions:type=AsynchronousTransactionListener,name=" + ObjectName.quote("jmx"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Assert.assertTrue(server.isRegistered(name));
+
+        // the first event blocks in the listener, the second one waits in the queue
+        commit(1);
+        commit(2);
+        Assert.assertTrue((Integer) server.getAttribute(name, "PendingEvents") >= 1);
+        Assert.assertEquals(0L, server.getAttribute(name, "DeliveredEvents"));
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+        Assert.assertFalse(server.isRegistered(name));
+        Assert.assertEquals(2, async.getDeliveredEvents());
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        AsynchronousTransactionListener async = new AsynchronousTransactionListener("test", listener, 2, OverflowPolicy.DROP);
+        tstore.addTransactionListener(async);
+
+        for(int i = 0; i < 10; i++) {
+            commit(i);
+        }
+
+        listener.release.countDown();
+        Assert.assertTrue(async.shutdown(10000));
+
+        Assert.assertTrue(async.getDroppedEvents() > 0);
+        Assert.assertEquals(10, async.getDeliveredEvents() + async.getDroppedEvents());
+        Assert.assertEquals(async.getDeliveredEvents(), listener.received.size());
+    }
+
+    private void commit(int i) throws RepositoryException {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            URI subject = vf.createURI("http://localhost/async/" + i);
+            con.add(subject, vf.createURI("http://localhost/async/value"), vf.createLiteral(Integer.toString(i)));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    private void remove(int i) throws RepositoryException {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            URI subject = vf.createURI("http://localhost/async/" + i);
+            con.remove(subject, vf.createURI("http://localhost/async/value"), vf.createLiteral(Integer.toString(i)));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Blocks in the first afterCommit until released, so that events queue up.
+     */
+    private static class BlockingListener implements TransactionListener {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final List<TransactionData> received = Collections.synchronizedList(new ArrayList<TransactionData>());
+
+        private volatile int beforeCommits = 0;
+
+        @Override
+        public void beforeCommit(TransactionData data) {
+            beforeCommits++;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data) {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(data);
+        }
+
+        @Override
+        public void rollback(TransactionData data) {
+        }
+    }
+}
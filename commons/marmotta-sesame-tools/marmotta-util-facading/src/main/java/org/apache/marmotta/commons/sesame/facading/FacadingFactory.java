@@ -37,4 +37,19 @@ public class FacadingFactory {
         return new FacadingImpl(connection);
     }
 
+    /**
+     * Create a facading for an existing repository connection that prefetches the resources it facades: the first
+     * access to a facade loads all outgoing properties of the resource with a single query, and further getters are
+     * answered from the loaded statements. The statements are only kept while a transaction is active on the
+     * connection. Writes through the facades of this facading are taken into account, but changes made directly on
+     * the connection are not, so the facading should only be used within one transaction.
+     *
+     * @param connection the repository connection to use for facading
+     * @param prefetch   true to prefetch the properties of facaded resources
+     * @return a new facading service wrapping the given connection
+     */
+    public static Facading createFacading(RepositoryConnection connection, boolean prefetch) {
+        return new FacadingImpl(connection, prefetch);
+    }
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.facading.impl;
+
+import org.apache.marmotta.commons.sesame.facading.annotations.RDF;
+import org.apache.marmotta.commons.sesame.facading.annotations.RDFInverse;
+import org.apache.marmotta.commons.sesame.facading.annotations.RDFPropertyBuilder;
+import org.apache.marmotta.commons.sesame.facading.api.FacadingPredicateBuilder;
+import org.apache.marmotta.commons.sesame.facading.model.Facade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The resolved methods of a facade interface: for each method the operator, the {@link FacadingPredicate} and the
+ * parameter and return types are looked up once when the first facade of the interface is created, instead of
+ * evaluating the annotations on every invocation.
+ * <p/>
+ * The tables are kept in a {@link ClassValue}, which attaches each table to its facade interface without a global
+ * lock and without keeping the class loader of the interface (e.g. of an undeployed web application) alive.
+ */
+class FacadingDispatchTable {
+
+    private static final ClassValue<FacadingDispatchTable> tables = new ClassValue<FacadingDispatchTable>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected FacadingDispatchTable computeValue(Class<?> type) {
+            return new FacadingDispatchTable((Class<? extends Facade>) type);
+        }
+    };
+
+    /**
+     * Return the dispatch table of the given facade interface, building it on first use.
+     */
+    static FacadingDispatchTable forFacade(Class<? extends Facade> facade) {
+        return tables.get(facade);
+    }
+
+    enum Kind {
+        HASH_CODE, EQUALS, TO_STRING, GET_DELEGATE, PROPERTY
+    }
+
+    private final Class<? extends Facade> facade;
+
+    private final FacadingPredicateBuilder propBuilder;
+
+    private final Logger log;
+
+    private final ConcurrentMap<Method, MethodDispatch> methods = new ConcurrentHashMap<Method, MethodDispatch>();
+
+    private FacadingDispatchTable(Class<? extends Facade> facade) {
+        this.facade = facade;
+        this.propBuilder = createPropBuilder(facade);
+        this.log = LoggerFactory.getLogger(facade.getName() + "!" + FacadingInvocationHandler.class.getSimpleName());
+
+        for (Method method : facade.getMethods()) {
+            methods.put(method, new MethodDispatch(method));
+        }
+    }
+
+    Class<? extends Facade> getFacade() {
+        return facade;
+    }
+
+    Logger getLog() {
+        return log;
+    }
+
+    /**
+     * Return the dispatch information for the given method; methods not declared by the facade interface (e.g. the
+     * methods of {@link Object}) are resolved on first use.
+     */
+    MethodDispatch get(Method method) {
+        MethodDispatch dispatch = methods.get(method);
+        if (dispatch == null) {
+            dispatch = new MethodDispatch(method);
+            final MethodDispatch existing = methods.putIfAbsent(method, dispatch);
+            if (existing != null) {
+                dispatch = existing;
+            }
+        }
+        return dispatch;
+    }
+
+    private static FacadingPredicateBuilder createPropBuilder(Class<? extends Facade> facade) {
+        if (facade.isAnnotationPresent(RDFPropertyBuilder.class)) {
+            final Class<? extends FacadingPredicateBuilder> bClass = facade.getAnnotation(RDFPropertyBuilder.class).value();
+            FacadingPredicateBuilder _b = null;
+            try {
+                // Look for a no-arg Constructor
+                _b = bClass.getConstructor().newInstance();
+            } catch (NoSuchMethodException e) {
+                // If there is no no-arg Constructor, try static getInstance()
+                try {
+                    for (Method m : bClass.getMethods()) {
+                        if (Modifier.isStatic(m.getModifiers()) && "getInstance".equals(m.getName()) && m.getParameterTypes().length == 0) {
+                            _b = (FacadingPredicateBuilder) m.invoke(null);
+                            break;
+                        }
+                    }
+                    if (_b == null) { throw new IllegalArgumentException("Could not find no-arg Constructor or static no-arg factory-method 'getInstance' for "
+                            + bClass.getName()); }
+                } catch (Exception e1) {
+                    throw new IllegalArgumentException("Could not load instance of " + bClass.getSimpleName() + " from static factory 'getInstance()': "
+                            + e.getMessage(), e);
+                }
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Could not create instance of " + bClass.getSimpleName() + ": " + e.getMessage(), e);
+            }
+            return _b;
+        } else {
+            return null;
+        }
+    }
+
+    private FacadingPredicate getFacadingPredicate(Method method) throws IllegalArgumentException {
+        // look for RDF annotation and extract the property from it; if not on the getter, look
+        // for the corresponding setter and check whether it has a @RDF annotation; if neither has,
+        // throw an IllegalArgumentException
+        RDF rdf = FacadingInvocationHelper.getAnnotation(method, RDF.class);
+        if (rdf != null) {
+            return new FacadingPredicate(false, rdf.value());
+        } else {
+            RDFInverse rdfi = FacadingInvocationHelper.getAnnotation(method, RDFInverse.class);
+            if (rdfi != null) {
+                return new FacadingPredicate(true, rdfi.value());
+            } else {
+                if (propBuilder != null) {
+                    String fName = FacadingInvocationHelper.getBaseName(method);
+                    if (fName.length() > 1) {
+                        fName = fName.substring(0, 1).toLowerCase(Locale.ENGLISH) + fName.substring(1);
+                    }
+                    return propBuilder.getFacadingPredicate(fName, facade, method);
+                } else {
+                    throw new IllegalArgumentException("Could not find facading predicate for " + method.getName() + " in " + facade.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * How to invoke a single method of the facade.
+     */
+    final class MethodDispatch {
+
+        final Kind kind;
+
+        final FacadingInvocationHandler.OPERATOR operator;
+
+        final FacadingPredicate predicate;
+
+        /**
+         * thrown on invocation if the method cannot be mapped to a property
+         */
+        final RuntimeException error;
+
+        /**
+         * the index of the {@link Locale} argument, -1 if there is none
+         */
+        final int localeArg;
+
+        final Class<?> paramType;
+
+        final Class<?> returnType;
+
+        final Type genericReturnType;
+
+        private MethodDispatch(Method method) {
+            final Class<?>[] params = method.getParameterTypes();
+            this.paramType = params.length > 0 ? params[0] : null;
+            this.returnType = method.getReturnType();
+            this.genericReturnType = method.getGenericReturnType();
+
+            // handle default methods:
+            if (FacadingInvocationHelper.checkMethodSig(method, "hashCode")) {
+                kind = Kind.HASH_CODE;
+            } else if (FacadingInvocationHelper.checkMethodSig(method, "equals", 1)) {
+                kind = Kind.EQUALS;
+            } else if (FacadingInvocationHelper.checkMethodSig(method, "toString")) {
+                kind = Kind.TO_STRING;
+            } else if (FacadingInvocationHelper.checkMethodSig(method, "getDelegate")) {
+                kind = Kind.GET_DELEGATE;
+            } else {
+                kind = Kind.PROPERTY;
+            }
+
+            FacadingPredicate fp = null;
+            FacadingInvocationHandler.OPERATOR op = null;
+            RuntimeException ex = null;
+            if (kind == Kind.PROPERTY) {
+                try {
+                    fp = getFacadingPredicate(method);
+                    op = FacadingInvocationHandler.OPERATOR.getOperator(method);
+                } catch (RuntimeException e) {
+                    ex = e;
+                }
+            }
+            this.predicate = fp;
+            this.operator = op;
+            this.error = ex;
+
+            if (op == FacadingInvocationHandler.OPERATOR.SET || op == FacadingInvocationHandler.OPERATOR.ADD) {
+                localeArg = params.length == 2 && params[1].equals(Locale.class) ? 1 : -1;
+            } else {
+                localeArg = params.length == 1 && params[0].equals(Locale.class) ? 0 : -1;
+            }
+        }
+
+        Locale getLocale(Object[] args) {
+            return localeArg >= 0 ? (Locale) args[localeArg] : null;
+        }
+    }
+}
@@ -55,9 +55,21 @@ public class FacadingImpl implements Facading {
 
     private final RepositoryConnection connection;
 
+    private final FacadingPrefetchCache prefetch;
+
 
     public FacadingImpl(RepositoryConnection connection) {
+        this(connection, false);
+    }
+
+    /**
+     * @param connection the repository connection to use for facading
+     * @param prefetch   load all outgoing properties of a facaded resource with one query and answer the getters of all
+     *                   facades created by this facading from the loaded statements
+     */
+    public FacadingImpl(RepositoryConnection connection, boolean prefetch) {
         this.connection = connection;
+        this.prefetch = prefetch ? new FacadingPrefetchCache(connection) : null;
     }
 
     /**
@@ -117,9 +129,12 @@ public class FacadingImpl implements Facading {
                                 log.error("error adding type for facade!");
                             }
                         }
+                        if(prefetch != null) {
+                            prefetch.invalidate(r);
+                        }
                     }
 
-                    FacadingInvocationHandler handler = new FacadingInvocationHandler(r, context, type, this, connection);
+                    FacadingInvocationHandler handler = new FacadingInvocationHandler(r, context, FacadingDispatchTable.forFacade(type), this, connection, prefetch);
                     if (log.isDebugEnabled()) {
                         if (context != null) {
                             log.debug("New Facading: {} delegating to {} (@{})", type.getSimpleName(), r, context);
@@ -17,11 +17,7 @@
 package org.apache.marmotta.commons.sesame.facading.impl;
 
 
-import org.apache.marmotta.commons.sesame.facading.annotations.RDF;
-import org.apache.marmotta.commons.sesame.facading.annotations.RDFInverse;
-import org.apache.marmotta.commons.sesame.facading.annotations.RDFPropertyBuilder;
 import org.apache.marmotta.commons.sesame.facading.api.Facading;
-import org.apache.marmotta.commons.sesame.facading.api.FacadingPredicateBuilder;
 import org.apache.marmotta.commons.sesame.facading.model.Facade;
 import org.apache.marmotta.commons.sesame.facading.util.FacadeUtils;
 import org.apache.marmotta.commons.util.DateUtils;
@@ -31,7 +27,6 @@ import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
 import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.*;
 import java.util.*;
@@ -41,6 +36,10 @@ import java.util.*;
  * content item and to data in the triple store. It has to be constructed using the triple store
  * implementation as parameter. Interfaces that make use of this invocation handler need to extend
  * the {@link Facade} interface.
+ * <p/>
+ * The annotations of the facade methods are resolved once per facade interface (see {@link FacadingDispatchTable}).
+ * If the facading has a {@link FacadingPrefetchCache}, all outgoing properties of a resource are loaded with one
+ * query and the getters are answered from the prefetched statements.
  * 
  * @author Sebastian Schaffert <sschaffert@apache.org>
  * @author Jakob Frank <jakob@apache.org>
@@ -115,87 +114,28 @@ class FacadingInvocationHandler implements InvocationHandler {
 
     private final Class<? extends Facade> declaredFacade;
 
-    private final FacadingPredicateBuilder propBuilder;
+    private final FacadingDispatchTable dispatchTable;
+
+    private final FacadingPrefetchCache prefetch;
 
     private final Resource delegate;
 
     private final URI context;
 
-    private final HashMap<String, Object> fieldCache;
-
     private final Logger log;
 
     /**
-     * Indicates if the cache is used, by default is false.
+     * @param prefetch the prefetched statements of the facading, or null to query the connection on each access
      */
-    private boolean useCache;
-
-    public FacadingInvocationHandler(Resource item, URI context, Class<? extends Facade> facade, Facading facadingService, RepositoryConnection connection) {
-        this.log = LoggerFactory.getLogger(facade.getName() + "!" + this.getClass().getSimpleName() + "@" + item.stringValue());
+    public FacadingInvocationHandler(Resource item, URI context, FacadingDispatchTable dispatchTable, Facading facadingService, RepositoryConnection connection, FacadingPrefetchCache prefetch) {
+        this.log = dispatchTable.getLog();
         this.delegate = item;
         this.facadingService = facadingService;
-        this.declaredFacade = facade;
+        this.declaredFacade = dispatchTable.getFacade();
+        this.dispatchTable = dispatchTable;
         this.connection = connection;
-
-        if (declaredFacade.isAnnotationPresent(RDFPropertyBuilder.class)) {
-            final Class<? extends FacadingPredicateBuilder> bClass = declaredFacade.getAnnotation(RDFPropertyBuilder.class).value();
-            FacadingPredicateBuilder _b = null;
-            try {
-                // Look for a no-arg Constructor
-                _b = bClass.getConstructor().newInstance();
-            } catch (NoSuchMethodException e) {
-                // If there is no no-arg Constructor, try static getInstance()
-                try {
-                    for (Method m : bClass.getMethods()) {
-                        if (Modifier.isStatic(m.getModifiers()) && "getInstance".equals(m.getName()) && m.getParameterTypes().length == 0) {
-                            _b = (FacadingPredicateBuilder) m.invoke(null);
-                            break;
-                        }
-                    }
-                    if (_b == null) { throw new IllegalArgumentException("Could not find no-arg Constructor or static no-arg factory-method 'getInstance' for "
-                            + bClass.getName()); }
-                } catch (Exception e1) {
-                    throw new IllegalArgumentException("Could not load instance of " + bClass.getSimpleName() + " from static factory 'getInstance()': "
-                            + e.getMessage(), e);
-                }
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Could not create instance of " + bClass.getSimpleName() + ": " + e.getMessage(), e);
-            }
-            this.propBuilder = _b;
-        } else {
-            this.propBuilder = null;
-        }
-
-        if (context != null) {
-            this.context = context;
-        } else {
-            // FIXME
-            this.context = null;
-        }
-
-        fieldCache = new HashMap<String, Object>();
-
-        // disable cache, it does not work well with deleted triples ...
-        useCache = false;
-    }
-
-    /**
-     * Indicates if the cache is allow or not.
-     * 
-     * @return the useCache true if the cache is done.
-     */
-    public boolean isUseCache() {
-        return useCache;
-    }
-
-    /**
-     * Used to enable/disable the cache mechanism.
-     * 
-     * @param useCache
-     *            true foe enable cache, false - no cache.
-     */
-    public void setUseCache(boolean useCache) {
-        this.useCache = useCache;
+        this.prefetch = prefetch;
+        this.context = context;
     }
 
     /**
@@ -222,79 +162,45 @@ class FacadingInvocationHandler implements InvocationHandler {
         if (!connection.isOpen()) { throw new IllegalAccessException("the connection is already closed, cannot access proxy methods."); }
         if (!connection.isActive()) { throw new IllegalAccessException("no active transaction, cannot access triple-store."); }
 
+        final FacadingDispatchTable.MethodDispatch dispatch = dispatchTable.get(method);
+
         // handle default methods:
-        if (FacadingInvocationHelper.checkMethodSig(method, "hashCode")) {
+        switch (dispatch.kind) {
+        case HASH_CODE:
             return delegate.hashCode();
-        } else if (FacadingInvocationHelper.checkMethodSig(method, "equals", 1)) {
+        case EQUALS:
             final Object other = args[0];
             return other != null && other.getClass().equals(proxy.getClass()) && other.hashCode() == proxy.hashCode();
-        } else if (FacadingInvocationHelper.checkMethodSig(method, "toString")) {
+        case TO_STRING:
             return declaredFacade.getSimpleName() + " with delegate to " + delegate.toString();
-        } else if (FacadingInvocationHelper.checkMethodSig(method, "getDelegate")) { return delegate; }
-
-        // caching
-        final String fieldName = FacadingInvocationHelper.getBaseName(method);
-        if (useCache && method.getName().startsWith("get")) {
-            if (fieldCache.get(fieldName) != null) { return fieldCache.get(fieldName); }
+        case GET_DELEGATE:
+            return delegate;
+        default:
+            break;
         }
 
-        final FacadingPredicate fp = getFacadingPredicate(method);
+        if (dispatch.error != null) { throw dispatch.error; }
 
         // distinguish getters and setters and more...
-        switch (OPERATOR.getOperator(method)) {
+        switch (dispatch.operator) {
         case GET:
-            return handleGet(method, args, fp);
+            return handleGet(dispatch, args);
         case SET:
-            return handleSet(method, args, fp);
+            return handleSet(method, dispatch, args);
         case ADD:
-            return handleAdd(method, args, fp);
+            return handleAdd(method, dispatch, args);
         case DEL:
-            return handleDel(method, args, fp);
+            return handleDel(dispatch, args);
         case HAS:
-            return handleHas(method, args, fp);
+            return handleHas(dispatch, args);
         default:
             throw new IllegalArgumentException("Unsupported method: " + method.getName());
         }
     }
 
-    private FacadingPredicate getFacadingPredicate(Method method) throws IllegalArgumentException {
-        final String[] rdf_property;
-        final boolean inverse;
-        // look for RDF annotation and extract the property from it; if not on the getter, look
-        // for the corresponding setter and check whether it has a @RDF annotation; if neither has,
-        // throw an IllegalArgumentException
-        RDF rdf = FacadingInvocationHelper.getAnnotation(method, RDF.class);
-        if (rdf != null) {
-            rdf_property = rdf.value();
-            inverse = false;
-            return new FacadingPredicate(inverse, rdf_property);
-        } else {
-            RDFInverse rdfi = FacadingInvocationHelper.getAnnotation(method, RDFInverse.class);
-            if (rdfi != null) {
-                rdf_property = rdfi.value();
-                inverse = true;
-                return new FacadingPredicate(inverse, rdf_property);
-            } else {
-                if (propBuilder != null) {
-                    String fName = FacadingInvocationHelper.getBaseName(method);
-                    if (fName.length() > 1) {
-                        fName = fName.substring(0, 1).toLowerCase(Locale.ENGLISH) + fName.substring(1);
-                    }
-                    return propBuilder.getFacadingPredicate(fName, declaredFacade, method);
-                } else {
-                    throw new IllegalArgumentException("Could not find facading predicate for " + method.getName() + " in " + declaredFacade.getName());
-                }
-            }
-        }
-    }
-
-    private Boolean handleHas(Method method, Object[] args, FacadingPredicate predicate) throws RepositoryException {
-        final Locale loc;
-        if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0].equals(Locale.class)) {
-            loc = (Locale) args[0];
-        } else {
-            loc = null;
-        }
+    private Boolean handleHas(FacadingDispatchTable.MethodDispatch dispatch, Object[] args) throws RepositoryException {
+        final FacadingPredicate predicate = dispatch.predicate;
+        final Locale loc = dispatch.getLocale(args);
 
         if (predicate.isInverse()) {
             if (loc != null) { throw new IllegalArgumentException("@RDFInverse not supported for language tagged properties"); }
@@ -310,6 +216,14 @@ class FacadingInvocationHandler implements InvocationHandler {
                 }
             }
         } else {
+            // the prefetched statements do not contain inferred statements, so only a match is conclusive
+            if (prefetch != null) {
+                for (Statement triple : prefetch.getOutgoing(delegate, context)) {
+                    if (hasProperty(predicate, triple.getPredicate()) && (loc == null || FacadingInvocationHelper.checkLocale(loc, triple.getObject()))) {
+                        return true;
+                    }
+                }
+            }
             for (String p : predicate.getProperties()) {
                 final URI prop = connection.getValueFactory().createURI(p);
                 final RepositoryResult<Statement> result = connection.getStatements(delegate, prop, null, true, context);
@@ -332,60 +246,62 @@ class FacadingInvocationHandler implements InvocationHandler {
         return false;
     }
 
-    private Object handleDel(Method method, Object[] args, FacadingPredicate predicate) throws RepositoryException {
-        final Locale loc;
-        if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0].equals(Locale.class)) {
-            loc = (Locale) args[0];
-        } else {
-            loc = null;
+    private static boolean hasProperty(FacadingPredicate predicate, URI property) {
+        for (String p : predicate.getProperties()) {
+            if (p.equals(property.stringValue())) { return true; }
         }
+        return false;
+    }
 
-        delProperties(predicate, loc);
+    private Object handleDel(FacadingDispatchTable.MethodDispatch dispatch, Object[] args) throws RepositoryException {
+        final Locale loc = dispatch.getLocale(args);
+
+        delProperties(dispatch.predicate, loc);
+        invalidatePrefetch(dispatch.predicate);
 
         return null;
     }
 
-    private Object handleAdd(Method method, Object[] args, FacadingPredicate predicate) throws RepositoryException, IllegalArgumentException {
-        final Locale loc;
-        if (method.getParameterTypes().length == 2 && method.getParameterTypes()[1].equals(Locale.class)) {
-            loc = (Locale) args[1];
-        } else {
-            loc = null;
-        }
+    private Object handleAdd(Method method, FacadingDispatchTable.MethodDispatch dispatch, Object[] args) throws RepositoryException, IllegalArgumentException {
+        final FacadingPredicate predicate = dispatch.predicate;
+        final Locale loc = dispatch.getLocale(args);
 
-        final Class<?> paramType = method.getParameterTypes()[0];
-        addProperties(method, args, predicate.getProperties(), predicate.isInverse(), loc, paramType);
+        addProperties(method, args, predicate.getProperties(), predicate.isInverse(), loc, dispatch.paramType);
+        invalidatePrefetch(predicate);
 
         return null;
     }
 
-    private Object handleSet(Method method, Object[] args, FacadingPredicate predicate)
+    private Object handleSet(Method method, FacadingDispatchTable.MethodDispatch dispatch, Object[] args)
             throws RepositoryException, IllegalArgumentException {
 
-        final Locale loc;
-        if (method.getParameterTypes().length == 2 && method.getParameterTypes()[1].equals(Locale.class)) {
-            loc = (Locale) args[1];
-        } else {
-            loc = null;
-        }
-
-        // add to cache
-        if (useCache) {
-            fieldCache.put(FacadingInvocationHelper.getBaseName(method), args[0]);
-        }
+        final FacadingPredicate predicate = dispatch.predicate;
+        final Locale loc = dispatch.getLocale(args);
 
         // This is SET, so delete all previous properties
         delProperties(predicate, loc);
 
         // *** set the value of a certain RDF property
-        final Class<?> paramType = method.getParameterTypes()[0];
-
-        addProperties(method, args, predicate.getProperties(), predicate.isInverse(), loc, paramType);
-
+        addProperties(method, args, predicate.getProperties(), predicate.isInverse(), loc, dispatch.paramType);
+        invalidatePrefetch(predicate);
 
         return null;
     }
 
+    /**
+     * Forget the prefetched statements changed by a write: the statements of the delegate, or for an inverse
+     * property the statements of any resource.
+     */
+    private void invalidatePrefetch(FacadingPredicate predicate) {
+        if (prefetch != null) {
+            if (predicate.isInverse()) {
+                prefetch.clear();
+            } else {
+                prefetch.invalidate(delegate);
+            }
+        }
+    }
+
     private void addProperties(Method method, Object[] args, final String[] rdf_property, final boolean inverse, final Locale loc, final Class<?> paramType)
             throws RepositoryException, IllegalArgumentException {
         if (args[0] == null || "".equals(args[0])) {
@@ -481,29 +397,16 @@ class FacadingInvocationHandler implements InvocationHandler {
         }
     }
 
-    private Object handleGet(Method method, Object[] args, FacadingPredicate predicate) throws IllegalAccessException, InstantiationException,
+    private Object handleGet(FacadingDispatchTable.MethodDispatch dispatch, Object[] args) throws IllegalAccessException, InstantiationException,
     RepositoryException {
-        final Locale loc;
-        if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0].equals(Locale.class)) {
-            loc = (Locale) args[0];
-        } else {
-            loc = null;
-        }
+        final FacadingPredicate predicate = dispatch.predicate;
+        final Locale loc = dispatch.getLocale(args);
 
         // *** get the value of a certain RDF property ***
 
-        final Class<?> returnType = method.getReturnType();
-        final Type typeOfGeneric = method.getGenericReturnType();
-
         // we believe that the result is universal for each property
         // and therefore just return the result for the firstly defined property
-        final Object result = transform(returnType, typeOfGeneric, delegate, predicate.getProperties()[0], loc, predicate.isInverse());
-
-        if (useCache) {
-            fieldCache.put(FacadingInvocationHelper.getBaseName(method), result);
-        }
-
-        return result;
+        return transform(dispatch.returnType, dispatch.genericReturnType, delegate, predicate.getProperties()[0], loc, predicate.isInverse());
     }
 
     /**
@@ -639,6 +542,15 @@ class FacadingInvocationHandler implements InvocationHandler {
      * 
      */
     private <C> C queryOutgoingSingle(Resource entity, String rdf_property, Class<C> returnType) throws RepositoryException {
+        if (prefetch != null) {
+            for (Statement triple : prefetch.getOutgoing(entity)) {
+                if (rdf_property.equals(triple.getPredicate().stringValue())) {
+                    return castObject(triple.getObject(), rdf_property, returnType);
+                }
+            }
+            return null;
+        }
+
         URI property = connection.getValueFactory().createURI(rdf_property);
 
         RepositoryResult<Statement> triples = connection.getStatements(entity, property, null, false);
@@ -646,15 +558,7 @@ class FacadingInvocationHandler implements InvocationHandler {
             if (triples.hasNext()) {
                 Statement triple = triples.next();
 
-                Value object = triple.getObject();
-
-                if (returnType.isInstance(object)) {
-                    return returnType.cast(object);
-                } else {
-                    log.error("cannot cast retrieved object {} for property {} to return type {}", object, rdf_property, returnType);
-                    return null;
-                }
-
+                return castObject(triple.getObject(), rdf_property, returnType);
             } else {
                 return null;
             }
@@ -664,6 +568,15 @@ class FacadingInvocationHandler implements InvocationHandler {
 
     }
 
+    private <C> C castObject(Value object, String rdf_property, Class<C> returnType) {
+        if (returnType.isInstance(object)) {
+            return returnType.cast(object);
+        } else {
+            log.error("cannot cast retrieved object {} of {} for property {} to return type {}", object, delegate, rdf_property, returnType);
+            return null;
+        }
+    }
+
     /**
      * Return the single subject of type C that can reach entity by rdf_property. Returns null if
      * there is no such object or if the type of the object does not match the type passed as
@@ -683,7 +596,7 @@ class FacadingInvocationHandler implements InvocationHandler {
                 if (returnType.isInstance(subject)) {
                     return returnType.cast(subject);
                 } else {
-                    log.error("cannot cast retrieved object {} for property {} to return type {}", subject, rdf_property, returnType);
+                    log.error("cannot cast retrieved object {} of {} for property {} to return type {}", subject, delegate, rdf_property, returnType);
                     return null;
                 }
 
@@ -702,9 +615,17 @@ class FacadingInvocationHandler implements InvocationHandler {
      * 
      */
     private <C> Set<C> queryOutgoingAll(Resource entity, String rdf_property, Class<C> returnType) throws RepositoryException {
-        final URI property = connection.getValueFactory().createURI(rdf_property);
-
         final Set<C> dupSet = new LinkedHashSet<C>();
+        if (prefetch != null) {
+            for (Statement triple : prefetch.getOutgoing(entity)) {
+                if (rdf_property.equals(triple.getPredicate().stringValue()) && returnType.isInstance(triple.getObject())) {
+                    dupSet.add(returnType.cast(triple.getObject()));
+                }
+            }
+            return dupSet;
+        }
+
+        final URI property = connection.getValueFactory().createURI(rdf_property);
         final RepositoryResult<Statement> triples = connection.getStatements(entity, property, null, false);
         try {
             while (triples.hasNext()) {
@@ -772,6 +693,19 @@ class FacadingInvocationHandler implements InvocationHandler {
         final String lang = loc == null ? null : loc.getLanguage().toLowerCase();
 
         final Set<String> values = new HashSet<String>();
+        if (prefetch != null) {
+            for (Statement triple : prefetch.getOutgoing(entity, context)) {
+                if (property.stringValue().equals(triple.getPredicate().stringValue()) && triple.getObject() instanceof Literal) {
+                    Literal l = (Literal) triple.getObject();
+
+                    if (lang == null || lang.equals(l.getLanguage())) {
+                        values.add(l.stringValue());
+                    }
+                }
+            }
+            return values;
+        }
+
         final RepositoryResult<Statement> candidates = connection.getStatements(entity, property, null, false, context);
         try {
             while (candidates.hasNext()) {
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.facading.impl;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outgoing statements of facaded resources, each loaded with a single query on first access. The cache belongs to
+ * one {@link FacadingImpl} and is only used while a transaction is active on its connection: outside of a transaction
+ * every access queries the connection and the cache is emptied. Writes through the facades of the same facading
+ * invalidate the affected resources, but changes made directly on the connection are not seen.
+ */
+class FacadingPrefetchCache {
+
+    /**
+     * maximum number of resources kept, the least recently used resources are evicted first
+     */
+    private static final int MAX_RESOURCES = 1000;
+
+    /**
+     * marks the statements of all contexts, as opposed to the statements of a single (possibly null) context
+     */
+    private static final Object ALL_CONTEXTS = new Object();
+
+    private final RepositoryConnection connection;
+
+    private final Map<Key, List<Statement>> statements = new LinkedHashMap<Key, List<Statement>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<Statement>> eldest) {
+            return size() > MAX_RESOURCES;
+        }
+    };
+
+    FacadingPrefetchCache(RepositoryConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Return the explicit statements with the given subject in all contexts, as returned by
+     * {@code getStatements(subject, null, null, false)}.
+     */
+    synchronized List<Statement> getOutgoing(Resource subject) throws RepositoryException {
+        final Key key = new Key(subject, ALL_CONTEXTS);
+        if (!connection.isActive()) {
+            statements.clear();
+            return load(connection.getStatements(subject, null, null, false));
+        }
+        List<Statement> result = statements.get(key);
+        if (result == null) {
+            result = load(connection.getStatements(subject, null, null, false));
+            statements.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return the explicit statements with the given subject in the given context, as returned by
+     * {@code getStatements(subject, null, null, false, context)}; a null context has the same meaning as for the
+     * connection.
+     */
+    synchronized List<Statement> getOutgoing(Resource subject, URI context) throws RepositoryException {
+        final Key key = new Key(subject, context);
+        if (!connection.isActive()) {
+            statements.clear();
+            return load(connection.getStatements(subject, null, null, false, context));
+        }
+        List<Statement> result = statements.get(key);
+        if (result == null) {
+            result = load(connection.getStatements(subject, null, null, false, context));
+            statements.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Forget the statements of the given subject, e.g. after they have been changed.
+     */
+    synchronized void invalidate(Resource subject) {
+        for (Iterator<Key> it = statements.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().subject.equals(subject)) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        statements.clear();
+    }
+
+    private static List<Statement> load(RepositoryResult<Statement> triples) throws RepositoryException {
+        final List<Statement> result = new ArrayList<Statement>();
+        try {
+            while (triples.hasNext()) {
+                result.add(triples.next());
+            }
+        } finally {
+            triples.close();
+        }
+        return result;
+    }
+
+    private static class Key {
+        private final Resource subject;
+        private final Object context;
+
+        private Key(Resource subject, Object context) {
+            this.subject = subject;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key key = (Key) o;
+            return subject.equals(key.subject) && (context != null ? context.equals(key.context) : key.context == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * subject.hashCode() + (context != null ? context.hashCode() : 0);
+        }
+    }
+}
@@ -40,9 +40,11 @@ import org.junit.Test;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
 import org.slf4j.Logger;
@@ -53,6 +55,7 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test if facading works for the FOAF examples
@@ -201,6 +204,71 @@ public class FacadingFoafTest extends AbstractFacadingTest {
         }
     }
 
+    /**
+     * Test if a prefetching facading loads the properties of a resource with one query (per context selection) and
+     * sees the changes made through its facades
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        RepositoryConnection connectionRDF = repositoryRDF.getConnection();
+        try {
+            connectionRDF.begin();
+
+            final URI u_hans_meier = connectionRDF.getValueFactory().createURI("http://localhost:8080/LMF/resource/hans_meier");
+            final AtomicInteger queries = new AtomicInteger(0);
+            RepositoryConnection countingConnection = new RepositoryConnectionWrapper(repositoryRDF, connectionRDF) {
+                @Override
+                public RepositoryResult<Statement> getStatements(Resource subj, URI pred, Value obj, boolean includeInferred, Resource... contexts) throws RepositoryException {
+                    if(u_hans_meier.equals(subj)) {
+                        queries.incrementAndGet();
+                    }
+                    return super.getStatements(subj, pred, obj, includeInferred, contexts);
+                }
+            };
+
+            Person reference = FacadingFactory.createFacading(connectionRDF).createFacade(u_hans_meier, Person.class);
+
+            // without prefetching, every getter queries the connection
+            Person plain = FacadingFactory.createFacading(countingConnection).createFacade(u_hans_meier, Person.class);
+            queries.set(0);
+            plain.getName();
+            plain.getNick();
+            plain.getMbox();
+            plain.getDepiciton();
+            plain.getFriends();
+            plain.getOnlineAccounts();
+            plain.hasFriends();
+            final int unprefetched = queries.get();
+
+            Facading facading = FacadingFactory.createFacading(countingConnection, true);
+            Person hans_meier = facading.createFacade(u_hans_meier, Person.class);
+            queries.set(0);
+
+            Assert.assertEquals(reference.getName(), hans_meier.getName());
+            Assert.assertEquals(reference.getNick(), hans_meier.getNick());
+            Assert.assertEquals(reference.getMbox(), hans_meier.getMbox());
+            Assert.assertEquals(reference.getDepiciton(), hans_meier.getDepiciton());
+            Assert.assertEquals(reference.getFriends(), hans_meier.getFriends());
+            Assert.assertEquals(reference.getOnlineAccounts(), hans_meier.getOnlineAccounts());
+            Assert.assertTrue(hans_meier.hasFriends());
+
+            // literal properties are read from the context of the facade, resources from all contexts
+            Assert.assertEquals(2, queries.get());
+            Assert.assertTrue(unprefetched > queries.get());
+
+            // changes through the facade are visible to all facades of the facading
+            hans_meier.setNick("hansi");
+            Assert.assertEquals("hansi", hans_meier.getNick());
+            Assert.assertEquals("hansi", facading.createFacade(u_hans_meier, Person.class).getNick());
+
+            connectionRDF.commit();
+        } finally {
+            connectionRDF.close();
+        }
+    }
+
     @Test
     public void testReadInverseRDF() throws RepositoryException {
 
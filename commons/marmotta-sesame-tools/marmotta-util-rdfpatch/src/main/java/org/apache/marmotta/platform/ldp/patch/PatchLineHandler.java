@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldp.patch;
+
+import org.apache.marmotta.platform.ldp.patch.model.PatchLine;
+
+import java.io.IOException;
+
+/**
+ * Receives the {@link PatchLine}s of a patch one after the other, e.g. while a patch is computed by
+ * {@link RdfPatchUtil#diff(org.openrdf.repository.RepositoryConnection, org.openrdf.repository.RepositoryConnection, PatchLineHandler, org.openrdf.model.Resource...)}.
+ */
+public interface PatchLineHandler {
+
+    /**
+     * Handle the next line of the patch.
+     * @param patchLine the PatchLine, {@code null}-values of its statement mean {@code R}epeat
+     * @throws IOException if the line could not be written
+     */
+    void handlePatchLine(PatchLine patchLine) throws IOException;
+
+}
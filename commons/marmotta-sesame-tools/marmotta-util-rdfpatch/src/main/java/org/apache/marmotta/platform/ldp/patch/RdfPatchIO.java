@@ -24,7 +24,6 @@ import org.openrdf.rio.turtle.TurtleUtil;
 
 import java.io.*;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -91,24 +90,21 @@ public class RdfPatchIO {
      * @param namespaces the namespaces to write (and replace)
      */
     public static void writePatch(Writer writer, List<PatchLine> patch, Map<String, String> namespaces) {
-        PrintWriter ps = new PrintWriter(writer);
-
-        HashMap<String, String> inverseNamespaceMap = new HashMap<>(namespaces.size());
-        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
-            inverseNamespaceMap.put(ns.getValue(), ns.getKey());
-            ps.printf("@prefix %s: <%s> .%n", ns.getKey(), ns.getValue());
-        }
-        ps.println();
-        for (PatchLine patchLine : patch) {
-            final Statement st = patchLine.getStatement();
-            ps.printf("%S %s %s %s .", patchLine.getOperator().getCommand(),
-                    io(st.getSubject(), inverseNamespaceMap),
-                    io(st.getPredicate(), inverseNamespaceMap),
-                    io(st.getObject(), inverseNamespaceMap)
-                    );
+        final PrintWriter ps = new PrintWriter(writer);
+        final RdfPatchWriter patchWriter = new RdfPatchWriter(ps, namespaces);
+        try {
+            patchWriter.startPatch();
+            for (PatchLine patchLine : patch) {
+                patchWriter.handlePatchLine(patchLine);
+            }
+            patchWriter.endPatch();
+            // the PrintWriter does not throw, but records errors of the underlying writer
+            if (ps.checkError()) {
+                throw new IOException("error writing to the underlying writer");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("could not write rdf-patch: " + e.getMessage(), e);
         }
-
-        ps.flush();
     }
 
     /**
@@ -119,7 +115,7 @@ public class RdfPatchIO {
      * @param inverseNamespaceMap an inverse Map of known namespaces (e.g. http://example.com/foo# -> foo)
      * @return String-serialization of the Value.
      */
-    private static String io(Value v, Map<String, String> inverseNamespaceMap) {
+    static String io(Value v, Map<String, String> inverseNamespaceMap) {
         if (v == null) {
             return "R";
         } else if (v instanceof URI) {
@@ -40,6 +40,11 @@ import java.util.*;
  */
 public class RdfPatchUtil {
 
+    /**
+     * number of statements of each side of a diff that are sorted in memory before spilling to disk
+     */
+    private static final int DEFAULT_SORT_BUFFER = 100000;
+
     /**
      * Apply the provided patch to the repository
      * @param repository the {@link org.openrdf.repository.Repository} to patch
@@ -191,8 +196,34 @@ public class RdfPatchUtil {
         }
     }
 
+    /**
+     * Create an RDF-Patch that applies the changes from {@code r1} to {@code r2} and pass it line by line to the
+     * handler.
+     * @param r1 the 'from' Repository
+     * @param r2 the 'to' Repository
+     * @param handler the handler receiving the PatchLines, e.g. a {@link RdfPatchWriter}
+     * @param contexts restrict analysis to these contexts (leave empty to use <em>all</em> contexts)
+     * @throws IOException if the handler failed or the statements could not be sorted on disk
+     * @see #diff(org.openrdf.repository.RepositoryConnection, org.openrdf.repository.RepositoryConnection, PatchLineHandler, org.openrdf.model.Resource...)
+     */
+    public static void diff(Repository r1, Repository r2, PatchLineHandler handler, Resource... contexts) throws RepositoryException, IOException {
+        final RepositoryConnection c1 = r1.getConnection(), c2 = r2.getConnection();
+        try {
+            c1.begin();
+            c2.begin();
+            diff(c1, c2, handler, contexts);
+            c1.commit();
+            c2.commit();
+        } finally {
+            c1.close();
+            c2.close();
+        }
+    }
+
     /**
      * Create an RDF-Patch that applies the changes from {@code c1} to {@code c2}.
+     * The patch is always free of duplicates and ordered by subject, predicate and object (first all deletions, then
+     * all additions), so {@code optimize} makes no difference anymore.
      * @param c1 the 'from' RepositoryConnection
      * @param c2 the 'to' RepositoryConnection
      * @param optimize optimize the patch, i.e. remove duplicate or idempotent operations.
@@ -200,93 +231,111 @@ public class RdfPatchUtil {
      * @return List of PatchLines
      */
     public static List<PatchLine> diff(RepositoryConnection c1, RepositoryConnection c2, boolean optimize, Resource... contexts) throws RepositoryException {
-        Set<Statement> additions = new HashSet<>(),
-                removals = new HashSet<>();
-
-        final RepositoryResult<Statement> st1 = c1.getStatements(null, null, null, false, contexts);
+        final List<PatchLine> patch = new ArrayList<>();
         try {
-            while (st1.hasNext()) {
-                final Statement st = st1.next();
-                if (!c2.hasStatement(st, false, contexts)) {
-                    removals.add(st);
+            diff(c1, c2, new PatchLineHandler() {
+                @Override
+                public void handlePatchLine(PatchLine patchLine) {
+                    patch.add(patchLine);
+                }
+            }, contexts);
+        } catch (IOException e) {
+            throw new RepositoryException("could not sort the statements on disk", e);
+        }
+        return patch;
+    }
+
+    /**
+     * Create an RDF-Patch that applies the changes from {@code c1} to {@code c2} and pass it line by line to the
+     * handler, without keeping the patch in memory.
+     * <p/>
+     * The statements of both connections are sorted by subject, predicate and object (spilling to temporary files
+     * if there are too many to sort in memory) and then compared in a single merge pass. The patch contains first
+     * all deletions, then all additions, each in that order, which makes good use of the {@code R}epeat wildcard.
+     * @param c1 the 'from' RepositoryConnection
+     * @param c2 the 'to' RepositoryConnection
+     * @param handler the handler receiving the PatchLines, e.g. a {@link RdfPatchWriter}
+     * @param contexts restrict analysis to these contexts (leave empty to use <em>all</em> contexts)
+     * @throws IOException if the handler failed or the statements could not be sorted on disk
+     */
+    public static void diff(RepositoryConnection c1, RepositoryConnection c2, PatchLineHandler handler, Resource... contexts) throws RepositoryException, IOException {
+        diff(c1, c2, handler, DEFAULT_SORT_BUFFER, contexts);
+    }
+
+    /**
+     * @param sortBuffer the number of statements sorted in memory before spilling to disk
+     */
+    static void diff(RepositoryConnection c1, RepositoryConnection c2, PatchLineHandler handler, int sortBuffer, Resource... contexts) throws RepositoryException, IOException {
+        try (StatementSorter from = sort(c1, sortBuffer, contexts);
+             StatementSorter to = sort(c2, sortBuffer, contexts);
+             StatementSorter additions = new StatementSorter(sortBuffer)) {
+
+            final PatchLineWriter writer = new PatchLineWriter(handler);
+            final Iterator<Statement> it1 = from.iterator(), it2 = to.iterator();
+            Statement s1 = it1.hasNext() ? it1.next() : null, s2 = it2.hasNext() ? it2.next() : null;
+            while (s1 != null || s2 != null) {
+                final int c = s1 == null ? 1 : s2 == null ? -1 : StatementSorter.ORDER.compare(s1, s2);
+                if (c < 0) {
+                    writer.write(PatchLine.Operator.DELETE, s1);
+                    s1 = it1.hasNext() ? it1.next() : null;
+                } else if (c > 0) {
+                    // additions come in order, so they are appended to the sorted runs without much effort
+                    additions.add(s2);
+                    s2 = it2.hasNext() ? it2.next() : null;
+                } else {
+                    s1 = it1.hasNext() ? it1.next() : null;
+                    s2 = it2.hasNext() ? it2.next() : null;
                 }
             }
-        } finally {
-            st1.close();
+
+            for (Iterator<Statement> it = additions.iterator(); it.hasNext(); ) {
+                writer.write(PatchLine.Operator.ADD, it.next());
+            }
         }
+    }
 
-        final RepositoryResult<Statement> st2 = c2.getStatements(null, null, null, false, contexts);
+    private static StatementSorter sort(RepositoryConnection connection, int sortBuffer, Resource... contexts) throws RepositoryException, IOException {
+        final StatementSorter sorter = new StatementSorter(sortBuffer);
         try {
-            while (st2.hasNext()) {
-                final Statement st = st2.next();
-                if (!c1.hasStatement(st, false, contexts)) {
-                    additions.add(st);
+            final RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false, contexts);
+            try {
+                while (statements.hasNext()) {
+                    sorter.add(statements.next());
                 }
+            } finally {
+                statements.close();
             }
-        } finally {
-            st2.close();
+        } catch (RepositoryException | IOException | RuntimeException e) {
+            sorter.close();
+            throw e;
         }
+        return sorter;
+    }
 
-        if (optimize) {
-            final TreeSet<Statement> delList = new TreeSet<>(new StatementComparator());
-            delList.addAll(removals);
-            final TreeSet<Statement> addList = new TreeSet<>(new StatementComparator());
-            addList.addAll(additions);
+    /**
+     * Replaces values repeated from the previous line by the {@code R} wildcard.
+     */
+    private static class PatchLineWriter {
+        private final PatchLineHandler handler;
+        private Resource pS = null;
+        private URI pP = null;
+        private Value pO = null;
 
-            additions = addList;
-            removals = delList;
+        private PatchLineWriter(PatchLineHandler handler) {
+            this.handler = handler;
         }
 
-        Resource pS = null;
-        URI pP = null;
-        Value pO = null;
-        ArrayList<PatchLine> patch = new ArrayList<>(removals.size()+additions.size());
-        for (Statement s : removals) {
-            final WildcardStatement ws = new WildcardStatement(
-                    s.getSubject().equals(pS) ? null : s.getSubject(),
-                    s.getPredicate().equals(pP) ? null : s.getPredicate(),
-                    s.getObject().equals(pO) ? null : s.getObject()
-            );
-            patch.add(new PatchLine(PatchLine.Operator.DELETE, ws));
-            pS = s.getSubject();
-            pP = s.getPredicate();
-            pO = s.getObject();
-        }
-        for (Statement s : additions) {
+        private void write(PatchLine.Operator operator, Statement s) throws IOException {
             final WildcardStatement ws = new WildcardStatement(
                     s.getSubject().equals(pS) ? null : s.getSubject(),
                     s.getPredicate().equals(pP) ? null : s.getPredicate(),
                     s.getObject().equals(pO) ? null : s.getObject()
             );
-            patch.add(new PatchLine(PatchLine.Operator.ADD, ws));
+            handler.handlePatchLine(new PatchLine(operator, ws));
             pS = s.getSubject();
             pP = s.getPredicate();
             pO = s.getObject();
         }
-
-        return patch;
-    }
-
-    private static class StatementComparator implements Comparator<Statement> {
-        @Override
-        public int compare(Statement s1, Statement s2) {
-            final int si = compare(s1.getSubject(), s2.getSubject());
-            if (si != 0) {
-                return si;
-            } else {
-                final int pi = compare(s1.getPredicate(), s2.getPredicate());
-                if (pi != 0) {
-                    return pi;
-                }
-                else {
-                    return compare(s1.getObject(), s2.getObject());
-                }
-            }
-        }
-
-        private int compare(Value v1, Value v2) {
-            return v1.toString().compareTo(v2.toString());
-        }
     }
 
     private RdfPatchUtil() {
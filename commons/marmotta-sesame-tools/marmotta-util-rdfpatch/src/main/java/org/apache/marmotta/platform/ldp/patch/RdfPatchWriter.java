@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldp.patch;
+
+import org.apache.marmotta.platform.ldp.patch.model.PatchLine;
+import org.openrdf.model.Statement;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Write an rdf-patch document line by line, so that patches do not need to be kept in memory.
+ * The namespace prefixes are written before the first line.
+ */
+public class RdfPatchWriter implements PatchLineHandler, Flushable {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Writer writer;
+    private final Map<String, String> namespaces;
+    private final Map<String, String> inverseNamespaceMap;
+    private boolean started = false;
+
+    /**
+     * @param writer the target to write to, will <em>not</em> be closed.
+     */
+    public RdfPatchWriter(Writer writer) {
+        this(writer, Collections.<String,String>emptyMap());
+    }
+
+    /**
+     * @param writer the target to write to, will <em>not</em> be closed.
+     * @param namespaces the namespaces to write (and replace)
+     */
+    public RdfPatchWriter(Writer writer, Map<String, String> namespaces) {
+        this.writer = writer;
+        this.namespaces = namespaces;
+        this.inverseNamespaceMap = new HashMap<>(namespaces.size());
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            inverseNamespaceMap.put(ns.getValue(), ns.getKey());
+        }
+    }
+
+    /**
+     * Write the namespace prefixes, if that did not happen yet.
+     */
+    public void startPatch() throws IOException {
+        if (!started) {
+            started = true;
+            for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+                writer.write(String.format("@prefix %s: <%s> .%n", ns.getKey(), ns.getValue()));
+            }
+            writer.write(LINE_SEPARATOR);
+        }
+    }
+
+    @Override
+    public void handlePatchLine(PatchLine patchLine) throws IOException {
+        startPatch();
+
+        final Statement st = patchLine.getStatement();
+        writer.write(patchLine.getOperator().getCommand().toUpperCase());
+        writer.write(' ');
+        writer.write(RdfPatchIO.io(st.getSubject(), inverseNamespaceMap));
+        writer.write(' ');
+        writer.write(RdfPatchIO.io(st.getPredicate(), inverseNamespaceMap));
+        writer.write(' ');
+        writer.write(RdfPatchIO.io(st.getObject(), inverseNamespaceMap));
+        writer.write(" .");
+        writer.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Finish the patch and flush the underlying writer.
+     */
+    public void endPatch() throws IOException {
+        startPatch();
+        flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
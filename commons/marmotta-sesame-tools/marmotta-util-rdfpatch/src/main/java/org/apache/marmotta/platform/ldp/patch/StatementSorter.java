@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldp.patch;
+
+import org.openrdf.model.*;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * External sort of statements by subject, predicate and object. Statements are buffered in memory; whenever the
+ * buffer is full it is sorted and spilled to a temporary file, and the sorted runs are merged when the statements
+ * are read. Duplicates (statements with the same subject, predicate and object, e.g. from different contexts) are
+ * returned only once.
+ */
+class StatementSorter implements Closeable {
+
+    /**
+     * maximum number of runs merged at once, larger numbers of runs are merged in several passes
+     */
+    private static final int MAX_FAN_IN = 64;
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte URI_VALUE = 0, BNODE_VALUE = 1, LITERAL_VALUE = 2, LANG_LITERAL_VALUE = 3, TYPED_LITERAL_VALUE = 4;
+
+    static final Comparator<Statement> ORDER = new StatementComparator();
+
+    private final int bufferSize;
+
+    private final ValueFactory valueFactory = ValueFactoryImpl.getInstance();
+
+    private final List<Statement> buffer;
+
+    private final LinkedList<File> runs = new LinkedList<>();
+
+    private final List<Closeable> readers = new ArrayList<>();
+
+    /**
+     * @param bufferSize the number of statements kept in memory before spilling to disk
+     */
+    StatementSorter(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.buffer = new ArrayList<>(Math.min(bufferSize, 1024));
+    }
+
+    void add(Statement statement) throws IOException {
+        buffer.add(statement);
+        if (buffer.size() >= bufferSize) {
+            spill();
+        }
+    }
+
+    /**
+     * @return true if the statements did not fit into memory and have been written to disk
+     */
+    boolean isSpilled() {
+        return !runs.isEmpty();
+    }
+
+    /**
+     * Return the sorted statements without duplicates. No more statements may be added afterwards.
+     */
+    Iterator<Statement> iterator() throws IOException {
+        if (runs.isEmpty()) {
+            Collections.sort(buffer, ORDER);
+            return new DistinctIterator(buffer.iterator());
+        }
+
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > MAX_FAN_IN) {
+            final List<File> pass = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+
+            final File merged = createRun();
+            runs.add(merged);
+            try (DataOutputStream out = openOutput(merged)) {
+                final Iterator<Statement> it = merge(pass);
+                while (it.hasNext()) {
+                    write(out, it.next());
+                }
+            } finally {
+                closeReaders();
+                for (File run : pass) {
+                    delete(run);
+                }
+            }
+        }
+        return merge(runs);
+    }
+
+    /**
+     * Remove the temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.clear();
+        closeReaders();
+        for (File run : runs) {
+            delete(run);
+        }
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, ORDER);
+
+        final File run = createRun();
+        runs.add(run);
+        try (DataOutputStream out = openOutput(run)) {
+            final Iterator<Statement> it = new DistinctIterator(buffer.iterator());
+            while (it.hasNext()) {
+                write(out, it.next());
+            }
+        }
+        buffer.clear();
+    }
+
+    private Iterator<Statement> merge(List<File> files) throws IOException {
+        final PriorityQueue<RunReader> queue = new PriorityQueue<>(files.size());
+        for (File file : files) {
+            final RunReader reader = new RunReader(file);
+            readers.add(reader);
+            if (reader.advance()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+
+        return new DistinctIterator(new Iterator<Statement>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Statement next() {
+                final RunReader reader = queue.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                final Statement next = reader.current;
+                try {
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("could not read sorted statements from " + reader.file, e);
+                }
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private void closeReaders() throws IOException {
+        for (Closeable reader : readers) {
+            reader.close();
+        }
+        readers.clear();
+    }
+
+    private static File createRun() throws IOException {
+        return File.createTempFile("rdfpatch-", ".run");
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static void write(DataOutputStream out, Statement statement) throws IOException {
+        writeValue(out, statement.getSubject());
+        writeValue(out, statement.getPredicate());
+        writeValue(out, statement.getObject());
+    }
+
+    private static void writeValue(DataOutputStream out, Value value) throws IOException {
+        if (value instanceof URI) {
+            out.writeByte(URI_VALUE);
+            writeString(out, value.stringValue());
+        } else if (value instanceof BNode) {
+            out.writeByte(BNODE_VALUE);
+            writeString(out, ((BNode) value).getID());
+        } else if (value instanceof Literal) {
+            final Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                out.writeByte(LANG_LITERAL_VALUE);
+                writeString(out, literal.getLabel());
+                writeString(out, literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                out.writeByte(TYPED_LITERAL_VALUE);
+                writeString(out, literal.getLabel());
+                writeString(out, literal.getDatatype().stringValue());
+            } else {
+                out.writeByte(LITERAL_VALUE);
+                writeString(out, literal.getLabel());
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported value type: " + value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        // DataOutputStream.writeUTF is limited to 64k, which is not enough for literals
+        final byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Statement read(DataInputStream in) throws IOException {
+        final byte type;
+        try {
+            type = in.readByte();
+        } catch (EOFException e) {
+            return null;
+        }
+        return valueFactory.createStatement((Resource) readValue(in, type), (URI) readValue(in, in.readByte()), readValue(in, in.readByte()));
+    }
+
+    private Value readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case URI_VALUE:
+                return valueFactory.createURI(readString(in));
+            case BNODE_VALUE:
+                return valueFactory.createBNode(readString(in));
+            case LITERAL_VALUE:
+                return valueFactory.createLiteral(readString(in));
+            case LANG_LITERAL_VALUE:
+                return valueFactory.createLiteral(readString(in), readString(in));
+            case TYPED_LITERAL_VALUE:
+                return valueFactory.createLiteral(readString(in), valueFactory.createURI(readString(in)));
+            default:
+                throw new IOException("corrupt statement run, unknown value type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private class RunReader implements Closeable, Comparable<RunReader> {
+        private final File file;
+        private final DataInputStream in;
+        private Statement current;
+        private boolean closed;
+
+        private RunReader(File file) throws IOException {
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE));
+        }
+
+        private boolean advance() throws IOException {
+            current = read(in);
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            return ORDER.compare(current, other.current);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Skips consecutive duplicates of a sorted iterator.
+     */
+    private static class DistinctIterator implements Iterator<Statement> {
+        private final Iterator<Statement> delegate;
+        private Statement next, last;
+
+        private DistinctIterator(Iterator<Statement> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && delegate.hasNext()) {
+                final Statement candidate = delegate.next();
+                if (last == null || ORDER.compare(last, candidate) != 0) {
+                    next = candidate;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Statement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Orders statements by subject, predicate and object; values are ordered by their type (URI, blank node,
+     * literal), lexical value, language and datatype, which is consistent with their equality.
+     */
+    private static class StatementComparator implements Comparator<Statement> {
+        @Override
+        public int compare(Statement s1, Statement s2) {
+            int c = compare(s1.getSubject(), s2.getSubject());
+            if (c == 0) {
+                c = compare(s1.getPredicate(), s2.getPredicate());
+                if (c == 0) {
+                    c = compare(s1.getObject(), s2.getObject());
+                }
+            }
+            return c;
+        }
+
+        private int compare(Value v1, Value v2) {
+            if (v1 == v2) {
+                return 0;
+            }
+            int c = rank(v1) - rank(v2);
+            if (c == 0) {
+                c = v1.stringValue().compareTo(v2.stringValue());
+            }
+            if (c == 0 && v1 instanceof Literal) {
+                final Literal l1 = (Literal) v1, l2 = (Literal) v2;
+                c = compare(l1.getLanguage(), l2.getLanguage());
+                if (c == 0) {
+                    c = compare(l1.getDatatype() != null ? l1.getDatatype().stringValue() : null,
+                            l2.getDatatype() != null ? l2.getDatatype().stringValue() : null);
+                }
+            }
+            return c;
+        }
+
+        private int compare(String s1, String s2) {
+            if (s1 == null) {
+                return s2 == null ? 0 : -1;
+            }
+            return s2 == null ? 1 : s1.compareTo(s2);
+        }
+
+        private int rank(Value v) {
+            if (v instanceof URI) {
+                return 0;
+            } else if (v instanceof BNode) {
+                return 1;
+            } else {
+                return 2;
+            }
+        }
+    }
+}
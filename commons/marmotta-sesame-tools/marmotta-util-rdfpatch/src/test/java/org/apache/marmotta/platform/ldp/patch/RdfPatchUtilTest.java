@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.platform.ldp.patch;
 
+import info.aduna.iteration.Iterations;
 import org.apache.marmotta.platform.ldp.patch.model.PatchLine;
 import org.apache.marmotta.platform.ldp.patch.model.WildcardStatement;
 import org.apache.marmotta.platform.ldp.patch.parser.ParseException;
@@ -26,7 +27,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.vocabulary.FOAF;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -35,7 +39,11 @@ import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.sail.memory.MemoryStore;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Testing RdfPatchUtil
@@ -155,4 +163,96 @@ public class RdfPatchUtilTest {
                 new PatchLine(PatchLine.Operator.ADD, new WildcardStatement(charlie, FOAF.MBOX, mbox))
                 ));
     }
+
+    @Test
+    public void testDiffWriter() throws Exception {
+        final Repository target = createRandomRepository(new Random(1), 500);
+        final Repository source = createRandomRepository(new Random(2), 500);
+        try {
+            final StringWriter out = new StringWriter();
+            final RdfPatchWriter writer = new RdfPatchWriter(out, Collections.singletonMap(FOAF.PREFIX, FOAF.NAMESPACE));
+            RdfPatchUtil.diff(source, target, writer);
+            writer.endPatch();
+
+            RdfPatchUtil.applyPatch(source, out.toString());
+            assertSameStatements(target, source);
+        } finally {
+            target.shutDown();
+            source.shutDown();
+        }
+    }
+
+    @Test
+    public void testDiffSpilling() throws Exception {
+        final Repository target = createRandomRepository(new Random(3), 5000);
+        final Repository source = createRandomRepository(new Random(4), 5000);
+        try {
+            final List<PatchLine> inMemory = RdfPatchUtil.diff(source, target, true);
+
+            final List<PatchLine> spilled = new ArrayList<>();
+            final RepositoryConnection c1 = source.getConnection(), c2 = target.getConnection();
+            try {
+                // sort buffer much smaller than the data, and more runs than merged at once
+                RdfPatchUtil.diff(c1, c2, new PatchLineHandler() {
+                    @Override
+                    public void handlePatchLine(PatchLine patchLine) {
+                        spilled.add(patchLine);
+                    }
+                }, 50, new Resource[0]);
+            } finally {
+                c1.close();
+                c2.close();
+            }
+            Assert.assertEquals(inMemory, spilled);
+
+            RdfPatchUtil.applyPatch(source, spilled);
+            assertSameStatements(target, source);
+        } finally {
+            target.shutDown();
+            source.shutDown();
+        }
+    }
+
+    private Repository createRandomRepository(Random random, int size) throws RepositoryException {
+        final Repository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+
+        final RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            final ValueFactory vf = con.getValueFactory();
+            final URI context = vf.createURI(BASE_URI + "context");
+            for (int i = 0; i < size; i++) {
+                final URI subject = vf.createURI(BASE_URI + "resource" + random.nextInt(size / 10));
+                final URI predicate = random.nextBoolean() ? FOAF.KNOWS : FOAF.NAME;
+                final Value object;
+                switch (random.nextInt(3)) {
+                    case 0:  object = vf.createURI(BASE_URI + "resource" + random.nextInt(size / 10)); break;
+                    case 1:  object = vf.createLiteral("name " + random.nextInt(size / 10), "en"); break;
+                    default: object = vf.createLiteral(random.nextInt(size / 10)); break;
+                }
+                // some statements are in two contexts
+                con.add(subject, predicate, object);
+                if (random.nextInt(10) == 0) {
+                    con.add(subject, predicate, object, context);
+                }
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+        return repository;
+    }
+
+    private void assertSameStatements(Repository expected, Repository actual) throws RepositoryException {
+        final RepositoryConnection c1 = expected.getConnection(), c2 = actual.getConnection();
+        try {
+            // statements are equal regardless of their context
+            Assert.assertEquals(Iterations.asSet(c1.getStatements(null, null, null, false)),
+                    Iterations.asSet(c2.getStatements(null, null, null, false)));
+        } finally {
+            c1.close();
+            c2.close();
+        }
+    }
 }
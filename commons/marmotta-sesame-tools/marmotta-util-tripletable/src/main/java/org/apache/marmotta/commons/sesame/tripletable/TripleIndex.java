@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.commons.sesame.tripletable;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Collections2;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A lock-free index over triples in a given component order (e.g. subject, predicate, object, context), backed by
+ * a concurrent skip list. Each entry carries the 32bit hashes of the four components packed into two longs in
+ * index order, so comparisons do not need to look at the values except when two entries have the same hashes.
+ * Triples that share the bound components of a pattern in index order are therefore stored next to each other
+ * and can be listed with a range query.
+ */
+final class TripleIndex<Triple extends Statement> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int SUBJECT = 0, PREDICATE = 1, OBJECT = 2, CONTEXT = 3;
+
+    /**
+     * the components of a triple in index order
+     */
+    private final int[] order;
+
+    private final ConcurrentSkipListSet<Entry> entries;
+
+    TripleIndex(int... order) {
+        this.order   = order;
+        this.entries = new ConcurrentSkipListSet<>(new EntryComparator(order));
+    }
+
+    boolean add(Triple triple) {
+        return entries.add(createEntry(triple));
+    }
+
+    boolean remove(Statement triple) {
+        return entries.remove(createEntry(triple));
+    }
+
+    boolean contains(Statement triple) {
+        return entries.contains(createEntry(triple));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Return the number of components of the pattern that are bound, counted in index order up to the first
+     * wildcard, i.e. the number of components a range query can make use of.
+     *
+     * @param pattern subject, predicate, object, context; null values are wildcards
+     */
+    int getPrefixLength(Value[] pattern) {
+        int length = 0;
+        while(length < order.length && pattern[order[length]] != null) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Return a live view of all triples in index order.
+     */
+    Collection<Triple> values() {
+        return Collections2.transform(entries, new EntryTriple<Triple>());
+    }
+
+    /**
+     * Return a live view of the triples whose first components in index order have the same hashes as the
+     * bound components of the pattern. The result may contain triples with colliding hashes, so the caller needs
+     * to check the values.
+     *
+     * @param pattern subject, predicate, object, context; null values are wildcards
+     * @param prefix  the number of bound components to use, see {@link #getPrefixLength(Value[])}
+     */
+    Collection<Triple> range(Value[] pattern, int prefix) {
+        int[] lower = new int[4], upper = new int[4];
+        for(int i = 0; i < 4; i++) {
+            if(i < prefix) {
+                lower[i] = upper[i] = hash(pattern[order[i]]);
+            } else {
+                lower[i] = Integer.MIN_VALUE;
+                upper[i] = Integer.MAX_VALUE;
+            }
+        }
+        NavigableSet<Entry> range = entries.subSet(new Entry(lower, null, -1), true, new Entry(upper, null, 1), true);
+        return Collections2.transform(range, new EntryTriple<Triple>());
+    }
+
+    private Entry createEntry(Statement triple) {
+        int[] hashes = new int[4];
+        for(int i = 0; i < 4; i++) {
+            hashes[i] = hash(component(triple, order[i]));
+        }
+        return new Entry(hashes, triple, 0);
+    }
+
+    static Value component(Statement triple, int component) {
+        switch (component) {
+            case SUBJECT:   return triple.getSubject();
+            case PREDICATE: return triple.getPredicate();
+            case OBJECT:    return triple.getObject();
+            default:        return triple.getContext();
+        }
+    }
+
+    /**
+     * A hash of the value that is the same for equal values of different implementations; literals are hashed
+     * by label, language and datatype.
+     */
+    static int hash(Value value) {
+        if(value == null) {
+            return 0;
+        } else if(value instanceof Literal) {
+            Literal literal = (Literal) value;
+            int h = literal.getLabel().hashCode();
+            h = h * 31 + (literal.getLanguage() != null ? literal.getLanguage().hashCode() : 0);
+            h = h * 31 + (literal.getDatatype() != null ? literal.getDatatype().hashCode() : 0);
+            return h;
+        } else {
+            return value.hashCode();
+        }
+    }
+
+    /**
+     * A total order on values that is consistent with equals; only used to order triples with colliding hashes.
+     */
+    static int compare(Value a, Value b) {
+        if(a == b) {
+            return 0;
+        } else if(a == null) {
+            return -1;
+        } else if(b == null) {
+            return 1;
+        }
+
+        int c = Integer.compare(kind(a), kind(b));
+        if(c == 0) {
+            c = a.stringValue().compareTo(b.stringValue());
+        }
+        if(c == 0 && a instanceof Literal) {
+            Literal la = (Literal) a, lb = (Literal) b;
+            c = compareStrings(la.getLanguage(), lb.getLanguage());
+            if(c == 0) {
+                c = compareStrings(la.getDatatype() != null ? la.getDatatype().stringValue() : null, lb.getDatatype() != null ? lb.getDatatype().stringValue() : null);
+            }
+        }
+        return c;
+    }
+
+    private static int kind(Value value) {
+        if(value instanceof URI) {
+            return 0;
+        } else if(value instanceof BNode) {
+            return 1;
+        } else if(value instanceof Literal) {
+            return 2;
+        } else {
+            return 3;
+        }
+    }
+
+    private static int compareStrings(String a, String b) {
+        if(a == null) {
+            return b == null ? 0 : -1;
+        } else if(b == null) {
+            return 1;
+        } else {
+            return a.compareTo(b);
+        }
+    }
+
+
+    /**
+     * An index entry; a bound of -1 or 1 marks a probe sorting before or after all triples with the same hashes.
+     */
+    private static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long high, low;
+
+        private final Statement triple;
+
+        private final int bound;
+
+        private Entry(int[] hashes, Statement triple, int bound) {
+            // flipping the sign bit of the second hash in each long keeps the signed order of both hashes
+            this.high   = ((long) hashes[0] << 32) | ((hashes[1] ^ Integer.MIN_VALUE) & 0xffffffffL);
+            this.low    = ((long) hashes[2] << 32) | ((hashes[3] ^ Integer.MIN_VALUE) & 0xffffffffL);
+            this.triple = triple;
+            this.bound  = bound;
+        }
+    }
+
+    private static final class EntryComparator implements Comparator<Entry>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+
+        private EntryComparator(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public int compare(Entry a, Entry b) {
+            int c = Long.compare(a.high, b.high);
+            if(c == 0) {
+                c = Long.compare(a.low, b.low);
+            }
+            if(c == 0) {
+                c = Integer.compare(a.bound, b.bound);
+            }
+            if(c == 0 && a.triple != b.triple && a.triple != null && b.triple != null) {
+                for(int i = 0; c == 0 && i < order.length; i++) {
+                    c = TripleIndex.compare(component(a.triple, order[i]), component(b.triple, order[i]));
+                }
+            }
+            return c;
+        }
+    }
+
+    private static final class EntryTriple<Triple extends Statement> implements Function<Entry, Triple> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Triple apply(Entry entry) {
+            return (Triple) entry.triple;
+        }
+    }
+}
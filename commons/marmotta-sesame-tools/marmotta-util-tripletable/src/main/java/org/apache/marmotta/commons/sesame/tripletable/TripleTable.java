@@ -19,55 +19,97 @@ package org.apache.marmotta.commons.sesame.tripletable;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
-import org.apache.marmotta.commons.sesame.model.StatementCommons;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.marmotta.commons.sesame.tripletable.TripleIndex.*;
 
 /**
  * A triple table that allows efficient in-memory operations over large collections of triples. This can be used as
  * a simplified version of a Sesame in-memory repository (MemStore) using typical collection methods.
  * <p/>
+ * The table is safe for concurrent use: reads and listings do not lock and return weakly consistent views, while
+ * concurrent updates of the same triple are serialised so that the indexes always agree. Listings with any
+ * combination of bound components use one of four indexes (SPOC, CSPO, POSC, OSPC) instead of scanning all triples.
+ * <p/>
  * Author: Sebastian Schaffert
  */
 public class TripleTable<Triple extends Statement> implements Set<Triple>, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private Set<Triple> data;
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Orders triples so that the subject is the most significant, while the context is the least significant
+     * property in the order. Used for queries that bind the subject (and possibly predicate and object); also
+     * serves as the set of all triples.
+     */
+    private final TripleIndex<Triple> indexSPOC = new TripleIndex<>(SUBJECT, PREDICATE, OBJECT, CONTEXT);
+
+    /**
+     * Orders triples so that the context is the most significant property in the order. Used for queries that
+     * bind the context (and possibly subject and predicate).
+     */
+    private final TripleIndex<Triple> indexCSPO = new TripleIndex<>(CONTEXT, SUBJECT, PREDICATE, OBJECT);
+
+    /**
+     * Orders triples so that the predicate is the most significant property in the order. Used for queries that
+     * bind the predicate (and possibly object and subject).
+     */
+    private final TripleIndex<Triple> indexPOSC = new TripleIndex<>(PREDICATE, OBJECT, SUBJECT, CONTEXT);
 
     /**
-     * A set that orders triples orderd in a way that the subject is the most significant, while the context is the
-     * least significant property in the order. Can be used for efficient queries that involve either just a subject,
-     * a subject and a property, a subject, property and object or a subject, property, object and context
+     * Orders triples so that the object is the most significant property in the order. Used for queries that
+     * bind the object (and possibly subject and predicate).
      */
-    private NavigableMap<IntArray,Triple> indexSPOC;
+    private final TripleIndex<Triple> indexOSPC = new TripleIndex<>(OBJECT, SUBJECT, PREDICATE, CONTEXT);
+
+    private final AtomicInteger size = new AtomicInteger(0);
 
     /**
-     * A set that orders triples orderd in a way that the context is the most significant, while the object is the
-     * least significant property in the order. Can be used for efficient queries that involve either just a context,
-     * a context and a subject, a context, subject, and property
+     * serialises updates of the same triple so that all indexes agree; updates of different triples run concurrently
      */
-    private NavigableMap<IntArray,Triple> indexCSPO;
+    private transient Object[] locks;
 
     public TripleTable() {
-        data = StatementCommons.newQuadrupleSet();
-        indexSPOC = new TreeMap<IntArray, Triple>();
-        indexCSPO = new TreeMap<IntArray, Triple>();
+        initLocks();
     }
 
 
     public TripleTable(Collection<Triple> triples) {
-        data = StatementCommons.newQuadrupleSet();
-        indexSPOC = new TreeMap<IntArray, Triple>();
-        indexCSPO = new TreeMap<IntArray, Triple>();
+        initLocks();
         addAll(triples);
     }
 
+    private void initLocks() {
+        locks = new Object[LOCK_STRIPES];
+        for(int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initLocks();
+    }
+
+    private Object lockFor(Statement triple) {
+        int h = hash(triple.getSubject());
+        h = h * 31 + hash(triple.getPredicate());
+        h = h * 31 + hash(triple.getObject());
+        h = h * 31 + hash(triple.getContext());
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
 
     /**
      * Returns the number of elements in this set (its cardinality).  If this
@@ -77,8 +119,8 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @return the number of elements in this set (its cardinality)
      */
     @Override
-    public synchronized int size() {
-        return data.size();
+    public int size() {
+        return size.get();
     }
 
     /**
@@ -87,8 +129,8 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @return <tt>true</tt> if this set contains no elements
      */
     @Override
-    public synchronized boolean isEmpty() {
-        return data.isEmpty();
+    public boolean isEmpty() {
+        return size.get() == 0;
     }
 
     /**
@@ -105,8 +147,8 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      *         set does not permit null elements (optional)
      */
     @Override
-    public synchronized boolean contains(Object o) {
-        return data.contains(o);
+    public boolean contains(Object o) {
+        return o instanceof Statement && indexSPOC.contains((Statement) o);
     }
 
     /**
@@ -118,7 +160,30 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      */
     @Override
     public Iterator<Triple> iterator() {
-        return data.iterator();
+        final Iterator<Triple> it = indexSPOC.values().iterator();
+        return new Iterator<Triple>() {
+            private Triple current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Triple next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if(current == null) {
+                    throw new IllegalStateException("next() has not been called");
+                }
+                TripleTable.this.remove(current);
+                current = null;
+            }
+        };
     }
 
     /**
@@ -138,8 +203,8 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @return an array containing all the elements in this set
      */
     @Override
-    public synchronized Object[] toArray() {
-        return data.toArray();
+    public Object[] toArray() {
+        return new ArrayList<>(indexSPOC.values()).toArray();
     }
 
     /**
@@ -185,8 +250,8 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @throws NullPointerException if the specified array is null
      */
     @Override
-    public synchronized <T> T[] toArray(T[] a) {
-        return data.toArray(a);
+    public <T> T[] toArray(T[] a) {
+        return new ArrayList<>(indexSPOC.values()).toArray(a);
     }
 
     /**
@@ -220,10 +285,17 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      *         prevents it from being added to this set
      */
     @Override
-    public synchronized boolean add(Triple triple) {
-        indexSPOC.put(IntArray.createSPOCKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()),triple);
-        indexCSPO.put(IntArray.createCSPOKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()),triple);
-        return data.add(triple);
+    public boolean add(Triple triple) {
+        synchronized (lockFor(triple)) {
+            if(!indexSPOC.add(triple)) {
+                return false;
+            }
+            indexCSPO.add(triple);
+            indexPOSC.add(triple);
+            indexOSPC.add(triple);
+            size.incrementAndGet();
+            return true;
+        }
     }
 
     /**
@@ -246,13 +318,21 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      *         is not supported by this set
      */
     @Override
-    public synchronized boolean remove(Object o) {
-        if(o instanceof Statement) {
-            Statement triple = (Statement)o;
-            indexSPOC.remove(IntArray.createSPOCKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()));
-            indexCSPO.remove(IntArray.createCSPOKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext()));
+    public boolean remove(Object o) {
+        if(!(o instanceof Statement)) {
+            return false;
+        }
+        Statement triple = (Statement)o;
+        synchronized (lockFor(triple)) {
+            if(!indexSPOC.remove(triple)) {
+                return false;
+            }
+            indexCSPO.remove(triple);
+            indexPOSC.remove(triple);
+            indexOSPC.remove(triple);
+            size.decrementAndGet();
+            return true;
         }
-        return data.remove(o);
     }
 
     /**
@@ -272,8 +352,13 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @see    #contains(Object)
      */
     @Override
-    public synchronized boolean containsAll(Collection<?> c) {
-        return data.containsAll(c);
+    public boolean containsAll(Collection<?> c) {
+        for(Object o : c) {
+            if(!contains(o)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -299,7 +384,7 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @see #add(Object)
      */
     @Override
-    public synchronized boolean addAll(Collection<? extends Triple> c) {
+    public boolean addAll(Collection<? extends Triple> c) {
         boolean modified = false;
         for(Triple t : c) {
             modified = add(t) || modified;
@@ -327,20 +412,14 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @see #remove(Object)
      */
     @Override
-    public synchronized boolean retainAll(Collection<?> c) {
-        Iterator<Map.Entry<IntArray,Triple>> it = indexSPOC.entrySet().iterator();
-        while(it.hasNext()) {
-            if(!c.contains(it.next().getValue())) {
-                it.remove();
-            }
-        }
-        Iterator<Map.Entry<IntArray,Triple>> it2 = indexCSPO.entrySet().iterator();
-        while(it2.hasNext()) {
-            if(!c.contains(it2.next().getValue())) {
-                it2.remove();
+    public boolean retainAll(Collection<?> c) {
+        boolean modified = false;
+        for(Triple t : indexSPOC.values()) {
+            if(!c.contains(t)) {
+                modified = remove(t) || modified;
             }
         }
-        return data.retainAll(c);
+        return modified;
     }
 
     /**
@@ -363,7 +442,7 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @see #contains(Object)
      */
     @Override
-    public synchronized boolean removeAll(Collection<?> c) {
+    public boolean removeAll(Collection<?> c) {
         boolean modified = false;
         for(Object o : c) {
             modified = remove(o) || modified;
@@ -379,14 +458,16 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      *         is not supported by this set
      */
     @Override
-    public synchronized void clear() {
-        data.clear();
-        indexSPOC.clear();
-        indexCSPO.clear();
+    public void clear() {
+        for(Triple t : indexSPOC.values()) {
+            remove(t);
+        }
     }
 
     /**
      * Return a subset of the triples matching the filter criteria. Arguments with null value are treated as wildcards.
+     * The result is an unmodifiable, weakly consistent view that is computed lazily from the index with the longest
+     * prefix of bound arguments; only if no argument is bound, all triples need to be visited.
      *
      *
      * @param subject
@@ -396,81 +477,65 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
      * @param wildcardContext
      * @return
      */
-    public synchronized Collection<Triple> listTriples(final Resource subject, final URI property, final Value object, final Resource context, boolean wildcardContext) {
-        // in special cases we can make use of the index
-        if(subject != null && property != null && object != null && context != null) {
-            IntArray key = IntArray.createSPOCKey(subject, property, object, context);
-            Triple result = indexSPOC.get(key);
-            if(result != null) {
-                return Collections.singleton(result);
-            } else {
-                return Collections.emptyList();
+    public Collection<Triple> listTriples(final Resource subject, final URI property, final Value object, final Resource context, boolean wildcardContext) {
+        final Value[] pattern = new Value[] { subject, property, object, context };
+
+        TripleIndex<Triple> index = indexSPOC;
+        int prefix = indexSPOC.getPrefixLength(pattern);
+        for(TripleIndex<Triple> candidate : Arrays.asList(indexCSPO, indexPOSC, indexOSPC)) {
+            int candidatePrefix = candidate.getPrefixLength(pattern);
+            if(candidatePrefix > prefix) {
+                index  = candidate;
+                prefix = candidatePrefix;
             }
-        } else if(wildcardContext &&
-                (  (subject != null && property != null && object != null)
-                 || (subject != null && property != null)
-                 || subject != null)) {
-            IntArray fromKey = IntArray.createSPOCKey(subject, property, object, context);
-            IntArray toKey   = IntArray.createSPOCMaxKey(subject, property, object, context);
-
-            return indexSPOC.subMap(fromKey,true,toKey,true).values();
-        } else if(  (context != null && subject != null && property != null)
-                 || (context != null && subject != null)
-                 || context != null) {
-            IntArray fromKey = IntArray.createCSPOKey(subject, property, object, context);
-            IntArray toKey   = IntArray.createCSPOMaxKey(subject, property, object, context);
-
-            return indexCSPO.subMap(fromKey,true,toKey,true).values();
-        } else {
-            // in all other cases we need to iterate and filter :-(
-            Predicate<Statement> p = new Predicate<Statement>() {
-                @Override
-                public boolean apply(Statement triple) {
-                    if(subject != null && !triple.getSubject().equals(subject)) {
-                        return false;
-                    }
-                    if(property != null && !triple.getPredicate().equals(property)) {
-                        return false;
-                    }
-                    if(object != null && !triple.getObject().equals(object)) {
-                        return false;
-                    }
-                    if(context != null && !triple.getContext().equals(context)) {
+        }
+
+        if(prefix == 0) {
+            return Collections.unmodifiableCollection(indexSPOC.values());
+        }
+
+        // the range may contain triples with colliding hashes, and components not covered by the prefix are unchecked
+        Predicate<Statement> p = new Predicate<Statement>() {
+            @Override
+            public boolean apply(Statement triple) {
+                for(int i = 0; i < pattern.length; i++) {
+                    if(pattern[i] != null && !pattern[i].equals(component(triple, i))) {
                         return false;
                     }
-
-                    return true;
                 }
-            };
+                return true;
+            }
+        };
 
-            return Collections2.filter(data, p);
-        }
+        return Collections.unmodifiableCollection(Collections2.filter(index.range(pattern, prefix), p));
     }
 
-    public synchronized Collection<Resource> listContextIDs() {
+    public Collection<Resource> listContextIDs() {
         Set<Resource> result = new HashSet<>();
-        for(Triple t : data) {
+        for(Triple t : indexCSPO.values()) {
             result.add(t.getContext());
         }
         return result;
     }
 
     @Override
-    public synchronized boolean equals(Object o) {
+    public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
 		@SuppressWarnings("rawtypes")
 		TripleTable that = (TripleTable) o;
 
-        if (!data.equals(that.data)) return false;
-
-        return true;
+        return size() == that.size() && containsAll(that);
     }
 
     @Override
-    public synchronized int hashCode() {
-        return data.hashCode();
+    public int hashCode() {
+        int h = 0;
+        for(Triple t : indexSPOC.values()) {
+            h += hash(t.getSubject()) ^ hash(t.getPredicate()) ^ hash(t.getObject()) ^ hash(t.getContext());
+        }
+        return h;
     }
 
 
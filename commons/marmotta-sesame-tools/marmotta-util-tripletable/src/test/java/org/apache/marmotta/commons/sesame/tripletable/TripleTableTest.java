@@ -17,17 +17,35 @@
 
 package org.apache.marmotta.commons.sesame.tripletable;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
 import org.junit.Test;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
 import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test cases for triple tables.
@@ -36,6 +54,7 @@ import static org.junit.Assert.assertEquals;
  */
 public class TripleTableTest {
 
+    private static Logger log = LoggerFactory.getLogger(TripleTableTest.class);
 
 
     @Test
@@ -125,4 +144,155 @@ public class TripleTableTest {
         assertEquals(0, table.listTriples(subject2,predicate2,object2,null, true).size());
     }
 
+    /**
+     * Compare listings with all combinations of bound components against filtering all triples.
+     */
+    @Test
+    public void testListTriplesIndexes() {
+        Random random = new Random(42);
+        List<Statement> triples = createTriples(random, 5000);
+
+        TripleTable<Statement> table = new TripleTable<>(triples);
+        assertEquals(triples.size(), table.size());
+
+        for(int i = 0; i < 500; i++) {
+            Statement t = triples.get(random.nextInt(triples.size()));
+            int mask = random.nextInt(16);
+            Resource s = (mask & 1) != 0 ? t.getSubject() : null;
+            URI p      = (mask & 2) != 0 ? t.getPredicate() : null;
+            Value o    = (mask & 4) != 0 ? t.getObject() : null;
+            Resource c = (mask & 8) != 0 ? t.getContext() : null;
+
+            Set<Statement> expected = new HashSet<>(filter(triples, s, p, o, c));
+            Set<Statement> actual   = new HashSet<>(table.listTriples(s, p, o, c, true));
+            assertEquals("pattern " + mask, expected, actual);
+        }
+    }
+
+    /**
+     * Add and remove triples from several threads while listing them; afterwards all indexes need to agree.
+     */
+    @Test
+    public void testConcurrentModification() throws InterruptedException {
+        final List<Statement> triples = createTriples(new Random(1), 20000);
+        final TripleTable<Statement> table = new TripleTable<>();
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        List<Thread> threads = new ArrayList<>();
+        for(int n = 0; n < 4; n++) {
+            final int offset = n;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for(int i = offset; i < triples.size(); i += 4) {
+                            Statement t = triples.get(i);
+                            table.add(t);
+                            table.listTriples(null, t.getPredicate(), null, null, true).size();
+                            if(i % 3 == 0) {
+                                table.remove(t);
+                            }
+                        }
+                    } catch (RuntimeException ex) {
+                        log.error("concurrent modification failed", ex);
+                        failed.set(true);
+                    }
+                }
+            });
+        }
+        for(Thread t : threads) {
+            t.start();
+        }
+        for(Thread t : threads) {
+            t.join();
+        }
+
+        assertTrue(!failed.get());
+
+        Set<Statement> expected = new HashSet<>();
+        for(int i = 0; i < triples.size(); i++) {
+            if(i % 3 != 0) {
+                expected.add(triples.get(i));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, new HashSet<>(table.listTriples(null, null, null, null, true)));
+        for(Statement t : expected) {
+            assertTrue(table.listTriples(null, t.getPredicate(), t.getObject(), null, true).contains(t));
+            assertTrue(table.listTriples(null, null, t.getObject(), t.getContext(), true).contains(t));
+        }
+    }
+
+    /**
+     * Measure listings by predicate and by object, which previously had to filter over all triples; a
+     * synchronized set with filtering is shown for comparison.
+     */
+    @Test
+    public void testPerformance() {
+        Random random = new Random(7);
+        List<Statement> triples = createTriples(random, 100000);
+
+        TripleTable<Statement> table = new TripleTable<>(triples);
+        Set<Statement> baseline = Collections.synchronizedSet(new HashSet<>(triples));
+
+        List<Statement> probes = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            probes.add(triples.get(random.nextInt(triples.size())));
+        }
+
+        long start = System.currentTimeMillis();
+        long indexed = 0;
+        for(Statement t : probes) {
+            indexed += table.listTriples(null, t.getPredicate(), t.getObject(), null, true).size();
+            indexed += table.listTriples(null, null, t.getObject(), null, true).size();
+        }
+        long indexedTime = Math.max(1, System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        long filtered = 0;
+        for(Statement t : probes.subList(0, 50)) {
+            synchronized (baseline) {
+                filtered += filter(baseline, null, t.getPredicate(), t.getObject(), null).size();
+                filtered += filter(baseline, null, null, t.getObject(), null).size();
+            }
+        }
+        long filteredTime = Math.max(1, System.currentTimeMillis() - start);
+
+        log.info("P/O listings over {} triples: {} lookups/sec indexed, {} lookups/sec filtered", triples.size(), 2000 * 1000L / indexedTime, 100 * 1000L / filteredTime);
+
+        assertTrue(indexed >= 2000);
+        assertTrue(filtered >= 100);
+    }
+
+    private static List<Statement> createTriples(Random random, int count) {
+        URI[] predicates = new URI[20];
+        for(int i = 0; i < predicates.length; i++) {
+            predicates[i] = new URIImpl("http://localhost/property/" + i);
+        }
+        URI[] contexts = new URI[5];
+        for(int i = 0; i < contexts.length; i++) {
+            contexts[i] = new URIImpl("http://localhost/context/" + i);
+        }
+
+        Set<Statement> triples = new LinkedHashSet<>(count);
+        while(triples.size() < count) {
+            URI subject = new URIImpl("http://localhost/resource/" + random.nextInt(count / 4));
+            Value object = random.nextBoolean()
+                    ? new URIImpl("http://localhost/resource/" + random.nextInt(count / 4))
+                    : new LiteralImpl("value " + random.nextInt(count / 2));
+            triples.add(new ContextStatementImpl(subject, predicates[random.nextInt(predicates.length)], object, contexts[random.nextInt(contexts.length)]));
+        }
+        return new ArrayList<>(triples);
+    }
+
+    private static Collection<Statement> filter(Collection<Statement> triples, final Resource s, final URI p, final Value o, final Resource c) {
+        return Collections2.filter(triples, new Predicate<Statement>() {
+            @Override
+            public boolean apply(Statement t) {
+                return (s == null || s.equals(t.getSubject())) && (p == null || p.equals(t.getPredicate()))
+                        && (o == null || o.equals(t.getObject())) && (c == null || c.equals(t.getContext()));
+            }
+        });
+    }
 }
@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.ehcache.caching;
 
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.ehcache.util.CacheMap;
@@ -38,7 +39,7 @@ public class EHCacheManager implements CacheManager {
     private CacheMap<Long,KiWiTriple> tripleCache;
     private CacheMap<String,KiWiUriResource> uriCache;
     private CacheMap<String,KiWiAnonResource> bnodeCache;
-    private CacheMap<String,KiWiLiteral> literalCache;
+    private CacheMap<LiteralKey,KiWiLiteral> literalCache;
     private CacheMap<String,KiWiNamespace> nsPrefixCache;
     private CacheMap<String,KiWiNamespace> nsUriCache;
 
@@ -117,10 +118,10 @@ public class EHCacheManager implements CacheManager {
      * KiWiLiterals to avoid a database lookup.
      *
      * @return
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      */
     @Override
-    public Map<String, KiWiLiteral> getLiteralCache() {
+    public Map<LiteralKey, KiWiLiteral> getLiteralCache() {
         if(literalCache == null) {
             literalCache = new CacheMap<>(cacheManager.getCache((LITERAL_CACHE)));
         }
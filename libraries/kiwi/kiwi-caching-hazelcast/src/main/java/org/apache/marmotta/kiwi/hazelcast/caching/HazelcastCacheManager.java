@@ -23,6 +23,7 @@ import com.hazelcast.config.MaxSizeConfig;
 import com.hazelcast.config.SerializerConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.CacheMode;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
@@ -53,7 +54,7 @@ public class HazelcastCacheManager implements CacheManager {
     private AsyncMap<Long,KiWiTriple> tripleCache;
     private AsyncMap<String,KiWiUriResource> uriCache;
     private AsyncMap<String,KiWiAnonResource> bnodeCache;
-    private AsyncMap<String,KiWiLiteral> literalCache;
+    private AsyncMap<LiteralKey,KiWiLiteral> literalCache;
     private AsyncMap<String,KiWiNamespace> nsPrefixCache;
     private AsyncMap<String,KiWiNamespace> nsUriCache;
 
@@ -116,6 +117,9 @@ public class HazelcastCacheManager implements CacheManager {
 
         SerializerConfig scUri = new SerializerConfig().setImplementation(new UriSerializer()).setTypeClass(KiWiUriResource.class);
         hcConfiguration.getSerializationConfig().addSerializerConfig(scUri);
+
+        SerializerConfig scLiteralKey = new SerializerConfig().setImplementation(new LiteralKeySerializer()).setTypeClass(LiteralKey.class);
+        hcConfiguration.getSerializationConfig().addSerializerConfig(scLiteralKey);
     }
 
     private void setupCaches() {
@@ -207,12 +211,12 @@ public class HazelcastCacheManager implements CacheManager {
      * KiWiLiterals to avoid a database lookup.
      *
      * @return
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      */
     @Override
-    public Map<String, KiWiLiteral> getLiteralCache() {
+    public Map<LiteralKey, KiWiLiteral> getLiteralCache() {
         if(literalCache == null) {
-            literalCache = new AsyncMap<>(hazelcast.<String,KiWiLiteral>getMap(LITERAL_CACHE));
+            literalCache = new AsyncMap<>(hazelcast.<LiteralKey,KiWiLiteral>getMap(LITERAL_CACHE));
         }
 
         return literalCache;
@@ -40,4 +40,6 @@ public class ExternalizerIds {
 
     public static final int BOOL_LITERAL = 31;
 
+    public static final int LITERAL_KEY = 41;
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.hazelcast.serializer;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
+
+import java.io.IOException;
+
+/**
+ * Serializer for the 128bit keys of the literal cache.
+ */
+public class LiteralKeySerializer implements StreamSerializer<LiteralKey> {
+
+    @Override
+    public int getTypeId() {
+        return ExternalizerIds.LITERAL_KEY;
+    }
+
+    @Override
+    public void write(ObjectDataOutput output, LiteralKey object) throws IOException {
+        output.writeLong(object.getMostSignificantBits());
+        output.writeLong(object.getLeastSignificantBits());
+    }
+
+    @Override
+    public LiteralKey read(ObjectDataInput input) throws IOException {
+        return new LiteralKey(input.readLong(), input.readLong());
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+}
@@ -244,7 +244,8 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                 new DateLiteralExternalizer(),
                 new BooleanLiteralExternalizer(),
                 new IntLiteralExternalizer(),
-                new DoubleLiteralExternalizer()
+                new DoubleLiteralExternalizer(),
+                new LiteralKeyExternalizer()
         };
     }
 
@@ -339,7 +340,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
      * Return the literal cache key -> KiWiLiteral cache from the cache manager. This cache is used when constructing new
      * KiWiLiterals to avoid a database lookup.
      *
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      * @return
      */
     public Map getLiteralCache() {
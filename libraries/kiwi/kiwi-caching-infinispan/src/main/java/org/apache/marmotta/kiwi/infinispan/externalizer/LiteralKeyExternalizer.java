@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.infinispan.externalizer;
+
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.infinispan.commons.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Set;
+
+/**
+ * Externalizer for the 128bit keys of the literal cache.
+ */
+public class LiteralKeyExternalizer extends BaseExternalizer<LiteralKey> implements AdvancedExternalizer<LiteralKey> {
+
+    @Override
+    public Set<Class<? extends LiteralKey>> getTypeClasses() {
+        return Util.<Class<? extends LiteralKey>>asSet(LiteralKey.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ExternalizerIds.LITERAL_KEY;
+    }
+
+    @Override
+    public void writeObject(ObjectOutput output, LiteralKey object) throws IOException {
+        output.writeLong(object.getMostSignificantBits());
+        output.writeLong(object.getLeastSignificantBits());
+    }
+
+    @Override
+    public LiteralKey readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+        return new LiteralKey(input.readLong(), input.readLong());
+    }
+
+}
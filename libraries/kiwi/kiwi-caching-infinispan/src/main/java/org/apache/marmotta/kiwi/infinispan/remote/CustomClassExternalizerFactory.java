@@ -44,6 +44,7 @@ public class CustomClassExternalizerFactory implements ClassExternalizerFactory
         addExternalizer(new IntLiteralExternalizer());
         addExternalizer(new StringLiteralExternalizer());
         addExternalizer(new TripleExternalizer());
+        addExternalizer(new LiteralKeyExternalizer());
 
     }
 
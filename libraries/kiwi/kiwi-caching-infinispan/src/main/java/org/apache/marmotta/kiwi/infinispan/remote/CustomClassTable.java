@@ -52,6 +52,7 @@ public class CustomClassTable implements ClassTable {
         register(new StringLiteralExternalizer());
         register(new TripleExternalizer());
         register(new UriExternalizer());
+        register(new LiteralKeyExternalizer());
 
         classLookup.put(11, BaseExternalizer.class);
         idLookup.put(BaseExternalizer.class,11);
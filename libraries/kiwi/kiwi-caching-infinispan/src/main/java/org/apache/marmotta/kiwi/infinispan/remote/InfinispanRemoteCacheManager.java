@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.infinispan.remote;
 
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.infinispan.util.AsyncMap;
@@ -125,10 +126,10 @@ public class InfinispanRemoteCacheManager implements CacheManager {
      * KiWiLiterals to avoid a database lookup.
      *
      * @return
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      */
     @Override
-    public Map<String, KiWiLiteral> getLiteralCache() {
+    public Map<LiteralKey, KiWiLiteral> getLiteralCache() {
         if(literalCache == null) {
             literalCache = new AsyncMap(cacheManager.getCache(LITERAL_CACHE));
         }
@@ -20,6 +20,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.MapConfiguration;
 
 import java.util.HashMap;
+import java.util.Iterator;
 
 /**
  * Configuration options for the KiWiLoader
@@ -36,6 +37,11 @@ public class KiWiLoaderConfiguration {
     public static final String LOADER_STATISTICS_ENABLED = "loader.statistics.enabled";
     public static final String LOADER_STATISTICS_GRAPH = "loader.statistics.graph";
     public static final String IGNORE_NAMESPACES = "loader.namespaces.ignore";
+    public static final String LOADER_PIPELINE_ENABLED = "loader.pipeline.enabled";
+    public static final String LOADER_PIPELINE_QUEUE_SIZE = "loader.pipeline.queueSize";
+    public static final String LOADER_PGSQL_BINARY_COPY = "loader.pgsql.binaryCopy";
+    public static final String LOADER_BULK_TMPDIR = "loader.bulk.tmpdir";
+    public static final String LOADER_BULK_RUN_SIZE = "loader.bulk.runSize";
 
 
     private Configuration config;
@@ -48,6 +54,18 @@ public class KiWiLoaderConfiguration {
         this.config = config;
     }
 
+    /**
+     * Create an independent copy of the given loader configuration; changes to the copy are not reflected in the
+     * original configuration and vice versa.
+     */
+    public KiWiLoaderConfiguration(KiWiLoaderConfiguration other) {
+        this();
+        for(Iterator<String> it = other.config.getKeys(); it.hasNext(); ) {
+            String key = it.next();
+            config.setProperty(key, other.config.getProperty(key));
+        }
+    }
+
     /**
      * the size of a database transaction; the database transaction will commit after this number of statements
      *
@@ -162,4 +180,94 @@ public class KiWiLoaderConfiguration {
     }
 
 
+    /**
+     * If set to true, batch-mode importers (PostgreSQL, MySQL) run parsing, node resolution and flushing to the
+     * database in separate threads connected by bounded queues, so that the parser does not have to wait while
+     * the previous batch is written. Has no effect if the statement existence check is enabled. Default: false
+     * @return
+     */
+    public boolean isPipelineEnabled() {
+        return config.getBoolean(LOADER_PIPELINE_ENABLED, false);
+    }
+
+    /**
+     * If set to true, batch-mode importers (PostgreSQL, MySQL) run parsing, node resolution and flushing to the
+     * database in separate threads connected by bounded queues, so that the parser does not have to wait while
+     * the previous batch is written. Has no effect if the statement existence check is enabled. Default: false
+     */
+    public void setPipelineEnabled(boolean v) {
+        config.setProperty(LOADER_PIPELINE_ENABLED, v);
+    }
+
+    /**
+     * The maximum number of statement batches (of size statementBatchSize) waiting between the parser and the node
+     * resolution stage when the pipeline is enabled; bounds the memory used by the pipeline. Default: 100
+     * @return
+     */
+    public int getPipelineQueueSize() {
+        return config.getInt(LOADER_PIPELINE_QUEUE_SIZE, 100);
+    }
+
+    /**
+     * The maximum number of statement batches (of size statementBatchSize) waiting between the parser and the node
+     * resolution stage when the pipeline is enabled; bounds the memory used by the pipeline. Default: 100
+     */
+    public void setPipelineQueueSize(int size) {
+        config.setProperty(LOADER_PIPELINE_QUEUE_SIZE, size);
+    }
+
+
+    /**
+     * Directory for the temporary sort files of the offline bulk loader; needs enough space for several times the
+     * size of the (uncompressed) input data. Default: the value of java.io.tmpdir
+     * @return
+     */
+    public String getBulkTempDirectory() {
+        return config.getString(LOADER_BULK_TMPDIR, System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Directory for the temporary sort files of the offline bulk loader; needs enough space for several times the
+     * size of the (uncompressed) input data. Default: the value of java.io.tmpdir
+     */
+    public void setBulkTempDirectory(String dir) {
+        config.setProperty(LOADER_BULK_TMPDIR, dir);
+    }
+
+    /**
+     * The number of records the offline bulk loader sorts in memory before writing a sorted run to disk; larger
+     * values mean fewer runs to merge but more heap usage. Default: 1000000
+     * @return
+     */
+    public int getBulkRunSize() {
+        return config.getInt(LOADER_BULK_RUN_SIZE, 1000000);
+    }
+
+    /**
+     * The number of records the offline bulk loader sorts in memory before writing a sorted run to disk; larger
+     * values mean fewer runs to merge but more heap usage. Default: 1000000
+     */
+    public void setBulkRunSize(int size) {
+        config.setProperty(LOADER_BULK_RUN_SIZE, size);
+    }
+
+
+    /**
+     * If set to true, the PostgreSQL importer uses the binary COPY format instead of CSV, which avoids formatting
+     * and parsing numbers and timestamps as text. Requires a server with integer datetimes. Default: false
+     * @return
+     */
+    public boolean isPostgresBinaryCopy() {
+        return config.getBoolean(LOADER_PGSQL_BINARY_COPY, false);
+    }
+
+    /**
+     * If set to true, the PostgreSQL importer uses the binary COPY format instead of CSV, which avoids formatting
+     * and parsing numbers and timestamps as text. Requires a server with integer datetimes. Default: false
+     */
+    public void setPostgresBinaryCopy(boolean v) {
+        config.setProperty(LOADER_PGSQL_BINARY_COPY, v);
+    }
+
+
 }
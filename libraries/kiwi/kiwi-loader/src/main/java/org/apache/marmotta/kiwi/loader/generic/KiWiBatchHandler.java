@@ -18,24 +18,31 @@
 package org.apache.marmotta.kiwi.loader.generic;
 
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
 import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Generic superclass for batch-mode KiWi import handlers (PostgreSQL and MySQL).
+ * <p/>
+ * If the pipeline is enabled in the loader configuration, the import is split into three stages running in
+ * separate threads: the parser thread only collects statements into batches and hands them over through a bounded
+ * queue, a resolver thread looks up or creates the nodes and triples of each batch, and a flush thread writes
+ * complete backlogs to the database using its own connection. The backlog is double-buffered, i.e. while one
+ * backlog is flushed the resolver already fills the next one, and a resolver never waits for more than one
+ * outstanding flush.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
@@ -43,17 +50,44 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     private static Logger log = LoggerFactory.getLogger(KiWiBatchHandler.class);
 
+    // marks the end of the statement stream in the pipeline queue; compared by identity
+    private static final List<Statement> END_OF_DATA = Collections.unmodifiableList(new ArrayList<Statement>());
+
 
     protected List<KiWiNode> nodeBacklog;
     protected List<KiWiTriple> tripleBacklog;
 
-    protected Map<String,KiWiLiteral> literalBacklogLookup;
+    protected Map<LiteralKey,KiWiLiteral> literalBacklogLookup;
     protected Map<String,KiWiUriResource> uriBacklogLookup;
     protected Map<String,KiWiAnonResource> bnodeBacklogLookup;
 
 
     protected String backend;
 
+    private final boolean pipelined;
+
+    private final StageStatistics parseStatistics   = new StageStatistics("parse");
+    private final StageStatistics resolveStatistics = new StageStatistics("resolve");
+    private final StageStatistics flushStatistics   = new StageStatistics("flush");
+
+    // pipeline state: statements handed over from the parser to the resolver thread
+    private BlockingQueue<List<Statement>> statementQueue;
+    private List<Statement> statementBatch;
+    private Map<String,String> pendingNamespaces;
+    private Thread resolver;
+    private volatile Throwable pipelineError;
+    private long lastParserReturn;
+
+    // pipeline state: the backlog currently being written by the flush thread; nodes contained in it are neither
+    // in the current backlog nor (necessarily) visible in the database yet, so lookups need to check them as well
+    private ExecutorService flusher;
+    private Future<?> pendingFlush;
+    private KiWiConnection flushConnection;
+    private Map<LiteralKey,KiWiLiteral> literalFlushLookup;
+    private Map<String,KiWiUriResource> uriFlushLookup;
+    private Map<String,KiWiAnonResource> bnodeFlushLookup;
+    private long flushWaitTime;
+
     /**
      * Create a new batch handler for the given store using the given configuration.
      *
@@ -65,6 +99,11 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
         super(store, config);
 
         this.backend = backend;
+
+        if(config.isPipelineEnabled() && config.isStatementExistanceCheck()) {
+            log.warn("{}: pipelined import is not supported together with statement existence checks, disabling pipeline", backend);
+        }
+        this.pipelined = config.isPipelineEnabled() && !config.isStatementExistanceCheck();
     }
 
 
@@ -91,6 +130,17 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
      */
     @Override
     public void shutdown() throws RDFHandlerException {
+        stopPipeline();
+
+        if(flushConnection != null) {
+            try {
+                flushConnection.close();
+            } catch (SQLException e) {
+                log.warn("{}: could not close flush connection", backend, e);
+            }
+            flushConnection = null;
+        }
+
         if(config.isDropIndexes()) {
             try {
                 log.info("{}: re-creating indexes after import", backend);
@@ -114,7 +164,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
      */
     @Override
     public void startRDF() throws RDFHandlerException {
-        log.debug("starting import using optimized {} data loader", backend);
+        log.debug("starting import using optimized {} data loader{}", backend, pipelined ? " (pipelined)" : "");
 
         this.tripleBacklog = new ArrayList<>(config.getStatementBatchSize());
         this.nodeBacklog   = new ArrayList<>(config.getStatementBatchSize()*2);
@@ -124,6 +174,9 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
         super.startRDF();
 
+        if(pipelined) {
+            startPipeline();
+        }
     }
 
 
@@ -136,11 +189,42 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
      */
     @Override
     public void endRDF() throws RDFHandlerException {
-        try {
-            flushBacklog();
-            connection.commit();
-        } catch (SQLException e) {
-            throw new RDFHandlerException(e);
+        if(pipelined) {
+            try {
+                if(!statementBatch.isEmpty()) {
+                    enqueue(statementBatch);
+                }
+                enqueue(END_OF_DATA);
+
+                resolver.join();
+                checkPipelineError();
+
+                // hand off the remaining backlog and wait until everything has been written
+                handOffBacklog();
+                awaitFlush();
+                connection.commit();
+            } catch (SQLException e) {
+                throw new RDFHandlerException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RDFHandlerException("interrupted while waiting for import pipeline", e);
+            } finally {
+                stopPipeline();
+            }
+
+            // namespaces are only stored once the resolver is finished, since the connection is not thread-safe
+            for(Map.Entry<String,String> ns : pendingNamespaces.entrySet()) {
+                super.handleNamespace(ns.getKey(), ns.getValue());
+            }
+
+            log.info("{}: pipeline statistics: {}; {}; {}", backend, parseStatistics, resolveStatistics, flushStatistics);
+        } else {
+            try {
+                flushBacklog();
+                connection.commit();
+            } catch (SQLException e) {
+                throw new RDFHandlerException(e);
+            }
         }
 
 
@@ -148,11 +232,55 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     }
 
+    /**
+     * Handles a namespace declaration/definition. In pipelined mode, namespaces are collected and only stored at
+     * the end of the import.
+     */
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+        if(pipelined) {
+            if(!config.isIgnoreNamespaces()) {
+                pendingNamespaces.put(prefix, uri);
+            }
+        } else {
+            super.handleNamespace(prefix, uri);
+        }
+    }
+
+    /**
+     * Handles a statement. In pipelined mode, the statement is only added to the current batch, which is handed over
+     * to the resolver thread once it is full.
+     */
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        if(pipelined) {
+            long now = System.nanoTime();
+            if(lastParserReturn > 0) {
+                parseStatistics.addBusyTime(now - lastParserReturn);
+            }
+
+            statementBatch.add(st);
+            parseStatistics.addItems(1);
+
+            if(statementBatch.size() >= config.getStatementBatchSize()) {
+                enqueue(statementBatch);
+                statementBatch = new ArrayList<>(config.getStatementBatchSize());
+            }
+
+            lastParserReturn = System.nanoTime();
+        } else {
+            super.handleStatement(st);
+        }
+    }
+
 
     @Override
     protected KiWiAnonResource createBNode(String nodeID) {
         // check in backlog, if not found call super method
         KiWiAnonResource result = bnodeBacklogLookup.get(nodeID);
+        if(result == null && bnodeFlushLookup != null) {
+            result = bnodeFlushLookup.get(nodeID);
+        }
         if(result == null) {
             result = super.createBNode(nodeID);
         }
@@ -161,7 +289,15 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     @Override
     protected KiWiLiteral createLiteral(Literal l) throws ExecutionException {
-        KiWiLiteral result = literalBacklogLookup.get(LiteralCommons.createCacheKey(l));
+        LiteralKey key = LiteralCommons.createLiteralKey(l);
+        KiWiLiteral result = literalBacklogLookup.get(key);
+        if(result == null && literalFlushLookup != null) {
+            result = literalFlushLookup.get(key);
+        }
+        if(result != null && !LiteralCommons.matches(result, l.getLabel(), l.getLanguage(), l.getDatatype() != null ? l.getDatatype().stringValue() : null)) {
+            // hash collision
+            result = null;
+        }
         if(result == null) {
             result = super.createLiteral(l);
         }
@@ -171,6 +307,9 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
     @Override
     protected KiWiUriResource createURI(String uri) {
         KiWiUriResource result = uriBacklogLookup.get(uri);
+        if(result == null && uriFlushLookup != null) {
+            result = uriFlushLookup.get(uri);
+        }
         if(result == null) {
             result = super.createURI(uri);
         }
@@ -190,7 +329,7 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
         } else if(node instanceof KiWiAnonResource) {
             bnodeBacklogLookup.put(node.stringValue(), (KiWiAnonResource)node);
         } else if(node instanceof KiWiLiteral) {
-            literalBacklogLookup.put(LiteralCommons.createCacheKey((Literal) node), (KiWiLiteral)node);
+            literalBacklogLookup.put(LiteralCommons.createLiteralKey((Literal) node), (KiWiLiteral)node);
         }
 
         nodes++;
@@ -204,6 +343,11 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
         triples++;
 
         if(triples % config.getCommitBatchSize() == 0) {
+            if(pipelined) {
+                handOffBacklog();
+                return;
+            }
+
             try {
                 flushBacklog();
                 if(registry != null) {
@@ -224,14 +368,33 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
 
     /**
-     * Flush the backlog (nodeBacklog and tripleBacklog) to the database; needs to be implemented by subclasses.
+     * Flush the given nodes and triples to the database using the given connection; needs to be implemented by
+     * subclasses. In pipelined mode, this method is called from the flush thread with a connection that is not
+     * used by any other thread.
+     *
+     * @param con     the connection to write to; committed by the caller
+     * @param nodes   the new nodes to write
+     * @param triples the new triples to write
+     * @throws SQLException
+     */
+    protected abstract void flushBacklogInternal(KiWiConnection con, List<KiWiNode> nodes, List<KiWiTriple> triples) throws SQLException;
+
+    /**
+     * Prepare a newly opened connection that will be used for flushing in pipelined mode, e.g. to apply session
+     * settings that dropIndexes() applied to the main connection. The default implementation does nothing.
+     *
+     * @param con the flush connection
      * @throws SQLException
      */
-    protected abstract void flushBacklogInternal() throws SQLException;
+    protected void initFlushConnection(KiWiConnection con) throws SQLException {
+    }
 
 
     private synchronized void flushBacklog() throws SQLException {
-        flushBacklogInternal();
+        long start = System.nanoTime();
+        flushBacklogInternal(connection, nodeBacklog, tripleBacklog);
+        flushStatistics.addBusyTime(System.nanoTime() - start);
+        flushStatistics.addItems(tripleBacklog.size());
 
         nodeBacklog.clear();
         tripleBacklog.clear();
@@ -242,6 +405,209 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
 
     }
 
+
+    private void startPipeline() throws RDFHandlerException {
+        if(flushConnection == null) {
+            try {
+                flushConnection = store.getPersistence().getConnection();
+                initFlushConnection(flushConnection);
+            } catch (SQLException e) {
+                throw new RDFHandlerException("could not open connection for flushing", e);
+            }
+        }
+
+        statementQueue    = new ArrayBlockingQueue<>(config.getPipelineQueueSize());
+        statementBatch    = new ArrayList<>(config.getStatementBatchSize());
+        pendingNamespaces = new LinkedHashMap<>();
+        pipelineError     = null;
+        lastParserReturn  = 0;
+
+        literalFlushLookup = new HashMap<>();
+        uriFlushLookup     = new HashMap<>();
+        bnodeFlushLookup   = new HashMap<>();
+        pendingFlush       = null;
+
+        flusher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, backend + " Loader Flush");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        resolver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        long waitStart = System.nanoTime();
+                        List<Statement> batch = statementQueue.take();
+                        resolveStatistics.addWaitTime(System.nanoTime() - waitStart);
+
+                        if (batch == END_OF_DATA) {
+                            break;
+                        }
+
+                        flushWaitTime = 0;
+                        long start = System.nanoTime();
+                        for (Statement st : batch) {
+                            resolveStatement(st);
+                        }
+                        resolveStatistics.addBusyTime(System.nanoTime() - start - flushWaitTime);
+                        resolveStatistics.addItems(batch.size());
+                    }
+                } catch (InterruptedException e) {
+                    pipelineError = e;
+                } catch (Throwable t) {
+                    log.error("{}: error while resolving statements", backend, t);
+                    pipelineError = t;
+                }
+            }
+        }, backend + " Loader Resolver");
+        resolver.setDaemon(true);
+        resolver.start();
+    }
+
+    private void stopPipeline() {
+        if(resolver != null) {
+            resolver.interrupt();
+            resolver = null;
+        }
+        if(flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+    }
+
+    private void resolveStatement(Statement st) throws RDFHandlerException {
+        super.handleStatement(st);
+    }
+
+    private void enqueue(List<Statement> batch) throws RDFHandlerException {
+        long start = System.nanoTime();
+        try {
+            checkPipelineError();
+            while (!statementQueue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkPipelineError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException("interrupted while handing over statements to import pipeline", e);
+        } finally {
+            parseStatistics.addWaitTime(System.nanoTime() - start);
+        }
+    }
+
+    private void checkPipelineError() throws RDFHandlerException {
+        if(pipelineError != null) {
+            throw new RDFHandlerException("error in import pipeline", pipelineError);
+        }
+    }
+
+    /**
+     * Hand over the current backlog to the flush thread and start a new one. Waits for the previous flush to complete
+     * first, so there is at most one backlog in flight.
+     */
+    private void handOffBacklog() throws SQLException {
+        awaitFlush();
+
+        // nodes of the previous backlog are committed now; start a new transaction so lookups see them
+        connection.commit();
+
+        final List<KiWiNode> flushNodes     = nodeBacklog;
+        final List<KiWiTriple> flushTriples = tripleBacklog;
+
+        literalFlushLookup = literalBacklogLookup;
+        uriFlushLookup     = uriBacklogLookup;
+        bnodeFlushLookup   = bnodeBacklogLookup;
+
+        tripleBacklog = new ArrayList<>(config.getStatementBatchSize());
+        nodeBacklog   = new ArrayList<>(config.getStatementBatchSize()*2);
+        literalBacklogLookup = new HashMap<>();
+        uriBacklogLookup     = new HashMap<>();
+        bnodeBacklogLookup   = new HashMap<>();
+
+        pendingFlush = flusher.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    flushBacklogInternal(flushConnection, flushNodes, flushTriples);
+                    flushConnection.commit();
+                } catch (SQLException ex) {
+                    log.warn("could not flush out data ({}), retrying with fresh connection", ex.getMessage());
+                    try {
+                        flushConnection.close();
+                    } catch (SQLException e) {
+                        log.debug("could not close failed flush connection", e);
+                    }
+                    flushConnection = store.getPersistence().getConnection();
+                    initFlushConnection(flushConnection);
+                    flushBacklogInternal(flushConnection, flushNodes, flushTriples);
+                    flushConnection.commit();
+                }
+                flushStatistics.addBusyTime(System.nanoTime() - start);
+                flushStatistics.addItems(flushTriples.size());
+
+                log.debug("{}: flushed {} nodes and {} triples in {} ms", backend, flushNodes.size(), flushTriples.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Wait until the backlog currently in flight has been written to the database.
+     */
+    private void awaitFlush() throws SQLException {
+        if(pendingFlush == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for flush", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("error while flushing out data", e.getCause());
+        } finally {
+            long waited = System.nanoTime() - start;
+            flushWaitTime += waited;
+            resolveStatistics.addWaitTime(waited);
+            pendingFlush = null;
+        }
+
+        literalFlushLookup.clear();
+        uriFlushLookup.clear();
+        bnodeFlushLookup.clear();
+    }
+
+    /**
+     * Statistics for the parser stage (only collected in pipelined mode)
+     */
+    public StageStatistics getParseStatistics() {
+        return parseStatistics;
+    }
+
+    /**
+     * Statistics for the node resolution stage (only collected in pipelined mode)
+     */
+    public StageStatistics getResolveStatistics() {
+        return resolveStatistics;
+    }
+
+    /**
+     * Statistics for writing backlogs to the database
+     */
+    public StageStatistics getFlushStatistics() {
+        return flushStatistics;
+    }
+
     /**
      * Drop indexes in the database to increase import performance; needs to be implemented by subclasses. If this
      * feature is not supported, can be an empty method.
@@ -0,0 +1,521 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.generic;
+
+import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.commons.sesame.model.Namespaces;
+import org.apache.marmotta.commons.vocabulary.XSD;
+import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
+import org.apache.marmotta.kiwi.loader.h2.KiWiH2Handler;
+import org.apache.marmotta.kiwi.loader.mysql.KiWiMySQLHandler;
+import org.apache.marmotta.kiwi.loader.pgsql.KiWiPostgresHandler;
+import org.apache.marmotta.kiwi.loader.sort.ExternalSorter;
+import org.apache.marmotta.kiwi.loader.sort.KeyedRecord;
+import org.apache.marmotta.kiwi.loader.sort.LongTupleCodec;
+import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openrdf.model.*;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * An offline bulk loader for initial imports into an empty KiWi triple store. Instead of looking up every node in
+ * the database while parsing, all data is first dictionary-encoded on local disk:
+ * <ol>
+ *     <li>while parsing, every term occurrence is written as (term, statement position) into an external sort</li>
+ *     <li>the sorted occurrences are scanned once; every distinct term gets a new node ID and is written to a
+ *         node file, and every occurrence is mapped to (statement position, node ID)</li>
+ *     <li>the ID mappings are sorted by statement position and assembled to ID tuples, which are sorted again to
+ *         remove duplicate triples</li>
+ *     <li>nodes and triples are streamed to the database in chunks using the fastest method of the backend
+ *         (PostgreSQL COPY, MySQL LOAD DATA, H2 CSVREAD), and indexes are only built at the very end</li>
+ * </ol>
+ * Since data is only written to the database when the loader is shut down, statements from several files (i.e.
+ * several startRDF/endRDF cycles) are deduplicated as well. Existing nodes in the database are not reused, so the
+ * loader refuses to run on a store that already contains triples.
+ */
+public class KiWiBulkLoader extends KiWiHandler implements RDFHandler {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiBulkLoader.class);
+
+    // prefixes and separator of the serialized form of terms used as sort key
+    private static final char URI_KEY     = 'U';
+    private static final char BNODE_KEY   = 'B';
+    private static final char LITERAL_KEY = 'L';
+    private static final char SEPARATOR   = '\u0000';
+
+    private static final String XSD_STRING = Namespaces.NS_XSD + "string";
+
+    private KiWiBatchHandler writer;
+
+    private File directory;
+
+    private ExternalSorter<KeyedRecord> occurrences;
+
+    // datatypes are kept in memory, literals need their IDs when they are written
+    private Set<String> datatypes = new HashSet<>();
+
+    private Map<String,String> namespaces = new LinkedHashMap<>();
+
+    private Map<String,Locale> locales = new HashMap<>();
+
+    private String contextKey;
+
+    private long statements = 0;
+
+
+    public KiWiBulkLoader(KiWiStore store, KiWiLoaderConfiguration config) {
+        super(store, bulkConfiguration(config));
+
+        if(this.config.isStatementExistanceCheck()) {
+            log.warn("KiWi Bulk Loader: statement existence check is not needed and will be ignored, duplicates are removed while sorting");
+        }
+
+        KiWiDialect dialect = store.getPersistence().getDialect();
+        if(dialect instanceof PostgreSQLDialect) {
+            writer = new KiWiPostgresHandler(store, this.config);
+        } else if(dialect instanceof MySQLDialect) {
+            writer = new KiWiMySQLHandler(store, this.config);
+        } else if(dialect instanceof H2Dialect) {
+            writer = new KiWiH2Handler(store, this.config);
+        } else {
+            throw new IllegalArgumentException("offline bulk loading is not supported for dialect " + dialect.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Indexes are always built once after all data has been loaded; work on a copy so the configuration passed by
+     * the caller is left untouched.
+     */
+    private static KiWiLoaderConfiguration bulkConfiguration(KiWiLoaderConfiguration config) {
+        KiWiLoaderConfiguration copy = new KiWiLoaderConfiguration(config);
+        copy.setDropIndexes(true);
+        return copy;
+    }
+
+    /**
+     * Check that the store is empty and drop the indexes.
+     */
+    @Override
+    public void initialise() throws RDFHandlerException {
+        log.info("KiWi Bulk Loader: initialising offline bulk import");
+        try {
+            KiWiConnection con = store.getPersistence().getConnection();
+            try {
+                if(con.getSize() > 0) {
+                    throw new RDFHandlerException("offline bulk loading requires an empty triple store");
+                }
+            } finally {
+                con.close();
+            }
+        } catch (SQLException e) {
+            throw new RDFHandlerException(e);
+        }
+
+        writer.initialise();
+        connection  = writer.connection;
+        initialised = true;
+    }
+
+    /**
+     * Write all collected data to the database, re-create the indexes and release all resources.
+     */
+    @Override
+    public void shutdown() throws RDFHandlerException {
+        try {
+            if(occurrences != null) {
+                load();
+            }
+        } catch (IOException | SQLException e) {
+            throw new RDFHandlerException("error while bulk loading data", e);
+        } finally {
+            try {
+                cleanup();
+            } finally {
+                writer.shutdown();
+                connection  = null;
+                initialised = false;
+            }
+        }
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        if(!initialised) {
+            initialise();
+        }
+
+        if(occurrences == null) {
+            try {
+                directory = Files.createTempDirectory(new File(config.getBulkTempDirectory()).toPath(), "kiwi-bulk-").toFile();
+            } catch (IOException e) {
+                throw new RDFHandlerException("could not create temporary directory", e);
+            }
+            log.info("KiWi Bulk Loader: using temporary directory {}", directory);
+
+            occurrences = new ExternalSorter<>("terms", KeyedRecord.CODEC, KeyedRecord.ORDER, config.getBulkRunSize(), directory);
+
+            start       = System.currentTimeMillis();
+            previous    = start;
+            importDate  = new Date(start);
+            contextKey  = config.getContext() != null ? URI_KEY + config.getContext() : null;
+        }
+    }
+
+    /**
+     * Only finishes the current input; data is written to the database on shutdown.
+     */
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        log.debug("KiWi Bulk Loader: {} statements collected after {} ms", statements, System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+        if(!config.isIgnoreNamespaces()) {
+            namespaces.put(prefix, uri);
+        }
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        // the position of a term in the input is encoded as statement number * 4 + position in the statement
+        long slot = statements << 2;
+        // create all keys first, so that a rejected statement leaves no occurrences behind
+        String subject   = createKey(st.getSubject());
+        String predicate = createKey(st.getPredicate());
+        String object    = createKey(st.getObject());
+        String context   = contextKey != null ? contextKey : (st.getContext() != null ? createKey(st.getContext()) : null);
+        try {
+            occurrences.add(new KeyedRecord(subject, slot));
+            occurrences.add(new KeyedRecord(predicate, slot | 1));
+            occurrences.add(new KeyedRecord(object, slot | 2));
+            if(context != null) {
+                occurrences.add(new KeyedRecord(context, slot | 3));
+            }
+        } catch (IOException e) {
+            throw new RDFHandlerException("could not write sort run", e);
+        }
+
+        statements++;
+
+        if(statements % 1000000 == 0) {
+            log.info("KiWi Bulk Loader: {} statements collected ({} statements/sec)", statements, 1000000000L / Math.max(1, System.currentTimeMillis() - previous));
+            previous = System.currentTimeMillis();
+        }
+    }
+
+
+    private void load() throws IOException, SQLException {
+        final int runSize   = config.getBulkRunSize();
+        final int chunkSize = config.getCommitBatchSize();
+
+        // phase 1: assign IDs to distinct terms
+        long phase = System.currentTimeMillis();
+        for(String type : datatypes) {
+            occurrences.add(new KeyedRecord(URI_KEY + type, -1));
+        }
+
+        LongTupleCodec pairs = new LongTupleCodec(2);
+        ExternalSorter<long[]> assignments = new ExternalSorter<>("ids", pairs, pairs, runSize, directory);
+
+        Map<String,KiWiUriResource> typeNodes = new HashMap<>();
+        File nodesFile = new File(directory, "nodes.bin");
+        long nodeCount = 0;
+
+        CloseableIteration<KeyedRecord, IOException> sorted = occurrences.sort();
+        try (DataOutputStream nodesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nodesFile), 64 * 1024))) {
+            String current = null;
+            long id = -1;
+            while (sorted.hasNext()) {
+                KeyedRecord r = sorted.next();
+                if(!r.getKey().equals(current)) {
+                    current = r.getKey();
+                    id = store.getPersistence().getIdGenerator().getId();
+
+                    if(current.charAt(0) == URI_KEY && datatypes.contains(current.substring(1))) {
+                        KiWiUriResource type = new KiWiUriResource(current.substring(1), importDate);
+                        type.setId(id);
+                        typeNodes.put(type.stringValue(), type);
+                    } else {
+                        KeyedRecord.CODEC.write(new KeyedRecord(current, id), nodesOut);
+                        nodeCount++;
+                    }
+                }
+                if(r.getValue() >= 0) {
+                    assignments.add(new long[] { r.getValue(), id });
+                }
+            }
+        } finally {
+            sorted.close();
+            occurrences.close();
+            occurrences = null;
+        }
+        nodes = nodeCount + typeNodes.size();
+        log.info("KiWi Bulk Loader: assigned IDs to {} distinct nodes in {} ms", nodes, System.currentTimeMillis() - phase);
+
+        // phase 2: write nodes, datatypes first since literals reference them
+        phase = System.currentTimeMillis();
+        List<KiWiNode> nodeBatch = new ArrayList<>(chunkSize);
+        nodeBatch.addAll(typeNodes.values());
+        flushNodes(nodeBatch);
+
+        try (DataInputStream nodesIn = new DataInputStream(new BufferedInputStream(new FileInputStream(nodesFile), 64 * 1024))) {
+            for(long i = 0; i < nodeCount; i++) {
+                KeyedRecord r = KeyedRecord.CODEC.read(nodesIn);
+                nodeBatch.add(createNode(r.getKey(), r.getValue(), typeNodes));
+
+                if(nodeBatch.size() >= chunkSize) {
+                    flushNodes(nodeBatch);
+                }
+            }
+        }
+        flushNodes(nodeBatch);
+        if(!nodesFile.delete()) {
+            log.warn("could not delete temporary file {}", nodesFile);
+        }
+        log.info("KiWi Bulk Loader: wrote {} nodes in {} ms", nodes, System.currentTimeMillis() - phase);
+
+        // phase 3: assemble ID tuples in statement order, then sort them to remove duplicates
+        phase = System.currentTimeMillis();
+        LongTupleCodec quads = new LongTupleCodec(4);
+        ExternalSorter<long[]> tuples = new ExternalSorter<>("triples", quads, quads, runSize, directory);
+        try {
+            CloseableIteration<long[], IOException> mapped = assignments.sort();
+            try {
+                long[] current = null;
+                long currentStatement = -1;
+                while (mapped.hasNext()) {
+                    long[] a = mapped.next();
+                    if(a[0] >> 2 != currentStatement) {
+                        if(current != null) {
+                            tuples.add(current);
+                        }
+                        current = new long[] { -1, -1, -1, -1 };
+                        currentStatement = a[0] >> 2;
+                    }
+                    current[(int) (a[0] & 3)] = a[1];
+                }
+                if(current != null) {
+                    tuples.add(current);
+                }
+            } finally {
+                mapped.close();
+                assignments.close();
+            }
+
+            // phase 4: write distinct triples
+            List<KiWiTriple> tripleBatch = new ArrayList<>(chunkSize);
+            CloseableIteration<long[], IOException> distinct = tuples.sort();
+            try {
+                long[] last = null;
+                while (distinct.hasNext()) {
+                    long[] t = distinct.next();
+                    if(last != null && quads.compare(last, t) == 0) {
+                        continue;
+                    }
+                    last = t;
+
+                    KiWiTriple triple = new KiWiTriple(reference(t[0]), reference(t[1]), reference(t[2]), t[3] >= 0 ? reference(t[3]) : null, importDate);
+                    triple.setId(store.getPersistence().getIdGenerator().getId());
+                    tripleBatch.add(triple);
+                    triples++;
+
+                    if(tripleBatch.size() >= chunkSize) {
+                        flushTriples(tripleBatch);
+                    }
+                }
+            } finally {
+                distinct.close();
+            }
+            flushTriples(tripleBatch);
+        } finally {
+            tuples.close();
+        }
+        log.info("KiWi Bulk Loader: wrote {} distinct triples (of {} statements) in {} ms", triples, statements, System.currentTimeMillis() - phase);
+
+        for(Map.Entry<String,String> ns : namespaces.entrySet()) {
+            try {
+                super.handleNamespace(ns.getKey(), ns.getValue());
+            } catch (RDFHandlerException e) {
+                log.warn("could not store namespace {}", ns.getKey(), e);
+            }
+        }
+        connection.commit();
+
+        log.info("KiWi Bulk Loader: offline bulk import of {} triples finished after {} ms", triples, System.currentTimeMillis() - start);
+    }
+
+    private void flushNodes(List<KiWiNode> batch) throws SQLException {
+        if(!batch.isEmpty()) {
+            writer.flushBacklogInternal(connection, batch, Collections.<KiWiTriple>emptyList());
+            connection.commit();
+            batch.clear();
+        }
+    }
+
+    private void flushTriples(List<KiWiTriple> batch) throws SQLException {
+        if(!batch.isEmpty()) {
+            writer.flushBacklogInternal(connection, Collections.<KiWiNode>emptyList(), batch);
+            connection.commit();
+            batch.clear();
+        }
+    }
+
+    private void cleanup() {
+        if(occurrences != null) {
+            occurrences.close();
+            occurrences = null;
+        }
+        if(directory != null) {
+            File[] files = directory.listFiles();
+            if(files != null) {
+                for(File f : files) {
+                    if(!f.delete()) {
+                        log.warn("could not delete temporary file {}", f);
+                    }
+                }
+            }
+            if(!directory.delete()) {
+                log.warn("could not delete temporary directory {}", directory);
+            }
+            directory = null;
+        }
+    }
+
+    /**
+     * Create a node that only carries the database ID; the import serializers only write the IDs of the nodes of
+     * a triple, so there is no need to reconstruct the complete node.
+     */
+    @SuppressWarnings("deprecation")
+    private static KiWiUriResource reference(long id) {
+        KiWiUriResource ref = new KiWiUriResource();
+        ref.setId(id);
+        return ref;
+    }
+
+
+    private String createKey(Value value) throws RDFHandlerException {
+        if(value instanceof URI) {
+            return URI_KEY + value.stringValue();
+        } else if(value instanceof BNode) {
+            return BNODE_KEY + ((BNode) value).getID();
+        } else if(value instanceof Literal) {
+            Literal l = (Literal) value;
+            // the database cannot store NUL characters, and dropping them would merge distinct literals into one node
+            if(l.getLabel().indexOf('\u0000') >= 0) {
+                throw new RDFHandlerException("literal contains a NUL character, which cannot be stored: \"" + l.getLabel().replace("\u0000", "\\u0000") + "\"");
+            }
+
+            StringBuilder key = new StringBuilder(l.getLabel().length() + 8);
+            key.append(LITERAL_KEY);
+            if(l.getDatatype() != null) {
+                key.append(l.getDatatype().stringValue());
+
+                datatypes.add(l.getDatatype().stringValue());
+                datatypes.add(XSD_STRING); // fallback for malformed values
+            }
+            key.append(SEPARATOR);
+            if(l.getLanguage() != null) {
+                key.append(l.getLanguage());
+            }
+            key.append(SEPARATOR);
+            key.append(l.getLabel());
+            return key.toString();
+        } else {
+            throw new IllegalArgumentException("the value passed as argument does not have the correct type");
+        }
+    }
+
+    private KiWiNode createNode(String key, long id, Map<String,KiWiUriResource> typeNodes) {
+        KiWiNode result;
+        switch (key.charAt(0)) {
+            case URI_KEY:
+                result = new KiWiUriResource(key.substring(1), importDate);
+                break;
+            case BNODE_KEY:
+                result = new KiWiAnonResource(key.substring(1), importDate);
+                break;
+            default:
+                int typeEnd = key.indexOf(SEPARATOR, 1);
+                int langEnd = key.indexOf(SEPARATOR, typeEnd + 1);
+
+                String type  = key.substring(1, typeEnd);
+                String lang  = key.substring(typeEnd + 1, langEnd);
+                String value = key.substring(langEnd + 1);
+
+                result = createLiteral(value, lang.isEmpty() ? null : getLocale(lang), type.isEmpty() ? null : typeNodes.get(type), typeNodes);
+        }
+        result.setId(id);
+        return result;
+    }
+
+    /**
+     * Same mapping of literal types to node types as in KiWiHandler#createLiteral.
+     */
+    private KiWiLiteral createLiteral(String value, Locale locale, KiWiUriResource rtype, Map<String,KiWiUriResource> typeNodes) {
+        if(rtype == null) {
+            return new KiWiStringLiteral(value, locale, null, importDate);
+        }
+
+        String type = rtype.stringValue();
+        try {
+            if(type.equals(XSD.DateTime.stringValue()) || type.equals(XSD.Date.stringValue()) || type.equals(XSD.Time.stringValue())) {
+                return new KiWiDateLiteral(ISODateTimeFormat.dateTimeParser().withOffsetParsed().parseDateTime(value), rtype, importDate);
+            } else if(type.equals(XSD.Integer.stringValue()) || type.equals(XSD.Long.stringValue())) {
+                return new KiWiIntLiteral(Long.parseLong(value), rtype, importDate);
+            } else if(type.equals(XSD.Double.stringValue()) || type.equals(XSD.Float.stringValue()) || type.equals(XSD.Decimal.stringValue())) {
+                return new KiWiDoubleLiteral(Double.parseDouble(value), rtype, importDate);
+            } else if(type.equals(XSD.Boolean.stringValue())) {
+                return new KiWiBooleanLiteral(Boolean.parseBoolean(value), rtype, importDate);
+            } else {
+                return new KiWiStringLiteral(value, locale, rtype, importDate);
+            }
+        } catch (IllegalArgumentException ex) {
+            // malformed number or date
+            log.warn("malformed argument for typed literal of type {}: {}", rtype, value);
+            return new KiWiStringLiteral(value, locale, typeNodes.get(XSD_STRING), importDate);
+        }
+    }
+
+    private Locale getLocale(String lang) {
+        if(!locales.containsKey(lang)) {
+            Locale locale;
+            try {
+                locale = new Locale.Builder().setLanguageTag(lang).build();
+            } catch (IllformedLocaleException ex) {
+                log.warn("malformed language literal (language: {})", lang);
+                locale = null;
+            }
+            locales.put(lang, locale);
+        }
+        return locales.get(lang);
+    }
+}
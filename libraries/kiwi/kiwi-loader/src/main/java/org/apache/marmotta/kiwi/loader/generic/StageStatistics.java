@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.generic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput statistics of a single stage of the pipelined bulk loader: the number of items processed, the time
+ * spent working on them and the time spent waiting for input or for the next stage. All counters may be updated
+ * and read concurrently.
+ */
+public class StageStatistics {
+
+    private final String name;
+
+    private final AtomicLong items    = new AtomicLong();
+    private final AtomicLong busyTime = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+
+    public StageStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void addItems(long count) {
+        items.addAndGet(count);
+    }
+
+    public void addBusyTime(long nanos) {
+        busyTime.addAndGet(nanos);
+    }
+
+    public void addWaitTime(long nanos) {
+        waitTime.addAndGet(nanos);
+    }
+
+    /**
+     * Number of items (statements, triples) processed by this stage
+     */
+    public long getItems() {
+        return items.get();
+    }
+
+    /**
+     * Time (in milliseconds) this stage spent processing items
+     */
+    public long getBusyTime() {
+        return TimeUnit.NANOSECONDS.toMillis(busyTime.get());
+    }
+
+    /**
+     * Time (in milliseconds) this stage spent waiting for input or for the following stage
+     */
+    public long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+    }
+
+    /**
+     * Items per second of busy time, i.e. the throughput this stage could sustain if it never had to wait
+     */
+    public double getThroughput() {
+        long busy = getBusyTime();
+        return busy > 0 ? getItems() * 1000.0 / busy : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d items, %d ms busy, %d ms waiting, %.0f items/sec", name, getItems(), getBusyTime(), getWaitTime(), getThroughput());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.h2;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
+import org.apache.marmotta.kiwi.loader.generic.KiWiBatchHandler;
+import org.apache.marmotta.kiwi.loader.pgsql.PGCopyUtil;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.openrdf.rio.RDFHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * A fast-lane RDF import handler for H2 backends. Batches are written to a temporary CSV file (in the same format
+ * as the one used for PostgreSQL COPY) which is then inserted using the H2 CSVREAD table function.
+ */
+public class KiWiH2Handler extends KiWiBatchHandler implements RDFHandler {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiH2Handler.class);
+
+    private static final String NODE_COLUMNS   = "id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt";
+    private static final String TRIPLE_COLUMNS = "id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt";
+
+    public KiWiH2Handler(KiWiStore store, KiWiLoaderConfiguration config) {
+        super("H2", store, config);
+    }
+
+
+    @Override
+    protected void flushBacklogInternal(KiWiConnection con, List<KiWiNode> nodes, List<KiWiTriple> triples) throws SQLException {
+        File nodesFile = null, triplesFile = null;
+        try {
+            nodesFile = File.createTempFile("kiwi-nodes-", ".csv");
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(nodesFile))) {
+                PGCopyUtil.flushNodes(nodes, out);
+            }
+
+            triplesFile = File.createTempFile("kiwi-triples-", ".csv");
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(triplesFile))) {
+                PGCopyUtil.flushTriples(triples, out);
+            }
+
+            try (Statement statement = con.getJDBCConnection().createStatement()) {
+                // dates are written in ISO format by the CSV writer, which H2 does not parse directly
+                statement.execute(
+                        "INSERT INTO nodes(" + NODE_COLUMNS + ") " +
+                        "SELECT id,ntype,svalue,dvalue,ivalue,CAST(REPLACE(REPLACE(tvalue,'T',' '),'Z','') AS TIMESTAMP),tzoffset,bvalue,ltype,lang,createdAt " +
+                        "FROM " + csvRead(nodesFile, NODE_COLUMNS));
+                statement.execute(
+                        "INSERT INTO triples(" + TRIPLE_COLUMNS + ") " +
+                        "SELECT " + TRIPLE_COLUMNS + " FROM " + csvRead(triplesFile, TRIPLE_COLUMNS));
+            }
+        } catch (IOException ex) {
+            throw new SQLException("error while flushing out data",ex);
+        } finally {
+            deleteQuietly(nodesFile);
+            deleteQuietly(triplesFile);
+        }
+    }
+
+    private static String csvRead(File file, String columns) {
+        return "CSVREAD('" + file.getAbsolutePath().replace("'", "''") + "', '" + columns.toUpperCase() + "', 'charset=" + Charset.defaultCharset().name() + "')";
+    }
+
+    private static void deleteQuietly(File file) {
+        if(file != null && file.exists() && !file.delete()) {
+            log.warn("could not delete temporary file {}", file);
+        }
+    }
+
+
+    @Override
+    protected void dropIndexes() throws SQLException {
+        runScript("drop_indexes.sql");
+    }
+
+    @Override
+    protected void createIndexes() throws SQLException {
+        runScript("create_indexes.sql");
+    }
+
+    private void runScript(String name) throws SQLException {
+        try {
+            ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+
+            StringBuilder script = new StringBuilder();
+            for(String line : IOUtils.readLines(KiWiH2Handler.class.getResourceAsStream(name))) {
+                if(!line.startsWith("--")) {
+                    script.append(line);
+                    script.append(" ");
+                }
+            }
+            log.debug("H2: running SQL script '{}'", script.toString());
+            runner.runScript(new StringReader(script.toString()));
+        } catch (IOException ex) {
+            throw new SQLException("error while running script " + name,ex);
+        }
+    }
+
+}
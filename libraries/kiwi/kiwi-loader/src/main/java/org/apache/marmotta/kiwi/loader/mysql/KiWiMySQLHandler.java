@@ -20,11 +20,15 @@ package org.apache.marmotta.kiwi.loader.mysql;
 import com.mysql.jdbc.Statement;
 import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
 import org.apache.marmotta.kiwi.loader.generic.KiWiBatchHandler;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.openrdf.rio.RDFHandler;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * A fast-lane RDF import handler for MySQL backends. This importer takes advantage of the MySQL LOAD DATA command
@@ -54,16 +58,16 @@ public class KiWiMySQLHandler extends KiWiBatchHandler implements RDFHandler {
     }
 
     /**
-     * Flush the backlog (nodeBacklog and tripleBacklog) to the database; needs to be implemented by subclasses.
+     * Flush the given nodes and triples to the database; needs to be implemented by subclasses.
      *
      * @throws java.sql.SQLException
      */
     @Override
-    protected void flushBacklogInternal() throws SQLException {
+    protected void flushBacklogInternal(KiWiConnection con, List<KiWiNode> nodes, List<KiWiTriple> triples) throws SQLException {
         try {
             // load node backlog
-            Statement statement = (com.mysql.jdbc.Statement)connection.getJDBCConnection().createStatement();
-            statement.setLocalInfileInputStream(MySQLLoadUtil.flushNodes(nodeBacklog));
+            Statement statement = (com.mysql.jdbc.Statement)con.getJDBCConnection().createStatement();
+            statement.setLocalInfileInputStream(MySQLLoadUtil.flushNodes(nodes));
             statement.execute(
                     "LOAD DATA LOCAL INFILE 'nodes.csv' " +
                             "INTO TABLE nodes " +
@@ -74,7 +78,7 @@ public class KiWiMySQLHandler extends KiWiBatchHandler implements RDFHandler {
                             "(id,ntype,svalue,dvalue,ivalue,tvalue,bvalue,ltype,lang,createdAt)");
 
 
-            statement.setLocalInfileInputStream(MySQLLoadUtil.flushTriples(tripleBacklog));
+            statement.setLocalInfileInputStream(MySQLLoadUtil.flushTriples(triples));
             statement.execute(
                     "LOAD DATA LOCAL INFILE 'triples.csv' " +
                             "INTO TABLE triples " +
@@ -91,6 +95,21 @@ public class KiWiMySQLHandler extends KiWiBatchHandler implements RDFHandler {
         }
     }
 
+    /**
+     * Unique checks are a session setting in MySQL, so they need to be disabled again on the separate connection
+     * used for flushing in pipelined mode.
+     *
+     * @throws java.sql.SQLException
+     */
+    @Override
+    protected void initFlushConnection(KiWiConnection con) throws SQLException {
+        if(config.isDropIndexes()) {
+            Statement statement = (com.mysql.jdbc.Statement)con.getJDBCConnection().createStatement();
+            statement.execute("SET UNIQUE_CHECKS=0; ");
+            statement.close();
+        }
+    }
+
     /**
      * Drop indexes in the database to increase import performance; needs to be implemented by subclasses. If this
      * feature is not supported, can be an empty method.
@@ -19,6 +19,9 @@ package org.apache.marmotta.kiwi.loader.pgsql;
 import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
 import org.apache.marmotta.kiwi.loader.generic.KiWiBatchHandler;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.openrdf.rio.RDFHandler;
@@ -29,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * A fast-lane RDF import handler for PostgreSQL backends. This importer takes advantage of the PostgreSQL COPY command
@@ -49,17 +53,29 @@ public class KiWiPostgresHandler extends KiWiBatchHandler implements RDFHandler
 
 
     @Override
-    protected void flushBacklogInternal() throws SQLException {
+    protected void flushBacklogInternal(KiWiConnection con, List<KiWiNode> nodes, List<KiWiTriple> triples) throws SQLException {
         try {
-            // flush out nodes
-            PGCopyOutputStream nodesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(connection.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
-            PGCopyUtil.flushNodes(nodeBacklog, nodesOut);
-            nodesOut.close();
-
-            // flush out triples
-            PGCopyOutputStream triplesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(connection.getJDBCConnection()), "COPY triples FROM STDIN (FORMAT csv)");
-            PGCopyUtil.flushTriples(tripleBacklog, triplesOut);
-            triplesOut.close();
+            if(config.isPostgresBinaryCopy()) {
+                // flush out nodes
+                PGCopyOutputStream nodesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT binary)");
+                PGBinaryCopyUtil.flushNodes(nodes, nodesOut);
+                nodesOut.close();
+
+                // flush out triples
+                PGCopyOutputStream triplesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY triples(id,subject,predicate,object,context,creator,inferred,deleted,createdAt,deletedAt) FROM STDIN (FORMAT binary)");
+                PGBinaryCopyUtil.flushTriples(triples, triplesOut);
+                triplesOut.close();
+            } else {
+                // flush out nodes
+                PGCopyOutputStream nodesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
+                PGCopyUtil.flushNodes(nodes, nodesOut);
+                nodesOut.close();
+
+                // flush out triples
+                PGCopyOutputStream triplesOut = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY triples FROM STDIN (FORMAT csv)");
+                PGCopyUtil.flushTriples(triples, triplesOut);
+                triplesOut.close();
+            }
         } catch (IOException ex) {
             throw new SQLException("error while flushing out data",ex);
         }
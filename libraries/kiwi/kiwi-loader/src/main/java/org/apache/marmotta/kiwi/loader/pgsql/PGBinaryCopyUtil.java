@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.pgsql;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.marmotta.kiwi.model.rdf.*;
+import org.joda.time.DateTime;
+import org.openrdf.model.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes nodes and triples in the PostgreSQL binary COPY format (COPY ... FROM STDIN (FORMAT binary)). Compared to
+ * the CSV format written by {@link PGCopyUtil}, numbers and timestamps are sent as fixed-size binary values, so
+ * neither the client nor the server needs to format, escape or parse text for them. Rows are encoded into a
+ * reusable buffer that is only written to the output stream when it is full.
+ * <p/>
+ * The binary format requires a server using integer datetimes (the default since PostgreSQL 8.4). Timestamps are
+ * written with the same wall-clock semantics as the CSV path: createdAt in the local time zone of the JVM, date
+ * literals in UTC.
+ */
+public class PGBinaryCopyUtil {
+
+    private static Logger log = LoggerFactory.getLogger(PGBinaryCopyUtil.class);
+
+    private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    // PostgreSQL timestamps count microseconds since 2000-01-01 00:00:00
+    private static final long PG_EPOCH_MILLIS = 946684800000L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void flushTriples(Iterable<KiWiTriple> tripleBacklog, OutputStream out) throws IOException {
+        Encoder enc = new Encoder(out);
+
+        for(KiWiTriple t : tripleBacklog) {
+            enc.beginRow(10);
+            enc.writeLong(t.getId());
+            enc.writeNodeId(t.getSubject());
+            enc.writeNodeId(t.getPredicate());
+            enc.writeNodeId(t.getObject());
+            enc.writeNodeId(t.getContext());
+            enc.writeNodeId(t.getCreator());
+            enc.writeBoolean(t.isInferred());
+            enc.writeBoolean(t.isDeleted());
+            enc.writeLocalTimestamp(t.getCreated());
+            enc.writeLocalTimestamp(t.getDeletedAt());
+        }
+        enc.close();
+    }
+
+    public static void flushNodes(Iterable<KiWiNode> nodeBacklog, OutputStream out) throws IOException {
+        Encoder enc = new Encoder(out);
+
+        for(KiWiNode n : nodeBacklog) {
+            if(n instanceof KiWiUriResource) {
+                enc.beginNode(n, "uri", n.stringValue());
+                enc.writeNodeTail(null, null, null, null, null, null, null, n.getCreated());
+            } else if(n instanceof KiWiAnonResource) {
+                enc.beginNode(n, "bnode", n.stringValue());
+                enc.writeNodeTail(null, null, null, null, null, null, null, n.getCreated());
+            } else if(n instanceof KiWiIntLiteral) {
+                KiWiIntLiteral l = (KiWiIntLiteral)n;
+                enc.beginNode(n, "int", l.getContent());
+                enc.writeNodeTail(l.getDoubleContent(), l.getIntContent(), null, null, null, l.getDatatype(), l.getLocale(), l.getCreated());
+            } else if(n instanceof KiWiDoubleLiteral) {
+                KiWiDoubleLiteral l = (KiWiDoubleLiteral)n;
+                enc.beginNode(n, "double", l.getContent());
+                enc.writeNodeTail(l.getDoubleContent(), null, null, null, null, l.getDatatype(), l.getLocale(), l.getCreated());
+            } else if(n instanceof KiWiBooleanLiteral) {
+                KiWiBooleanLiteral l = (KiWiBooleanLiteral)n;
+                enc.beginNode(n, "boolean", l.getContent());
+                enc.writeNodeTail(null, null, null, null, l.booleanValue(), l.getDatatype(), l.getLocale(), l.getCreated());
+            } else if(n instanceof KiWiDateLiteral) {
+                KiWiDateLiteral l = (KiWiDateLiteral)n;
+                enc.beginNode(n, "date", l.getContent());
+                enc.writeNodeTail(null, null, l.getDateContent(), l.getDateContent().getZone().getOffset(l.getDateContent()) / 1000, null, l.getDatatype(), l.getLocale(), l.getCreated());
+            } else if(n instanceof KiWiStringLiteral) {
+                KiWiStringLiteral l = (KiWiStringLiteral)n;
+
+                Double dbl_value = null;
+                Long   lng_value = null;
+                if(l.getContent().length() < 64 && NumberUtils.isNumber(l.getContent()))  {
+                    try {
+                        dbl_value = Double.parseDouble(l.getContent());
+                        lng_value = Long.parseLong(l.getContent());
+                    } catch (NumberFormatException ex) {
+                        // ignore, keep NaN
+                    }
+                }
+                enc.beginNode(n, "string", l.getContent());
+                enc.writeNodeTail(dbl_value, lng_value, null, null, null, l.getDatatype(), l.getLocale(), l.getCreated());
+            } else {
+                log.warn("unknown node type, cannot flush to import stream: {}", n.getClass());
+            }
+        }
+        enc.close();
+    }
+
+
+    /**
+     * Encoder for the binary COPY format: a header, one tuple per row (field count followed by length-prefixed
+     * field values, length -1 for NULL) and a trailer.
+     */
+    private static class Encoder {
+
+        private final OutputStream out;
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private int pos = 0;
+
+        private Encoder(OutputStream out) throws IOException {
+            this.out = out;
+
+            ensure(SIGNATURE.length + 8);
+            System.arraycopy(SIGNATURE, 0, buf, 0, SIGNATURE.length);
+            pos = SIGNATURE.length;
+            putInt(0); // flags
+            putInt(0); // header extension length
+        }
+
+        private void beginRow(int fields) throws IOException {
+            if(pos > BUFFER_SIZE - 1024) {
+                drain();
+            }
+            ensure(2);
+            putShort(fields);
+        }
+
+        private void beginNode(KiWiNode n, String ntype, String svalue) throws IOException {
+            beginRow(11);
+            writeLong(n.getId());
+            writeText(ntype);
+            writeText(svalue);
+        }
+
+        private void writeNodeTail(Double dbl, Long lng, DateTime date, Integer tzoffset, Boolean bool, URI dtype, Locale lang, Date created) throws IOException {
+            if(dbl != null) {
+                writeDouble(dbl);
+            } else {
+                writeNull();
+            }
+            if(lng != null) {
+                writeLong(lng);
+            } else {
+                writeNull();
+            }
+            if(date != null) {
+                writeTimestamp(date.getMillis());
+            } else {
+                writeNull();
+            }
+            if(tzoffset != null) {
+                ensure(8);
+                putInt(4);
+                putInt(tzoffset);
+            } else {
+                writeNull();
+            }
+            if(bool != null) {
+                writeBoolean(bool);
+            } else {
+                writeNull();
+            }
+            if(dtype != null && !(dtype instanceof KiWiNode)) {
+                throw new IllegalArgumentException("literal datatype is not a KiWi node: " + dtype);
+            }
+            writeNodeId((KiWiNode) dtype);
+            // consistent with the CSV path, which writes an empty language instead of NULL
+            writeText(lang != null ? lang.getLanguage() : "");
+            writeLocalTimestamp(created);
+        }
+
+        private void writeNull() throws IOException {
+            ensure(4);
+            putInt(-1);
+        }
+
+        private void writeLong(long v) throws IOException {
+            ensure(12);
+            putInt(8);
+            putLong(v);
+        }
+
+        private void writeDouble(double v) throws IOException {
+            writeLong(Double.doubleToLongBits(v));
+        }
+
+        private void writeBoolean(boolean v) throws IOException {
+            ensure(5);
+            putInt(1);
+            buf[pos++] = (byte) (v ? 1 : 0);
+        }
+
+        private void writeNodeId(KiWiNode n) throws IOException {
+            if(n != null) {
+                writeLong(n.getId());
+            } else {
+                writeNull();
+            }
+        }
+
+        /**
+         * Write a timestamp given in milliseconds since the Unix epoch as UTC wall-clock time.
+         */
+        private void writeTimestamp(long millis) throws IOException {
+            writeLong((millis - PG_EPOCH_MILLIS) * 1000L);
+        }
+
+        /**
+         * Write a date as wall-clock time in the local time zone (like java.sql.Timestamp#toString() does).
+         */
+        private void writeLocalTimestamp(Date date) throws IOException {
+            if(date != null) {
+                long millis = date.getTime();
+                writeTimestamp(millis + TimeZone.getDefault().getOffset(millis));
+            } else {
+                writeNull();
+            }
+        }
+
+        /**
+         * Write a string as length-prefixed UTF-8, encoding directly into the buffer.
+         */
+        private void writeText(String s) throws IOException {
+            int len = s.length();
+            ensure(4 + len * 3);
+
+            int start = pos;
+            pos += 4;
+            for(int i=0; i<len; i++) {
+                char c = s.charAt(i);
+                if(c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else if(c < 0x800) {
+                    buf[pos++] = (byte) (0xc0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if(Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else if(Character.isSurrogate(c)) {
+                    // unpaired surrogate, not representable in UTF-8
+                    buf[pos++] = '?';
+                } else {
+                    buf[pos++] = (byte) (0xe0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+
+            int bytes = pos - start - 4;
+            buf[start]     = (byte) (bytes >>> 24);
+            buf[start + 1] = (byte) (bytes >>> 16);
+            buf[start + 2] = (byte) (bytes >>> 8);
+            buf[start + 3] = (byte) bytes;
+        }
+
+        private void close() throws IOException {
+            ensure(2);
+            putShort(-1);
+            drain();
+            out.close();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if(pos + bytes > buf.length) {
+                drain();
+                if(bytes > buf.length) {
+                    // a single huge value (e.g. a very long literal); the buffer stays at this size for reuse
+                    buf = new byte[bytes];
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        private void putShort(int v) {
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void putInt(int v) {
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+    }
+}
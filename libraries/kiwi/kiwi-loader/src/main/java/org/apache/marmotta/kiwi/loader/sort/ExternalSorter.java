@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.loader.sort;
+
+import info.aduna.iteration.CloseableIteration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A simple external merge sort. Records are collected in memory until the configured run size is reached; each full
+ * run is sorted and written to a temporary file. Calling {@link #sort()} merges all runs (in several passes if there
+ * are more runs than can be opened at once) and returns an iteration over all records in sort order. Duplicates are
+ * kept; callers are expected to skip them while iterating.
+ * <p/>
+ * A sorter can only be sorted once. Temporary files are removed when the sorter is closed.
+ */
+public class ExternalSorter<T> implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(ExternalSorter.class);
+
+    // maximum number of runs merged in a single pass
+    private static final int MAX_FAN_IN = 128;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final RecordCodec<T> codec;
+    private final Comparator<T> comparator;
+    private final int runSize;
+    private final File directory;
+
+    private List<T> buffer;
+    private List<Run> runs = new ArrayList<>();
+
+    private long size = 0;
+    private boolean sorted = false;
+
+    /**
+     * @param name       name of the sorter, used as prefix for temporary files and for logging
+     * @param codec      serialization of records in run files
+     * @param comparator sort order
+     * @param runSize    maximum number of records kept in memory
+     * @param directory  directory for temporary files
+     */
+    public ExternalSorter(String name, RecordCodec<T> codec, Comparator<T> comparator, int runSize, File directory) {
+        this.name       = name;
+        this.codec      = codec;
+        this.comparator = comparator;
+        this.runSize    = runSize;
+        this.directory  = directory;
+        this.buffer     = new ArrayList<>(Math.min(runSize, 1024 * 1024));
+    }
+
+    /**
+     * Add a record to the sorter, spilling the current run to disk if it is full.
+     */
+    public void add(T record) throws IOException {
+        if(sorted) {
+            throw new IllegalStateException("sorter "+name+" has already been sorted");
+        }
+
+        buffer.add(record);
+        size++;
+
+        if(buffer.size() >= runSize) {
+            spill();
+        }
+    }
+
+    /**
+     * Total number of records added to this sorter
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Merge all runs and return an iteration over all records in sort order. The iteration must be closed after use.
+     */
+    public CloseableIteration<T, IOException> sort() throws IOException {
+        if(sorted) {
+            throw new IllegalStateException("sorter "+name+" has already been sorted");
+        }
+        sorted = true;
+
+        if(runs.isEmpty()) {
+            // everything fits into memory
+            Collections.sort(buffer, comparator);
+            final Iterator<T> it = buffer.iterator();
+            buffer = null;
+            return new CloseableIteration<T, IOException>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return it.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("removing records not supported");
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        if(!buffer.isEmpty()) {
+            spill();
+        }
+        buffer = null;
+
+        while (runs.size() > MAX_FAN_IN) {
+            log.debug("{}: merging {} runs in intermediate pass", name, runs.size());
+
+            List<Run> merged = new ArrayList<>();
+            for(int i=0; i<runs.size(); i += MAX_FAN_IN) {
+                List<Run> group = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+                if(group.size() == 1) {
+                    merged.add(group.get(0));
+                } else {
+                    merged.add(mergeRuns(group));
+                }
+            }
+            runs = merged;
+        }
+
+        return new MergeIteration(runs);
+    }
+
+    /**
+     * Remove all temporary files of this sorter.
+     */
+    @Override
+    public void close() {
+        for(Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        buffer = null;
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, comparator);
+
+        Run run = new Run(File.createTempFile(name + "-", ".run", directory));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), BUFFER_SIZE))) {
+            for(T record : buffer) {
+                codec.write(record, out);
+            }
+        }
+        run.count = buffer.size();
+        runs.add(run);
+
+        log.debug("{}: wrote run {} with {} records", name, runs.size(), run.count);
+
+        buffer.clear();
+    }
+
+    private Run mergeRuns(List<Run> group) throws IOException {
+        Run result = new Run(File.createTempFile(name + "-", ".run", directory));
+        try (MergeIteration it = new MergeIteration(group);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(result.file), BUFFER_SIZE))) {
+            while (it.hasNext()) {
+                codec.write(it.next(), out);
+                result.count++;
+            }
+        }
+        return result;
+    }
+
+
+    private static class Run {
+        final File file;
+        long count;
+
+        private Run(File file) {
+            this.file = file;
+        }
+
+        private void delete() {
+            if(file.exists() && !file.delete()) {
+                log.warn("could not delete temporary file {}", file);
+            }
+        }
+    }
+
+    /**
+     * A cursor on a single run file, holding the current (smallest not yet consumed) record of the run.
+     */
+    private class RunCursor {
+        final Run run;
+        final DataInputStream in;
+        long remaining;
+        T current;
+
+        private RunCursor(Run run) throws IOException {
+            this.run       = run;
+            this.in        = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        private boolean advance() throws IOException {
+            if(remaining > 0) {
+                current = codec.read(in);
+                remaining--;
+                return true;
+            } else {
+                current = null;
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * k-way merge over a list of runs using a priority queue of run cursors. The merged runs are deleted once the
+     * iteration is closed.
+     */
+    private class MergeIteration implements CloseableIteration<T, IOException>, Closeable {
+
+        private final List<Run> merged;
+        private final List<RunCursor> cursors = new ArrayList<>();
+        private final PriorityQueue<RunCursor> queue;
+
+        private MergeIteration(List<Run> merged) throws IOException {
+            this.merged = new ArrayList<>(merged);
+            this.queue  = new PriorityQueue<>(Math.max(1, merged.size()), new Comparator<RunCursor>() {
+                @Override
+                public int compare(RunCursor a, RunCursor b) {
+                    return comparator.compare(a.current, b.current);
+                }
+            });
+
+            for(Run run : merged) {
+                RunCursor cursor = new RunCursor(run);
+                cursors.add(cursor);
+                if(cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() throws IOException {
+            RunCursor cursor = queue.poll();
+            if(cursor == null) {
+                throw new NoSuchElementException("no more records");
+            }
+            T result = cursor.current;
+            if(cursor.advance()) {
+                queue.add(cursor);
+            }
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("removing records not supported");
+        }
+
+        @Override
+        public void close() throws IOException {
+            for(RunCursor cursor : cursors) {
+                cursor.in.close();
+            }
+            for(Run run : merged) {
+                run.delete();
+            }
+        }
+    }
+}
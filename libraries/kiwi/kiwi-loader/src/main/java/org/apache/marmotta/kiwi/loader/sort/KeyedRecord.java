@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader.sort;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Comparator;
+
+/**
+ * A record consisting of a string key and a long value, ordered by key first and value second. Used e.g. for
+ * mapping the serialized form of an RDF term to the position it occurs in.
+ */
+public class KeyedRecord {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final RecordCodec<KeyedRecord> CODEC = new RecordCodec<KeyedRecord>() {
+        @Override
+        public void write(KeyedRecord record, DataOutput out) throws IOException {
+            // writeUTF is limited to 64k, which is not enough for long literals
+            byte[] key = record.key.getBytes(UTF8);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeLong(record.value);
+        }
+
+        @Override
+        public KeyedRecord read(DataInput in) throws IOException {
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            return new KeyedRecord(new String(key, UTF8), in.readLong());
+        }
+    };
+
+    public static final Comparator<KeyedRecord> ORDER = new Comparator<KeyedRecord>() {
+        @Override
+        public int compare(KeyedRecord a, KeyedRecord b) {
+            int c = a.key.compareTo(b.key);
+            if(c != 0) {
+                return c;
+            }
+            return a.value < b.value ? -1 : (a.value == b.value ? 0 : 1);
+        }
+    };
+
+    private final String key;
+    private final long value;
+
+    public KeyedRecord(String key, long value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getValue() {
+        return value;
+    }
+}
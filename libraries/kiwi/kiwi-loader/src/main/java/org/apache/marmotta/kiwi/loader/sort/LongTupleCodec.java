@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.loader.sort;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Comparator;
+
+/**
+ * Codec and lexicographic order for fixed-size tuples of longs (e.g. database IDs of the nodes of a triple).
+ */
+public class LongTupleCodec implements RecordCodec<long[]>, Comparator<long[]> {
+
+    private final int arity;
+
+    public LongTupleCodec(int arity) {
+        this.arity = arity;
+    }
+
+    @Override
+    public void write(long[] record, DataOutput out) throws IOException {
+        for(int i=0; i<arity; i++) {
+            out.writeLong(record[i]);
+        }
+    }
+
+    @Override
+    public long[] read(DataInput in) throws IOException {
+        long[] record = new long[arity];
+        for(int i=0; i<arity; i++) {
+            record[i] = in.readLong();
+        }
+        return record;
+    }
+
+    @Override
+    public int compare(long[] a, long[] b) {
+        for(int i=0; i<arity; i++) {
+            if(a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+}
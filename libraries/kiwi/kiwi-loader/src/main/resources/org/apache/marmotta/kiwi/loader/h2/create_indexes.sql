@@ -0,0 +1,21 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+CREATE INDEX IF NOT EXISTS idx_node_content ON nodes(svalue);
+CREATE INDEX IF NOT EXISTS idx_node_uri ON nodes(ntype,svalue);
+CREATE INDEX IF NOT EXISTS idx_literal_lang ON nodes(lang);
+CREATE INDEX IF NOT EXISTS idx_triples_spo ON triples(subject,predicate,object);
+CREATE INDEX IF NOT EXISTS idx_triples_p ON triples(predicate);
+CREATE INDEX IF NOT EXISTS idx_triples_cspo ON triples(context,subject,predicate,object);
+CREATE INDEX IF NOT EXISTS idx_triples_deleted ON triples(deleted,id);
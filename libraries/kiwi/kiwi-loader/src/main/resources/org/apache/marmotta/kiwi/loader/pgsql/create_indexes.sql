@@ -16,8 +16,10 @@
 CREATE INDEX idx_triples_p ON triples(predicate) WHERE deleted = false;
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object) WHERE deleted = false;
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object) WHERE deleted = false;
+CREATE INDEX idx_triples_deleted ON triples(id) WHERE deleted = true;
 CREATE INDEX idx_node_dcontent ON nodes(dvalue) WHERE dvalue IS NOT NULL;
 CREATE INDEX idx_node_icontent ON nodes(ivalue) WHERE ivalue IS NOT NULL;
+CREATE INDEX idx_node_uri ON nodes(svalue COLLATE "C") WHERE ntype = 'uri';
 
 ALTER TABLE triples ENABLE RULE triples_ignore_duplicates;
 
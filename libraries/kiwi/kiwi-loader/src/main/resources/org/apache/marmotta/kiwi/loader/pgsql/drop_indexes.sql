@@ -16,8 +16,10 @@
 DROP INDEX IF EXISTS idx_triples_p;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
+DROP INDEX IF EXISTS idx_triples_deleted;
 DROP INDEX IF EXISTS idx_node_dcontent;
 DROP INDEX IF EXISTS idx_node_icontent;
+DROP INDEX IF EXISTS idx_node_uri;
 
 ALTER TABLE triples DISABLE RULE triples_ignore_duplicates;
 
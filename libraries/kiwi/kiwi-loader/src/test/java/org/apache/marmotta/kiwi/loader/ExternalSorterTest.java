@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.loader;
+
+import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.kiwi.loader.sort.ExternalSorter;
+import org.apache.marmotta.kiwi.loader.sort.KeyedRecord;
+import org.apache.marmotta.kiwi.loader.sort.LongTupleCodec;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Test the external merge sort used by the offline bulk loader.
+ */
+public class ExternalSorterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * More runs than can be merged at once, so the sorter needs intermediate merge passes.
+     */
+    @Test
+    public void testSortTuples() throws IOException {
+        LongTupleCodec codec = new LongTupleCodec(2);
+        Random rnd = new Random(42);
+
+        try (ExternalSorter<long[]> sorter = new ExternalSorter<>("test", codec, codec, 50, tmp.getRoot())) {
+            for(int i=0; i<20000; i++) {
+                sorter.add(new long[] { rnd.nextInt(1000), rnd.nextLong() });
+            }
+            Assert.assertEquals(20000, sorter.size());
+
+            CloseableIteration<long[], IOException> it = sorter.sort();
+            try {
+                long[] last = null;
+                int count = 0;
+                while (it.hasNext()) {
+                    long[] t = it.next();
+                    if(last != null) {
+                        Assert.assertTrue(codec.compare(last, t) <= 0);
+                    }
+                    last = t;
+                    count++;
+                }
+                Assert.assertEquals(20000, count);
+            } finally {
+                it.close();
+            }
+        }
+
+        Assert.assertEquals(0, tmp.getRoot().list().length);
+    }
+
+    @Test
+    public void testSortInMemory() throws IOException {
+        try (ExternalSorter<KeyedRecord> sorter = new ExternalSorter<>("test", KeyedRecord.CODEC, KeyedRecord.ORDER, 1000, tmp.getRoot())) {
+            sorter.add(new KeyedRecord("b", 2));
+            sorter.add(new KeyedRecord("a", 5));
+            sorter.add(new KeyedRecord("b", 1));
+
+            CloseableIteration<KeyedRecord, IOException> it = sorter.sort();
+            KeyedRecord r = it.next();
+            Assert.assertEquals("a", r.getKey());
+            r = it.next();
+            Assert.assertEquals("b", r.getKey());
+            Assert.assertEquals(1, r.getValue());
+            r = it.next();
+            Assert.assertEquals(2, r.getValue());
+            Assert.assertFalse(it.hasNext());
+            it.close();
+        }
+    }
+}
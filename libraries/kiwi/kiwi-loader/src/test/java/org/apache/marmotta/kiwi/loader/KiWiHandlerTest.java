@@ -18,9 +18,11 @@ package org.apache.marmotta.kiwi.loader;
 
 import info.aduna.iteration.Iterations;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.loader.generic.KiWiBulkLoader;
 import org.apache.marmotta.kiwi.loader.generic.KiWiHandler;
 import org.apache.marmotta.kiwi.loader.mysql.KiWiMySQLHandler;
 import org.apache.marmotta.kiwi.loader.pgsql.KiWiPostgresHandler;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
 import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
@@ -29,8 +31,12 @@ import org.junit.*;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 import org.junit.runner.RunWith;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Model;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -42,8 +48,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Add file description here!
@@ -97,6 +107,111 @@ public class KiWiHandlerTest {
         testImport(new KiWiLoaderConfiguration(),"demo-data.foaf", RDFFormat.RDFXML);
     }
 
+    /**
+     * Use very small batches so that several backlogs pass through the pipeline while the import is running.
+     */
+    @Test
+    public void testImportPipelined() throws Exception {
+        KiWiLoaderConfiguration cfg = new KiWiLoaderConfiguration();
+        cfg.setPipelineEnabled(true);
+        cfg.setStatementBatchSize(5);
+        cfg.setCommitBatchSize(10);
+        testImport(cfg,"demo-data.foaf", RDFFormat.RDFXML);
+    }
+
+    /**
+     * Offline bulk loading with tiny sort runs and chunks; all data is only written when the loader is shut down.
+     */
+    @Test
+    public void testImportOffline() throws Exception {
+        KiWiLoaderConfiguration cfg = new KiWiLoaderConfiguration();
+        cfg.setBulkRunSize(50);
+        cfg.setCommitBatchSize(20);
+
+        Model expected = Rio.parse(this.getClass().getResourceAsStream("demo-data.foaf"), "", RDFFormat.RDFXML);
+
+        KiWiBulkLoader handler = new KiWiBulkLoader(store, cfg);
+        Assert.assertFalse("bulk loader must not modify the caller's configuration", cfg.isDropIndexes());
+
+        RDFParser parser = Rio.createParser(RDFFormat.RDFXML);
+        parser.setRDFHandler(handler);
+        parser.parse(this.getClass().getResourceAsStream("demo-data.foaf"),"");
+        handler.shutdown();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            Assert.assertEquals(expected.size(), con.size());
+            for(Statement stmt : expected) {
+                if(stmt.getSubject() instanceof BNode || stmt.getObject() instanceof BNode) {
+                    continue;
+                }
+                Assert.assertTrue("missing statement " + stmt, con.hasStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(), true));
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+
+        // the indexes dropped for the import must have been created again
+        KiWiConnection kcon = store.getPersistence().getConnection();
+        try {
+            DatabaseMetaData meta = kcon.getJDBCConnection().getMetaData();
+            String table = meta.storesUpperCaseIdentifiers() ? "TRIPLES" : "triples";
+            Set<String> indexes = new HashSet<>();
+            ResultSet rs = meta.getIndexInfo(null, null, table, false, false);
+            try {
+                while(rs.next()) {
+                    if(rs.getString("INDEX_NAME") != null) {
+                        indexes.add(rs.getString("INDEX_NAME").toLowerCase());
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            Assert.assertTrue("index idx_triples_spo has not been recreated", indexes.contains("idx_triples_spo"));
+            Assert.assertTrue("index idx_triples_cspo has not been recreated", indexes.contains("idx_triples_cspo"));
+        } finally {
+            kcon.close();
+        }
+    }
+
+    /**
+     * Literals differing only by a NUL character must not be merged into one node; since the database cannot store
+     * NUL, the bulk loader rejects such literals and keeps loading the other statements.
+     */
+    @Test
+    public void testImportOfflineNul() throws Exception {
+        KiWiBulkLoader handler = new KiWiBulkLoader(store, new KiWiLoaderConfiguration());
+        ValueFactory vf = ValueFactoryImpl.getInstance();
+        URI subject = vf.createURI("http://localhost/nul"), property = vf.createURI("http://localhost/label");
+
+        handler.startRDF();
+        handler.handleStatement(vf.createStatement(subject, property, vf.createLiteral("ab")));
+        try {
+            handler.handleStatement(vf.createStatement(subject, property, vf.createLiteral("a\u0000b")));
+            Assert.fail("a literal containing NUL has been accepted");
+        } catch (RDFHandlerException e) {
+            // expected
+        }
+        handler.handleStatement(vf.createStatement(subject, RDF.TYPE, vf.createURI("http://localhost/Type")));
+        handler.endRDF();
+        handler.shutdown();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            Assert.assertEquals(2, con.size());
+            List<Statement> labels = Iterations.asList(con.getStatements(subject, property, null, true));
+            Assert.assertEquals(1, labels.size());
+            Assert.assertEquals("ab", labels.get(0).getObject().stringValue());
+            Assert.assertTrue(con.hasStatement(subject, RDF.TYPE, vf.createURI("http://localhost/Type"), true));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
     @Test
     public void testImportExistanceCheck() throws Exception {
         KiWiLoaderConfiguration cfg = new KiWiLoaderConfiguration();
@@ -16,9 +16,11 @@
  */
 package org.apache.marmotta.kiwi.loader;
 
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.commons.vocabulary.XSD;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.loader.pgsql.PGBinaryCopyUtil;
 import org.apache.marmotta.kiwi.loader.pgsql.PGCopyUtil;
 import org.apache.marmotta.kiwi.model.rdf.*;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
@@ -43,6 +45,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -150,6 +153,98 @@ public class PGCopyUtilTest {
 
 
 
+    @Test
+    public void testWriteNodesBinary() throws IOException, SQLException {
+        KiWiConnection con = store.getPersistence().getConnection();
+
+        PGCopyOutputStream out = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT binary)");
+
+        List<KiWiNode> nodes = new ArrayList<>(10000);
+
+        nodes.add(TYPE_INT);
+        nodes.add(TYPE_DBL);
+        nodes.add(TYPE_BOOL);
+        nodes.add(TYPE_DATE);
+        nodes.add(EMPTY);
+
+        // randomly create 10000 nodes
+        for(int i=0; i<10000; i++) {
+            nodes.add(randomObject());
+        }
+
+        PGBinaryCopyUtil.flushNodes(nodes, out);
+        out.close();
+
+        // check if database contains the nodes with the same values as written by the CSV path
+        PreparedStatement stmt = con.getJDBCConnection().prepareStatement("SELECT * FROM nodes WHERE id = ?");
+        for(KiWiNode n : nodes) {
+            stmt.setLong(1, n.getId());
+            ResultSet dbResult = stmt.executeQuery();
+            Assert.assertTrue(dbResult.next());
+            Assert.assertEquals(n.stringValue(),dbResult.getString("svalue"));
+            Assert.assertEquals(n.getCreated().getTime(), dbResult.getTimestamp("createdAt").getTime());
+            if(n instanceof KiWiIntLiteral) {
+                Assert.assertEquals(((KiWiIntLiteral) n).getIntContent().longValue(), dbResult.getLong("ivalue"));
+            }
+        }
+        con.commit();
+        con.close();
+    }
+
+    /**
+     * Compare CSV and binary COPY, both for the client-side encoding alone and for the complete import. Only logs the
+     * timings, since the results depend on the machine and database server.
+     */
+    @Test
+    public void testCompareCsvBinary() throws IOException, SQLException {
+        final int count = 100000;
+
+        List<KiWiNode> csvNodes = new ArrayList<>(count), binNodes = new ArrayList<>(count);
+        for(int i=0; i<count; i++) {
+            csvNodes.add(randomObject());
+            binNodes.add(randomObject());
+        }
+
+        // encoding only
+        for(int round=0; round<3; round++) {
+            long start = System.nanoTime();
+            PGCopyUtil.flushNodes(csvNodes, new NullOutputStream());
+            long csv = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            PGBinaryCopyUtil.flushNodes(csvNodes, new NullOutputStream());
+            long bin = System.nanoTime() - start;
+
+            log.info("encoding {} nodes: CSV {} ms, binary {} ms", count, csv / 1000000, bin / 1000000);
+        }
+
+        // complete import
+        KiWiConnection con = store.getPersistence().getConnection();
+        try {
+            PGCopyOutputStream out = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
+            PGCopyUtil.flushNodes(Arrays.<KiWiNode>asList(TYPE_INT, TYPE_DBL, TYPE_BOOL, TYPE_DATE), out);
+            out.close();
+
+            long start = System.currentTimeMillis();
+            out = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)");
+            PGCopyUtil.flushNodes(csvNodes, out);
+            out.close();
+            long csv = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            out = new PGCopyOutputStream(PGCopyUtil.getWrappedConnection(con.getJDBCConnection()), "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT binary)");
+            PGBinaryCopyUtil.flushNodes(binNodes, out);
+            out.close();
+            long bin = System.currentTimeMillis() - start;
+
+            log.info("importing {} nodes: CSV {} ms, binary {} ms", count, csv, bin);
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+
     /**
      * Return a random URI, with a 10% chance of returning a URI that has already been used.
      * @return
@@ -39,6 +39,13 @@ public class ReasoningConfiguration {
      */
     private int workers = 4;
 
+    /**
+     * Maximum number of committed transactions waiting to be passed to the reasoner. If greater than 0, the reasoner
+     * is notified asynchronously by a separate thread, so that commits do not wait for it; 0 notifies the reasoner
+     * while committing.
+     */
+    private int listenerQueueSize = 0;
+
     public ReasoningConfiguration() {
     }
 
@@ -58,4 +65,12 @@ public class ReasoningConfiguration {
         this.removeDuplicateJustifications = removeDuplicateJustifications;
     }
 
+    public int getListenerQueueSize() {
+        return listenerQueueSize;
+    }
+
+    public void setListenerQueueSize(int listenerQueueSize) {
+        this.listenerQueueSize = listenerQueueSize;
+    }
+
 }
@@ -86,7 +86,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
             insertRule.setString(2, rule.getName());
             insertRule.setString(3, rule.getDescription());
             insertRule.setString(4, rule.toString(namespaces));
-            insertRule.executeUpdate();
+            executeUpdate(insertRule);
         }
 
         ruleIdCache.put(rule.getId(), rule);
@@ -114,7 +114,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 PreparedStatement loadNamespaces = getPreparedStatement("namespaces.load_by_rule");
                 synchronized (loadNamespaces) {
                     loadNamespaces.setLong(1,ruleId);
-                    ResultSet namespaceResult = loadNamespaces.executeQuery();
+                    ResultSet namespaceResult = executeQuery(loadNamespaces);
                     while(namespaceResult.next()) {
                         namespaces.put(namespaceResult.getString("ns_prefix"), namespaceResult.getString("ns_uri"));
                     }
@@ -126,7 +126,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
             PreparedStatement loadRule = getPreparedStatement("rules.load_by_id");
             synchronized (loadRule) {
                 loadRule.setLong(1,ruleId);
-                ResultSet result = loadRule.executeQuery();
+                ResultSet result = executeQuery(loadRule);
                 try {
                     if(result.next()) {
                         return constructRuleFromDatabase(result,namespaces);
@@ -154,7 +154,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadRule = getPreparedStatement("rules.load_by_program");
         synchronized (loadRule) {
             loadRule.setLong(1,programId);
-            ResultSet result = loadRule.executeQuery();
+            ResultSet result = executeQuery(loadRule);
 
             return new ResultSetIteration<Rule>(result, new ResultTransformerFunction<Rule>() {
                 @Override
@@ -208,7 +208,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement deleteRule = getPreparedStatement("rules.delete_by_id");
         synchronized (deleteRule) {
             deleteRule.setLong(1, rule.getId());
-            deleteRule.executeUpdate();
+            executeUpdate(deleteRule);
         }
 
         ruleIdCache.remove(rule.getId());
@@ -249,7 +249,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
             insertProgram.setLong(1,program.getId());
             insertProgram.setString(2, program.getName());
             insertProgram.setString(3, program.getDescription());
-            insertProgram.executeUpdate();
+            executeUpdate(insertProgram);
             insertProgram.clearParameters();
         }
 
@@ -264,7 +264,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 insertNamespaces.setString(3,entry.getValue());
                 insertNamespaces.addBatch();
             }
-            insertNamespaces.executeBatch();
+            executeBatch(insertNamespaces);
             insertNamespaces.clearBatch();
         }
 
@@ -284,7 +284,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 insertRuleRelation.setLong(2,rule.getId());
                 insertRuleRelation.addBatch();
             }
-            insertRuleRelation.executeBatch();
+            executeBatch(insertRuleRelation);
             insertRuleRelation.clearBatch();
         }
 
@@ -326,7 +326,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 synchronized (updateProgramDescription) {
                     updateProgramDescription.setString(1, program.getDescription());
                     updateProgramDescription.setLong(2, old.getId());
-                    updateProgramDescription.executeUpdate();
+                    executeUpdate(updateProgramDescription);
                 }
             }
 
@@ -342,7 +342,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                         deleteProgramNS.addBatch();
                     }
                 }
-                deleteProgramNS.executeBatch();
+                executeBatch(deleteProgramNS);
             }
 
             //    2c) check if namespaces have been added, and add them if necessary to the database
@@ -357,7 +357,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
                         addProgramNS.addBatch();
                     }
                 }
-                addProgramNS.executeBatch();
+                executeBatch(addProgramNS);
             }
 
             //    2d) check if rules have been removed, and remove them if necessary from the database
@@ -380,8 +380,8 @@ public class KiWiReasoningConnection extends KiWiConnection {
                         oldRule.setId(-1L);
                     }
                 }
-                deleteProgramRule.executeBatch();
-                deleteRule.executeBatch();
+                executeBatch(deleteProgramRule);
+                executeBatch(deleteRule);
             }
 
             //    2e) check if rules have been added, and add them if necessary to the database
@@ -407,8 +407,8 @@ public class KiWiReasoningConnection extends KiWiConnection {
                         addProgramRule.addBatch();
                     }
                 }
-                insertRule.executeBatch();
-                addProgramRule.executeBatch();
+                executeBatch(insertRule);
+                executeBatch(addProgramRule);
             }
         }
 
@@ -431,7 +431,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadProgram = getPreparedStatement("programs.load_by_name");
         synchronized (loadProgram) {
             loadProgram.setString(1, name);
-            ResultSet result = loadProgram.executeQuery();
+            ResultSet result = executeQuery(loadProgram);
             try {
                 if(result.next()) {
                     return constructProgramFromDatabase(result);
@@ -460,7 +460,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadProgram = getPreparedStatement("programs.load_by_id");
         synchronized (loadProgram) {
             loadProgram.setLong(1, id);
-            ResultSet result = loadProgram.executeQuery();
+            ResultSet result = executeQuery(loadProgram);
             try {
                 if(result.next()) {
                     return constructProgramFromDatabase(result);
@@ -486,7 +486,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadProgramNS = getPreparedStatement("namespaces.load_by_program");
         synchronized (loadProgramNS) {
             loadProgramNS.setLong(1, program.getId());
-            ResultSet nsResult = loadProgramNS.executeQuery();
+            ResultSet nsResult = executeQuery(loadProgramNS);
             while(nsResult.next()) {
                 program.addNamespace(nsResult.getString("ns_prefix"), nsResult.getString("ns_uri"));
             }
@@ -497,7 +497,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadRule = getPreparedStatement("rules.load_by_program");
         synchronized (loadRule) {
             loadRule.setLong(1,program.getId());
-            ResultSet ruleResult = loadRule.executeQuery();
+            ResultSet ruleResult = executeQuery(loadRule);
             while(ruleResult.next()) {
                 program.addRule(constructRuleFromDatabase(ruleResult,program.getNamespaces()));
             }
@@ -518,7 +518,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
 
         PreparedStatement listPrograms = getPreparedStatement("programs.list");
         synchronized (listPrograms) {
-            ResultSet result = listPrograms.executeQuery();
+            ResultSet result = executeQuery(listPrograms);
 
             return new ResultSetIteration<Program>(result, new ResultTransformerFunction<Program>() {
                 @Override
@@ -565,8 +565,8 @@ public class KiWiReasoningConnection extends KiWiConnection {
 
                 deleteJustifications(rule);
             }
-            deleteProgramRule.executeBatch();
-            deleteRule.executeBatch();
+            executeBatch(deleteProgramRule);
+            executeBatch(deleteRule);
         }
 
         // 2. delete all namespaces
@@ -579,14 +579,14 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 deleteProgramNS.setString(3, ns.getValue());
                 deleteProgramNS.addBatch();
             }
-            deleteProgramNS.executeBatch();
+            executeBatch(deleteProgramNS);
         }
 
         // 3. delete program itself
         PreparedStatement deleteProgram = getPreparedStatement("programs.delete");
         synchronized (deleteProgram) {
             deleteProgram.setLong(1, program.getId());
-            deleteProgram.executeUpdate();
+            executeUpdate(deleteProgram);
         }
     }
 
@@ -650,9 +650,9 @@ public class KiWiReasoningConnection extends KiWiConnection {
                 }
 
             }
-            insertJustification.executeBatch();
-            justificationAddTriple.executeBatch();
-            justificationAddRule.executeBatch();
+            executeBatch(insertJustification);
+            executeBatch(justificationAddTriple);
+            executeBatch(justificationAddRule);
 
         }
     }
@@ -704,9 +704,9 @@ public class KiWiReasoningConnection extends KiWiConnection {
             }
             Iterations.closeCloseable(justifications);
 
-            deleteJustificationTriples.executeBatch();
-            deleteJustificationRules.executeBatch();
-            deleteJustification.executeBatch();
+            executeBatch(deleteJustificationTriples);
+            executeBatch(deleteJustificationRules);
+            executeBatch(deleteJustification);
         }
     }
 
@@ -745,9 +745,9 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement deleteJustificationRules = getPreparedStatement("justifications.delete_all_rules");
         PreparedStatement deleteJustificationTriples = getPreparedStatement("justifications.delete_all_triples");
         synchronized (deleteJustification) {
-            deleteJustificationRules.executeUpdate();
-            deleteJustificationTriples.executeUpdate();
-            deleteJustification.executeUpdate();
+            executeUpdate(deleteJustificationRules);
+            executeUpdate(deleteJustificationTriples);
+            executeUpdate(deleteJustification);
         }
     }
 
@@ -768,7 +768,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
             synchronized (listByRule) {
                 listByRule.setLong(1, rule.getId());
 
-                ResultSet result = listByRule.executeQuery();
+                ResultSet result = executeQuery(listByRule);
 
                 return new ResultSetIteration<Justification>(result, new ResultTransformerFunction<Justification>() {
                     @Override
@@ -796,7 +796,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
             synchronized (listByTriple) {
                 listByTriple.setLong(1, triple.getId());
 
-                ResultSet result = listByTriple.executeQuery();
+                ResultSet result = executeQuery(listByTriple);
 
                 return new ResultSetIteration<Justification>(result, new ResultTransformerFunction<Justification>() {
                     @Override
@@ -835,7 +835,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         synchronized (listForTriple) {
             listForTriple.setLong(1, tripleId);
 
-            ResultSet result = listForTriple.executeQuery();
+            ResultSet result = executeQuery(listForTriple);
 
             return new ResultSetIteration<Justification>(result, new ResultTransformerFunction<Justification>() {
                 @Override
@@ -857,7 +857,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadRules = getPreparedStatement("justifications.load_rules");
         synchronized (loadRules) {
             loadRules.setLong(1, result.getId());
-            ResultSet ruleResult = loadRules.executeQuery();
+            ResultSet ruleResult = executeQuery(loadRules);
             while(ruleResult.next()) {
                 result.getSupportingRules().add(loadRuleById(ruleResult.getLong("rule_id"),null));
             }
@@ -867,7 +867,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         PreparedStatement loadTriples = getPreparedStatement("justifications.load_triples");
         synchronized (loadTriples) {
             loadTriples.setLong(1, result.getId());
-            ResultSet tripleResult = loadTriples.executeQuery();
+            ResultSet tripleResult = executeQuery(loadTriples);
             while(tripleResult.next()) {
                 result.getSupportingTriples().add(loadTripleById(tripleResult.getLong("triple_id")));
             }
@@ -887,7 +887,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
 
         PreparedStatement listUnsupported = getPreparedStatement("justifications.list_unsupported");
         synchronized (listUnsupported) {
-            ResultSet result = listUnsupported.executeQuery();
+            ResultSet result = executeQuery(listUnsupported);
 
             return new ResultSetIteration<KiWiTriple>(result, new ResultTransformerFunction<KiWiTriple>() {
                 @Override
@@ -1144,7 +1144,7 @@ public class KiWiReasoningConnection extends KiWiConnection {
         log.debug("constructed SQL query string {}",queryString);
 
         PreparedStatement queryStatement = getJDBCConnection().prepareStatement(queryString);
-        ResultSet result = queryStatement.executeQuery();
+        ResultSet result = executeQuery(queryStatement);
 
         return new ResultSetIteration<QueryResult>(result, true, new ResultTransformerFunction<QueryResult>() {
             @Override
@@ -20,7 +20,9 @@ package org.apache.marmotta.kiwi.reasoner.sail;
 import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.ExceptionConvertingIteration;
 
+import org.apache.marmotta.commons.sesame.transactions.api.OverflowPolicy;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
+import org.apache.marmotta.commons.sesame.transactions.sail.AsynchronousTransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.wrapper.TransactionalSailWrapper;
 import org.apache.marmotta.kiwi.reasoner.engine.ReasoningConfiguration;
 import org.apache.marmotta.kiwi.reasoner.engine.ReasoningEngine;
@@ -80,7 +82,12 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
                     persistence.initDatabase();
 
                     engine      = new ReasoningEngine(persistence,this,config);
-                    addTransactionListener(engine);
+                    if(config.getListenerQueueSize() > 0) {
+                        // the reasoner needs to see every change, so the committing thread waits when the queue is full
+                        addTransactionListener(new AsynchronousTransactionListener("KWRL Reasoner", engine, config.getListenerQueueSize(), OverflowPolicy.BLOCK));
+                    } else {
+                        addTransactionListener(engine);
+                    }
 
                     initialized = true;
                 } catch (SQLException e) {
@@ -93,6 +100,8 @@ public class KiWiReasoningSail extends TransactionalSailWrapper {
 
     @Override
     public void shutDown() throws SailException {
+        // pass pending transactions to the engine before stopping it
+        removeTransactionListener(engine);
         engine.shutdown();
         super.shutDown();
     }
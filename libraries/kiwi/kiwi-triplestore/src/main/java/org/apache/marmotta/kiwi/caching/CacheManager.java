@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.caching;
 
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.model.rdf.*;
 
 import java.util.Map;
@@ -81,10 +82,10 @@ public interface CacheManager {
      * Return the literal cache key -> KiWiLiteral cache from the cache manager. This cache is used when constructing new
      * KiWiLiterals to avoid a database lookup.
      *
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      * @return
      */
-    public Map<String, KiWiLiteral> getLiteralCache();
+    public Map<LiteralKey, KiWiLiteral> getLiteralCache();
 
 
     /**
@@ -19,6 +19,7 @@ package org.apache.marmotta.kiwi.caching;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.model.rdf.*;
 import org.slf4j.Logger;
@@ -45,7 +46,7 @@ public class GuavaCacheManager implements CacheManager {
     private Cache<Long,KiWiTriple> tripleCache;
     private Cache<String,KiWiUriResource> uriCache;
     private Cache<String,KiWiAnonResource> bnodeCache;
-    private Cache<String,KiWiLiteral> literalCache;
+    private Cache<LiteralKey,KiWiLiteral> literalCache;
     private Cache<String,KiWiNamespace> namespaceUriCache, namespacePrefixCache;
     private ConcurrentHashMap<Long,Long> registryCache;
 
@@ -152,10 +153,10 @@ public class GuavaCacheManager implements CacheManager {
      * KiWiLiterals to avoid a database lookup.
      *
      * @return
-     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createCacheKey(String, java.util.Locale, String)
+     * @see org.apache.marmotta.commons.sesame.model.LiteralCommons#createLiteralKey(String, String, String)
      */
     @Override
-    public Map<String, KiWiLiteral> getLiteralCache() {
+    public Map<LiteralKey, KiWiLiteral> getLiteralCache() {
         return literalCache.asMap();
     }
 
@@ -624,7 +624,7 @@ public class KiWiConfiguration {
 
     /**
      * Return true if statistics collection in JMX. The JMX name of the KiWi statistics bean will be
-     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean
+     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[name of the configuration]
      */
     public boolean isJmxEnabled() {
         return jmxEnabled;
@@ -632,7 +632,7 @@ public class KiWiConfiguration {
 
     /**
      * Enable/disable statistics collection in JMX. The JMX name of the KiWi statistics bean will be
-     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean
+     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[name of the configuration]
      *
      * @param jmxEnabled
      */
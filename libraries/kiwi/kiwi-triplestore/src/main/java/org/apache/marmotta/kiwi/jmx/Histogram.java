@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with power-of-two buckets: bucket 0 counts the value 0 and bucket i counts the
+ * values in [2^(i-1), 2^i). Recording a value takes two uncontended atomic increments; percentiles are therefore only
+ * exact up to a factor of two, which is sufficient for latencies and batch sizes.
+ */
+final class Histogram {
+
+    // the last bucket also counts all larger values
+    static final int BUCKETS = 40;
+
+    // striped like the StripedCounter: the buckets of stripe s are at [s * BUCKETS, (s+1) * BUCKETS)
+    private final AtomicLongArray buckets = new AtomicLongArray(StripedCounter.STRIPES * BUCKETS);
+
+    private final StripedCounter total = new StripedCounter();
+
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(StripedCounter.stripe() * BUCKETS + bucket(value));
+        total.add(value);
+
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    long getCount() {
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) getTotal() / count : 0.0;
+    }
+
+    /**
+     * Return an upper bound for the given percentile (0-100) of the recorded values, i.e. the upper end of the bucket
+     * containing the percentile, but at most the maximum value recorded.
+     */
+    long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            counts[i % BUCKETS] += buckets.get(i);
+            count += buckets.get(i);
+        }
+        if(count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(Math.max(0.0, Math.min(100.0, percentile)) / 100.0 * count);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank && counts[i] > 0) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    void reset() {
+        for(int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.jmx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the statistics of a KiWi persistence. The record methods are called by the KiWi connections on every
+ * statement, cache lookup and commit and therefore only use striped counters without locks; the values are summed
+ * up when they are read through JMX.
+ */
+public class KiWiStatistics implements KiWiStatisticsMBean {
+
+    /**
+     * The caches whose hits and misses are counted.
+     */
+    public enum Cache {
+        NODE, TRIPLE, URI, BNODE, LITERAL
+    }
+
+    // statement latencies in microseconds, by statement key
+    private final ConcurrentMap<String, Histogram> statements = new ConcurrentHashMap<>();
+
+    private final StripedCounter[] cacheHits   = new StripedCounter[Cache.values().length];
+    private final StripedCounter[] cacheMisses = new StripedCounter[Cache.values().length];
+
+    private final Histogram batchSizes  = new Histogram();
+    private final Histogram batchTimes  = new Histogram();
+
+    private final Histogram commitTimes = new Histogram();
+    private final StripedCounter rollbacks = new StripedCounter();
+
+    private final ConcurrentMap<String, StripedCounter> retries = new ConcurrentHashMap<>();
+
+    private final Histogram connectionWaits = new Histogram();
+
+    public KiWiStatistics() {
+        for(int i = 0; i < cacheHits.length; i++) {
+            cacheHits[i]   = new StripedCounter();
+            cacheMisses[i] = new StripedCounter();
+        }
+    }
+
+    /**
+     * Record the execution of the dialect statement with the given key.
+     */
+    public void recordStatement(String key, long nanos) {
+        Histogram histogram = statements.get(key);
+        if(histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = statements.putIfAbsent(key, histogram);
+            if(existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos / 1000);
+    }
+
+    public void recordCacheLookup(Cache cache, boolean hit) {
+        if(hit) {
+            cacheHits[cache.ordinal()].increment();
+        } else {
+            cacheMisses[cache.ordinal()].increment();
+        }
+    }
+
+    public void recordBatchFlush(int size, long nanos) {
+        batchSizes.record(size);
+        batchTimes.record(nanos / 1000);
+    }
+
+    public void recordCommit(long nanos) {
+        commitTimes.record(nanos / 1000);
+    }
+
+    public void recordRollback() {
+        rollbacks.increment();
+    }
+
+    public void recordRetry(String operation) {
+        StripedCounter counter = retries.get(operation);
+        if(counter == null) {
+            counter = new StripedCounter();
+            StripedCounter existing = retries.putIfAbsent(operation, counter);
+            if(existing != null) {
+                counter = existing;
+            }
+        }
+        counter.increment();
+    }
+
+    public void recordConnectionWait(long nanos) {
+        connectionWaits.record(nanos / 1000);
+    }
+
+
+    @Override
+    public String[] getStatementKeys() {
+        List<String> keys = new ArrayList<>(statements.keySet());
+        Collections.sort(keys);
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    @Override
+    public String[] getStatementSummary() {
+        String[] keys = getStatementKeys();
+        String[] summary = new String[keys.length];
+        for(int i = 0; i < keys.length; i++) {
+            Histogram histogram = statements.get(keys[i]);
+            summary[i] = String.format(Locale.ENGLISH, "%s: count=%d, mean=%.3f ms, p99=%.3f ms, max=%.3f ms", keys[i],
+                    histogram.getCount(), millis(histogram.getMean()), millis(histogram.getPercentile(99)), millis(histogram.getMax()));
+        }
+        return summary;
+    }
+
+    @Override
+    public long getStatementCount(String key) {
+        Histogram histogram = statements.get(key);
+        return histogram != null ? histogram.getCount() : 0;
+    }
+
+    @Override
+    public double getStatementMeanTime(String key) {
+        Histogram histogram = statements.get(key);
+        return histogram != null ? millis(histogram.getMean()) : 0.0;
+    }
+
+    @Override
+    public double getStatementTimePercentile(String key, double percentile) {
+        Histogram histogram = statements.get(key);
+        return histogram != null ? millis(histogram.getPercentile(percentile)) : 0.0;
+    }
+
+    @Override
+    public double getStatementMaxTime(String key) {
+        Histogram histogram = statements.get(key);
+        return histogram != null ? millis(histogram.getMax()) : 0.0;
+    }
+
+    @Override
+    public long getNodeCacheHits() {
+        return cacheHits[Cache.NODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getNodeCacheMisses() {
+        return cacheMisses[Cache.NODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getTripleCacheHits() {
+        return cacheHits[Cache.TRIPLE.ordinal()].sum();
+    }
+
+    @Override
+    public long getTripleCacheMisses() {
+        return cacheMisses[Cache.TRIPLE.ordinal()].sum();
+    }
+
+    @Override
+    public long getUriCacheHits() {
+        return cacheHits[Cache.URI.ordinal()].sum();
+    }
+
+    @Override
+    public long getUriCacheMisses() {
+        return cacheMisses[Cache.URI.ordinal()].sum();
+    }
+
+    @Override
+    public long getBNodeCacheHits() {
+        return cacheHits[Cache.BNODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getBNodeCacheMisses() {
+        return cacheMisses[Cache.BNODE.ordinal()].sum();
+    }
+
+    @Override
+    public long getLiteralCacheHits() {
+        return cacheHits[Cache.LITERAL.ordinal()].sum();
+    }
+
+    @Override
+    public long getLiteralCacheMisses() {
+        return cacheMisses[Cache.LITERAL.ordinal()].sum();
+    }
+
+    @Override
+    public long getBatchFlushes() {
+        return batchSizes.getCount();
+    }
+
+    @Override
+    public long getBatchFlushedTriples() {
+        return batchSizes.getTotal();
+    }
+
+    @Override
+    public double getBatchFlushMeanSize() {
+        return batchSizes.getMean();
+    }
+
+    @Override
+    public double getBatchFlushMeanTime() {
+        return millis(batchTimes.getMean());
+    }
+
+    @Override
+    public double getBatchFlushTimePercentile(double percentile) {
+        return millis(batchTimes.getPercentile(percentile));
+    }
+
+    @Override
+    public long getCommits() {
+        return commitTimes.getCount();
+    }
+
+    @Override
+    public double getCommitMeanTime() {
+        return millis(commitTimes.getMean());
+    }
+
+    @Override
+    public double getCommitTimePercentile(double percentile) {
+        return millis(commitTimes.getPercentile(percentile));
+    }
+
+    @Override
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        long sum = 0;
+        for(StripedCounter counter : retries.values()) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getRetries(String operation) {
+        StripedCounter counter = retries.get(operation);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    @Override
+    public long getConnectionRequests() {
+        return connectionWaits.getCount();
+    }
+
+    @Override
+    public double getConnectionWaitMeanTime() {
+        return millis(connectionWaits.getMean());
+    }
+
+    @Override
+    public double getConnectionWaitTimePercentile(double percentile) {
+        return millis(connectionWaits.getPercentile(percentile));
+    }
+
+    @Override
+    public double getConnectionWaitMaxTime() {
+        return millis(connectionWaits.getMax());
+    }
+
+    @Override
+    public void reset() {
+        for(Histogram histogram : statements.values()) {
+            histogram.reset();
+        }
+        for(int i = 0; i < cacheHits.length; i++) {
+            cacheHits[i].reset();
+            cacheMisses[i].reset();
+        }
+        batchSizes.reset();
+        batchTimes.reset();
+        commitTimes.reset();
+        rollbacks.reset();
+        for(StripedCounter counter : retries.values()) {
+            counter.reset();
+        }
+        connectionWaits.reset();
+    }
+
+    private static double millis(double micros) {
+        return micros / 1000.0;
+    }
+}
@@ -18,9 +18,100 @@
 package org.apache.marmotta.kiwi.jmx;
 
 /**
- * Statistics collection for the KiWi triple store, to be published in JMX.
+ * Statistics collection for the KiWi triple store, to be published in JMX. Times are given in milliseconds and
+ * percentiles are upper bounds with a precision of a factor of two.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public interface KiWiStatisticsMBean {
+
+    /**
+     * Return the keys of the dialect statements that have been executed.
+     */
+    String[] getStatementKeys();
+
+    /**
+     * Return one line per executed statement with the number of executions and the mean, 99th percentile and
+     * maximum execution time.
+     */
+    String[] getStatementSummary();
+
+    long getStatementCount(String key);
+
+    double getStatementMeanTime(String key);
+
+    double getStatementTimePercentile(String key, double percentile);
+
+    double getStatementMaxTime(String key);
+
+
+    long getNodeCacheHits();
+
+    long getNodeCacheMisses();
+
+    long getTripleCacheHits();
+
+    long getTripleCacheMisses();
+
+    long getUriCacheHits();
+
+    long getUriCacheMisses();
+
+    long getBNodeCacheHits();
+
+    long getBNodeCacheMisses();
+
+    long getLiteralCacheHits();
+
+    long getLiteralCacheMisses();
+
+
+    long getBatchFlushes();
+
+    long getBatchFlushedTriples();
+
+    double getBatchFlushMeanSize();
+
+    double getBatchFlushMeanTime();
+
+    double getBatchFlushTimePercentile(double percentile);
+
+
+    long getCommits();
+
+    double getCommitMeanTime();
+
+    double getCommitTimePercentile(double percentile);
+
+    long getRollbacks();
+
+
+    /**
+     * Return the number of retries of all operations (e.g. COMMIT, STORE, DELETE, FLUSH BATCH).
+     */
+    long getRetries();
+
+    long getRetries(String operation);
+
+
+    /**
+     * Return the number of JDBC connections taken from the connection pool.
+     */
+    long getConnectionRequests();
+
+    /**
+     * Return the mean time waiting for a connection from the pool, including the wait for maintenance (garbage
+     * collection) to finish.
+     */
+    double getConnectionWaitMeanTime();
+
+    double getConnectionWaitTimePercentile(double percentile);
+
+    double getConnectionWaitMaxTime();
+
+
+    /**
+     * Reset all statistics.
+     */
+    void reset();
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.jmx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that is incremented concurrently by many threads and read rarely. Each thread adds to one of several
+ * cells (chosen by the thread id), so that concurrent updates mostly do not contend on the same cache line; reading
+ * the counter sums up all cells.
+ */
+final class StripedCounter {
+
+    /**
+     * number of cells, a power of two of about the number of processors
+     */
+    static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    // one cell per 64 bytes to avoid false sharing between the cells
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Return the cell index of the current thread in [0, STRIPES).
+     */
+    static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1));
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long value) {
+        cells.addAndGet(stripe() * PADDING, value);
+    }
+
+    long sum() {
+        long sum = 0;
+        for(int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for(int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+}
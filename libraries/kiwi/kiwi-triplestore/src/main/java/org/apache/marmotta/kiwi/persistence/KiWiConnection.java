@@ -24,11 +24,13 @@ import com.google.common.primitives.Longs;
 import info.aduna.iteration.*;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
+import org.apache.marmotta.commons.sesame.model.LiteralKey;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
 import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
+import org.apache.marmotta.kiwi.jmx.KiWiStatistics;
 import org.apache.marmotta.kiwi.model.rdf.*;
 import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
 import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
@@ -69,6 +71,8 @@ public class KiWiConnection implements AutoCloseable {
 
     protected TripleTable<KiWiTriple> tripleBatch;
 
+    protected KiWiStatistics statistics;
+
     /**
      * Cache nodes by database ID
      */
@@ -90,9 +94,10 @@ public class KiWiConnection implements AutoCloseable {
     private Map<String,KiWiAnonResource> bnodeCache;
 
     /**
-     * Cache literals by literal cache key (LiteralCommons#createCacheKey(String,Locale,URI))
+     * Cache literals by literal key (LiteralCommons#createLiteralKey(String,String,String)); date literals are cached
+     * by the key of their date (LiteralCommons#createLiteralKey(DateTime,String))
      */
-    private Map<String,KiWiLiteral> literalCache;
+    private Map<LiteralKey,KiWiLiteral> literalCache;
 
     /**
      * Look up namespaces by URI
@@ -114,6 +119,9 @@ public class KiWiConnection implements AutoCloseable {
 
     private Map<String,PreparedStatement> statementCache;
 
+    // the dialect keys of the prepared statements in the statement cache, for the statement statistics
+    private Map<PreparedStatement,String> statementKeys;
+
     private boolean autoCommit = false;
 
     private boolean batchCommit = true;
@@ -143,6 +151,7 @@ public class KiWiConnection implements AutoCloseable {
         this.cacheManager = cacheManager;
         this.dialect      = dialect;
         this.persistence  = persistence;
+        this.statistics   = persistence.getStatistics();
         this.commitLock   = new ReentrantLock();
         this.literalLock   = new ReentrantLock();
         this.uriLock   = new ReentrantLock();
@@ -172,6 +181,7 @@ public class KiWiConnection implements AutoCloseable {
      */
     private void initStatementCache() throws SQLException {
         statementCache = new HashMap<String, PreparedStatement>();
+        statementKeys  = new IdentityHashMap<PreparedStatement, String>();
 
         /*
         for(String key : dialect.getStatementIdentifiers()) {
@@ -245,7 +255,7 @@ public class KiWiConnection implements AutoCloseable {
 
         // run the database query and if it yields a result, construct a new node; the method call will take care of
         // caching the constructed node for future calls
-        ResultSet result = query.executeQuery();
+        ResultSet result = executeQuery(query);
         try {
             if(result.next()) {
                 return constructNamespaceFromDatabase(result);
@@ -281,7 +291,7 @@ public class KiWiConnection implements AutoCloseable {
 
         // run the database query and if it yields a result, construct a new node; the method call will take care of
         // caching the constructed node for future calls
-        ResultSet result = query.executeQuery();
+        ResultSet result = executeQuery(query);
         try {
             if(result.next()) {
                 return constructNamespaceFromDatabase(result);
@@ -317,7 +327,7 @@ public class KiWiConnection implements AutoCloseable {
         insertNamespace.setString(3,namespace.getUri());
         insertNamespace.setTimestamp(4,new Timestamp(namespace.getCreated().getTime()));
 
-        insertNamespace.executeUpdate();
+        executeUpdate(insertNamespace);
 
         namespacePrefixCache.put(namespace.getPrefix(), namespace);
         namespaceUriCache.put(namespace.getUri(),namespace);
@@ -338,7 +348,7 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement deleteNamespace = getPreparedStatement("delete.namespace");
         deleteNamespace.setLong(1, namespace.getId());
-        deleteNamespace.executeUpdate();
+        executeUpdate(deleteNamespace);
 
         namespacePrefixCache.remove(namespace.getPrefix());
         namespaceUriCache.remove(namespace.getUri());
@@ -353,7 +363,7 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement querySize = getPreparedStatement("query.size");
-        ResultSet result = querySize.executeQuery();
+        ResultSet result = executeQuery(querySize);
         try {
             if(result.next()) {
                 return result.getLong(1) + (tripleBatch != null ? tripleBatch.size() : 0);
@@ -380,7 +390,7 @@ public class KiWiConnection implements AutoCloseable {
         PreparedStatement querySize = getPreparedStatement("query.size_ctx");
         querySize.setLong(1,context.getId());
 
-        ResultSet result = querySize.executeQuery();
+        ResultSet result = executeQuery(querySize);
         try {
             if(result.next()) {
                 return result.getLong(1) + (tripleBatch != null ? tripleBatch.listTriples(null,null,null,context, false).size() : 0);
@@ -423,9 +433,12 @@ public class KiWiConnection implements AutoCloseable {
         // look in cache
         KiWiNode element = nodeCache.get(id);
         if(element != null) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, true);
             return element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, false);
+
         requireJDBCConnection();
 
         // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
@@ -436,7 +449,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return constructNodeFromDatabase(result);
@@ -467,6 +480,7 @@ public class KiWiConnection implements AutoCloseable {
         for(int i=0; i < ids.length; i++) {
             if(ids[i] != 0) {
                 result[i] = nodeCache.get(ids[i]);
+                statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, result[i] != null);
                 if(result[i] == null) {
                     toFetch.add(ids[i]);
                 }
@@ -493,7 +507,7 @@ public class KiWiConnection implements AutoCloseable {
 
                     // run the database query and if it yields a result, construct a new node; the method call will take care of
                     // caching the constructed node for future calls
-                    ResultSet rows = query.executeQuery();
+                    ResultSet rows = executeQuery(query);
                     try {
                         while(rows.next()) {
                             node = constructNodeFromDatabase(rows);
@@ -529,9 +543,12 @@ public class KiWiConnection implements AutoCloseable {
         // look in cache
         KiWiTriple element = tripleCache.get(id);
         if(element != null) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.TRIPLE, true);
             return element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.TRIPLE, false);
+
         requireJDBCConnection();
 
         // prepare a query; we will only iterate once, read only, and need only one result row since the id is unique
@@ -541,7 +558,7 @@ public class KiWiConnection implements AutoCloseable {
 
         // run the database query and if it yields a result, construct a new node; the method call will take care of
         // caching the constructed node for future calls
-        ResultSet result = query.executeQuery();
+        ResultSet result = executeQuery(query);
         try {
             if(result.next()) {
                 return constructTripleFromDatabase(result);
@@ -571,9 +588,12 @@ public class KiWiConnection implements AutoCloseable {
         // look in cache
         KiWiUriResource element = uriCache.get(uri);
         if(element != null) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.URI, true);
             return element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.URI, false);
+
         requireJDBCConnection();
 
         uriLock.lock();
@@ -585,7 +605,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiUriResource)constructNodeFromDatabase(result);
@@ -616,9 +636,12 @@ public class KiWiConnection implements AutoCloseable {
         // look in cache
         KiWiAnonResource element = bnodeCache.get(id);
         if(element != null) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.BNODE, true);
             return element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.BNODE, false);
+
         requireJDBCConnection();
 
         bnodeLock.lock();
@@ -631,7 +654,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiAnonResource)constructNodeFromDatabase(result);
@@ -662,12 +685,18 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException
      */
     public KiWiLiteral loadLiteral(String value, String lang, KiWiUriResource ltype) throws SQLException {
-        // look in cache
-        final KiWiLiteral element = literalCache.get(LiteralCommons.createCacheKey(value,getLocale(lang), ltype));
-        if(element != null) {
+        // look in cache; the key is a hash, so check that the cached literal is the requested one
+        final Locale locale = getLocale(lang);
+        final String language = locale != null ? locale.getLanguage() : null;
+        final String type = ltype != null ? ltype.stringValue() : null;
+        final KiWiLiteral element = literalCache.get(LiteralCommons.createLiteralKey(value, language, type));
+        if(element != null && LiteralCommons.matches(element, value, language, type)) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, true);
             return element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
         requireJDBCConnection();
 
         // ltype not persisted
@@ -698,7 +727,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiLiteral)constructNodeFromDatabase(result);
@@ -728,11 +757,18 @@ public class KiWiConnection implements AutoCloseable {
      */
     public KiWiDateLiteral loadLiteral(DateTime date) throws SQLException {
         // look in cache
-        KiWiLiteral element = literalCache.get(LiteralCommons.createCacheKey(date.withMillisOfSecond(0),Namespaces.NS_XSD + "dateTime"));
-        if(element != null && element instanceof KiWiDateLiteral) {
-            return (KiWiDateLiteral)element;
+        KiWiLiteral element = literalCache.get(LiteralCommons.createLiteralKey(date, Namespaces.NS_XSD + "dateTime"));
+        if(element instanceof KiWiDateLiteral && hasDatatype(element, Namespaces.NS_XSD + "dateTime")) {
+            final DateTime cached = ((KiWiDateLiteral) element).getDateContent();
+            final DateTime requested = date.withMillisOfSecond(0);
+            if(cached.getMillis() == requested.getMillis() && cached.getZone().getOffset(cached) == requested.getZone().getOffset(requested)) {
+                statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, true);
+                return (KiWiDateLiteral)element;
+            }
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
         requireJDBCConnection();
 
         KiWiUriResource ltype = loadUriResource(Namespaces.NS_XSD + "dateTime");
@@ -752,7 +788,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiDateLiteral)constructNodeFromDatabase(result);
@@ -783,11 +819,14 @@ public class KiWiConnection implements AutoCloseable {
      */
     public KiWiIntLiteral loadLiteral(long value) throws SQLException {
         // look in cache
-        KiWiLiteral element = literalCache.get(LiteralCommons.createCacheKey(Long.toString(value),(String)null,Namespaces.NS_XSD + "integer"));
-        if(element != null && element instanceof KiWiIntLiteral) {
+        KiWiLiteral element = literalCache.get(LiteralCommons.createLiteralKey(Long.toString(value),(String)null,Namespaces.NS_XSD + "integer"));
+        if(element instanceof KiWiIntLiteral && hasDatatype(element, Namespaces.NS_XSD + "integer") && ((KiWiIntLiteral) element).getIntContent() == value) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, true);
             return (KiWiIntLiteral)element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
         requireJDBCConnection();
 
         KiWiUriResource ltype = loadUriResource(Namespaces.NS_XSD + "integer");
@@ -808,7 +847,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiIntLiteral)constructNodeFromDatabase(result);
@@ -838,11 +877,14 @@ public class KiWiConnection implements AutoCloseable {
      */
     public KiWiDoubleLiteral loadLiteral(double value) throws SQLException {
         // look in cache
-        KiWiLiteral element = literalCache.get(LiteralCommons.createCacheKey(Double.toString(value), (String)null,Namespaces.NS_XSD + "double"));
-        if(element != null && element instanceof KiWiDoubleLiteral) {
+        KiWiLiteral element = literalCache.get(LiteralCommons.createLiteralKey(Double.toString(value), (String)null,Namespaces.NS_XSD + "double"));
+        if(element instanceof KiWiDoubleLiteral && hasDatatype(element, Namespaces.NS_XSD + "double") && Double.compare(((KiWiDoubleLiteral) element).getDoubleContent(), value) == 0) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, true);
             return (KiWiDoubleLiteral)element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
         requireJDBCConnection();
 
         KiWiUriResource ltype = loadUriResource(Namespaces.NS_XSD + "double");
@@ -862,7 +904,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             KiWiNode kiWiNode = null;
             try {
                 if (result.next()) {
@@ -896,11 +938,14 @@ public class KiWiConnection implements AutoCloseable {
      */
     public KiWiBooleanLiteral loadLiteral(boolean value) throws SQLException {
         // look in cache
-        KiWiLiteral element = literalCache.get(LiteralCommons.createCacheKey(Boolean.toString(value),(String)null,Namespaces.NS_XSD + "boolean"));
-        if(element != null && element instanceof KiWiBooleanLiteral) {
+        KiWiLiteral element = literalCache.get(LiteralCommons.createLiteralKey(Boolean.toString(value),(String)null,Namespaces.NS_XSD + "boolean"));
+        if(element instanceof KiWiBooleanLiteral && hasDatatype(element, Namespaces.NS_XSD + "boolean") && ((KiWiBooleanLiteral) element).booleanValue() == value) {
+            statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, true);
             return (KiWiBooleanLiteral)element;
         }
 
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
         requireJDBCConnection();
 
         KiWiUriResource ltype = loadUriResource(Namespaces.NS_XSD + "boolean");
@@ -921,7 +966,7 @@ public class KiWiConnection implements AutoCloseable {
 
             // run the database query and if it yields a result, construct a new node; the method call will take care of
             // caching the constructed node for future calls
-            ResultSet result = query.executeQuery();
+            ResultSet result = executeQuery(query);
             try {
                 if(result.next()) {
                     return (KiWiBooleanLiteral)constructNodeFromDatabase(result);
@@ -973,7 +1018,7 @@ public class KiWiConnection implements AutoCloseable {
             insertNode.setString(2,uriResource.stringValue());
             insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
 
         } else if(node instanceof KiWiAnonResource) {
             KiWiAnonResource anonResource = (KiWiAnonResource)node;
@@ -983,7 +1028,7 @@ public class KiWiConnection implements AutoCloseable {
             insertNode.setString(2,anonResource.stringValue());
             insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else if(node instanceof KiWiDateLiteral) {
             KiWiDateLiteral dateLiteral = (KiWiDateLiteral)node;
 
@@ -998,7 +1043,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a date literal must have a datatype");
             insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else if(node instanceof KiWiIntLiteral) {
             KiWiIntLiteral intLiteral = (KiWiIntLiteral)node;
 
@@ -1013,7 +1058,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("an integer literal must have a datatype");
             insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else if(node instanceof KiWiDoubleLiteral) {
             KiWiDoubleLiteral doubleLiteral = (KiWiDoubleLiteral)node;
 
@@ -1027,7 +1072,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a double literal must have a datatype");
             insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else if(node instanceof KiWiBooleanLiteral) {
             KiWiBooleanLiteral booleanLiteral = (KiWiBooleanLiteral)node;
 
@@ -1041,7 +1086,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a boolean literal must have a datatype");
             insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else if(node instanceof KiWiStringLiteral) {
             KiWiStringLiteral stringLiteral = (KiWiStringLiteral)node;
 
@@ -1083,7 +1128,7 @@ public class KiWiConnection implements AutoCloseable {
             }
             insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            executeUpdate(insertNode);
         } else {
             log.warn("unrecognized node type: {}", node.getClass().getCanonicalName());
         }
@@ -1154,7 +1199,7 @@ public class KiWiConnection implements AutoCloseable {
                                 }
                                 insertTriple.setBoolean(6,triple.isInferred());
                                 insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
-                                int count = insertTriple.executeUpdate();
+                                int count = executeUpdate(insertTriple);
 
                                 cacheTriple(triple);
 
@@ -1203,7 +1248,7 @@ public class KiWiConnection implements AutoCloseable {
             loadTripleId.setNull(4, Types.BIGINT);
         }
 
-        ResultSet result = loadTripleId.executeQuery();
+        ResultSet result = executeQuery(loadTripleId);
         try {
             if(result.next()) {
                 return result.getLong(1);
@@ -1252,7 +1297,7 @@ public class KiWiConnection implements AutoCloseable {
                                     PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                                     synchronized (deleteTriple) {
                                         deleteTriple.setLong(1, triple.getId());
-                                        deleteTriple.executeUpdate();
+                                        executeUpdate(deleteTriple);
                                     }
                                     deletedStatementsLog.put(triple.getId());
                                 }
@@ -1265,7 +1310,7 @@ public class KiWiConnection implements AutoCloseable {
                             PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                             synchronized (deleteTriple) {
                                 deleteTriple.setLong(1, triple.getId());
-                                deleteTriple.executeUpdate();
+                                executeUpdate(deleteTriple);
                             }
                             deletedStatementsLog.put(triple.getId());
 
@@ -1315,7 +1360,7 @@ public class KiWiConnection implements AutoCloseable {
                                 PreparedStatement deleteTriple = getPreparedStatement("delete.context");
                                 synchronized (deleteTriple) {
                                     deleteTriple.setLong(1, ctx.getId());
-                                    deleteTriple.executeUpdate();
+                                    executeUpdate(deleteTriple);
                                 }
                                 // deletedStatementsLog.put(triple.getId());
                             } else {
@@ -1335,7 +1380,7 @@ public class KiWiConnection implements AutoCloseable {
                         PreparedStatement deleteTriple = getPreparedStatement("delete.context");
                         synchronized (deleteTriple) {
                             deleteTriple.setLong(1, ctx.getId());
-                            deleteTriple.executeUpdate();
+                            executeUpdate(deleteTriple);
                         }
                         //deletedStatementsLog.put(triple.getId());
 
@@ -1382,7 +1427,7 @@ public class KiWiConnection implements AutoCloseable {
 
                             PreparedStatement deleteTriple = getPreparedStatement("delete.repository");
                             synchronized (deleteTriple) {
-                                deleteTriple.executeUpdate();
+                                executeUpdate(deleteTriple);
                             }
                             // deletedStatementsLog.put(triple.getId());
                         } else {
@@ -1397,7 +1442,7 @@ public class KiWiConnection implements AutoCloseable {
 
                     PreparedStatement deleteTriple = getPreparedStatement("delete.repository");
                     synchronized (deleteTriple) {
-                        deleteTriple.executeUpdate();
+                        executeUpdate(deleteTriple);
                     }
                     //deletedStatementsLog.put(triple.getId());
 
@@ -1443,7 +1488,7 @@ public class KiWiConnection implements AutoCloseable {
 
             PreparedStatement undeleteTriple = getPreparedStatement("undelete.triple");
             undeleteTriple.setLong(1, triple.getId());
-            undeleteTriple.executeUpdate();
+            executeUpdate(undeleteTriple);
 
             if(!persistence.getConfiguration().isClustered()) {
                 cacheTriple(triple);
@@ -1462,7 +1507,7 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement queryContexts = getPreparedStatement("query.contexts");
 
-        final ResultSet result = queryContexts.executeQuery();
+        final ResultSet result = executeQuery(queryContexts);
 
         if(tripleBatch != null && tripleBatch.size() > 0) {
             return new DistinctIteration<KiWiResource, SQLException>(
@@ -1504,7 +1549,7 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement queryContexts = getPreparedStatement("query.resources");
 
-        final ResultSet result = queryContexts.executeQuery();
+        final ResultSet result = executeQuery(queryContexts);
 
         return new ResultSetIteration<KiWiResource>(result, new ResultTransformerFunction<KiWiResource>() {
             @Override
@@ -1524,9 +1569,9 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement queryContexts = getPreparedStatement("query.resources_prefix");
-        queryContexts.setString(1, prefix + "%");
+        queryContexts.setString(1, escapeLike(prefix) + "%");
 
-        final ResultSet result = queryContexts.executeQuery();
+        final ResultSet result = executeQuery(queryContexts);
 
         return new ResultSetIteration<KiWiUriResource>(result, new ResultTransformerFunction<KiWiUriResource>() {
             @Override
@@ -1538,12 +1583,79 @@ public class KiWiConnection implements AutoCloseable {
     }
 
 
+    /**
+     * List a page of the URI resources with the given prefix, ordered by their URI. See query.resources_prefix_page
+     * and query.resources_prefix_after; both select the range of the prefix on the URI index instead of skipping
+     * over all resources of the previous pages.
+     *
+     * @param prefix the prefix of the URIs
+     * @param after  only list URIs ordered after this URI (the last URI of the previous page), may be null
+     * @param offset the number of URIs to skip
+     * @param limit  the maximum number of URIs to list, 0 for no limit
+     * @return
+     * @throws SQLException
+     */
+    public CloseableIteration<KiWiUriResource, SQLException> listResources(String prefix, String after, int offset, int limit) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement queryResources;
+        if(after != null && after.compareTo(prefix) >= 0) {
+            queryResources = getPreparedStatement("query.resources_prefix_after");
+            queryResources.setString(1, after);
+        } else {
+            queryResources = getPreparedStatement("query.resources_prefix_page");
+            queryResources.setString(1, prefix);
+        }
+        queryResources.setString(2, prefixUpperBound(prefix));
+        queryResources.setString(3, escapeLike(prefix) + "%");
+        queryResources.setInt(4, limit > 0 ? limit : Integer.MAX_VALUE);
+        queryResources.setInt(5, Math.max(offset, 0));
+
+        final ResultSet result = executeQuery(queryResources);
+
+        return new ResultSetIteration<KiWiUriResource>(result, new ResultTransformerFunction<KiWiUriResource>() {
+            @Override
+            public KiWiUriResource apply(ResultSet row) throws SQLException {
+                return (KiWiUriResource)constructNodeFromDatabase(row);
+            }
+        });
+    }
+
+    /**
+     * Escape the wildcards of a LIKE pattern (all supported databases use backslash as default escape character).
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Return the smallest string that is greater than all strings starting with the given prefix, so that the
+     * prefix can be selected as range of the index.
+     */
+    private static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while(end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if(end == 0) {
+            // no URI starts with this character in practice
+            return String.valueOf(Character.MAX_VALUE);
+        }
+        char next = (char) (prefix.charAt(end - 1) + 1);
+        if(Character.isSurrogate(next)) {
+            // unpaired surrogates cannot be encoded, the next encodable character follows the surrogate range
+            next = '\uE000';
+        }
+        return prefix.substring(0, end - 1) + next;
+    }
+
+
     public CloseableIteration<KiWiNamespace, SQLException> listNamespaces() throws SQLException {
         requireJDBCConnection();
 
         PreparedStatement queryContexts = getPreparedStatement("query.namespaces");
 
-        final ResultSet result = queryContexts.executeQuery();
+        final ResultSet result = executeQuery(queryContexts);
 
         return new ResultSetIteration<KiWiNamespace>(result, new ResultTransformerFunction<KiWiNamespace>() {
             @Override
@@ -1672,7 +1784,7 @@ public class KiWiConnection implements AutoCloseable {
             query.setLong(position++, context.getId());
         }
 
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = executeQuery(query);
 
 
         return new CloseableIteration<Statement, SQLException>() {
@@ -2060,8 +2172,12 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement statement = statementCache.get(key);
         if(statement == null || statement.isClosed()) {
+            if(statement != null) {
+                statementKeys.remove(statement);
+            }
             statement = connection.prepareStatement(dialect.getStatement(key), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             statementCache.put(key,statement);
+            statementKeys.put(statement,key);
         }
         statement.clearParameters();
         if(persistence.getDialect().isCursorSupported()) {
@@ -2084,6 +2200,9 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement statement = statementCache.get(key+numberOfArguments);
         if(statement == null || statement.isClosed()) {
+            if(statement != null) {
+                statementKeys.remove(statement);
+            }
             StringBuilder s = new StringBuilder();
             for(int i=0; i<numberOfArguments; i++) {
                 if(i != 0) {
@@ -2094,6 +2213,7 @@ public class KiWiConnection implements AutoCloseable {
 
             statement = connection.prepareStatement(String.format(dialect.getStatement(key),s.toString(), numberOfArguments), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             statementCache.put(key+numberOfArguments,statement);
+            statementKeys.put(statement,key);
         }
         statement.clearParameters();
         if(persistence.getDialect().isCursorSupported()) {
@@ -2103,6 +2223,52 @@ public class KiWiConnection implements AutoCloseable {
     }
 
 
+    /**
+     * Execute a query prepared with getPreparedStatement and record its execution time in the statistics of the
+     * statement key.
+     */
+    protected ResultSet executeQuery(PreparedStatement statement) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeQuery();
+        } finally {
+            recordStatement(statement, start);
+        }
+    }
+
+    /**
+     * Execute an update prepared with getPreparedStatement and record its execution time in the statistics of the
+     * statement key.
+     */
+    protected int executeUpdate(PreparedStatement statement) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate();
+        } finally {
+            recordStatement(statement, start);
+        }
+    }
+
+    /**
+     * Execute a batch prepared with getPreparedStatement and record its execution time in the statistics of the
+     * statement key.
+     */
+    protected int[] executeBatch(PreparedStatement statement) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeBatch();
+        } finally {
+            recordStatement(statement, start);
+        }
+    }
+
+    private void recordStatement(PreparedStatement statement, long start) {
+        String key = statementKeys.get(statement);
+        if(key != null) {
+            statistics.recordStatement(key, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Get next number in a sequence; for databases without sequence support (e.g. MySQL), this method will first update a
      * sequence table and then return the value.
@@ -2124,10 +2290,26 @@ public class KiWiConnection implements AutoCloseable {
         } else if(node instanceof KiWiAnonResource) {
             bnodeCache.put(node.stringValue(), (KiWiAnonResource) node);
         } else if(node instanceof KiWiLiteral) {
-            literalCache.put(LiteralCommons.createCacheKey((Literal) node), (KiWiLiteral) node);
+            literalCache.put(createLiteralCacheKey((KiWiLiteral) node), (KiWiLiteral) node);
         }
     }
 
+    /**
+     * The key of a literal in the literal cache.
+     */
+    static LiteralKey createLiteralCacheKey(KiWiLiteral literal) {
+        if(literal instanceof KiWiDateLiteral && hasDatatype(literal, Namespaces.NS_XSD + "dateTime")) {
+            // date literals are only looked up by their date, see loadLiteral(DateTime)
+            return LiteralCommons.createLiteralKey(((KiWiDateLiteral) literal).getDateContent(), Namespaces.NS_XSD + "dateTime");
+        } else {
+            return LiteralCommons.createLiteralKey((Literal) literal);
+        }
+    }
+
+    private static boolean hasDatatype(KiWiLiteral literal, String type) {
+        return literal.getDatatype() != null && type.equals(literal.getDatatype().stringValue());
+    }
+
     private void cacheTriple(KiWiTriple triple) {
         if(triple.getId() >= 0) {
             tripleCache.put(triple.getId(), triple);
@@ -2153,7 +2335,7 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement statement = getPreparedStatement("meta.tables");
-        ResultSet result = statement.executeQuery();
+        ResultSet result = executeQuery(statement);
         try {
             Set<String> tables = new HashSet<String>();
             while(result.next()) {
@@ -2177,7 +2359,7 @@ public class KiWiConnection implements AutoCloseable {
 
         PreparedStatement statement = getPreparedStatement("meta.get");
         statement.setString(1,key);
-        ResultSet result = statement.executeQuery();
+        ResultSet result = executeQuery(statement);
         try {
             if(result.next()) {
                 return result.getString(1);
@@ -2201,20 +2383,20 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement statement = getPreparedStatement("meta.get");
-        ResultSet result = statement.executeQuery();
+        ResultSet result = executeQuery(statement);
         try {
             if(result.next()) {
                 PreparedStatement update = getPreparedStatement("meta.update");
                 update.clearParameters();
                 update.setString(1, value);
                 update.setString(2, key);
-                update.executeUpdate();
+                executeUpdate(update);
             } else {
                 PreparedStatement insert = getPreparedStatement("meta.insert");
                 insert.clearParameters();
                 insert.setString(1, key);
                 insert.setString(2, value);
-                insert.executeUpdate();
+                executeUpdate(insert);
             }
         } finally {
             result.close();
@@ -2232,7 +2414,7 @@ public class KiWiConnection implements AutoCloseable {
         requireJDBCConnection();
 
         PreparedStatement statement = getPreparedStatement("meta.version");
-        ResultSet result = statement.executeQuery();
+        ResultSet result = executeQuery(statement);
         try {
             if(result.next()) {
                 return Integer.parseInt(result.getString(1));
@@ -2359,6 +2541,8 @@ public class KiWiConnection implements AutoCloseable {
     public synchronized void commit() throws SQLException {
         numberOfCommits++;
 
+        long start = System.nanoTime();
+
         RetryExecution execution = new RetryExecution("COMMIT");
         execution.execute(connection, new RetryCommand<Void>() {
             @Override
@@ -2377,6 +2561,7 @@ public class KiWiConnection implements AutoCloseable {
                 return null;
             }
         });
+        statistics.recordCommit(System.nanoTime() - start);
 
         this.transactionId = getNextSequence();
     }
@@ -2406,6 +2591,7 @@ public class KiWiConnection implements AutoCloseable {
         if(connection != null && !connection.isClosed()) {
             connection.rollback();
         }
+        statistics.recordRollback();
 
         this.transactionId = getNextSequence();
     }
@@ -2488,7 +2674,10 @@ public class KiWiConnection implements AutoCloseable {
                         insertTriple.clearParameters();
                         insertTriple.clearBatch();
 
+                        long start = System.nanoTime();
+                        int size;
                         synchronized (tripleBatch) {
+                            size = tripleBatch.size();
                             for(KiWiTriple triple : tripleBatch) {
                                 // retrieve a new triple ID and set it in the object
                                 if(triple.getId() < 0) {
@@ -2510,10 +2699,12 @@ public class KiWiConnection implements AutoCloseable {
                                 insertTriple.addBatch();
                             }
                         }
-                        insertTriple.executeBatch();
+                        executeBatch(insertTriple);
 
                         tripleBatch.clear();
 
+                        statistics.recordBatchFlush(size, System.nanoTime() - start);
+
                         return null;
                     }
                 });
@@ -2631,6 +2822,7 @@ public class KiWiConnection implements AutoCloseable {
                             Thread.sleep(sleep);
                         } catch (InterruptedException e) {}
                         retries++;
+                        statistics.recordRetry(name);
                         T result = execute(connection, command);
                         retries--;
 
@@ -17,6 +17,12 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.model.rdf.KiWiAnonResource;
+import org.apache.marmotta.kiwi.model.rdf.KiWiLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,17 +30,37 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This class implements a garbage collector for the database that cleans up deleted triples and nodes when they
- * are no longer referenced. It runs from time to time (default: on startup and every hour) and executes
- * a complex SQL query, checking for all tables referencing rows in the triples and nodes tables. References need
- * to be registered by other components via the addTripleTableDependency and addNodeTableDependency methods.
+ * are no longer referenced. It runs from time to time (default: on startup and every hour) and checks for all
+ * tables referencing rows in the triples and nodes tables. References need to be registered by other components
+ * via the addTripleTableDependency and addNodeTableDependency methods.
+ * <p/>
+ * Garbage collection is incremental so that it does not lock the tables of large databases for a long time:
+ * <ul>
+ *     <li>deleted triples are removed in chunks ordered by id, each chunk in a short transaction followed by a
+ *     pause; only triples deleted since the last garbage collection (the watermark stored in the metadata table)
+ *     are considered, every 10th round all deleted triples are checked again</li>
+ *     <li>the nodes of removed triples are removed in the same transaction if they are no longer referenced;
+ *     other unreferenced nodes are found by a sweep over the nodes table that processes a limited number of chunks
+ *     per round and continues where it stopped in the next round</li>
+ *     <li>the consistency check only looks for duplicates of the nodes added since the last check</li>
+ * </ul>
+ * Removed nodes and triples are evicted from the caches right after each chunk has been committed, so that they
+ * are stored again instead of being referenced by their old id when they are used later.
  * <p/>
  * Author: Sebastian Schaffert (sschaffert@apache.org)
  */
@@ -42,16 +68,35 @@ public class KiWiGarbageCollector extends Thread {
 
     private static Logger log = LoggerFactory.getLogger(KiWiGarbageCollector.class);
 
+    // metadata keys of the watermarks
+    private static final String META_TRIPLES_WATERMARK      = "gc.triples.watermark";
+    private static final String META_NODES_SWEEP            = "gc.nodes.sweep";
+    private static final String META_CONSISTENCY_WATERMARK  = "gc.consistency.watermark";
+    private static final String META_CONSISTENCY_PENDING    = "gc.consistency.pending";
+
+    // triples deleted in transactions that were still running when garbage collection started may have an earlier
+    // deletion time than the watermark; the watermark therefore lags behind the start of a garbage collection
+    private static final long WATERMARK_MARGIN = TimeUnit.MILLISECONDS.convert(1L, TimeUnit.HOURS);
+
     private Set<TableDependency> tripleTableDependencies;
     private Set<TableDependency>  nodeTableDependencies;
 
     private long interval = TimeUnit.MILLISECONDS.convert(24L, TimeUnit.HOURS);
 
+    // number of triples or nodes deleted in one transaction
+    private int chunkSize = 1000;
+
+    // pause between two chunks (milliseconds)
+    private long throttle = 100;
+
+    // maximum number of chunks of the nodes sweep per round
+    private int sweepChunks = 100;
+
     private long round = 0;
 
     private KiWiPersistence persistence;
 
-    private boolean shutdown = false;
+    private volatile boolean shutdown = false;
 
     public KiWiGarbageCollector(KiWiPersistence persistence) {
         super("KiWi Garbage Collector");
@@ -77,6 +122,51 @@ public class KiWiGarbageCollector extends Thread {
         this.interval = interval;
     }
 
+    /**
+     * Get the number of triples or nodes deleted in one transaction
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of triples or nodes deleted in one transaction
+     * @param chunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Get the pause between the transactions of a garbage collection (milliseconds)
+     */
+    public long getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Set the pause between the transactions of a garbage collection (milliseconds)
+     * @param throttle
+     */
+    public void setThrottle(long throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Get the maximum number of chunks of the nodes table checked for unreferenced nodes in one garbage collection
+     */
+    public int getSweepChunks() {
+        return sweepChunks;
+    }
+
+    /**
+     * Set the maximum number of chunks of the nodes table checked for unreferenced nodes in one garbage collection
+     * @param sweepChunks
+     */
+    public void setSweepChunks(int sweepChunks) {
+        this.sweepChunks = sweepChunks;
+    }
+
     /**
      * Add information about a dependency of a column in some table to the "triples" table; this information
      * is used when cleaning up unreferenced deleted entries in the triples table. In theory, we could
@@ -101,15 +191,29 @@ public class KiWiGarbageCollector extends Thread {
         nodeTableDependencies.add(new TableDependency(tableName,columnName));
     }
 
+    /**
+     * Check for duplicate nodes among the nodes added since the last check and try to fix them. The watermark of
+     * the check lags one check behind, so that nodes of transactions that were still running during a check are
+     * checked again by the next one.
+     *
+     * @return true if no duplicates were found
+     */
     protected boolean checkConsistency() throws SQLException {
         boolean consistent = true;
 
-        String checkNodeDuplicatesQuery = "SELECT svalue, ntype, count(id) FROM nodes group by svalue, ntype having count(id) > 1";
+        long watermark, latest;
 
-        try(Connection con = persistence.getJDBCConnection()) {
-            PreparedStatement checkNodeDuplicatesStatement = con.prepareStatement(checkNodeDuplicatesQuery);
+        Connection con = persistence.getJDBCConnection();
+        try {
+            watermark = getMetadata(con, META_CONSISTENCY_WATERMARK, -1);
 
-            try(ResultSet result = checkNodeDuplicatesStatement.executeQuery()) {
+            try(PreparedStatement maxNodeId = con.prepareStatement(persistence.getDialect().getStatement("gc.max_node_id"));
+                ResultSet result = maxNodeId.executeQuery()) {
+                latest = result.next() ? result.getLong(1) : -1;
+            }
+
+            try(PreparedStatement checkNodeDuplicatesStatement = prepareConsistencyCheck(con, watermark);
+                ResultSet result = checkNodeDuplicatesStatement.executeQuery()) {
                 if(result.next()) {
                     log.warn("DATABASE INCONSISTENCY: duplicate node entries found, please try to fix the consistency with fixConsistency()!");
                     do {
@@ -121,28 +225,56 @@ public class KiWiGarbageCollector extends Thread {
                     consistent = false;
                 }
             }
-
+            con.commit();
+        } finally {
+            persistence.releaseJDBCConnection(con);
         }
 
+        boolean fixed = consistent;
         if(!consistent) {
             log.warn("DATABASE INCONSISTENCY: attempting to auto-fix inconsistencies where possible");
             try {
-                fixConsistency();
+                fixConsistency(watermark);
+                fixed = true;
             } catch (SQLException ex) {
                 log.error("DATABASE INCONSISTENCY: auto-fixing inconsistencies failed ({})", ex.getMessage());
             }
         }
 
+        // advance the watermark only if all nodes up to it are consistent
+        if(fixed) {
+            con = persistence.getJDBCConnection();
+            try {
+                setMetadata(con, META_CONSISTENCY_WATERMARK, getMetadata(con, META_CONSISTENCY_PENDING, -1));
+                setMetadata(con, META_CONSISTENCY_PENDING, latest);
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+
+                log.warn("SQL error while updating the consistency check watermark: {}", ex.getMessage());
+            } finally {
+                persistence.releaseJDBCConnection(con);
+            }
+        }
+
         return consistent;
     }
 
 
     protected void fixConsistency() throws SQLException {
-        String checkNodeDuplicatesQuery = "SELECT svalue, ntype, count(id), max(id) FROM nodes group by svalue, ntype having count(id) > 1";
-        String getNodeIdsQuery = "SELECT id FROM nodes WHERE svalue = ? AND ntype = ? AND id != ?";
+        fixConsistency(-1);
+    }
 
-        try(Connection con = persistence.getJDBCConnection(true)) {
-            PreparedStatement checkNodeDuplicatesStatement = con.prepareStatement(persistence.getDialect().getStatement("gc.check_consistency"));
+    /**
+     * Fix duplicate nodes by pointing all references to the latest node and removing the other nodes.
+     *
+     * @param watermark only fix duplicates of nodes with an id greater than the watermark, -1 for all nodes
+     */
+    protected void fixConsistency(long watermark) throws SQLException {
+        Connection con = persistence.getJDBCConnection(true);
+        try {
+            List<Long> removed = new ArrayList<>();
+            PreparedStatement checkNodeDuplicatesStatement = prepareConsistencyCheck(con, watermark);
             PreparedStatement getNodeIdsStatement = con.prepareStatement(persistence.getDialect().getStatement("gc.list_node_ids"));
 
             ResultSet result = checkNodeDuplicatesStatement.executeQuery();
@@ -167,7 +299,6 @@ public class KiWiGarbageCollector extends Thread {
                         ids.add(idResult.getLong(1));
                     }
                 }
-                getNodeIdsStatement.close();
 
                 // then we "fix" the triples table by making sure that all subjects, predicates, objects and contexts point to
                 // the latest version only; we use the nodes dependency table for this purpose
@@ -179,6 +310,7 @@ public class KiWiGarbageCollector extends Thread {
                         fixNodeIdsStatement.addBatch();
                     }
                     fixNodeIdsStatement.executeBatch();
+                    fixNodeIdsStatement.close();
                 }
 
                 // finally we clean up all now unused node ids
@@ -190,8 +322,31 @@ public class KiWiGarbageCollector extends Thread {
                 }
                 deleteDuplicatesStatement.executeBatch();
                 deleteDuplicatesStatement.close();
+
+                removed.addAll(ids);
             }
+            result.close();
+            getNodeIdsStatement.close();
             checkNodeDuplicatesStatement.close();
+
+            con.commit();
+
+            evictNodes(removed);
+        } catch (SQLException ex) {
+            con.rollback();
+            throw ex;
+        } finally {
+            persistence.releaseJDBCConnection(con);
+        }
+    }
+
+    private PreparedStatement prepareConsistencyCheck(Connection con, long watermark) throws SQLException {
+        if(watermark < 0) {
+            return con.prepareStatement(persistence.getDialect().getStatement("gc.check_consistency"));
+        } else {
+            PreparedStatement statement = con.prepareStatement(persistence.getDialect().getStatement("gc.check_consistency_since"));
+            statement.setLong(1, watermark);
+            return statement;
         }
     }
 
@@ -201,37 +356,30 @@ public class KiWiGarbageCollector extends Thread {
 
         long start = System.currentTimeMillis();
 
+        // every 10th round (including the first one) check all deleted triples again, e.g. those that were still
+        // referenced by other tables during earlier rounds
+        boolean full = round % 10 == 1;
+
+        int count = 0;
+
         Connection con = persistence.getJDBCConnection(false);
         try {
-            int count = 0;
-
-            // garbage collect triples
+            // garbage collect triples and the nodes they referenced
             try {
-                String gcTripleQuery = buildGCTriplesQuery();
-                PreparedStatement stmtGcTriples = con.prepareStatement(gcTripleQuery);
-                count += stmtGcTriples.executeUpdate();
-                stmtGcTriples.close();
-                con.commit();
+                count += garbageCollectTriples(con, full, start);
             } catch (SQLException ex) {
                 con.rollback();
 
                 log.warn("SQL error while executing garbage collection on triples table: {}", ex.getMessage());
             }
 
-            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
-            if(count > 0 && round % 10 == 1) {
-                // then delete all unconnected nodes
-                try {
-                    String gcNodesQuery = buildGCNodesQuery();
-                    PreparedStatement stmtGcNodes = con.prepareStatement(gcNodesQuery);
-                    count += stmtGcNodes.executeUpdate();
-                    stmtGcNodes.close();
-                    con.commit();
-                } catch (SQLException ex) {
-                    con.rollback();
-
-                    log.warn("SQL error while executing garbage collection on nodes table: {}", ex.getMessage());
-                }
+            // garbage collect other unreferenced nodes, continuing an unfinished sweep or starting a new one
+            try {
+                count += garbageCollectNodes(con, full);
+            } catch (SQLException ex) {
+                con.rollback();
+
+                log.warn("SQL error while executing garbage collection on nodes table: {}", ex.getMessage());
             }
             log.info("... cleaned up {} entries (duration: {} ms)", count, (System.currentTimeMillis()-start));
 
@@ -241,6 +389,226 @@ public class KiWiGarbageCollector extends Thread {
         }
     }
 
+    /**
+     * Delete the deleted triples that are no longer referenced, in chunks ordered by id; in the same transactions,
+     * delete the nodes of these triples that are no longer referenced. On completion, the watermark is set to the
+     * start of this garbage collection (minus a safety margin).
+     */
+    private int garbageCollectTriples(Connection con, boolean full, long start) throws SQLException {
+        long watermark = full ? -1 : getMetadata(con, META_TRIPLES_WATERMARK, -1);
+
+        int count = 0;
+        try(PreparedStatement listTriples = con.prepareStatement(persistence.getDialect().getStatement(watermark < 0 ? "gc.list_deleted_triples" : "gc.list_deleted_triples_since"));
+            PreparedStatement deleteTriple = con.prepareStatement(buildGCQuery("triples", tripleTableDependencies));
+            PreparedStatement deleteNode = con.prepareStatement(buildGCQuery("nodes", nodeTableDependencies))) {
+
+            long position = -1;
+            while(!shutdown) {
+                List<Long> ids = new ArrayList<>(chunkSize);
+                Set<Long> nodes = new LinkedHashSet<>();
+
+                int param = 1;
+                listTriples.clearParameters();
+                if(watermark >= 0) {
+                    listTriples.setTimestamp(param++, new Timestamp(watermark));
+                }
+                listTriples.setLong(param++, position);
+                listTriples.setInt(param, chunkSize);
+                try(ResultSet result = listTriples.executeQuery()) {
+                    while(result.next()) {
+                        ids.add(result.getLong(1));
+                        for(int i = 2; i <= 6; i++) {
+                            long node = result.getLong(i);
+                            if(!result.wasNull()) {
+                                nodes.add(node);
+                            }
+                        }
+                    }
+                }
+                if(ids.isEmpty()) {
+                    break;
+                }
+                position = ids.get(ids.size() - 1);
+
+                List<Long> deletedTriples = delete(deleteTriple, ids, tripleTableDependencies.size());
+                List<Long> deletedNodes = deletedTriples.isEmpty() ? Collections.<Long>emptyList() : delete(deleteNode, nodes, nodeTableDependencies.size());
+                con.commit();
+
+                evictTriples(deletedTriples);
+                evictNodes(deletedNodes);
+
+                int deleted = deletedTriples.size() + deletedNodes.size();
+                count += deleted;
+                log.debug("... garbage collected {} triples and nodes up to triple {}", deleted, position);
+
+                if(ids.size() < chunkSize) {
+                    break;
+                }
+                pause();
+            }
+
+            if(!shutdown) {
+                setMetadata(con, META_TRIPLES_WATERMARK, start - WATERMARK_MARGIN);
+                con.commit();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Delete unreferenced nodes in chunks ordered by id, starting at the position where the last sweep stopped.
+     * A sweep processes at most sweepChunks chunks per round; a new sweep is only started in full rounds.
+     */
+    private int garbageCollectNodes(Connection con, boolean full) throws SQLException {
+        long position = getMetadata(con, META_NODES_SWEEP, -1);
+        if(position < 0 && !full) {
+            return 0;
+        }
+
+        int count = 0;
+        try(PreparedStatement listNodes = con.prepareStatement(persistence.getDialect().getStatement("gc.list_node_ids_after"));
+            PreparedStatement deleteNode = con.prepareStatement(buildGCQuery("nodes", nodeTableDependencies))) {
+
+            for(int chunk = 0; chunk < sweepChunks && !shutdown; chunk++) {
+                List<Long> ids = new ArrayList<>(chunkSize);
+
+                listNodes.clearParameters();
+                listNodes.setLong(1, position);
+                listNodes.setInt(2, chunkSize);
+                try(ResultSet result = listNodes.executeQuery()) {
+                    while(result.next()) {
+                        ids.add(result.getLong(1));
+                    }
+                }
+
+                // the sweep is finished when the end of the table is reached
+                position = ids.size() < chunkSize ? -1 : ids.get(ids.size() - 1);
+
+                List<Long> deleted = delete(deleteNode, ids, nodeTableDependencies.size());
+                setMetadata(con, META_NODES_SWEEP, position);
+                con.commit();
+
+                evictNodes(deleted);
+
+                count += deleted.size();
+                log.debug("... garbage collected {} nodes, sweep position {}", deleted.size(), position);
+
+                if(position < 0) {
+                    break;
+                }
+                pause();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run the garbage collection statement for each of the given ids and return the ids of the deleted rows; if the
+     * driver does not report the result of a statement, the row is assumed to be deleted.
+     */
+    private static List<Long> delete(PreparedStatement statement, Iterable<Long> ids, int dependencies) throws SQLException {
+        List<Long> batch = new ArrayList<>();
+        for(Long id : ids) {
+            // the id is used once for the row itself and once for each dependency check
+            for(int i = 1; i <= dependencies + 1; i++) {
+                statement.setLong(i, id);
+            }
+            statement.addBatch();
+            batch.add(id);
+        }
+        if(batch.isEmpty()) {
+            return batch;
+        }
+
+        List<Long> deleted = new ArrayList<>(batch.size());
+        int[] updated = statement.executeBatch();
+        for(int i = 0; i < updated.length; i++) {
+            if(updated[i] > 0 || updated[i] == Statement.SUCCESS_NO_INFO) {
+                deleted.add(batch.get(i));
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Remove deleted triples from the triple cache.
+     */
+    private void evictTriples(Collection<Long> ids) {
+        if(ids.isEmpty()) {
+            return;
+        }
+        Map<Long, KiWiTriple> tripleCache = persistence.getCacheManager().getTripleCache();
+        for(Long id : ids) {
+            tripleCache.remove(id);
+        }
+    }
+
+    /**
+     * Remove deleted nodes from the node cache and from the caches looking them up by their value. Nodes that are
+     * no longer in the node cache may still be in one of the value caches, which are then searched for their ids.
+     */
+    private void evictNodes(Collection<Long> ids) {
+        if(ids.isEmpty()) {
+            return;
+        }
+        CacheManager cacheManager = persistence.getCacheManager();
+
+        Set<Long> uncached = new HashSet<>();
+        for(Long id : ids) {
+            KiWiNode node = cacheManager.getNodeCache().remove(id);
+            if(node instanceof KiWiUriResource) {
+                evict(cacheManager.getUriCache(), node.stringValue(), id);
+            } else if(node instanceof KiWiAnonResource) {
+                evict(cacheManager.getBNodeCache(), node.stringValue(), id);
+            } else if(node instanceof KiWiLiteral) {
+                evict(cacheManager.getLiteralCache(), KiWiConnection.createLiteralCacheKey((KiWiLiteral) node), id);
+            } else {
+                uncached.add(id);
+            }
+        }
+
+        if(!uncached.isEmpty()) {
+            evictAll(cacheManager.getUriCache(), uncached);
+            evictAll(cacheManager.getBNodeCache(), uncached);
+            evictAll(cacheManager.getLiteralCache(), uncached);
+        }
+    }
+
+    private static <K> void evict(Map<K, ? extends KiWiNode> cache, K key, long id) {
+        KiWiNode cached = cache.get(key);
+        if(cached != null && cached.getId() == id) {
+            cache.remove(key);
+        }
+    }
+
+    private static <K> void evictAll(Map<K, ? extends KiWiNode> cache, Set<Long> ids) {
+        List<K> keys = new ArrayList<>();
+        for(Map.Entry<K, ? extends KiWiNode> entry : cache.entrySet()) {
+            if(ids.contains(entry.getValue().getId())) {
+                keys.add(entry.getKey());
+            }
+        }
+        for(K key : keys) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Pause between two chunks to leave the database to other transactions; returns early on shutdown.
+     */
+    private void pause() {
+        if(throttle > 0) {
+            synchronized (this) {
+                if(!shutdown) {
+                    try {
+                        this.wait(throttle);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }
+        }
+    }
+
 
     /**
      * Run the garbage collector thread. The thread will run garbage collection on startup, and then in a loop wait
@@ -274,7 +642,9 @@ public class KiWiGarbageCollector extends Thread {
                 }
                 started = true;
                 try {
-                    this.wait(interval);
+                    if(!shutdown) {
+                        this.wait(interval);
+                    }
                 } catch (InterruptedException e) {
                 }
             }
@@ -282,71 +652,69 @@ public class KiWiGarbageCollector extends Thread {
     }
 
     public void shutdown() {
+        shutdown = true;
         synchronized (this) {
-            shutdown = true;
             this.notifyAll();
         }
     }
 
-    private String buildGCTriplesQuery() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("DELETE FROM triples WHERE deleted = true");
-
-        if(tripleTableDependencies.size() > 0) {
-            builder.append(" AND NOT EXISTS (");
-
-            Iterator<TableDependency> iterator = tripleTableDependencies.iterator();
-            while (iterator.hasNext()) {
-                TableDependency next = iterator.next();
-
-                builder.append("(");
-                builder.append("SELECT ");
-                builder.append(next.column);
-                builder.append(" FROM ");
-                builder.append(next.table);
-                builder.append(" WHERE ");
-                builder.append(next.column);
-                builder.append(" = triples.id");
-
-                builder.append(")");
-
-                if(iterator.hasNext()) {
-                    builder.append(" UNION ");
+    private long getMetadata(Connection con, String key, long defaultValue) throws SQLException {
+        try(PreparedStatement statement = con.prepareStatement(persistence.getDialect().getStatement("meta.get"))) {
+            statement.setString(1, key);
+            try(ResultSet result = statement.executeQuery()) {
+                if(result.next() && result.getString(1) != null) {
+                    try {
+                        return Long.parseLong(result.getString(1));
+                    } catch (NumberFormatException ex) {
+                        log.warn("invalid garbage collector metadata {}: {}", key, result.getString(1));
+                    }
                 }
             }
-
-            builder.append(")");
         }
-        return builder.toString();
+        return defaultValue;
     }
 
+    private void setMetadata(Connection con, String key, long value) throws SQLException {
+        try(PreparedStatement update = con.prepareStatement(persistence.getDialect().getStatement("meta.update"))) {
+            update.setString(1, Long.toString(value));
+            update.setString(2, key);
+            if(update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try(PreparedStatement insert = con.prepareStatement(persistence.getDialect().getStatement("meta.insert"))) {
+            insert.setString(1, key);
+            insert.setString(2, Long.toString(value));
+            insert.executeUpdate();
+        }
+    }
 
-    private String buildGCNodesQuery() {
+    /**
+     * Build a statement deleting the row with the given id from the table if it is not referenced by any of the
+     * dependencies; the id parameter is repeated for each dependency. Deleted triples are only removed if they are
+     * marked as deleted.
+     */
+    private static String buildGCQuery(String table, Set<TableDependency> dependencies) {
         StringBuilder builder = new StringBuilder();
+        builder.append("DELETE FROM ");
+        builder.append(table);
+        builder.append(" WHERE id = ?");
+        if("triples".equals(table)) {
+            builder.append(" AND deleted = true");
+        }
 
-        if(nodeTableDependencies.size() > 0) {
-            builder.append("DELETE FROM nodes T1 WHERE NOT EXISTS (");
-
-            Iterator<TableDependency> iterator = nodeTableDependencies.iterator();
-            while (iterator.hasNext()) {
-                TableDependency next = iterator.next();
-
-                builder.append("(");
-                builder.append("SELECT ");
-                builder.append(next.column);
-                builder.append(" FROM ");
-                builder.append(next.table);
-                builder.append(" WHERE ");
-                builder.append(next.column);
-                builder.append(" = T1.id");
-
-                builder.append(")");
-
-                if(iterator.hasNext()) {
-                    builder.append(" UNION ");
-                }
-            }
+        Iterator<TableDependency> iterator = dependencies.iterator();
+        while (iterator.hasNext()) {
+            TableDependency next = iterator.next();
 
+            builder.append(" AND NOT EXISTS (");
+            builder.append("SELECT ");
+            builder.append(next.column);
+            builder.append(" FROM ");
+            builder.append(next.table);
+            builder.append(" WHERE ");
+            builder.append(next.column);
+            builder.append(" = ?");
             builder.append(")");
         }
         return builder.toString();
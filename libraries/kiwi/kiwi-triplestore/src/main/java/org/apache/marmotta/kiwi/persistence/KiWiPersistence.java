@@ -23,6 +23,7 @@ import org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.generator.IDGenerator;
 import org.apache.marmotta.kiwi.generator.SnowflakeIDGenerator;
+import org.apache.marmotta.kiwi.jmx.KiWiStatistics;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.tomcat.jdbc.pool.DataSource;
@@ -30,8 +31,12 @@ import org.apache.tomcat.jdbc.pool.PoolProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Set;
@@ -72,6 +77,12 @@ public class KiWiPersistence {
 
     private IDGenerator    idGenerator;
 
+    /**
+     * Statistics of the connections of this persistence, published in JMX if enabled in the configuration
+     */
+    private KiWiStatistics statistics;
+
+    private ObjectName     statisticsName;
 
     /**
      * This lock allows setting the backend into maintenance mode (by locking the write lock), which essentially
@@ -90,6 +101,7 @@ public class KiWiPersistence {
     public KiWiPersistence(KiWiConfiguration configuration) {
         this.configuration = configuration;
         this.maintenance = false;
+        this.statistics = new KiWiStatistics();
     }
 
 
@@ -113,6 +125,10 @@ public class KiWiPersistence {
 
         log.info("database key generation strategy: Twitter Snowflake");
 
+        if(configuration.isJmxEnabled()) {
+            registerStatistics();
+        }
+
         //garbageCollector.start();
 
         initialized = true;
@@ -123,6 +139,44 @@ public class KiWiPersistence {
         return configuration.getDialect();
     }
 
+    /**
+     * Return the statistics collected by the connections of this persistence. Statistics are always collected; the
+     * configuration only determines whether they are published in JMX.
+     */
+    public KiWiStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Register the statistics with the platform MBean server as
+     * org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=[configuration name]
+     */
+    private void registerStatistics() {
+        try {
+            ObjectName name = new ObjectName("org.apache.marmotta.kiwi.jmx:type=KiWiStatisticsMBean,name=" + ObjectName.quote(String.valueOf(configuration.getName())));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(name)) {
+                log.warn("KiWi statistics for {} are already registered in JMX, not publishing statistics of this persistence", configuration.getName());
+            } else {
+                server.registerMBean(statistics, name);
+                statisticsName = name;
+            }
+        } catch (JMException e) {
+            log.warn("could not register KiWi statistics in JMX: {}", e.getMessage());
+        }
+    }
+
+    private void unregisterStatistics() {
+        if(statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                log.warn("could not unregister KiWi statistics from JMX: {}", e.getMessage());
+            }
+            statisticsName = null;
+        }
+    }
+
     public CacheManager getCacheManager() {
         return cacheManager;
     }
@@ -372,6 +426,7 @@ public class KiWiPersistence {
      * @throws SQLException
      */
     public Connection getJDBCConnection(boolean maintenance) throws SQLException {
+        long start = System.nanoTime();
         synchronized (this) {
             if(this.maintenance) {
                 try {
@@ -387,6 +442,8 @@ public class KiWiPersistence {
             Connection conn = connectionPool.getConnection();
             conn.setAutoCommit(false);
 
+            statistics.recordConnectionWait(System.nanoTime() - start);
+
             return conn;
         } else {
             throw new SQLException("connection pool is closed, database connections not available");
@@ -450,6 +507,8 @@ public class KiWiPersistence {
         log.info("shutting down KiWi persistence ...");
         initialized = false;
 
+        unregisterStatistics();
+
         idGenerator.shutdown();
         garbageCollector.shutdown();
         cacheManager.shutdown();
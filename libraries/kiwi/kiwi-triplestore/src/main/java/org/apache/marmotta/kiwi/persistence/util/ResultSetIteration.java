@@ -18,6 +18,9 @@
 package org.apache.marmotta.kiwi.persistence.util;
 
 import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -32,6 +35,8 @@ import java.util.NoSuchElementException;
  */
 public class ResultSetIteration<E> implements CloseableIteration<E,SQLException> {
 
+    private static Logger log = LoggerFactory.getLogger(ResultSetIteration.class);
+
     /**
      * The result set wrapped by this iteration
      */
@@ -79,6 +84,21 @@ public class ResultSetIteration<E> implements CloseableIteration<E,SQLException>
         }
     }
 
+    /**
+     * Cancels the statement that produced the result set (in case the database is still sending results)
+     * and closes the iteration. Called when the thread consuming the results has been interrupted, e.g.
+     * because a query timed out. The statement itself is only closed if it is owned by the iteration,
+     * since the connection caches and reuses its prepared statements.
+     */
+    private void cancel() throws SQLException {
+        try {
+            result.getStatement().cancel();
+        } catch (SQLException e) {
+            log.debug("could not cancel statement of interrupted result iteration: {}", e.getMessage());
+        }
+        close();
+    }
+
     /**
      * Returns <tt>true</tt> if the iteration has more elements. (In other
      * words, returns <tt>true</tt> if {@link #next} would return an element
@@ -91,6 +111,9 @@ public class ResultSetIteration<E> implements CloseableIteration<E,SQLException>
     public boolean hasNext() throws SQLException {
         if(closed) {
             return false;
+        } else if(Thread.currentThread().isInterrupted()) {
+            cancel();
+            throw new ResultInterruptedException("retrieving results has been interrupted");
         } else if(moved) {
             return true;
         } else if(result.next()) {
@@ -687,6 +687,25 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         }
     }
 
+    /**
+     * Return a page of the resources contained in this repository matching the given prefix, ordered by their URI.
+     *
+     * @return
+     */
+    @Override
+    public RepositoryResult<URI> getResources(String prefix, String after, int offset, int limit) throws RepositoryException {
+        try {
+            return new RepositoryResult<URI>(new ExceptionConvertingIteration<URI,RepositoryException>(databaseConnection.listResources(prefix, after, offset, limit)) {
+                @Override
+                protected RepositoryException convert(Exception e) {
+                    return new RepositoryException(e);
+                }
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     /**
      * Return the Sesame URI with the given uri identifier if it exists, or null if it does not exist.
      *
@@ -76,6 +76,7 @@ CREATE INDEX idx_reg_tx ON registry(txId);
 
 -- Indexes for accessing nodes and triples efficiently
 CREATE INDEX idx_node_content ON nodes USING hash(svalue);
+CREATE INDEX idx_node_uri ON nodes(svalue COLLATE "C") WHERE ntype = 'uri';
 CREATE INDEX idx_node_dcontent ON nodes(dvalue) WHERE dvalue IS NOT NULL;
 CREATE INDEX idx_node_icontent ON nodes(ivalue) WHERE ivalue IS NOT NULL;
 CREATE INDEX idx_node_tcontent ON nodes(tvalue) WHERE tvalue IS NOT NULL;
@@ -84,6 +85,7 @@ CREATE INDEX idx_literal_lang ON nodes(lang);
 CREATE INDEX idx_triples_p ON triples(predicate) WHERE deleted = false;
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object) WHERE deleted = false;
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object) WHERE deleted = false;
+CREATE INDEX idx_triples_deleted ON triples(id) WHERE deleted = true;
 
 
 CREATE INDEX idx_namespaces_uri ON namespaces(uri);
@@ -103,5 +105,5 @@ DO INSTEAD NOTHING;
 -- a function for cleaning up table rows without incoming references
 
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','6');
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',to_char(now(),'yyyy-MM-DD HH:mm:ss TZ') );
\ No newline at end of file
@@ -13,11 +13,13 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 DROP INDEX IF EXISTS idx_node_content;
+DROP INDEX IF EXISTS idx_node_uri;
 DROP INDEX IF EXISTS idx_literal_lang;
 
 DROP INDEX IF EXISTS idx_triples_p;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
+DROP INDEX IF EXISTS idx_triples_deleted;
 
 DROP INDEX IF EXISTS idx_namespaces_uri;
 DROP INDEX IF EXISTS idx_namespaces_prefix;
@@ -1070,6 +1070,88 @@ public class PersistenceTest {
 
     }
 
+    /**
+     * Test that the garbage collector removes deleted triples and the nodes only they referenced, and that a second
+     * (incremental) run does not find anything to clean up
+     */
+    @Test
+    public void testGarbageCollect() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred_1   = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource pred_2   = new KiWiUriResource("http://localhost/predicate/P2");
+            KiWiUriResource object_1 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource object_2 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred_1);
+            connection.storeNode(pred_2);
+            connection.storeNode(object_1);
+            connection.storeNode(object_2);
+
+            KiWiTriple triple1 = new KiWiTriple(subject,pred_1,object_1,null);
+            KiWiTriple triple2 = new KiWiTriple(subject,pred_2,object_2,null);
+
+            connection.storeTriple(triple1);
+            connection.storeTriple(triple2);
+            connection.commit();
+
+            connection.deleteTriple(triple1);
+            connection.commit();
+
+            persistence.garbageCollect();
+
+            Assert.assertFalse(exists(connection, "triples", triple1.getId()));
+            Assert.assertTrue(exists(connection, "triples", triple2.getId()));
+            Assert.assertFalse(exists(connection, "nodes", pred_1.getId()));
+            Assert.assertFalse(exists(connection, "nodes", object_1.getId()));
+            Assert.assertTrue(exists(connection, "nodes", subject.getId()));
+            Assert.assertTrue(exists(connection, "nodes", object_2.getId()));
+
+            // collected nodes are no longer served from the caches, so using them again stores new nodes
+            Assert.assertNull(connection.loadNodeById(pred_1.getId()));
+            Assert.assertNull(connection.loadUriResource(pred_1.stringValue()));
+
+            KiWiUriResource pred_1_new = new KiWiUriResource(pred_1.stringValue());
+            connection.storeNode(pred_1_new);
+            KiWiTriple triple3 = new KiWiTriple(subject,pred_1_new,object_2,null);
+            connection.storeTriple(triple3);
+            connection.commit();
+
+            Assert.assertNotEquals(pred_1.getId(), pred_1_new.getId());
+            Assert.assertTrue(exists(connection, "nodes", pred_1_new.getId()));
+            Assert.assertEquals(pred_1_new, connection.loadUriResource(pred_1.stringValue()));
+            Assert.assertEquals(triple3, connection.loadTripleById(triple3.getId()));
+
+            // nothing left to clean up in the next round
+            persistence.garbageCollect();
+            Assert.assertTrue(exists(connection, "triples", triple2.getId()));
+
+            Assert.assertTrue(persistence.checkConsistency());
+            Assert.assertTrue(persistence.checkConsistency());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static boolean exists(KiWiConnection connection, String table, long id) throws SQLException {
+        PreparedStatement stmt = connection.getJDBCConnection().prepareStatement("SELECT id FROM " + table + " WHERE id = ?");
+        try {
+            stmt.setLong(1, id);
+            ResultSet result = stmt.executeQuery();
+            try {
+                return result.next();
+            } finally {
+                result.close();
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
     // TODO: test namespaces
     @Test
     public void testStoreNamespaces() throws SQLException {
@@ -48,6 +48,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.List;
 
@@ -156,6 +158,61 @@ public class RepositoryTest {
         log.info("QUERY EVALUATION: {} ms", end-start);
     }
 
+    /**
+     * Test listing resources by prefix in pages, selected by offset and by the last URI of the previous page
+     */
+    @Test
+    public void testListResourcesByPrefixPaging() throws RepositoryException {
+        final String prefix = "http://localhost/page_test/";
+
+        List<String> expected = new ArrayList<>();
+        RepositoryConnection connection = repository.getConnection();
+        try {
+            URI predicate = connection.getValueFactory().createURI("http://localhost/resource/p");
+            for(int i = 0; i < 25; i++) {
+                String uri = prefix + RandomStringUtils.randomAlphanumeric(8);
+                expected.add(uri);
+                connection.add(connection.getValueFactory().createURI(uri), predicate, connection.getValueFactory().createLiteral(i));
+            }
+            // '_' must not be a wildcard
+            connection.add(connection.getValueFactory().createURI("http://localhost/pageXtest/other"), predicate, connection.getValueFactory().createLiteral(0));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        Collections.sort(expected);
+
+        connection = repository.getConnection();
+        try {
+            List<String> byOffset = new ArrayList<>(), byKey = new ArrayList<>();
+            String after = null;
+            for(int page = 0; page < 3; page++) {
+                List<String> keyPage = toStrings(ResourceUtils.listResourcesByPrefix(connection, prefix, after, 0, 10));
+                byKey.addAll(keyPage);
+                after = keyPage.isEmpty() ? after : keyPage.get(keyPage.size() - 1);
+
+                byOffset.addAll(toStrings(ResourceUtils.listResourcesByPrefix(connection, prefix, null, page * 10, 10)));
+            }
+            Assert.assertEquals(expected, byKey);
+            Assert.assertEquals(expected, byOffset);
+
+            Assert.assertEquals(expected.subList(12, 25), toStrings(ResourceUtils.listResourcesByPrefix(connection, prefix, expected.get(10), 1, 0)));
+            Assert.assertEquals(expected.size(), toStrings(ResourceUtils.listResourcesByPrefix(connection, prefix)).size());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static List<String> toStrings(Iterable<? extends Resource> resources) {
+        List<String> result = new ArrayList<>();
+        for(Resource r : resources) {
+            result.add(r.stringValue());
+        }
+        return result;
+    }
+
     // TODO: test delete, test query,
 
     /**
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.test.jmx;
+
+import org.apache.marmotta.kiwi.jmx.KiWiStatistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test the counters and histograms of the KiWi statistics, including concurrent recording.
+ */
+public class KiWiStatisticsTest {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiStatisticsTest.class);
+
+    private KiWiStatistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = new KiWiStatistics();
+    }
+
+    @Test
+    public void testStatements() {
+        for(int i = 1; i <= 100; i++) {
+            statistics.recordStatement("load.node_by_id", i * 1000000L);
+        }
+        statistics.recordStatement("store.triple", 1000000L);
+
+        Assert.assertArrayEquals(new String[] {"load.node_by_id", "store.triple"}, statistics.getStatementKeys());
+        Assert.assertEquals(100, statistics.getStatementCount("load.node_by_id"));
+        Assert.assertEquals(0, statistics.getStatementCount("load.triple_by_id"));
+        Assert.assertEquals(50.5, statistics.getStatementMeanTime("load.node_by_id"), 0.001);
+        Assert.assertEquals(100.0, statistics.getStatementMaxTime("load.node_by_id"), 0.001);
+
+        // percentiles are upper bounds within a factor of two
+        double median = statistics.getStatementTimePercentile("load.node_by_id", 50);
+        Assert.assertTrue("median was " + median, median >= 50.0 && median <= 100.0);
+        Assert.assertEquals(100.0, statistics.getStatementTimePercentile("load.node_by_id", 100), 0.001);
+
+        Assert.assertEquals(2, statistics.getStatementSummary().length);
+    }
+
+    @Test
+    public void testCachesCommitsAndRetries() {
+        statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, true);
+        statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, true);
+        statistics.recordCacheLookup(KiWiStatistics.Cache.NODE, false);
+        statistics.recordCacheLookup(KiWiStatistics.Cache.LITERAL, false);
+
+        statistics.recordBatchFlush(1000, 2000000L);
+        statistics.recordBatchFlush(500, 1000000L);
+        statistics.recordCommit(1000000L);
+        statistics.recordRollback();
+        statistics.recordRetry("COMMIT");
+        statistics.recordRetry("FLUSH BATCH");
+        statistics.recordRetry("COMMIT");
+
+        Assert.assertEquals(2, statistics.getNodeCacheHits());
+        Assert.assertEquals(1, statistics.getNodeCacheMisses());
+        Assert.assertEquals(0, statistics.getLiteralCacheHits());
+        Assert.assertEquals(1, statistics.getLiteralCacheMisses());
+        Assert.assertEquals(2, statistics.getBatchFlushes());
+        Assert.assertEquals(1500, statistics.getBatchFlushedTriples());
+        Assert.assertEquals(750.0, statistics.getBatchFlushMeanSize(), 0.001);
+        Assert.assertEquals(1.5, statistics.getBatchFlushMeanTime(), 0.001);
+        Assert.assertEquals(1, statistics.getCommits());
+        Assert.assertEquals(1, statistics.getRollbacks());
+        Assert.assertEquals(3, statistics.getRetries());
+        Assert.assertEquals(2, statistics.getRetries("COMMIT"));
+
+        statistics.reset();
+        Assert.assertEquals(0, statistics.getNodeCacheHits());
+        Assert.assertEquals(0, statistics.getBatchFlushes());
+        Assert.assertEquals(0, statistics.getRetries());
+    }
+
+    /**
+     * Record from several threads at the same time and check that no update is lost.
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final int threads = 8, iterations = 100000;
+
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < iterations; i++) {
+                        statistics.recordCacheLookup(KiWiStatistics.Cache.TRIPLE, i % 2 == 0);
+                        statistics.recordStatement("load.triple_by_id", 1000L);
+                    }
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for(Thread worker : workers) {
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        log.info("recorded {} statistics in {} ms", 2L * threads * iterations, System.currentTimeMillis() - start);
+
+        Assert.assertEquals(threads * iterations / 2, statistics.getTripleCacheHits());
+        Assert.assertEquals(threads * iterations / 2, statistics.getTripleCacheMisses());
+        Assert.assertEquals(threads * iterations, statistics.getStatementCount("load.triple_by_id"));
+    }
+}
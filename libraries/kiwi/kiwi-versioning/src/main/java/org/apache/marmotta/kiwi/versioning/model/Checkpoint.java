@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.versioning.model;
+
+import java.util.Date;
+
+/**
+ * In-memory representation of a materialized snapshot checkpoint. A checkpoint records the set of triples that
+ * were active in the triple store at its creation date, so that snapshots after this date only need to look at
+ * the checkpoint and the triples created or deleted since then instead of the full history.
+ */
+public class Checkpoint {
+
+    private long id = -1L;
+
+    private Date createdAt;
+
+    private long tripleCount;
+
+    public Checkpoint() {
+    }
+
+    public Checkpoint(long id, Date createdAt, long tripleCount) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.tripleCount = tripleCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getTripleCount() {
+        return tripleCount;
+    }
+
+    public void setTripleCount(long tripleCount) {
+        this.tripleCount = tripleCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{id=" + id + ", createdAt=" + createdAt + ", tripleCount=" + tripleCount + '}';
+    }
+}
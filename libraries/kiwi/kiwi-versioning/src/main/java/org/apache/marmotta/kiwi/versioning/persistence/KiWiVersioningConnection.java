@@ -18,6 +18,7 @@
 package org.apache.marmotta.kiwi.versioning.persistence;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import info.aduna.iteration.CloseableIteration;
 import info.aduna.iteration.EmptyIteration;
 import info.aduna.iteration.ExceptionConvertingIteration;
@@ -31,6 +32,7 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
 import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
 import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
+import org.apache.marmotta.kiwi.versioning.model.Checkpoint;
 import org.apache.marmotta.kiwi.versioning.model.Version;
 import org.openrdf.model.Statement;
 import org.openrdf.repository.RepositoryException;
@@ -42,7 +44,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Add file description here!
@@ -90,7 +96,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
                 insertVersion.setObject(2, null);
             }
             insertVersion.setTimestamp(3, new Timestamp(data.getCommitTime().getTime()));
-            insertVersion.executeUpdate();
+            executeUpdate(insertVersion);
         }
 
         // then add join table entries for every added triple
@@ -107,7 +113,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
                     log.warn("cannot create version with statements that are not instances of KiWiTriple!");
                 }
             }
-            insertAdded.executeBatch(); // if this is a performance issue, we could also run it every 1000 inserts or so
+            executeBatch(insertAdded); // if this is a performance issue, we could also run it every 1000 inserts or so
         }
 
         // then add join table entries for every removed triple
@@ -124,7 +130,26 @@ public class KiWiVersioningConnection extends KiWiConnection {
                     log.warn("cannot create version with statements that are not instances of KiWiTriple!");
                 }
             }
-            insertRemoved.executeBatch(); // if this is a performance issue, we could also run it every 1000 inserts or so
+            executeBatch(insertRemoved); // if this is a performance issue, we could also run it every 1000 inserts or so
+        }
+
+        // then add delta index entries for every resource used as subject in an added or removed triple, so that
+        // listing the versions of a resource does not need to go through the join tables and the triples table
+        Set<Long> resources = new HashSet<>();
+        for(Statement stmt : Iterables.concat(data.getAddedTriples(), data.getRemovedTriples())) {
+            if(stmt instanceof KiWiTriple) {
+                resources.add(((KiWiTriple) stmt).getSubject().getId());
+            }
+        }
+        PreparedStatement insertResource = getPreparedStatement("store.version_resource");
+        synchronized (insertResource) {
+            insertResource.clearParameters();
+            for(Long resource : resources) {
+                insertResource.setLong(1,data.getId());
+                insertResource.setLong(2,resource);
+                insertResource.addBatch();
+            }
+            executeBatch(insertResource);
         }
 
     }
@@ -144,17 +169,22 @@ public class KiWiVersioningConnection extends KiWiConnection {
         PreparedStatement removeAdded = getPreparedStatement("delete.version_added");
         removeAdded.clearParameters();
         removeAdded.setLong(1, id);
-        removeAdded.executeUpdate();
+        executeUpdate(removeAdded);
 
         PreparedStatement removeRemoved = getPreparedStatement("delete.version_removed");
         removeRemoved.clearParameters();
         removeRemoved.setLong(1, id);
-        removeRemoved.executeUpdate();
+        executeUpdate(removeRemoved);
+
+        PreparedStatement removeResources = getPreparedStatement("delete.version_resources");
+        removeResources.clearParameters();
+        removeResources.setLong(1, id);
+        executeUpdate(removeResources);
 
         PreparedStatement removeVersion = getPreparedStatement("delete.version");
         removeVersion.clearParameters();
         removeVersion.setLong(1, id);
-        removeVersion.executeUpdate();
+        executeUpdate(removeVersion);
 
     }
 
@@ -188,6 +218,156 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
 
 
+    /**
+     * Create a materialized checkpoint of the triple store at the given date. The checkpoint stores the ids of all
+     * triples that are active at this date, so that later snapshot queries only need to consider the checkpoint and
+     * the triples that have been created or deleted since then.
+     * <p/>
+     * Note that creating a checkpoint copies one row per active triple and should therefore only be carried out
+     * periodically (see {@link org.apache.marmotta.kiwi.versioning.sail.KiWiVersioningSail#setCheckpointInterval(int)}).
+     *
+     * @param date the date of the checkpoint
+     * @return the newly created checkpoint
+     * @throws SQLException
+     */
+    public Checkpoint createCheckpoint(Date date) throws SQLException {
+        requireJDBCConnection();
+
+        Checkpoint checkpoint = new Checkpoint(getNextSequence(), date, 0);
+
+        PreparedStatement insertCheckpoint = getPreparedStatement("store.checkpoint");
+        synchronized (insertCheckpoint) {
+            insertCheckpoint.clearParameters();
+            insertCheckpoint.setLong(1, checkpoint.getId());
+            insertCheckpoint.setTimestamp(2, new Timestamp(date.getTime()));
+            insertCheckpoint.setLong(3, 0);
+            executeUpdate(insertCheckpoint);
+        }
+
+        PreparedStatement insertTriples = getPreparedStatement("store.checkpoint_triples");
+        synchronized (insertTriples) {
+            insertTriples.clearParameters();
+            insertTriples.setLong(1, checkpoint.getId());
+            insertTriples.setTimestamp(2, new Timestamp(date.getTime()));
+            insertTriples.setTimestamp(3, new Timestamp(date.getTime()));
+            checkpoint.setTripleCount(executeUpdate(insertTriples));
+        }
+
+        PreparedStatement updateSize = getPreparedStatement("update.checkpoint_size");
+        synchronized (updateSize) {
+            updateSize.clearParameters();
+            updateSize.setLong(1, checkpoint.getTripleCount());
+            updateSize.setLong(2, checkpoint.getId());
+            executeUpdate(updateSize);
+        }
+
+        log.info("created versioning checkpoint at {} ({} triples)", date, checkpoint.getTripleCount());
+
+        return checkpoint;
+    }
+
+    /**
+     * Remove the checkpoint with the given id. Snapshots are still answered correctly afterwards, using an
+     * older checkpoint or the full triple history instead.
+     *
+     * @param id the database id of the checkpoint
+     * @throws SQLException
+     */
+    public void removeCheckpoint(long id) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement removeTriples = getPreparedStatement("delete.checkpoint_triples");
+        removeTriples.clearParameters();
+        removeTriples.setLong(1, id);
+        executeUpdate(removeTriples);
+
+        PreparedStatement removeCheckpoint = getPreparedStatement("delete.checkpoint");
+        removeCheckpoint.clearParameters();
+        removeCheckpoint.setLong(1, id);
+        executeUpdate(removeCheckpoint);
+    }
+
+    /**
+     * Remove all but the given number of most recent checkpoints.
+     *
+     * @param keep the number of checkpoints to keep
+     * @return the number of removed checkpoints
+     * @throws SQLException
+     */
+    public int removeOldCheckpoints(int keep) throws SQLException {
+        requireJDBCConnection();
+
+        List<Long> ids = new ArrayList<>();
+        PreparedStatement queryCheckpoints = getPreparedStatement("load.checkpoint_ids");
+        synchronized (queryCheckpoints) {
+            queryCheckpoints.clearParameters();
+
+            ResultSet r = executeQuery(queryCheckpoints);
+            try {
+                while(r.next()) {
+                    ids.add(r.getLong("id"));
+                }
+            } finally {
+                r.close();
+            }
+        }
+
+        int removed = 0;
+        for(Long id : ids.subList(Math.min(keep, ids.size()), ids.size())) {
+            removeCheckpoint(id);
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Return the most recent checkpoint created at or before the given date, or null if no such checkpoint exists.
+     *
+     * @param date the reference date
+     * @return the latest checkpoint before the date, or null
+     * @throws SQLException
+     */
+    public Checkpoint getLatestCheckpoint(Date date) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement queryCheckpoint = getPreparedStatement("load.checkpoint_latest");
+        synchronized (queryCheckpoint) {
+            queryCheckpoint.clearParameters();
+            queryCheckpoint.setTimestamp(1, new Timestamp(date.getTime()));
+            queryCheckpoint.setMaxRows(1);
+
+            ResultSet r = executeQuery(queryCheckpoint);
+            try {
+                if(r.next()) {
+                    return new Checkpoint(r.getLong("id"), new Date(r.getTimestamp("createdAt").getTime()), r.getLong("triple_count"));
+                } else {
+                    return null;
+                }
+            } finally {
+                r.close();
+            }
+        }
+    }
+
+    /**
+     * Count the number of versions that have been created after the given date.
+     *
+     * @param date the reference date
+     * @return number of versions created after the date
+     * @throws SQLException
+     */
+    public long countVersionsSince(Date date) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement queryCount = getPreparedStatement("load.versions_since_count");
+        synchronized (queryCount) {
+            queryCount.clearParameters();
+            queryCount.setTimestamp(1, new Timestamp(date.getTime()));
+            return queryCount(queryCount);
+        }
+    }
+
+
     /**
      * Retrieve a version by its id. If the version does not exist, returns null
      *
@@ -202,7 +382,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
         queryVersions.setLong(1,id);
         queryVersions.setMaxRows(1);
 
-        ResultSet r = queryVersions.executeQuery();
+        ResultSet r = executeQuery(queryVersions);
         try {
             if(r.next()) {
                 return constructVersionFromDatabase(r);
@@ -233,7 +413,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
             queryVersions.setTimestamp(2, new Timestamp(date.getTime()));
             queryVersions.setMaxRows(1);
 
-            ResultSet r = queryVersions.executeQuery();
+            ResultSet r = executeQuery(queryVersions);
             try {
                 if(r.next()) {
                     return constructVersionFromDatabase(r);
@@ -280,7 +460,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
         PreparedStatement queryVersions = getPreparedStatement("load.versions");
 
-        final ResultSet result = queryVersions.executeQuery();
+        final ResultSet result = executeQuery(queryVersions);
         return new ResultSetIteration<Version>(result, new ResultTransformerFunction<Version>() {
             @Override
             public Version apply(ResultSet row) throws SQLException {
@@ -326,7 +506,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
             PreparedStatement queryVersions = getPreparedStatement("load.versions_by_resource");
             queryVersions.setLong(1,r.getId());
 
-            final ResultSet result = queryVersions.executeQuery();
+            final ResultSet result = executeQuery(queryVersions);
             return new ResultSetIteration<Version>(result, new ResultTransformerFunction<Version>() {
                 @Override
                 public Version apply(ResultSet row) throws SQLException {
@@ -375,7 +555,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
             queryVersions.setTimestamp(1, new Timestamp(from.getTime()));
             queryVersions.setTimestamp(2, new Timestamp(to.getTime()));
 
-            final ResultSet result = queryVersions.executeQuery();
+            final ResultSet result = executeQuery(queryVersions);
             return new ResultSetIteration<Version>(result, new ResultTransformerFunction<Version>() {
                 @Override
                 public Version apply(ResultSet row) throws SQLException {
@@ -427,7 +607,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
                 queryVersions.setTimestamp(2, new Timestamp(from.getTime()));
                 queryVersions.setTimestamp(3, new Timestamp(to.getTime()));
 
-                final ResultSet result = queryVersions.executeQuery();
+                final ResultSet result = executeQuery(queryVersions);
                 return new ResultSetIteration<Version>(result, new ResultTransformerFunction<Version>() {
                     @Override
                     public Version apply(ResultSet row) throws SQLException {
@@ -462,7 +642,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
         synchronized (queryAdded) {
             queryAdded.clearParameters();
             queryAdded.setLong(1,result.getId());
-            ResultSet addedRow = queryAdded.executeQuery();
+            ResultSet addedRow = executeQuery(queryAdded);
             try {
                 while(addedRow.next()) {
                     result.addTriple(loadTripleById(addedRow.getLong("triple_id")));
@@ -476,7 +656,7 @@ public class KiWiVersioningConnection extends KiWiConnection {
         synchronized (queryRemoved) {
             queryRemoved.clearParameters();
             queryRemoved.setLong(1,result.getId());
-            ResultSet removedRow = queryRemoved.executeQuery();
+            ResultSet removedRow = executeQuery(queryRemoved);
             try {
                 while(removedRow.next()) {
                     result.removeTriple(loadTripleById(removedRow.getLong("triple_id")));
@@ -553,34 +733,44 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
         requireJDBCConnection();
 
+        Checkpoint checkpoint = getLatestCheckpoint(snapshotDate);
+
         // otherwise we need to create an appropriate SQL query and execute it, the repository result will be read-only
         // and only allow forward iteration, so we can limit the query using the respective flags
-        PreparedStatement query = connection.prepareStatement(
-                constructTripleQuerySnapshot(subject, predicate, object, context, inferred, snapshotDate),
-                ResultSet.TYPE_FORWARD_ONLY,
-                ResultSet.CONCUR_READ_ONLY
-        );
-        query.clearParameters();
-
-        // set query parameters
-        query.setTimestamp(1, new Timestamp(snapshotDate.getTime()));
-        query.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
-
-        int position = 3;
-        if(subject != null) {
-            query.setLong(position++, subject.getId());
-        }
-        if(predicate != null) {
-            query.setLong(position++, predicate.getId());
-        }
-        if(object != null) {
-            query.setLong(position++, object.getId());
-        }
-        if(context != null) {
-            query.setLong(position++, context.getId());
+        PreparedStatement query;
+        if(checkpoint != null) {
+            query = connection.prepareStatement(
+                    constructTripleQueryCheckpoint(subject, predicate, object, context, inferred),
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+            query.clearParameters();
+
+            // triples from the checkpoint that have not been deleted until the snapshot date
+            query.setLong(1, checkpoint.getId());
+            query.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            int position = setTriplePatternParameters(query, 3, subject, predicate, object, context);
+
+            // triples created between the checkpoint and the snapshot date
+            query.setTimestamp(position++, new Timestamp(checkpoint.getCreatedAt().getTime()));
+            query.setTimestamp(position++, new Timestamp(snapshotDate.getTime()));
+            query.setTimestamp(position++, new Timestamp(snapshotDate.getTime()));
+            setTriplePatternParameters(query, position, subject, predicate, object, context);
+        } else {
+            query = connection.prepareStatement(
+                    constructTripleQuerySnapshot(subject, predicate, object, context, inferred, snapshotDate),
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+            query.clearParameters();
+
+            // set query parameters
+            query.setTimestamp(1, new Timestamp(snapshotDate.getTime()));
+            query.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            setTriplePatternParameters(query, 3, subject, predicate, object, context);
         }
 
-        final ResultSet result = query.executeQuery();
+        final ResultSet result = executeQuery(query);
 
 
         return new ResultSetIteration<Statement>(result, true, new ResultTransformerFunction<Statement>() {
@@ -625,23 +815,116 @@ public class KiWiVersioningConnection extends KiWiConnection {
     }
 
     /**
-     * Count all non-deleted triples in the triple store at the given snapshot date
+     * Set the parameters of the triple pattern for the bound positions, starting at the given position.
+     *
+     * @return the next free parameter position
+     */
+    private int setTriplePatternParameters(PreparedStatement query, int position, KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context) throws SQLException {
+        if(subject != null) {
+            query.setLong(position++, subject.getId());
+        }
+        if(predicate != null) {
+            query.setLong(position++, predicate.getId());
+        }
+        if(object != null) {
+            query.setLong(position++, object.getId());
+        }
+        if(context != null) {
+            query.setLong(position++, context.getId());
+        }
+        return position;
+    }
+
+    /**
+     * Construct the SQL query string for a snapshot based on a materialized checkpoint. The query is the union
+     * of the checkpoint triples not deleted until the snapshot date and the triples created between the
+     * checkpoint and the snapshot date. Both parts are disjoint, because all checkpoint triples have been created
+     * before the checkpoint date.
+     *
+     * @param subject    the subject to query for, or null for a wildcard query
+     * @param predicate  the predicate to query for, or null for a wildcard query
+     * @param object     the object to query for, or null for a wildcard query
+     * @param context    the context to query for, or null for a wildcard query
+     * @param inferred   if true, the result will also contain triples inferred by the reasoner, if false not
+     * @return an SQL query string representing the triple pattern
+     */
+    protected String constructTripleQueryCheckpoint(KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context, boolean inferred) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("SELECT T.id,T.subject,T.predicate,T.object,T.context,T.deleted,T.inferred,T.creator,T.createdAt,T.deletedAt");
+        builder.append(" FROM triples T, versions_checkpoint_triples C");
+        builder.append(" WHERE C.checkpoint_id = ? AND T.id = C.triple_id AND (T.deleted = false OR T.deletedAt > ?)");
+        appendTriplePattern(builder, subject, predicate, object, context, inferred);
+        builder.append(" UNION ALL ");
+        builder.append("SELECT T.id,T.subject,T.predicate,T.object,T.context,T.deleted,T.inferred,T.creator,T.createdAt,T.deletedAt");
+        builder.append(" FROM triples T");
+        builder.append(" WHERE T.createdAt > ? AND T.createdAt <= ? AND (T.deleted = false OR T.deletedAt > ?)");
+        appendTriplePattern(builder, subject, predicate, object, context, inferred);
+        return builder.toString();
+    }
+
+    private void appendTriplePattern(StringBuilder builder, KiWiResource subject, KiWiUriResource predicate, KiWiNode object, KiWiResource context, boolean inferred) {
+        if(subject != null) {
+            builder.append(" AND T.subject = ?");
+        }
+        if(predicate != null) {
+            builder.append(" AND T.predicate = ?");
+        }
+        if(object != null) {
+            builder.append(" AND T.object = ?");
+        }
+        if(context != null) {
+            builder.append(" AND T.context = ?");
+        }
+        if(!inferred) {
+            builder.append(" AND T.inferred = false");
+        }
+    }
+
+    /**
+     * Count all non-deleted triples in the triple store at the given snapshot date. If a checkpoint exists before
+     * the snapshot date, the size is computed from the size of the checkpoint and the triples created and deleted
+     * since then.
+     *
      * @return
      * @throws SQLException
      */
     public long getSnapshotSize(Date snapshotDate) throws SQLException {
-        PreparedStatement querySize = getPreparedStatement("query.snapshot_size");
-        querySize.setTimestamp(1, new Timestamp(snapshotDate.getTime()));
-        querySize.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
-        ResultSet result = querySize.executeQuery();
-        try {
-            if(result.next()) {
-                return result.getLong(1);
-            } else {
-                return 0;
+        requireJDBCConnection();
+
+        Checkpoint checkpoint = getLatestCheckpoint(snapshotDate);
+        if(checkpoint != null) {
+            Timestamp checkpointTime = new Timestamp(checkpoint.getCreatedAt().getTime());
+            Timestamp snapshotTime   = new Timestamp(snapshotDate.getTime());
+
+            long added, removed;
+
+            PreparedStatement queryAdded = getPreparedStatement("query.snapshot_added_since");
+            synchronized (queryAdded) {
+                queryAdded.clearParameters();
+                queryAdded.setTimestamp(1, checkpointTime);
+                queryAdded.setTimestamp(2, snapshotTime);
+                queryAdded.setTimestamp(3, snapshotTime);
+                added = queryCount(queryAdded);
             }
-        } finally {
-            result.close();
+
+            PreparedStatement queryRemoved = getPreparedStatement("query.snapshot_removed_since");
+            synchronized (queryRemoved) {
+                queryRemoved.clearParameters();
+                queryRemoved.setTimestamp(1, checkpointTime);
+                queryRemoved.setTimestamp(2, checkpointTime);
+                queryRemoved.setTimestamp(3, snapshotTime);
+                removed = queryCount(queryRemoved);
+            }
+
+            return checkpoint.getTripleCount() + added - removed;
+        }
+
+        PreparedStatement querySize = getPreparedStatement("query.snapshot_size");
+        synchronized (querySize) {
+            querySize.clearParameters();
+            querySize.setTimestamp(1, new Timestamp(snapshotDate.getTime()));
+            querySize.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            return queryCount(querySize);
         }
     }
 
@@ -657,12 +940,50 @@ public class KiWiVersioningConnection extends KiWiConnection {
 
         requireJDBCConnection();
 
+        Checkpoint checkpoint = getLatestCheckpoint(snapshotDate);
+        if(checkpoint != null) {
+            Timestamp checkpointTime = new Timestamp(checkpoint.getCreatedAt().getTime());
+            Timestamp snapshotTime   = new Timestamp(snapshotDate.getTime());
+
+            long remaining, added;
+
+            PreparedStatement queryRemaining = getPreparedStatement("query.snapshot_size_ctx_checkpoint");
+            synchronized (queryRemaining) {
+                queryRemaining.clearParameters();
+                queryRemaining.setLong(1, checkpoint.getId());
+                queryRemaining.setLong(2, context.getId());
+                queryRemaining.setTimestamp(3, snapshotTime);
+                remaining = queryCount(queryRemaining);
+            }
+
+            PreparedStatement queryAdded = getPreparedStatement("query.snapshot_size_ctx_since");
+            synchronized (queryAdded) {
+                queryAdded.clearParameters();
+                queryAdded.setLong(1, context.getId());
+                queryAdded.setTimestamp(2, checkpointTime);
+                queryAdded.setTimestamp(3, snapshotTime);
+                queryAdded.setTimestamp(4, snapshotTime);
+                added = queryCount(queryAdded);
+            }
+
+            return remaining + added;
+        }
+
         PreparedStatement querySize = getPreparedStatement("query.snapshot_size_ctx");
-        querySize.setLong(1,context.getId());
-        querySize.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
-        querySize.setTimestamp(3, new Timestamp(snapshotDate.getTime()));
+        synchronized (querySize) {
+            querySize.clearParameters();
+            querySize.setLong(1,context.getId());
+            querySize.setTimestamp(2, new Timestamp(snapshotDate.getTime()));
+            querySize.setTimestamp(3, new Timestamp(snapshotDate.getTime()));
+            return queryCount(querySize);
+        }
+    }
 
-        ResultSet result = querySize.executeQuery();
+    /**
+     * Execute a count query and return the single result value.
+     */
+    private long queryCount(PreparedStatement query) throws SQLException {
+        ResultSet result = executeQuery(query);
         try {
             if(result.next()) {
                 return result.getLong(1);
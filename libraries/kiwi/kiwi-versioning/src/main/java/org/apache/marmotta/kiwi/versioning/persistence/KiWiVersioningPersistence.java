@@ -58,6 +58,13 @@ public class KiWiVersioningPersistence {
         persistence.addNodeTableDependency("versions", "creator");
         persistence.addTripleTableDependency("versions_added","triple_id");
         persistence.addTripleTableDependency("versions_removed","triple_id");
+
+        // delta index and materialized checkpoints; kept in a separate script so they can be added to existing
+        // versioning databases (the create script builds the delta index for already existing versions)
+        persistence.initDatabase("versioning_snapshots", new String[] {"versions_resources", "versions_checkpoints", "versions_checkpoint_triples"});
+
+        persistence.addNodeTableDependency("versions_resources", "resource_id");
+        persistence.addTripleTableDependency("versions_checkpoint_triples","triple_id");
     }
 
     /**
@@ -67,6 +74,7 @@ public class KiWiVersioningPersistence {
      * @throws SQLException
      */
     public void dropDatabase() throws SQLException {
+        persistence.dropDatabase("versioning_snapshots");
         persistence.dropDatabase("versioning");
     }
 
@@ -19,13 +19,16 @@ package org.apache.marmotta.kiwi.versioning.sail;
 
 import org.apache.marmotta.commons.sesame.filter.AlwaysTrueFilter;
 import org.apache.marmotta.commons.sesame.filter.SesameFilter;
+import org.apache.marmotta.commons.sesame.transactions.api.OverflowPolicy;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.commons.sesame.transactions.sail.AsynchronousTransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.wrapper.TransactionalSailWrapper;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.apache.marmotta.kiwi.versioning.api.VersioningSail;
+import org.apache.marmotta.kiwi.versioning.model.Checkpoint;
 import org.apache.marmotta.kiwi.versioning.model.Version;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningPersistence;
@@ -45,6 +48,12 @@ import java.sql.SQLException;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A KiWi Stackable Sail offering versioning support for transactional sails. The versioning sail create a new
@@ -68,12 +77,44 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
 
     protected final static long DEFAULT_CONNECTION_TIMEOUT = 20000L;
 
+    /**
+     * Number of versions after which a new materialized checkpoint is created
+     */
+    protected final static int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * Time (in milliseconds) a checkpoint lags behind the commit that triggered it; transactions that
+     * started before the checkpoint date must have committed when the checkpoint is created
+     */
+    protected final static long DEFAULT_CHECKPOINT_DELAY = 3600000L;
+
+    /**
+     * Number of most recent checkpoints that are kept when a new checkpoint is created
+     */
+    protected final static int DEFAULT_CHECKPOINT_RETENTION = 3;
+
     private KiWiVersioningPersistence persistence;
 
     private Set<KiWiSnapshotConnection> activeSnapshots;
 
     private SesameFilter<Statement> filter;
 
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    private long checkpointDelay = DEFAULT_CHECKPOINT_DELAY;
+
+    private int checkpointRetention = DEFAULT_CHECKPOINT_RETENTION;
+
+    /**
+     * Creates automatic checkpoints in the background, so that committing transactions do not wait for them
+     */
+    private ExecutorService checkpointExecutor;
+
+    /**
+     * The date of the next automatic checkpoint, or null if none is scheduled
+     */
+    private final AtomicReference<Date> pendingCheckpoint = new AtomicReference<>();
+
     /**
      * Build a new {@link KiWiVersioningSail} based on the provided parent
      * {@link TransactionalSail}.
@@ -102,12 +143,46 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
      * @see SesameFilter#accept(Object)
      */
     public KiWiVersioningSail(TransactionalSail parent, SesameFilter<Statement> filter) {
+        this(parent, filter, 0);
+    }
+
+    /**
+     * Build a new selective {@link KiWiVersioningSail} based on the provided
+     * parent {@link TransactionalSail}. If listenerQueueSize is greater than
+     * 0, versions are created asynchronously after the commit returned, in
+     * commit order; the committing thread waits only when more than
+     * listenerQueueSize transactions are still waiting to be versioned.
+     *
+     * @param parent
+     *            the {@link TransactionalSail} to base the
+     *            {@link KiWiVersioningSail} on.
+     * @param filter
+     *            a {@link SesameFilter} to filter out {@link Statement}s that
+     *            should not be versioned.
+     * @param listenerQueueSize
+     *            maximum number of transactions waiting to be versioned, 0
+     *            to create versions synchronously while committing
+     */
+    public KiWiVersioningSail(TransactionalSail parent, SesameFilter<Statement> filter, int listenerQueueSize) {
         super(parent);
         this.persistence = new KiWiVersioningPersistence(getBaseStore().getPersistence());
         this.activeSnapshots = new HashSet<KiWiSnapshotConnection>();
         this.filter = filter;
+        this.checkpointExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "KiWi Versioning Checkpoints");
+                t.setDaemon(true);
+                return t;
+            }
+        });
 
-        parent.addTransactionListener(this);
+        if(listenerQueueSize > 0) {
+            // versions must neither be lost nor merged, so the committing thread waits when the queue is full
+            parent.addTransactionListener(new AsynchronousTransactionListener("KiWi Versioning", this, listenerQueueSize, OverflowPolicy.BLOCK));
+        } else {
+            parent.addTransactionListener(this);
+        }
     }
 
 
@@ -154,6 +229,67 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
         return persistence;
     }
 
+    /**
+     * Return the number of versions after which a new materialized checkpoint is created.
+     *
+     * @return
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Set the number of versions after which a new materialized checkpoint is created. Snapshot queries
+     * only need to consider the latest checkpoint before the snapshot date and the changes since then, so
+     * smaller intervals make snapshots cheaper at the cost of more storage. A value <= 0 disables automatic
+     * checkpoints.
+     *
+     * @param checkpointInterval
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Return the time (in milliseconds) by which automatic checkpoints lag behind the commit that triggered them.
+     *
+     * @return
+     */
+    public long getCheckpointDelay() {
+        return checkpointDelay;
+    }
+
+    /**
+     * Set the time (in milliseconds) by which automatic checkpoints lag behind the commit that triggered them.
+     * Triples carry the time they were added, not the time their transaction committed, so a checkpoint must
+     * only be taken at a date before which all transactions have completed.
+     *
+     * @param checkpointDelay
+     */
+    public void setCheckpointDelay(long checkpointDelay) {
+        this.checkpointDelay = checkpointDelay;
+    }
+
+    /**
+     * Return the number of most recent checkpoints that are kept when a new automatic checkpoint is created.
+     *
+     * @return
+     */
+    public int getCheckpointRetention() {
+        return checkpointRetention;
+    }
+
+    /**
+     * Set the number of most recent checkpoints that are kept when a new automatic checkpoint is created; older
+     * checkpoints are removed. Snapshots before the oldest remaining checkpoint are computed from the full triple
+     * history. A value <= 0 keeps all checkpoints.
+     *
+     * @param checkpointRetention
+     */
+    public void setCheckpointRetention(int checkpointRetention) {
+        this.checkpointRetention = checkpointRetention;
+    }
+
     /**
      * Called after a transaction has committed. This method will take the transaction data and convert it into a
      * Version object, which will then be persisted in the KiWiVersioningPersistence.
@@ -192,7 +328,96 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
                 } catch(SQLException ex) {
                     log.warn("could not store versioning information (error: {})", ex.getMessage());
                 }
+
+                if(checkpointInterval > 0) {
+                    scheduleCheckpoint(new Date(version.getCommitTime().getTime() - checkpointDelay));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule a check whether a new automatic checkpoint is needed. Commits arriving while a check is pending only
+     * move the date of the pending check forward.
+     */
+    private void scheduleCheckpoint(Date date) {
+        if(pendingCheckpoint.getAndSet(date) == null) {
+            try {
+                checkpointExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Date date = pendingCheckpoint.getAndSet(null);
+                        if(date != null) {
+                            createCheckpointIfNeeded(date);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // the sail is shutting down
+                pendingCheckpoint.set(null);
+            }
+        }
+    }
+
+    /**
+     * Create a new materialized checkpoint at the given date in case more than checkpointInterval versions have been
+     * created since the last checkpoint, and remove the checkpoints exceeding the retention.
+     */
+    private void createCheckpointIfNeeded(Date date) {
+        try {
+            final KiWiVersioningConnection connection = persistence.getConnection();
+            try {
+                Checkpoint latest = connection.getLatestCheckpoint(date);
+                if(latest == null || date.after(latest.getCreatedAt())) {
+                    long versions = connection.countVersionsSince(latest != null ? latest.getCreatedAt() : new Date(0));
+                    if(versions >= checkpointInterval) {
+                        connection.createCheckpoint(date);
+                        connection.commit();
+
+                        if(checkpointRetention > 0) {
+                            int removed = connection.removeOldCheckpoints(checkpointRetention);
+                            connection.commit();
+                            if(removed > 0) {
+                                log.info("removed {} old versioning checkpoints", removed);
+                            }
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                log.warn("could not create versioning checkpoint (error: {}); rolling back...", ex.getMessage());
+                connection.rollback();
+            } finally {
+                connection.close();
+            }
+        } catch(SQLException ex) {
+            log.warn("could not create versioning checkpoint (error: {})", ex.getMessage());
+        }
+    }
+
+    /**
+     * Create a materialized checkpoint of the repository at the given date. Snapshots at or after this date will
+     * be computed from the checkpoint and the changes since then. The date should be chosen such that all
+     * transactions started before it have already completed.
+     *
+     * @param date the date of the checkpoint
+     * @throws SailException
+     */
+    public Checkpoint createCheckpoint(Date date) throws SailException {
+        try {
+            final KiWiVersioningConnection connection = persistence.getConnection();
+            try {
+                Checkpoint checkpoint = connection.createCheckpoint(date);
+                connection.commit();
+                return checkpoint;
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.close();
             }
+        } catch(SQLException ex) {
+            throw new SailException("database error while creating checkpoint",ex);
         }
     }
 
@@ -505,6 +730,19 @@ public class KiWiVersioningSail extends TransactionalSailWrapper implements Tran
 
     @Override
     public void shutDown() throws SailException {
+        // stop listening for commits; an asynchronous listener first creates the pending versions
+        removeTransactionListener(this);
+
+        // drop pending checkpoint checks and wait for a running checkpoint to finish
+        checkpointExecutor.shutdownNow();
+        try {
+            if(!checkpointExecutor.awaitTermination(DEFAULT_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("versioning checkpoint still running during shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         // close all open connections after a grace period
         synchronized (activeSnapshots) {
             if(!activeSnapshots.isEmpty()) {
@@ -0,0 +1,48 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- delta index: from resource to the versions that added or removed triples with the resource as subject
+CREATE TABLE versions_resources (
+  version_id  bigint  REFERENCES versions(id),
+  resource_id bigint  REFERENCES nodes(id),
+  PRIMARY KEY(resource_id, version_id)
+);
+
+-- materialized snapshots of the triple store at a given point in time
+CREATE TABLE versions_checkpoints (
+  id           bigint     NOT NULL,
+  createdAt    timestamp  NOT NULL,
+  triple_count bigint     NOT NULL,
+  PRIMARY KEY(id)
+);
+
+-- join table: from checkpoint to the triples that were active at checkpoint time
+CREATE TABLE versions_checkpoint_triples (
+  checkpoint_id bigint  REFERENCES versions_checkpoints(id),
+  triple_id     bigint  REFERENCES triples(id),
+  PRIMARY KEY(checkpoint_id, triple_id)
+);
+
+CREATE INDEX idx_versions_resources_vid ON versions_resources(version_id);
+CREATE INDEX idx_checkpoints_created ON versions_checkpoints(createdAt);
+CREATE INDEX idx_checkpoint_triples_tid ON versions_checkpoint_triples(triple_id);
+CREATE INDEX idx_triples_created_at ON triples(createdAt);
+CREATE INDEX idx_triples_deleted_at ON triples(deletedAt);
+
+-- build the delta index for versions that existed before the index was introduced
+INSERT INTO versions_resources (version_id, resource_id)
+  SELECT DISTINCT J.version_id, T.subject
+  FROM triples T, ( (SELECT * FROM versions_added) UNION (SELECT * FROM versions_removed) ) AS J
+  WHERE J.triple_id = T.id;
@@ -27,6 +27,7 @@ import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.apache.marmotta.kiwi.versioning.model.Checkpoint;
 import org.apache.marmotta.kiwi.versioning.model.Version;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningConnection;
 import org.apache.marmotta.kiwi.versioning.persistence.KiWiVersioningPersistence;
@@ -35,6 +36,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.openrdf.model.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -349,4 +351,96 @@ public class VersioningPersistenceTest {
     }
 
 
+
+    /**
+     * Test that snapshots computed from a materialized checkpoint and the changes since then are the same
+     * as the snapshots computed from the full triple history
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckpointSnapshots() throws Exception {
+        KiWiVersioningConnection connection = vpersistence.getConnection();
+        try {
+            KiWiUriResource subject1  = new KiWiUriResource("http://localhost/resource/"+ RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource subject2  = new KiWiUriResource("http://localhost/resource/"+ RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred_1   = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource pred_2   = new KiWiUriResource("http://localhost/predicate/P2");
+            KiWiUriResource object_1 = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiStringLiteral object_2 = new KiWiStringLiteral(RandomStringUtils.randomAlphanumeric(32));
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject1);
+            connection.storeNode(subject2);
+            connection.storeNode(pred_1);
+            connection.storeNode(pred_2);
+            connection.storeNode(object_1);
+            connection.storeNode(object_2);
+            connection.storeNode(context);
+
+            KiWiTriple triple1 = new KiWiTriple(subject1,pred_1,object_1,context);
+            KiWiTriple triple2 = new KiWiTriple(subject2,pred_2,object_2,context);
+
+            connection.storeTriple(triple1);
+            connection.storeTriple(triple2);
+            connection.commit();
+
+            Thread.sleep(100);
+            Date date1 = new Date();
+            Thread.sleep(100);
+
+            // snapshot size and content without checkpoint
+            Assert.assertEquals(2, connection.getSnapshotSize(date1));
+            Assert.assertEquals(2, Iterations.asList(connection.listTriplesSnapshot(null, null, null, null, false, date1)).size());
+
+            Checkpoint checkpoint = connection.createCheckpoint(date1);
+            connection.commit();
+            Assert.assertEquals(2, checkpoint.getTripleCount());
+            Assert.assertEquals(checkpoint.getId(), connection.getLatestCheckpoint(new Date()).getId());
+
+            KiWiTriple triple3 = new KiWiTriple(subject1,pred_2,object_2,context);
+            connection.deleteTriple(triple1);
+            connection.storeTriple(triple3);
+            connection.commit();
+
+            Thread.sleep(100);
+            Date date2 = new Date();
+
+            // snapshot at the checkpoint date
+            List<Statement> snapshot1 = Iterations.asList(connection.listTriplesSnapshot(null, null, null, null, false, date1));
+            Assert.assertEquals(2, snapshot1.size());
+            Assert.assertThat(snapshot1, hasItems((Statement)triple1, triple2));
+            Assert.assertEquals(2, connection.getSnapshotSize(date1));
+
+            // snapshot after the checkpoint date, consisting of checkpoint and changes
+            List<Statement> snapshot2 = Iterations.asList(connection.listTriplesSnapshot(null, null, null, null, false, date2));
+            Assert.assertEquals(2, snapshot2.size());
+            Assert.assertThat(snapshot2, hasItems((Statement)triple2, triple3));
+            Assert.assertEquals(2, connection.getSnapshotSize(date2));
+            Assert.assertEquals(2, connection.getSnapshotSize(context, date2));
+
+            List<Statement> snapshot3 = Iterations.asList(connection.listTriplesSnapshot(subject1, null, null, null, false, date2));
+            Assert.assertEquals(1, snapshot3.size());
+            Assert.assertEquals(triple3, snapshot3.get(0));
+
+            // retention keeps only the most recent checkpoints
+            Checkpoint checkpoint2 = connection.createCheckpoint(date2);
+            connection.commit();
+            Assert.assertEquals(1, connection.removeOldCheckpoints(1));
+            connection.commit();
+            Assert.assertEquals(checkpoint2.getId(), connection.getLatestCheckpoint(new Date()).getId());
+            Assert.assertNull(connection.getLatestCheckpoint(date1));
+            Assert.assertEquals(0, connection.removeOldCheckpoints(1));
+            Assert.assertEquals(2, connection.getSnapshotSize(date1));
+
+            connection.removeCheckpoint(checkpoint2.getId());
+            connection.commit();
+            Assert.assertNull(connection.getLatestCheckpoint(new Date()));
+            Assert.assertEquals(2, connection.getSnapshotSize(date2));
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
 }
@@ -84,4 +84,20 @@ public class LoaderOptions {
      */
     public static final String STATISTICS_INTERVAL = "loader.statistics.interval";
 
+    /**
+     * Number of threads to use for parsing line-based formats (N-Triples, N-Quads) in uncompressed files. A value
+     * of 1 (the default) disables parallel parsing.
+     */
+    public static final String PARALLEL_PARSERS = "loader.parallel.parsers";
+
+    /**
+     * Approximate size (in bytes) of the chunks a file is split into for parallel parsing.
+     */
+    public static final String PARALLEL_CHUNK_SIZE = "loader.parallel.chunksize";
+
+    /**
+     * Maximum number of statement batches waiting between the parser threads and the loader handler.
+     */
+    public static final String PARALLEL_QUEUE_SIZE = "loader.parallel.queuesize";
+
 }
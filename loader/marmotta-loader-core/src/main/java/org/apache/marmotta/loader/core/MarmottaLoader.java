@@ -46,6 +46,7 @@ import org.apache.marmotta.loader.api.LoaderHandler;
 import org.apache.marmotta.loader.api.LoaderOptions;
 import org.apache.marmotta.loader.context.ContextHandler;
 import org.apache.marmotta.loader.functions.BackendIdentifierFunction;
+import org.apache.marmotta.loader.parallel.ParallelFileLoader;
 import org.apache.marmotta.loader.rio.GeonamesFormat;
 import org.apache.marmotta.loader.statistics.StatisticsHandler;
 import org.apache.marmotta.loader.util.DirectoryFilter;
@@ -250,6 +251,18 @@ public class MarmottaLoader {
             in = fin;
         }
 
+        // line-based formats in plain files can be split and parsed in parallel
+        int parsers = configuration.getInt(LoaderOptions.PARALLEL_PARSERS, 1);
+        if(in == fin && parsers > 1 && ParallelFileLoader.isSupported(format)) {
+            fin.close();
+
+            ParallelFileLoader parallelLoader = new ParallelFileLoader(parsers,
+                    configuration.getLong(LoaderOptions.PARALLEL_CHUNK_SIZE, 64L * 1024L * 1024L),
+                    configuration.getInt(LoaderOptions.PARALLEL_QUEUE_SIZE, 4 * parsers));
+            parallelLoader.load(file, handler, format, configuration.getString(LoaderOptions.BASE_URI, "http://localhost/"));
+            return;
+        }
+
         // load using the input stream
         load(in, handler, format);
     }
@@ -470,7 +483,7 @@ public class MarmottaLoader {
      * @param format
      * @return
      */
-    private RDFParser createParser(RDFFormat format) {
+    public static RDFParser createParser(RDFFormat format) {
         RDFParser parser = Rio.createParser(format);
         parser.getParserConfig().addNonFatalError(BasicParserSettings.VERIFY_DATATYPE_VALUES);
         parser.getParserConfig().addNonFatalError(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES);
@@ -543,6 +556,7 @@ public class MarmottaLoader {
      *     <li>-d | --dir:  input directory containing files to use for loading</li>
      *     <li>-t | --type: input format to use for parsing (MIME type)</li>
      *     <li>-s | --statistics: collect statistics and write a graph into the file given</li>
+     *     <li>-p | --parallel: number of threads to use for parsing line-based formats (N-Triples, N-Quads)</li>
      * </ul>
      *
      * In addition, loader backends can provide their own additional command line options.
@@ -629,6 +643,14 @@ public class MarmottaLoader {
                         .create('s');
         options.addOption(statistics);
 
+        final Option parallel =
+                OptionBuilder.withArgName("threads")
+                        .hasArgs(1)
+                        .withDescription("number of threads to use for parsing line-based formats (N-Triples, N-Quads)")
+                        .withLongOpt("parallel")
+                        .create('p');
+        options.addOption(parallel);
+
         final Option property  =
                 OptionBuilder.withArgName("property=value")
                         .hasArgs(2)
@@ -708,6 +730,14 @@ public class MarmottaLoader {
             result.setProperty(LoaderOptions.STATISTICS_GRAPH,   cmd.getOptionValue('s'));
         }
 
+        if(cmd.hasOption('p')) {
+            try {
+                result.setProperty(LoaderOptions.PARALLEL_PARSERS, Integer.parseInt(cmd.getOptionValue('p')));
+            } catch (NumberFormatException ex) {
+                throw new ParseException("invalid number of parser threads: " + cmd.getOptionValue('p'));
+            }
+        }
+
         if(cmd.hasOption('D')) {
             for(Map.Entry e : cmd.getOptionProperties("D").entrySet()) {
                 result.setProperty(e.getKey().toString(), e.getValue());
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.parallel;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.UUID;
+
+/**
+ * A value factory prefixing all blank node identifiers with a prefix that is unique for one input file. When a file
+ * is split into chunks that are parsed independently (with blank node ids preserved), the same blank node label
+ * in different chunks is mapped to the same blank node, while equal labels in different files stay distinct.
+ */
+public class FileScopedValueFactory extends ValueFactoryImpl {
+
+    private final String prefix;
+
+    public FileScopedValueFactory() {
+        this.prefix = "genid-" + UUID.randomUUID().toString().replace("-", "") + "-";
+    }
+
+    @Override
+    public BNode createBNode(String nodeID) {
+        return super.createBNode(prefix + nodeID);
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.parallel;
+
+import org.apache.marmotta.loader.api.LoaderHandler;
+import org.apache.marmotta.loader.core.MarmottaLoader;
+import org.apache.marmotta.loader.statistics.StatisticsHandler;
+import org.apache.marmotta.loader.util.ByteBufferInputStream;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses line-based RDF files (N-Triples, N-Quads) in parallel. The file is memory-mapped and split at line
+ * boundaries into chunks, which are parsed independently by a pool of worker threads. Parsed statements are passed
+ * in batches through a bounded queue to the calling thread, which forwards them to the loader handler, so that the
+ * handler itself is still only called by a single thread.
+ * <p/>
+ * Blank node labels are scoped to the file (see {@link FileScopedValueFactory}), so splitting a file does not
+ * change the blank nodes it describes. The order in which statements reach the handler is not preserved.
+ */
+public class ParallelFileLoader {
+
+    private static Logger log = LoggerFactory.getLogger(ParallelFileLoader.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final List<Statement> END_OF_CHUNK = Collections.emptyList();
+
+    private final int threads;
+
+    private final long chunkSize;
+
+    private final int queueSize;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private final AtomicLong statementsParsed = new AtomicLong();
+
+    public ParallelFileLoader(int threads, long chunkSize, int queueSize) {
+        this.threads   = threads;
+        this.chunkSize = Math.min(chunkSize, Integer.MAX_VALUE);
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Return true in case files in the given format can be split at line boundaries and parsed in parallel.
+     */
+    public static boolean isSupported(RDFFormat format) {
+        return RDFFormat.NTRIPLES.equals(format) || RDFFormat.NQUADS.equals(format);
+    }
+
+    /**
+     * Load the uncompressed file given as argument into the handler, parsing it with several threads.
+     *
+     * @param file     file to read the data from; must be plain (uncompressed) data in the format given as argument
+     * @param handler  handler to add the data to; only called from the current thread
+     * @param format   line-based format to use for creating the parsers
+     * @param baseUri  base URI to use for resolving relative URIs
+     * @throws RDFParseException in case a chunk of the file could not be parsed
+     * @throws IOException in case the file could not be read, the handler failed, or the current thread was interrupted
+     *                     ({@link InterruptedIOException})
+     */
+    public void load(File file, LoaderHandler handler, RDFFormat format, String baseUri) throws RDFParseException, IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+
+            List<long[]> chunks = split(channel);
+            log.info("parsing {} in {} chunks using {} threads", file, chunks.size(), threads);
+
+            final BlockingQueue<List<Statement>> queue = new ArrayBlockingQueue<>(queueSize);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            final FileScopedValueFactory valueFactory = new FileScopedValueFactory();
+
+            if(handler instanceof StatisticsHandler) {
+                ((StatisticsHandler) handler).registerStage("bytes read", bytesRead);
+                ((StatisticsHandler) handler).registerStage("statements parsed", statementsParsed);
+            }
+
+            ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Loader Parser " + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            try {
+                for(long[] chunk : chunks) {
+                    workers.execute(new ChunkParser(channel, chunk[0], chunk[1], format, baseUri, valueFactory, queue, failure));
+                }
+                workers.shutdown();
+
+                handler.startRDF();
+
+                int finished = 0;
+                while(finished < chunks.size() && failure.get() == null) {
+                    List<Statement> batch = queue.poll(1, TimeUnit.SECONDS);
+                    if(batch == END_OF_CHUNK) {
+                        finished++;
+                    } else if(batch != null) {
+                        for(Statement stmt : batch) {
+                            handler.handleStatement(stmt);
+                        }
+                    }
+                }
+
+                if(failure.get() == null) {
+                    handler.endRDF();
+                }
+            } catch (RDFHandlerException e) {
+                failure.compareAndSet(null, e);
+                log.error("error loading file {} in format {}: {}", file, format, e.getMessage());
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } finally {
+                workers.shutdownNow();
+
+                if(handler instanceof StatisticsHandler) {
+                    ((StatisticsHandler) handler).unregisterStage("bytes read");
+                    ((StatisticsHandler) handler).unregisterStage("statements parsed");
+                }
+            }
+
+            Exception e = failure.get();
+            if(e instanceof RDFParseException) {
+                throw (RDFParseException) e;
+            } else if(e instanceof IOException) {
+                throw (IOException) e;
+            } else if(e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if(e instanceof InterruptedException) {
+                InterruptedIOException ex = new InterruptedIOException("loading " + file + " was interrupted");
+                ex.initCause(e);
+                throw ex;
+            } else if(e != null) {
+                // e.g. a RDFHandlerException thrown by the loader handler
+                throw new IOException("error loading file " + file + ": " + e.getMessage(), e);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Split the file into chunks of roughly chunkSize bytes, each of them ending after a newline character (or at
+     * the end of the file). Returns a list of (start, length) pairs.
+     */
+    private List<long[]> split(FileChannel channel) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+
+        long size  = channel.size();
+        long start = 0;
+        ByteBuffer scan = ByteBuffer.allocate(8192);
+        while(start < size) {
+            long end = Math.min(start + chunkSize, size);
+
+            // move the end forward to the next line boundary
+            boolean found = end == size;
+            while(!found) {
+                scan.clear();
+                int read = channel.read(scan, end);
+                if(read <= 0) {
+                    end = size;
+                    break;
+                }
+                for(int i = 0; i < read; i++) {
+                    if(scan.get(i) == '\n') {
+                        end = end + i + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if(!found) {
+                    end += read;
+                    if(end - start >= Integer.MAX_VALUE) {
+                        throw new IOException("line starting before offset " + end + " exceeds maximum chunk size");
+                    }
+                }
+            }
+
+            chunks.add(new long[] {start, end - start});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Parse a single chunk of the file and pass the statements in batches to the queue. Always signals the end of
+     * the chunk, even if parsing failed, so the consumer does not wait for it.
+     */
+    private class ChunkParser implements Runnable {
+
+        private final FileChannel channel;
+        private final long start, length;
+        private final RDFFormat format;
+        private final String baseUri;
+        private final FileScopedValueFactory valueFactory;
+        private final BlockingQueue<List<Statement>> queue;
+        private final AtomicReference<Exception> failure;
+
+        private ChunkParser(FileChannel channel, long start, long length, RDFFormat format, String baseUri, FileScopedValueFactory valueFactory, BlockingQueue<List<Statement>> queue, AtomicReference<Exception> failure) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+            this.format = format;
+            this.baseUri = baseUri;
+            this.valueFactory = valueFactory;
+            this.queue = queue;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(failure.get() != null) {
+                    return;
+                }
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+                RDFParser parser = MarmottaLoader.createParser(format);
+                parser.setValueFactory(valueFactory);
+                parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+                parser.setRDFHandler(new RDFHandlerBase() {
+                    private List<Statement> batch = new ArrayList<>(BATCH_SIZE);
+
+                    @Override
+                    public void handleStatement(Statement st) throws RDFHandlerException {
+                        batch.add(st);
+                        if(batch.size() >= BATCH_SIZE) {
+                            flush();
+                        }
+                    }
+
+                    @Override
+                    public void endRDF() throws RDFHandlerException {
+                        flush();
+                    }
+
+                    private void flush() throws RDFHandlerException {
+                        if(failure.get() != null) {
+                            throw new RDFHandlerException("parsing aborted");
+                        }
+                        if(batch.isEmpty()) {
+                            return;
+                        }
+                        try {
+                            statementsParsed.addAndGet(batch.size());
+                            queue.put(batch);
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RDFHandlerException("parsing interrupted");
+                        }
+                    }
+                });
+                parser.parse(new ByteBufferInputStream(buffer), baseUri);
+
+                bytesRead.addAndGet(length);
+            } catch (RDFParseException | IOException | RuntimeException e) {
+                log.warn("error parsing chunk at offset {}: {}", start, e.getMessage());
+                failure.compareAndSet(null, e);
+            } catch (RDFHandlerException e) {
+                // parsing was aborted because another chunk failed
+            } finally {
+                try {
+                    queue.put(END_OF_CHUNK);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
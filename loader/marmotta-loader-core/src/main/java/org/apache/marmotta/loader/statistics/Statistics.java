@@ -37,9 +37,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Collect statistics from a KiWiHandler by sampling at given time intervals and logging to a RRD database.
@@ -64,6 +67,8 @@ public class Statistics {
 
     private long start, previous;
 
+    private Map<String,Long> previousStages = new HashMap<>();
+
     private Configuration configuration;
     private DiagramUpdater diagramUpdater;
 
@@ -153,6 +158,7 @@ public class Statistics {
                 if(triplesLastMin != Double.NaN) {
                     log.info("imported {} triples; statistics: {}/sec (last min), {}/sec (last hour)", UnitFormatter.formatSize(handler.triples), UnitFormatter.formatSize(triplesLastMin), UnitFormatter.formatSize(triplesLastHour));
                 }
+                printStageStatistics();
                 previous = System.currentTimeMillis();
 
             } catch (IOException e) {
@@ -165,6 +171,24 @@ public class Statistics {
     }
 
 
+    /**
+     * Log the throughput of additional loader stages registered with the handler since the last time statistics
+     * have been printed.
+     */
+    private void printStageStatistics() {
+        long now = System.currentTimeMillis();
+        double seconds = Math.max(now - previous, 1) / 1000.0;
+        for(Map.Entry<String,AtomicLong> stage : handler.stages.entrySet()) {
+            long current = stage.getValue().get();
+            Long last = previousStages.put(stage.getKey(), current);
+            if(last != null) {
+                log.info("- stage {}: {} total, {}/sec", stage.getKey(), UnitFormatter.formatSize(current), UnitFormatter.formatSize((current - last) / seconds));
+            }
+        }
+        previousStages.keySet().retainAll(handler.stages.keySet());
+    }
+
+
     private class StatisticsUpdater implements Runnable {
         @Override
         public void run() {
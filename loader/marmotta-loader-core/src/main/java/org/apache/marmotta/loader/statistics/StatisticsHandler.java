@@ -24,6 +24,10 @@ import org.apache.marmotta.loader.wrapper.LoaderHandlerWrapper;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFHandlerException;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Add file description here!
  *
@@ -33,6 +37,11 @@ public class StatisticsHandler extends LoaderHandlerWrapper implements LoaderHan
 
     protected long triples = 0;
 
+    /**
+     * Counters of additional loader stages (e.g. parallel parsing) running before this handler
+     */
+    protected Map<String,AtomicLong> stages = new ConcurrentSkipListMap<>();
+
     private Statistics statistics;
 
     private Configuration configuration;
@@ -67,6 +76,26 @@ public class StatisticsHandler extends LoaderHandlerWrapper implements LoaderHan
         statistics.stopSampling();
     }
 
+    /**
+     * Register the counter of an additional loader stage, so that its throughput is reported together with
+     * the throughput of the handler. The counter may be updated concurrently by other threads.
+     *
+     * @param name    name of the stage used in the statistics output
+     * @param counter counter of the items processed by the stage
+     */
+    public void registerStage(String name, AtomicLong counter) {
+        stages.put(name, counter);
+    }
+
+    /**
+     * Remove the counter of a loader stage registered with {@link #registerStage(String, AtomicLong)}.
+     *
+     * @param name name of the stage
+     */
+    public void unregisterStage(String name) {
+        stages.remove(name);
+    }
+
     /**
      * Handles a statement.
      *
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.loader.core.test;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.MapConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.marmotta.loader.api.LoaderOptions;
+import org.apache.marmotta.loader.core.MarmottaLoader;
+import org.apache.marmotta.loader.core.test.dummy.DummyLoaderHandler;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.util.ModelUtil;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test parallel parsing of line-based formats by comparing it with the results of sequential parsing.
+ */
+public class ParallelParsingTest {
+
+    private static Path tempDir;
+
+    private static File ntFile;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Files.createTempDirectory("loader");
+        ntFile  = new File(tempDir.toFile(), "demo-data.nt");
+
+        Model data = Rio.parse(ParallelParsingTest.class.getResourceAsStream("/demo-data.rdf"), "http://localhost/", RDFFormat.RDFXML);
+
+        // blank nodes used at the beginning and end of the file, i.e. in different chunks
+        OutputStream out = new FileOutputStream(ntFile);
+        try {
+            Writer w = new OutputStreamWriter(out, "UTF-8");
+            w.write("_:b1 <http://localhost/p1> \"first\" .\n");
+            w.flush();
+            Rio.write(data, out, RDFFormat.NTRIPLES);
+            w.write("_:b1 <http://localhost/p2> \"last\" .\n");
+            w.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    @AfterClass
+    public static void teardown() throws IOException {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    private Model load(int parsers) throws Exception {
+        Configuration cfg = new MapConfiguration(new HashMap<String,Object>());
+        cfg.setProperty(LoaderOptions.PARALLEL_PARSERS, parsers);
+        cfg.setProperty(LoaderOptions.PARALLEL_CHUNK_SIZE, 1024);
+
+        DummyLoaderHandler handler = new DummyLoaderHandler();
+        handler.initialise();
+
+        MarmottaLoader loader = new MarmottaLoader(cfg);
+        loader.loadFile(ntFile, handler, RDFFormat.NTRIPLES, null);
+
+        handler.shutdown();
+        return handler.getModel();
+    }
+
+    @Test
+    public void testParallelParsing() throws Exception {
+        Model sequential = load(1);
+        Model parallel   = load(4);
+
+        Assert.assertEquals(sequential.size(), parallel.size());
+        Assert.assertTrue(ModelUtil.equals(sequential, parallel));
+    }
+
+    @Test
+    public void testBlankNodeScope() throws Exception {
+        Model parallel = load(4);
+
+        URI p1 = new URIImpl("http://localhost/p1");
+        URI p2 = new URIImpl("http://localhost/p2");
+
+        Set<Resource> subjects = new HashSet<>();
+        subjects.addAll(parallel.filter(null, p1, null).subjects());
+        subjects.addAll(parallel.filter(null, p2, null).subjects());
+
+        Assert.assertEquals("equal blank node labels in different chunks must denote the same node", 1, subjects.size());
+    }
+
+    /**
+     * A failure of the handler aborts the parallel load and is reported to the caller.
+     */
+    @Test
+    public void testHandlerFailure() throws Exception {
+        Configuration cfg = new MapConfiguration(new HashMap<String,Object>());
+        cfg.setProperty(LoaderOptions.PARALLEL_PARSERS, 4);
+        cfg.setProperty(LoaderOptions.PARALLEL_CHUNK_SIZE, 1024);
+
+        final AtomicInteger handled = new AtomicInteger();
+        DummyLoaderHandler handler = new DummyLoaderHandler() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                if(handled.incrementAndGet() > 10) {
+                    throw new RDFHandlerException("handler failed");
+                }
+                super.handleStatement(st);
+            }
+        };
+        handler.initialise();
+
+        MarmottaLoader loader = new MarmottaLoader(cfg);
+        try {
+            loader.loadFile(ntFile, handler, RDFFormat.NTRIPLES, null);
+            Assert.fail("the failure of the handler was not reported");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof RDFHandlerException);
+        } finally {
+            handler.shutdown();
+        }
+        Assert.assertEquals(11, handled.get());
+    }
+}
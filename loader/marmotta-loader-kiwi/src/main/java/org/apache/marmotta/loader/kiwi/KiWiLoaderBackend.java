@@ -101,6 +101,20 @@ public class KiWiLoaderBackend implements LoaderBackend {
                         .create('I');
         options.add(indexes);
 
+        Option pipeline =
+                OptionBuilder.withArgName("pipeline")
+                        .withLongOpt("pipeline")
+                        .withDescription("parse, resolve and write to the database in separate threads (PostgreSQL and MySQL only)")
+                        .create('L');
+        options.add(pipeline);
+
+        Option offline =
+                OptionBuilder.withArgName("offline")
+                        .withLongOpt("offline")
+                        .withDescription("sort and deduplicate all data on local disk before writing it to an empty database in one pass")
+                        .create('O');
+        options.add(offline);
+
         return options;
     }
 }
@@ -21,6 +21,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.loader.KiWiLoaderConfiguration;
+import org.apache.marmotta.kiwi.loader.generic.KiWiBulkLoader;
 import org.apache.marmotta.kiwi.loader.generic.KiWiHandler;
 import org.apache.marmotta.kiwi.loader.mysql.KiWiMySQLHandler;
 import org.apache.marmotta.kiwi.loader.pgsql.KiWiPostgresHandler;
@@ -91,8 +92,13 @@ public class KiWiLoaderHandler implements LoaderHandler {
             }
 
             loaderConfiguration.setDropIndexes(configuration.getBoolean("backend.kiwi.drop-indexes", false));
+            loaderConfiguration.setPipelineEnabled(configuration.getBoolean("backend.kiwi.pipeline", false));
 
-            if(kiwi.getDialect() instanceof PostgreSQLDialect) {
+            if(configuration.getBoolean("backend.kiwi.offline", false)) {
+                log.info("- using offline bulk loader ... ");
+                loaderConfiguration.setCommitBatchSize(100000);
+                handler = new KiWiBulkLoader(store,loaderConfiguration);
+            } else if(kiwi.getDialect() instanceof PostgreSQLDialect) {
                 log.info("- using PostgreSQL bulk loader ... ");
                 loaderConfiguration.setCommitBatchSize(100000);
                 handler = new KiWiPostgresHandler(store,loaderConfiguration);
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.cache;
+
+import org.openrdf.model.Resource;
+
+/**
+ * A part of the triple store a cache entry was computed from (see {@link DependentCache}). A dependency on a
+ * resource is affected by each committed change of a triple having the resource as subject or object, a dependency
+ * on a context by each committed change of a triple in the context.
+ */
+public final class CacheDependency {
+
+    public enum Type {
+        RESOURCE, CONTEXT
+    }
+
+    private final Type type;
+
+    private final String resource;
+
+    private CacheDependency(Type type, String resource) {
+        this.type = type;
+        this.resource = resource;
+    }
+
+    /**
+     * A dependency on the triples having the given resource as subject or object.
+     */
+    public static CacheDependency onResource(Resource resource) {
+        return new CacheDependency(Type.RESOURCE, resource.stringValue());
+    }
+
+    /**
+     * A dependency on the triples in the given context.
+     */
+    public static CacheDependency onContext(Resource context) {
+        return new CacheDependency(Type.CONTEXT, context.stringValue());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The string value of the resource or context.
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheDependency)) return false;
+
+        final CacheDependency that = (CacheDependency) o;
+        return type == that.type && resource.equals(that.resource);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + resource.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + resource + ")";
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.cache;
+
+/**
+ * A snapshot of the usage statistics of a cache registered in the {@link CachingService}.
+ */
+public class CacheStatistics {
+
+    private final String name;
+
+    private final long size;
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long evictionCount;
+
+    private final long invalidationCount;
+
+    private final long estimatedMemory;
+
+    public CacheStatistics(String name, long size, long hitCount, long missCount, long evictionCount, long invalidationCount, long estimatedMemory) {
+        this.name = name;
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.estimatedMemory = estimatedMemory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of entries currently cached.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * The number of lookups that returned a cached value.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * The number of lookups that did not find a cached value.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * The ratio of lookups that returned a cached value, 1.0 if there were no lookups yet.
+     */
+    public double getHitRate() {
+        final long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * The number of entries removed because the cache was full or the entries expired.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * The number of entries removed because a commit changed one of their dependencies (only for
+     * {@link DependentCache}s).
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * A rough estimate of the heap memory used by the cached keys and values, in bytes.
+     */
+    public long getEstimatedMemory() {
+        return estimatedMemory;
+    }
+}
@@ -57,4 +57,22 @@ public interface CachingService {
      */
     public ConcurrentMap getCacheByName(String cacheName);
 
+    /**
+     * Get the dependent cache with the given name. Creates a new cache if needed. The entries of a dependent cache
+     * are dropped when a transaction changing one of their dependencies commits.
+     *
+     * @param cacheName
+     * @return
+     * @throws IllegalArgumentException if a cache with the given name was created by {@link #getCacheByName(String)}
+     */
+    public <K,V> DependentCache<K,V> getDependentCache(String cacheName);
+
+    /**
+     * Return the usage statistics of the cache with the given name, or null if there is no such cache.
+     *
+     * @param cacheName
+     * @return
+     */
+    public CacheStatistics getStatistics(String cacheName);
+
 }
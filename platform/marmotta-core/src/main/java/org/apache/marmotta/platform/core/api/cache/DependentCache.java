@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.cache;
+
+/**
+ * A typed cache for values computed from the triple store. Each entry declares the resources and contexts it was
+ * computed from (see {@link CacheDependency}); when a transaction commits, the caching service drops all entries
+ * depending on a resource or context changed by the transaction.
+ * <p/>
+ * A value read from the store may be outdated by a commit that happens before it is put into the cache, therefore
+ * {@link #getGeneration()} needs to be read before the value is computed, and the value is only cached if no
+ * commit changed one of its dependencies in between:
+ * <code><pre>
+ * Foo foo = cache.get(key);
+ * if(foo == null) {
+ *     long generation = cache.getGeneration();
+ *     foo = computeFoo(key);
+ *     cache.put(key, foo, generation, CacheDependency.onResource(key));
+ * }
+ * </pre></code>
+ */
+public interface DependentCache<K, V> {
+
+    /**
+     * The name of the cache in the caching service.
+     */
+    public String getName();
+
+    /**
+     * Return the cached value for the given key, or null if it is not cached.
+     *
+     * @param key
+     * @return
+     */
+    public V get(K key);
+
+    /**
+     * The number of commits that changed data since the cache was created; needs to be read before computing a
+     * value that is passed to {@link #put(Object, Object, long, CacheDependency...)}.
+     */
+    public long getGeneration();
+
+    /**
+     * Cache the value for the given key, unless a commit changed one of the dependencies since the given generation
+     * was read. Values computed many generations ago may be rejected even if their dependencies did not change.
+     *
+     * @param key          the key of the value
+     * @param value        the value, computed from the given dependencies
+     * @param generation   the generation read before the value was computed
+     * @param dependencies the resources and contexts the value depends on
+     * @return true if the value was cached
+     */
+    public boolean put(K key, V value, long generation, CacheDependency... dependencies);
+
+    /**
+     * Remove the value of the given key from the cache.
+     *
+     * @param key
+     */
+    public void invalidate(K key);
+
+    /**
+     * Remove all values from the cache.
+     */
+    public void invalidateAll();
+
+    /**
+     * The number of values currently cached.
+     */
+    public long size();
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.config;
+
+/**
+ * A typed handle for a single configuration value. Components can obtain a handle once (e.g. in their
+ * @PostConstruct method) and call {@link #get()} on every request: the converted value is kept until the
+ * configuration service publishes a new {@link ConfigurationSnapshot}, so reading it requires neither a lock
+ * nor a lookup or conversion. The handle changes its value at the same time as the corresponding
+ * getXXXConfiguration method, i.e. before the (delayed) ConfigurationChangedEvent is fired.
+ */
+public abstract class ConfigurationProperty<T> {
+
+    private final ConfigurationService configurationService;
+
+    private final String key;
+
+    private volatile Value<T> value;
+
+    protected ConfigurationProperty(ConfigurationService configurationService, String key) {
+        this.configurationService = configurationService;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Return the current value of the configuration property, or the default value in case it is not set.
+     */
+    public T get() {
+        ConfigurationSnapshot snapshot = configurationService.getSnapshot();
+        Value<T> v = value;
+        if(v == null || v.snapshot != snapshot) {
+            // benign race: concurrent readers may convert the same snapshot twice
+            v = new Value<>(snapshot, convert(snapshot, key));
+            value = v;
+        }
+        return v.value;
+    }
+
+    /**
+     * Read and convert the value of the given key from the snapshot.
+     */
+    protected abstract T convert(ConfigurationSnapshot snapshot, String key);
+
+    @Override
+    public String toString() {
+        return key + "=" + get();
+    }
+
+    private static class Value<T> {
+        private final ConfigurationSnapshot snapshot;
+        private final T value;
+
+        private Value(ConfigurationSnapshot snapshot, T value) {
+            this.snapshot = snapshot;
+            this.value = value;
+        }
+    }
+}
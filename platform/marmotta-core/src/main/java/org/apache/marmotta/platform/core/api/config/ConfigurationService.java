@@ -315,6 +315,63 @@ public interface ConfigurationService {
      */
     List<String> getListConfiguration(String key, List<String> defaultValue);
 
+    /**
+     * Return an immutable snapshot of the current configuration. The snapshot is replaced (not modified)
+     * whenever a configuration value changes and can be read without locking.
+     *
+     * @return the current configuration snapshot
+     */
+    ConfigurationSnapshot getSnapshot();
+
+    /**
+     * Return a typed handle for the string configuration with the given key; see {@link ConfigurationProperty}.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<String> getStringProperty(String key, String defaultValue);
+
+    /**
+     * Return a typed handle for the integer configuration with the given key; see {@link ConfigurationProperty}.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<Integer> getIntProperty(String key, int defaultValue);
+
+    /**
+     * Return a typed handle for the long configuration with the given key; see {@link ConfigurationProperty}.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<Long> getLongProperty(String key, long defaultValue);
+
+    /**
+     * Return a typed handle for the double configuration with the given key; see {@link ConfigurationProperty}.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<Double> getDoubleProperty(String key, double defaultValue);
+
+    /**
+     * Return a typed handle for the boolean configuration with the given key; see {@link ConfigurationProperty}.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<Boolean> getBooleanProperty(String key, boolean defaultValue);
+
+    /**
+     * Return a typed handle for the list configuration with the given key; see {@link ConfigurationProperty}.
+     * The list returned by the handle is unmodifiable.
+     *
+     * @param key unique configuration key for lookup
+     * @param defaultValue value returned by the handle if the configuration is not set
+     */
+    ConfigurationProperty<List<String>> getListProperty(String key, List<String> defaultValue);
+
     /**
      * Set the system configuration with the given key to the given int value.
      * 
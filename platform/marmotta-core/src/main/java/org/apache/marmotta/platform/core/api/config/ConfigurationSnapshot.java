@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.config;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertyConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the system configuration at one point in time. The configuration service publishes a
+ * new snapshot whenever a configuration value changes, so a snapshot can be read from any thread without
+ * locking. Values are stored interpolated and converted with the same rules as the underlying Commons
+ * Configuration, i.e. a lookup returns what the corresponding getXXXConfiguration method returned at the
+ * time the snapshot was taken.
+ */
+public final class ConfigurationSnapshot {
+
+    private final long version;
+
+    private final Map<String, Entry> entries;
+
+    private ConfigurationSnapshot(long version, Map<String, Entry> entries) {
+        this.version = version;
+        this.entries = entries;
+    }
+
+    /**
+     * Copy the current state of the given configuration. The caller needs to make sure that the configuration
+     * is not modified while the snapshot is created.
+     *
+     * @param version a number identifying the snapshot; newer snapshots have a higher version
+     * @param configuration the configuration to copy
+     */
+    public static ConfigurationSnapshot create(long version, Configuration configuration) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for(Iterator<String> it = configuration.getKeys(); it.hasNext(); ) {
+            String key = it.next();
+            entries.put(key, new Entry(configuration.getString(key), configuration.getStringArray(key)));
+        }
+        return new ConfigurationSnapshot(version, Collections.unmodifiableMap(entries));
+    }
+
+    /**
+     * The version of this snapshot; it is increased each time the configuration changes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean containsKey(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * List all configuration keys in this snapshot.
+     */
+    public List<String> listKeys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * List all configuration keys that are equal to the prefix or start with the prefix followed by a dot
+     * (same semantics as {@link Configuration#getKeys(String)}).
+     */
+    public List<String> listKeys(String prefix) {
+        List<String> result = new ArrayList<>();
+        for(String key : entries.keySet()) {
+            if(key.startsWith(prefix) && (key.length() == prefix.length() || key.charAt(prefix.length()) == '.')) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    public String getString(String key, String defaultValue) {
+        Entry e = entries.get(key);
+        return e != null && e.string != null ? e.string : defaultValue;
+    }
+
+    /**
+     * @throws org.apache.commons.configuration.ConversionException in case the value is not an integer
+     */
+    public int getInt(String key, int defaultValue) {
+        Entry e = entries.get(key);
+        return e != null && e.string != null ? PropertyConverter.toInteger(e.string) : defaultValue;
+    }
+
+    /**
+     * @throws org.apache.commons.configuration.ConversionException in case the value is not a long
+     */
+    public long getLong(String key, long defaultValue) {
+        Entry e = entries.get(key);
+        return e != null && e.string != null ? PropertyConverter.toLong(e.string) : defaultValue;
+    }
+
+    /**
+     * @throws org.apache.commons.configuration.ConversionException in case the value is not a double
+     */
+    public double getDouble(String key, double defaultValue) {
+        Entry e = entries.get(key);
+        return e != null && e.string != null ? PropertyConverter.toDouble(e.string) : defaultValue;
+    }
+
+    /**
+     * Booleans accept the same values as Commons Configuration, e.g. "true", "yes" or "on".
+     *
+     * @throws org.apache.commons.configuration.ConversionException in case the value is not a boolean
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Entry e = entries.get(key);
+        return e != null && e.string != null ? PropertyConverter.toBoolean(e.string) : defaultValue;
+    }
+
+    /**
+     * Return the values of a list configuration as a new, modifiable list, or an empty list if the key does
+     * not exist.
+     */
+    public List<String> getList(String key) {
+        Entry e = entries.get(key);
+        return e != null ? new ArrayList<>(Arrays.asList(e.list)) : new ArrayList<String>();
+    }
+
+
+    private static class Entry {
+        private final String   string;
+        private final String[] list;
+
+        private Entry(String string, String[] list) {
+            this.string = string;
+            this.list   = list;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.exporter;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied on the fly to exported data. Both formats allow concatenating independently compressed
+ * streams, so segments of an export can be compressed in parallel and written one after the other.
+ */
+public enum ExportCompression {
+
+    NONE(null, null),
+
+    GZIP("application/gzip", "gz"),
+
+    BZIP2("application/x-bzip2", "bz2");
+
+
+    private final String mimeType;
+
+    private final String fileExtension;
+
+    ExportCompression(String mimeType, String fileExtension) {
+        this.mimeType = mimeType;
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * The MIME type of the compressed data, or null if the data is not compressed.
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * The file extension appended to the name of a compressed export (without dot), or null if the data is
+     * not compressed.
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Wrap the given output stream so that data written to the returned stream is compressed. Closing the
+     * returned stream finishes the compressed data and closes the given stream.
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:  return new GZIPOutputStream(out, 65536);
+            case BZIP2: return new BZip2CompressorOutputStream(out);
+            default:    return out;
+        }
+    }
+
+    /**
+     * Return the compression with the given name (case insensitive), NONE if the name is null or empty,
+     * or null if there is no such compression.
+     */
+    public static ExportCompression parse(String name) {
+        if(name == null || name.isEmpty()) {
+            return NONE;
+        }
+        for(ExportCompression compression : values()) {
+            if(compression.name().equalsIgnoreCase(name) || name.equalsIgnoreCase(compression.fileExtension)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
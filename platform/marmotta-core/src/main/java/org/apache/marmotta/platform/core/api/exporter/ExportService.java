@@ -170,4 +170,25 @@ public interface ExportService {
      */
     public void exportData(OutputStream outputStream, URI resource, URI context, String mimeType) throws UnsupportedExporterException, IOException;
 
+    /**
+     * Export the triple data contained in the named graph passed as argument "context" and stream it to the output
+     * stream given as first argument using the serialisation format specified by "mimeType", compressing it on the
+     * fly. The data is never buffered as a whole, so this method is suitable for exporting very large stores.
+     * <p/>
+     * If the context is null and the format is line-based (N-Quads or N-Triples), the statements without context and
+     * the named graphs are serialised (and compressed) in parallel and written one after the other in the order of
+     * the contexts; other formats are written by a single writer. In the parallel case each graph is read in its own
+     * transaction, so the export is not a consistent snapshot of the store: changes committed while the export is
+     * running may be contained for some graphs but not for others.
+     *
+     * @param outputStream the OutputStream to write the triples to; will be closed when the triples are written
+     * @param context      the named graph to export; if null, all named graphs will be exported
+     * @param mimeType     a mime type registered by an exporter
+     * @param compression  the compression to apply to the exported data
+     *
+     * @throws UnsupportedExporterException in case there is no matching exporter for the given mime type
+     * @throws IOException in case there is an error writing to the output
+     */
+    public void exportData(OutputStream outputStream, URI context, String mimeType, ExportCompression compression) throws UnsupportedExporterException, IOException;
+
 }
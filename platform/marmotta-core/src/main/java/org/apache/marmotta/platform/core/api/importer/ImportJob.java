@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.importer;
+
+import java.util.Date;
+
+/**
+ * The state of an asynchronous RDF import job (see {@link ImportJobService}). The offset is the number of
+ * statements of the source that have been committed to the triple store; a failed or cancelled job continues
+ * after this offset when it is resumed.
+ */
+public class ImportJob {
+
+    public enum State {
+        /** waiting for a free import thread */
+        QUEUED,
+        /** currently importing */
+        RUNNING,
+        /** all statements have been imported */
+        FINISHED,
+        /** stopped because of an error or a shutdown; can be resumed */
+        FAILED,
+        /** stopped by the user; can be resumed */
+        CANCELLED
+    }
+
+    private final String id;
+
+    private final String source;
+
+    private final String format;
+
+    private final String context;
+
+    private final Date created;
+
+    private volatile State state = State.QUEUED;
+
+    private volatile long offset;
+
+    private volatile long bytesRead;
+
+    private volatile long totalBytes = -1;
+
+    private volatile double statementsPerSecond;
+
+    private volatile Date lastUpdate;
+
+    private volatile String message;
+
+
+    public ImportJob(String id, String source, String format, String context, Date created) {
+        this.id = id;
+        this.source = source;
+        this.format = format;
+        this.context = context;
+        this.created = created;
+        this.lastUpdate = created;
+    }
+
+    /**
+     * The unique identifier of the job.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The URL of the data to import; uploaded data is stored in a local file.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * The MIME type of the data to import.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * The context to import the data into, or null for the contexts given by the data (or the default context).
+     */
+    public String getContext() {
+        return context;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+        this.lastUpdate = new Date();
+    }
+
+    /**
+     * Return true in case the job has been stopped before all data was imported and can be continued.
+     */
+    public boolean isResumable() {
+        return state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * The number of statements of the source that have been committed.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+        this.lastUpdate = new Date();
+    }
+
+    /**
+     * The number of bytes read from the source in the current (or last) run.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * The size of the source in bytes, or -1 if unknown.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * The import rate of the current (or last) run.
+     */
+    public double getStatementsPerSecond() {
+        return statementsPerSecond;
+    }
+
+    public void setStatementsPerSecond(double statementsPerSecond) {
+        this.statementsPerSecond = statementsPerSecond;
+    }
+
+    public Date getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * A message describing the outcome of the job, e.g. the error that stopped it.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportJob %s (%s, %d statements)", id, state, offset);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.api.importer;
+
+import org.apache.marmotta.platform.core.exception.io.MarmottaImportException;
+import org.openrdf.model.URI;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * A service for importing large RDF datasets asynchronously. In contrast to the {@link ImportService}, an
+ * import job commits the data in chunks of a configurable number of statements, records the number of
+ * committed statements, and can be resumed from there after a failure, a cancellation or a restart.
+ * <p/>
+ * Jobs are executed by a bounded number of import threads; their progress is reported through the
+ * task manager.
+ */
+public interface ImportJobService {
+
+    /**
+     * Store the data read from the input stream and schedule its import.
+     *
+     * @param in      the RDF data to import
+     * @param format  the MIME type of the data
+     * @param context the context to import into, or null for the contexts given by the data
+     * @return the created job
+     * @throws MarmottaImportException in case the format is not supported or the data cannot be stored
+     * @throws java.util.concurrent.RejectedExecutionException in case too many jobs are waiting
+     */
+    ImportJob createJob(InputStream in, String format, URI context) throws MarmottaImportException;
+
+    /**
+     * Schedule the import of the RDF data available at the given URL.
+     *
+     * @param url     the location of the RDF data to import
+     * @param format  the MIME type of the data
+     * @param context the context to import into, or null for the contexts given by the data
+     * @return the created job
+     * @throws MarmottaImportException in case the format is not supported
+     * @throws java.util.concurrent.RejectedExecutionException in case too many jobs are waiting
+     */
+    ImportJob createJob(URL url, String format, URI context) throws MarmottaImportException;
+
+    /**
+     * Schedule a failed or cancelled job again; it continues after the last committed statement.
+     *
+     * @throws MarmottaImportException in case the job does not exist or cannot be resumed
+     * @throws java.util.concurrent.RejectedExecutionException in case too many jobs are waiting
+     */
+    ImportJob resumeJob(String id) throws MarmottaImportException;
+
+    /**
+     * Cancel a queued or running job. The statements of the current chunk are rolled back.
+     *
+     * @return true if the job was queued or running
+     */
+    boolean cancelJob(String id);
+
+    /**
+     * Remove a job that is not queued or running, including its stored data.
+     *
+     * @return true if the job was removed
+     */
+    boolean removeJob(String id);
+
+    /**
+     * Return the job with the given id, or null.
+     */
+    ImportJob getJob(String id);
+
+    /**
+     * Return all jobs known to the service, oldest first.
+     */
+    List<ImportJob> listJobs();
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.services.cache;
+
+import org.apache.marmotta.platform.core.api.cache.CacheDependency;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Estimates the heap memory used by the entries of a cache from a sample of its entries. The sizes are rough
+ * approximations for a 64bit JVM with compressed references; objects of unknown types are counted with a fixed
+ * size, their fields are not traversed.
+ */
+class CacheMemoryEstimator {
+
+    // number of entries (and elements of collections) that are measured
+    private static final int SAMPLE_SIZE = 100;
+
+    // nesting of collections that is traversed
+    private static final int MAX_DEPTH = 3;
+
+    // the internal entry of the cache (key, value, hash, reference queues, access order)
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private static final long OBJECT_SIZE = 16;
+
+    private static final long UNKNOWN_SIZE = 64;
+
+    private CacheMemoryEstimator() {
+    }
+
+    /**
+     * Estimate the memory used by the entries of the given map, in bytes.
+     */
+    static long estimate(Map<?,?> map) {
+        final int size = map.size();
+        if(size == 0) {
+            return 0;
+        }
+
+        long sampled = 0, count = 0;
+        for(Iterator<? extends Map.Entry<?,?>> it = map.entrySet().iterator(); it.hasNext() && count < SAMPLE_SIZE; count++) {
+            final Map.Entry<?,?> entry = it.next();
+            sampled += ENTRY_OVERHEAD + sizeOf(entry.getKey(), 0) + sizeOf(entry.getValue(), 0);
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+
+    private static long sizeOf(Object o, int depth) {
+        if(o == null) {
+            return 0;
+        } else if(o instanceof String) {
+            return 40 + 2L * ((String) o).length();
+        } else if(o instanceof Literal) {
+            final Literal l = (Literal) o;
+            return 32 + sizeOf(l.getLabel(), depth) + (l.getLanguage() != null ? 48 : 0) + (l.getDatatype() != null ? 16 : 0);
+        } else if(o instanceof Value) {
+            return 24 + sizeOf(((Value) o).stringValue(), depth);
+        } else if(o instanceof Number || o instanceof Boolean || o instanceof Character || o instanceof Enum) {
+            return OBJECT_SIZE + 8;
+        } else if(o instanceof byte[]) {
+            return OBJECT_SIZE + ((byte[]) o).length;
+        } else if(o instanceof CacheDependency) {
+            return OBJECT_SIZE + 8 + sizeOf(((CacheDependency) o).getResource(), depth);
+        } else if(o instanceof DependentCacheImpl.Entry) {
+            final DependentCacheImpl.Entry<?> e = (DependentCacheImpl.Entry<?>) o;
+            return OBJECT_SIZE + 8 + sizeOf(e.value, depth) + sizeOf(e.dependencies, depth);
+        } else if(depth >= MAX_DEPTH) {
+            return UNKNOWN_SIZE;
+        } else if(o instanceof Collection) {
+            return 48 + sizeOfElements(((Collection<?>) o).iterator(), ((Collection<?>) o).size(), depth + 1);
+        } else if(o instanceof Map) {
+            final Map<?,?> m = (Map<?,?>) o;
+            return 48 + 32L * m.size() + sizeOfElements(m.keySet().iterator(), m.size(), depth + 1) + sizeOfElements(m.values().iterator(), m.size(), depth + 1);
+        } else if(o instanceof Object[]) {
+            final Object[] a = (Object[]) o;
+            return OBJECT_SIZE + sizeOfElements(Arrays.asList(a).iterator(), a.length, depth + 1);
+        } else {
+            return UNKNOWN_SIZE;
+        }
+    }
+
+    private static long sizeOfElements(Iterator<?> it, int size, int depth) {
+        long sampled = 0, count = 0;
+        for(; it.hasNext() && count < SAMPLE_SIZE; count++) {
+            sampled += 8 + sizeOf(it.next(), depth);
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+}
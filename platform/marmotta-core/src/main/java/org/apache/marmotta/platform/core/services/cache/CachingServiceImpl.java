@@ -19,11 +19,21 @@ package org.apache.marmotta.platform.core.services.cache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.platform.core.api.cache.CacheDependency;
+import org.apache.marmotta.platform.core.api.cache.CacheStatistics;
 import org.apache.marmotta.platform.core.api.cache.CachingService;
+import org.apache.marmotta.platform.core.api.cache.DependentCache;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsModule;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsService;
 import org.apache.marmotta.platform.core.events.SystemRestartingEvent;
 import org.apache.marmotta.platform.core.model.config.CoreOptions;
 import org.apache.marmotta.platform.core.qualifiers.cache.MarmottaCache;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterCommit;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
@@ -33,20 +43,33 @@ import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 /**
- * A service that offers a EHCache system cache implementation for use by other components
+ * A service that offers a EHCache system cache implementation for use by other components. Dependent caches are
+ * invalidated by observing the after commit events of the triple store; the usage statistics of all caches are
+ * reported to the statistics service.
  * <p/>
  * User: sschaffe
  */
 @ApplicationScoped
 public class CachingServiceImpl implements CachingService {
 
+    /**
+     * commits changing more triples than this drop all entries of the dependent caches
+     */
+    private static final int MAX_INVALIDATIONS = 10000;
+
     /**
      * Get the seam logger for issuing logging statements.
      */
@@ -56,9 +79,14 @@ public class CachingServiceImpl implements CachingService {
     @Inject
     private ConfigurationService configurationService;
 
+    @Inject
+    private StatisticsService statisticsService;
+
 
     private Map<String,Cache> caches;
 
+    private Map<String,DependentCacheImpl> dependentCaches;
+
 
     public CachingServiceImpl() {
     }
@@ -67,6 +95,9 @@ public class CachingServiceImpl implements CachingService {
     @PostConstruct
     public void initialize() {
         caches = new HashMap<>();
+        dependentCaches = new HashMap<>();
+
+        statisticsService.registerModule(CachingService.class.getSimpleName(), new StatisticsProvider());
     }
 
     /**
@@ -95,22 +126,111 @@ public class CachingServiceImpl implements CachingService {
     @Override
     public ConcurrentMap getCacheByName(String cacheName) {
         synchronized (caches) {
+            if(dependentCaches.containsKey(cacheName)) {
+                throw new IllegalArgumentException("cache " + cacheName + " is a dependent cache");
+            }
             if(!caches.containsKey(cacheName)) {
-                Cache c = CacheBuilder.newBuilder()
-                        .expireAfterAccess(configurationService.getIntConfiguration(CoreOptions.CACHING_EXPIRATION,30), TimeUnit.MINUTES)
-                        .maximumSize(configurationService.getLongConfiguration(CoreOptions.CACHING_MAXIMUM_SIZE,10000L))
-                        .build();
+                Cache c = newCacheBuilder().build();
                 caches.put(cacheName,c);
             }
+            return caches.get(cacheName).asMap();
         }
+    }
+
 
-        return caches.get(cacheName).asMap();
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K,V> DependentCache<K,V> getDependentCache(String cacheName) {
+        synchronized (caches) {
+            if(caches.containsKey(cacheName)) {
+                throw new IllegalArgumentException("cache " + cacheName + " is not a dependent cache");
+            }
+            if(!dependentCaches.containsKey(cacheName)) {
+                dependentCaches.put(cacheName, new DependentCacheImpl<K,V>(cacheName, newCacheBuilder()));
+            }
+            return dependentCaches.get(cacheName);
+        }
     }
 
 
     @Override
     public Set<String> getCacheNames() {
-        return caches.keySet();
+        synchronized (caches) {
+            Set<String> names = new HashSet<>(caches.keySet());
+            names.addAll(dependentCaches.keySet());
+            return names;
+        }
+    }
+
+
+    @Override
+    public CacheStatistics getStatistics(String cacheName) {
+        Cache cache;
+        DependentCacheImpl dependentCache;
+        synchronized (caches) {
+            cache = caches.get(cacheName);
+            dependentCache = dependentCaches.get(cacheName);
+        }
+
+        if(dependentCache != null) {
+            return dependentCache.getStatistics();
+        } else if(cache != null) {
+            CacheStats stats = cache.stats();
+            return new CacheStatistics(cacheName, cache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(), 0,
+                    CacheMemoryEstimator.estimate(cache.asMap()));
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Drop the entries of the dependent caches that depend on resources or contexts changed by the transaction.
+     * @param data
+     */
+    public void onAfterCommit(@Observes @AfterCommit TransactionData data) {
+        Collection<Statement> added = data.getAddedTriples(), removed = data.getRemovedTriples();
+        if(added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        Set<CacheDependency> changed = null;
+        if(added.size() + removed.size() <= MAX_INVALIDATIONS) {
+            changed = new HashSet<>();
+            collectChanged(added, changed);
+            collectChanged(removed, changed);
+        } else {
+            log.debug("large transaction ({} added, {} removed), dropping all entries of dependent caches", added.size(), removed.size());
+        }
+
+        for(DependentCacheImpl cache : getDependentCaches()) {
+            cache.invalidate(changed);
+        }
+    }
+
+    private void collectChanged(Collection<Statement> statements, Set<CacheDependency> changed) {
+        for(Statement stmt : statements) {
+            changed.add(CacheDependency.onResource(stmt.getSubject()));
+            if(stmt.getObject() instanceof Resource) {
+                changed.add(CacheDependency.onResource((Resource) stmt.getObject()));
+            }
+            if(stmt.getContext() != null) {
+                changed.add(CacheDependency.onContext(stmt.getContext()));
+            }
+        }
+    }
+
+    private List<DependentCacheImpl> getDependentCaches() {
+        synchronized (caches) {
+            return new ArrayList<>(dependentCaches.values());
+        }
+    }
+
+    private CacheBuilder<Object,Object> newCacheBuilder() {
+        return CacheBuilder.newBuilder()
+                .expireAfterAccess(configurationService.getIntConfiguration(CoreOptions.CACHING_EXPIRATION,30), TimeUnit.MINUTES)
+                .maximumSize(configurationService.getLongConfiguration(CoreOptions.CACHING_MAXIMUM_SIZE,10000L))
+                .recordStats();
     }
 
 
@@ -121,20 +241,93 @@ public class CachingServiceImpl implements CachingService {
      */
     public void systemRestart(@Observes SystemRestartingEvent e) {
         log.warn("system restarted, flushing caches ...");
-        caches.clear();
+        clearAll();
     }
 
 
+    /**
+     * Remove the entries of all caches; the caches stay registered, since the services holding them keep using them.
+     */
     @Override
     public void clearAll() {
-        caches.clear();
+        synchronized (caches) {
+            for(Cache cache : caches.values()) {
+                cache.invalidateAll();
+            }
+            for(DependentCacheImpl cache : dependentCaches.values()) {
+                cache.invalidateAll();
+            }
+        }
     }
 
 
     @PreDestroy
     public void destroy() {
         log.info("Apache Marmotta Caching Service shutting down ...");
-        caches.clear();
+        statisticsService.unregisterModule(CachingService.class.getSimpleName());
+        synchronized (caches) {
+            caches.clear();
+            dependentCaches.clear();
+        }
         log.info("Apache Marmotta Caching Service shut down successfully.");
     }
+
+
+    private class StatisticsProvider implements StatisticsModule {
+
+        private boolean enabled = true;
+
+        @Override
+        public void enable() {
+            enabled = true;
+        }
+
+        @Override
+        public void disable() {
+            enabled = false;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public List<String> getPropertyNames() {
+            return new ArrayList<>(getStatistics().keySet());
+        }
+
+        /**
+         * Per cache the number of entries, the hit rate, the number of evicted and invalidated entries and the
+         * estimated memory used by the entries.
+         */
+        @Override
+        public Map<String, String> getStatistics() {
+            Map<String,String> result = new LinkedHashMap<>();
+            List<String> names = new ArrayList<>(getCacheNames());
+            Collections.sort(names);
+            for(String name : names) {
+                CacheStatistics stats = CachingServiceImpl.this.getStatistics(name);
+                if(stats != null) {
+                    result.put(name + " size", String.valueOf(stats.getSize()));
+                    result.put(name + " hit rate", String.format("%.1f%%", stats.getHitRate() * 100));
+                    result.put(name + " evictions", String.valueOf(stats.getEvictionCount()));
+                    result.put(name + " invalidations", String.valueOf(stats.getInvalidationCount()));
+                    result.put(name + " memory", humanReadableBytes(stats.getEstimatedMemory()));
+                }
+            }
+            return result;
+        }
+
+        private String humanReadableBytes(long bytes) {
+            if (bytes < 1024) return bytes + " B";
+            int exp = (int) (Math.log(bytes) / Math.log(1024));
+            return String.format("~%.1f %siB", bytes / Math.pow(1024, exp), "KMGTPE".charAt(exp - 1));
+        }
+
+        @Override
+        public String getName() {
+            return CachingService.class.getSimpleName();
+        }
+    }
 }
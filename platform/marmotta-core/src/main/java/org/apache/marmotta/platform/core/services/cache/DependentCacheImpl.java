@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.services.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
+import org.apache.marmotta.platform.core.api.cache.CacheDependency;
+import org.apache.marmotta.platform.core.api.cache.CacheStatistics;
+import org.apache.marmotta.platform.core.api.cache.DependentCache;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Guava cache with an index from dependencies to the keys of the entries depending on them. The index is updated
+ * by a removal listener, so that entries evicted by Guava do not stay in the index; changes of the index and of the
+ * generation are synchronized, reads of the cache are not.
+ * <p/>
+ * The dependencies invalidated by the last {@link #HISTORY_SIZE} generations are kept, so that a value computed
+ * while other data changed can still be cached; only values depending on data changed since their generation, or
+ * computed before the oldest kept generation, are rejected.
+ */
+class DependentCacheImpl<K,V> implements DependentCache<K,V> {
+
+    private final String name;
+
+    private final Cache<K, Entry<V>> cache;
+
+    private final Map<CacheDependency, Set<K>> index = new HashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // number of generations for which the invalidated dependencies are kept
+    static final int HISTORY_SIZE = 64;
+
+    // the dependencies invalidated by the most recent generations, oldest first; guarded by index
+    private final Deque<Invalidation> history = new ArrayDeque<>();
+
+    DependentCacheImpl(String name, CacheBuilder<Object,Object> builder) {
+        this.name = name;
+        this.cache = builder.removalListener(new RemovalListener<K, Entry<V>>() {
+            @Override
+            public void onRemoval(RemovalNotification<K, Entry<V>> notification) {
+                if(notification.getKey() != null && notification.getValue() != null) {
+                    unindex(notification.getKey(), notification.getValue());
+                }
+            }
+        }).build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public V get(K key) {
+        final Entry<V> entry = cache.getIfPresent(key);
+        return entry != null ? entry.value : null;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public boolean put(K key, V value, long generation, CacheDependency... dependencies) {
+        synchronized (index) {
+            if(isInvalidatedSince(generation, dependencies)) {
+                return false;
+            }
+
+            final Entry<V> entry = new Entry<>(value, ImmutableSet.copyOf(dependencies));
+            cache.put(key, entry);
+            for(CacheDependency dependency : entry.dependencies) {
+                Set<K> keys = index.get(dependency);
+                if(keys == null) {
+                    keys = new HashSet<>();
+                    index.put(dependency, keys);
+                }
+                keys.add(key);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        synchronized (index) {
+            cache.invalidateAll();
+            index.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Drop the entries depending on the given changes of a committed transaction; if the changes are null, the
+     * transaction was too large to track them and all entries are dropped.
+     */
+    void invalidate(Set<CacheDependency> changed) {
+        synchronized (index) {
+            history.addLast(new Invalidation(generation.incrementAndGet(), changed));
+            if(history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+
+            if(changed == null) {
+                invalidations.addAndGet(cache.size());
+                invalidateAll();
+                return;
+            }
+
+            final Set<K> keys = new HashSet<>();
+            for(CacheDependency dependency : changed) {
+                final Set<K> dependent = index.get(dependency);
+                if(dependent != null) {
+                    keys.addAll(dependent);
+                }
+            }
+            for(K key : keys) {
+                if(cache.asMap().remove(key) != null) {
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether one of the dependencies has been invalidated after the given generation; the caller needs to
+     * hold the lock of the index.
+     */
+    private boolean isInvalidatedSince(long since, CacheDependency[] dependencies) {
+        if(since == generation.get()) {
+            return false;
+        }
+        if(since > generation.get() || history.isEmpty() || history.getFirst().generation > since + 1) {
+            // the invalidations since then are not known anymore
+            return true;
+        }
+        final Set<CacheDependency> declared = ImmutableSet.copyOf(dependencies);
+        for(Iterator<Invalidation> it = history.descendingIterator(); it.hasNext(); ) {
+            final Invalidation invalidation = it.next();
+            if(invalidation.generation <= since) {
+                break;
+            }
+            if(invalidation.changed == null || !Collections.disjoint(invalidation.changed, declared)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    CacheStatistics getStatistics() {
+        final CacheStats stats = cache.stats();
+        return new CacheStatistics(name, cache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                invalidations.get(), CacheMemoryEstimator.estimate(cache.asMap()));
+    }
+
+    /**
+     * Remove the key from the index of the dependencies of a removed entry; dependencies that are also declared by
+     * the entry now cached for the key (if the notification arrives after the key was put again) are kept.
+     */
+    private void unindex(K key, Entry<V> removed) {
+        synchronized (index) {
+            final Entry<V> current = cache.asMap().get(key);
+            for(CacheDependency dependency : removed.dependencies) {
+                if(current != null && current.dependencies.contains(dependency)) {
+                    continue;
+                }
+                final Set<K> keys = index.get(dependency);
+                if(keys != null) {
+                    keys.remove(key);
+                    if(keys.isEmpty()) {
+                        index.remove(dependency);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Invalidation {
+        final long generation;
+        final Set<CacheDependency> changed;
+
+        private Invalidation(long generation, Set<CacheDependency> changed) {
+            this.generation = generation;
+            this.changed = changed;
+        }
+    }
+
+    static final class Entry<V> {
+        final V value;
+        final Set<CacheDependency> dependencies;
+
+        private Entry(V value, Set<CacheDependency> dependencies) {
+            this.value = value;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -24,7 +24,9 @@ import org.apache.commons.configuration.interpol.ConfigurationInterpolator;
 import org.apache.commons.lang.text.StrLookup;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.marmotta.platform.core.api.config.ConfigurationProperty;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.config.ConfigurationSnapshot;
 import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
 import org.apache.marmotta.platform.core.events.ConfigurationServiceInitEvent;
 import org.apache.marmotta.platform.core.events.LoggingStartEvent;
@@ -123,10 +125,18 @@ public class ConfigurationServiceImpl implements ConfigurationService {
 
     /**
      * A lock to ensure proper concurrent access to the configuration. The system requests a write lock in case a
-     * setXXX() method is called and a read lock in case a getXXX() method is called.
+     * setXXX() method is called; typed getXXX() methods read from the snapshot, the remaining ones request a read lock.
      */
     private ReadWriteLock lock;
 
+    /**
+     * An immutable copy of the configuration that is used by all getXXX() methods, so that reading the
+     * configuration does not need the lock; it is replaced in save() after every modification.
+     */
+    private volatile ConfigurationSnapshot snapshot;
+
+    private long snapshotVersion = 0;
+
     /**
      * Backlog for delayed event collection; only fires a configuration changed event if there has not been a further
      * update in a specified amount of time (default 250ms);
@@ -459,16 +469,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
      */
     @Override
     public List<String> listConfigurationKeys() {
-        lock.readLock().lock();
-        try {
-            List<String> keys = new LinkedList<String>();
-            for (Iterator<String> it = config.getKeys(); it.hasNext();) {
-                keys.add(it.next());
-            }
-            return keys;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.listKeys();
     }
 
     /**
@@ -479,16 +480,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
      */
     @Override
     public List<String> listConfigurationKeys(String prefix) {
-        lock.readLock().lock();
-        try {
-            List<String> keys = new LinkedList<String>();
-            for (Iterator<String> it = config.getKeys(prefix); it.hasNext();) {
-                keys.add(it.next());
-            }
-            return keys;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.listKeys(prefix);
     }
 
     /**
@@ -500,19 +492,14 @@ public class ConfigurationServiceImpl implements ConfigurationService {
      */
     @Override
     public List<Matcher> listConfigurationKeys(Pattern pattern) {
-        lock.readLock().lock();
-        try {
-            List<Matcher> keys = new LinkedList<Matcher>();
-            for (Iterator<String> it = config.getKeys(); it.hasNext();) {
-                Matcher m = pattern.matcher(it.next());
-                if(m.matches()) {
-                    keys.add(m);
-                }
+        List<Matcher> keys = new LinkedList<Matcher>();
+        for (String key : snapshot.listKeys()) {
+            Matcher m = pattern.matcher(key);
+            if(m.matches()) {
+                keys.add(m);
             }
-            return keys;
-        } finally {
-            lock.readLock().unlock();
         }
+        return keys;
     }
 
     /*
@@ -522,12 +509,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
          */
     @Override
     public boolean isConfigurationSet(String key) {
-        lock.readLock().lock();
-        try {
-            return config.containsKey(key);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.containsKey(key);
     }
 
     /**
@@ -666,19 +648,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            if (config instanceof AbstractConfiguration) {
-                ((AbstractConfiguration) config).setDelimiterParsingDisabled(true);
-            }
-            String result = config.getString(key);
-            if (config instanceof AbstractConfiguration) {
-                ((AbstractConfiguration) config).setDelimiterParsingDisabled(false);
-            }
-            return result;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getString(key, null);
     }
 
     @Override
@@ -686,19 +656,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            if (config instanceof AbstractConfiguration) {
-                ((AbstractConfiguration) config).setDelimiterParsingDisabled(true);
-            }
-            String result = config.getString(key, defaultValue);
-            if (config instanceof AbstractConfiguration) {
-                ((AbstractConfiguration) config).setDelimiterParsingDisabled(false);
-            }
-            return result;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getString(key, defaultValue);
     }
 
     @Override
@@ -706,12 +664,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getDouble(key, 0.0);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getDouble(key, 0.0);
     }
 
     @Override
@@ -719,12 +672,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getDouble(key, defaultValue);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getDouble(key, defaultValue);
     }
 
     /*
@@ -757,12 +705,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised, "ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getInt(key, 0);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getInt(key, 0);
     }
 
     @Override
@@ -770,12 +713,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getInt(key, defaultValue);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getInt(key, defaultValue);
     }
 
     /*
@@ -815,12 +753,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised, "ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getLong(key, 0);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getLong(key, 0);
     }
 
     /**
@@ -836,12 +769,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getLong(key, defaultValue);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getLong(key, defaultValue);
     }
 
     /**
@@ -875,12 +803,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getBoolean(key, false);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getBoolean(key, false);
 
     }
 
@@ -889,12 +812,7 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            return config.getBoolean(key, defaultValue);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return snapshot.getBoolean(key, defaultValue);
 
     }
 
@@ -954,16 +872,11 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            String[] result = config.getStringArray(key);
+        List<String> result = snapshot.getList(key);
 
-            if (result.length == 1 && "".equals(result[0].trim())) return Collections.emptyList();
+        if (result.size() == 1 && "".equals(result.get(0).trim())) return Collections.emptyList();
 
-            return Lists.newArrayList(result);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return result;
 
     }
 
@@ -978,19 +891,90 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         Preconditions.checkNotNull(key);
         Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
 
-        lock.readLock().lock();
-        try {
-            if (config.containsKey(key)) {
-                String[] values = config.getStringArray(key);
-                if (values.length > 0) return Lists.newArrayList(values);
-                else
-                    return Lists.newArrayList();
-            } else
-                return defaultValue;
-        } finally {
-            lock.readLock().unlock();
-        }
+        if (snapshot.containsKey(key)) {
+            return snapshot.getList(key);
+        } else
+            return defaultValue;
+
+    }
+
+    @Override
+    public ConfigurationSnapshot getSnapshot() {
+        Preconditions.checkState(initialised,"ConfigurationService not yet initialised; call initialise() manually");
+
+        return snapshot;
+    }
 
+    @Override
+    public ConfigurationProperty<String> getStringProperty(String key, final String defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<String>(this, key) {
+            @Override
+            protected String convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.getString(key, defaultValue);
+            }
+        };
+    }
+
+    @Override
+    public ConfigurationProperty<Integer> getIntProperty(String key, final int defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<Integer>(this, key) {
+            @Override
+            protected Integer convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.getInt(key, defaultValue);
+            }
+        };
+    }
+
+    @Override
+    public ConfigurationProperty<Long> getLongProperty(String key, final long defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<Long>(this, key) {
+            @Override
+            protected Long convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.getLong(key, defaultValue);
+            }
+        };
+    }
+
+    @Override
+    public ConfigurationProperty<Double> getDoubleProperty(String key, final double defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<Double>(this, key) {
+            @Override
+            protected Double convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.getDouble(key, defaultValue);
+            }
+        };
+    }
+
+    @Override
+    public ConfigurationProperty<Boolean> getBooleanProperty(String key, final boolean defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<Boolean>(this, key) {
+            @Override
+            protected Boolean convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.getBoolean(key, defaultValue);
+            }
+        };
+    }
+
+    @Override
+    public ConfigurationProperty<List<String>> getListProperty(String key, final List<String> defaultValue) {
+        Preconditions.checkNotNull(key);
+
+        return new ConfigurationProperty<List<String>>(this, key) {
+            @Override
+            protected List<String> convert(ConfigurationSnapshot snapshot, String key) {
+                return snapshot.containsKey(key) ? Collections.unmodifiableList(snapshot.getList(key)) : defaultValue;
+            }
+        };
     }
 
     /*
@@ -1158,6 +1142,9 @@ public class ConfigurationServiceImpl implements ConfigurationService {
     }
 
     protected void save() {
+        // every modification of the configuration ends with save(), so this is where the new state is published
+        snapshot = ConfigurationSnapshot.create(++snapshotVersion, config);
+
         if(saveConfiguration instanceof PropertiesConfiguration) {
             try {
                 log.debug("Saving configuration values");
@@ -18,10 +18,13 @@
 package org.apache.marmotta.platform.core.services.exporter;
 
 import com.google.common.collect.ImmutableSet;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.exporter.ExportCompression;
 import org.apache.marmotta.platform.core.api.exporter.ExportService;
 import org.apache.marmotta.platform.core.api.io.MarmottaIOService;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
 import org.apache.marmotta.platform.core.exception.io.UnsupportedExporterException;
+import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -34,10 +37,23 @@ import org.slf4j.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Methods for writing triple data into different targets using different exporters.
@@ -48,9 +64,24 @@ import java.util.Set;
 @ApplicationScoped
 public class ExporterServiceImpl implements ExportService {
 
+    private static final String CONFIG_KEY_THREADS = "exporter.threads";
+
+    /**
+     * size of the chunks passed from the segment writers to the output
+     */
+    private static final int SEGMENT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * maximum number of chunks buffered per segment, i.e. at most 4 MiB per running segment writer
+     */
+    private static final int SEGMENT_CHUNKS = 64;
+
     @Inject
     private Logger log;
 
+    @Inject
+    private ConfigurationService configurationService;
+
     @Inject
     private MarmottaIOService ioService;
 
@@ -330,4 +361,249 @@ public class ExporterServiceImpl implements ExportService {
             throw new IOException("error while writing RDF data to stream");
         }
     }
+    /**
+     * Export the triple data contained in the named graph passed as argument "context" and stream it to the output
+     * stream given as first argument using the serialisation format specified by "mimeType", compressing it on the
+     * fly. The data is never buffered as a whole, so this method is suitable for exporting very large stores.
+     * <p/>
+     * If the context is null and the format is line-based (N-Quads or N-Triples), the statements without context and
+     * the named graphs are serialised (and compressed) in parallel and written one after the other in the order of
+     * the contexts; other formats are written by a single writer. In the parallel case each graph is read in its own
+     * transaction, so the export is not a consistent snapshot of the store: changes committed while the export is
+     * running may be contained for some graphs but not for others.
+     *
+     * @param outputStream the OutputStream to write the triples to; will be closed when the triples are written
+     * @param context      the named graph to export; if null, all named graphs will be exported
+     * @param mimeType     a mime type registered by an exporter
+     * @param compression  the compression to apply to the exported data
+     * @throws org.apache.marmotta.platform.core.exception.io.UnsupportedExporterException
+     *                             in case there is no matching exporter for the given mime type
+     * @throws java.io.IOException in case there is an error writing to the output
+     */
+    @Override
+    public void exportData(OutputStream outputStream, URI context, String mimeType, ExportCompression compression) throws UnsupportedExporterException, IOException {
+        RDFFormat serializer = ioService.getSerializer(mimeType);
+        if(serializer == null) {
+            log.warn("could not find serializer for MIME type {}",mimeType);
+            throw new UnsupportedExporterException("No serializer for mime type "+mimeType);
+        }
+
+        int threads = configurationService.getIntConfiguration(CONFIG_KEY_THREADS, 4);
+        if(context == null && threads > 1 && (RDFFormat.NQUADS.equals(serializer) || RDFFormat.NTRIPLES.equals(serializer))) {
+            exportSegments(outputStream, serializer, compression, threads);
+        } else {
+            OutputStream out = compression.wrap(outputStream);
+            try {
+                exportData(out, context, mimeType);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Serialise the statements without context and each context into a separate segment using a pool of writer
+     * threads, and copy the segments to the output in the order of the contexts. Each segment is written on its own
+     * connection, since a connection cannot be shared by the writer threads. Line-based formats and the supported compressions allow concatenating
+     * the segments. At most one segment per thread is started ahead of the output, and the writers of later segments
+     * block as soon as their buffer is full, so the memory used is bounded by the number of threads.
+     */
+    private void exportSegments(OutputStream outputStream, RDFFormat format, ExportCompression compression, int threads) throws IOException {
+        final List<Resource> contexts = new ArrayList<>();
+        // the default graph is not listed by getContextIDs()
+        contexts.add(null);
+        try {
+            RepositoryConnection connection = sesameService.getConnection();
+            try {
+                connection.begin();
+                contexts.addAll(connection.getContextIDs().asList());
+            } finally {
+                connection.commit();
+                connection.close();
+            }
+        } catch (RepositoryException e) {
+            throw new IOException("error while listing the contexts to export", e);
+        }
+
+        log.info("exporting {} contexts as {} using {} threads", contexts.size(), format.getName(), threads);
+        long start = System.currentTimeMillis();
+
+        final AtomicInteger counter = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Export Thread " + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            // sliding window of the segments currently being written; a segment is only submitted when a thread is
+            // free to write it, so the segment the output is waiting for has always been started
+            Deque<Segment> window = new ArrayDeque<>(threads);
+            Iterator<Resource> pending = contexts.iterator();
+            while(pending.hasNext() || !window.isEmpty()) {
+                while(window.size() < threads && pending.hasNext()) {
+                    Segment segment = new Segment(pending.next());
+                    window.add(segment);
+                    executor.execute(new SegmentWriter(segment, format, compression));
+                }
+                window.poll().transferTo(outputStream);
+            }
+        } finally {
+            // interrupts writers blocked on a full segment in case the output failed
+            executor.shutdownNow();
+        }
+        outputStream.close();
+
+        log.info("exported {} contexts in {} ms", contexts.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Writes all statements of a context (or the statements without context) into a segment, using its own
+     * connection.
+     */
+    private class SegmentWriter implements Runnable {
+
+        private final Segment segment;
+        private final RDFFormat format;
+        private final ExportCompression compression;
+
+        private SegmentWriter(Segment segment, RDFFormat format, ExportCompression compression) {
+            this.segment = segment;
+            this.format = format;
+            this.compression = compression;
+        }
+
+        @Override
+        public void run() {
+            try {
+                RepositoryConnection connection = sesameService.getConnection();
+                try {
+                    connection.begin();
+                    OutputStream out = compression.wrap(segment);
+                    connection.exportStatements(null, null, null, true, Rio.createWriter(format, out), segment.context);
+                    // completes the compressed stream of the segment
+                    out.close();
+                } finally {
+                    connection.commit();
+                    connection.close();
+                }
+                segment.finish(null);
+            } catch (RepositoryException | RDFHandlerException | IOException | RuntimeException e) {
+                segment.finish(e);
+            }
+        }
+    }
+
+    /**
+     * The serialised data of a single context, passed in chunks through a bounded queue from the writer thread
+     * to the thread copying the segments to the output.
+     */
+    private static class Segment extends OutputStream {
+
+        private static final byte[] END = new byte[0];
+
+        // null for the statements without context
+        private final Resource context;
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(SEGMENT_CHUNKS);
+
+        // allocated on the first write after a chunk has been passed on
+        private byte[] buffer;
+
+        private int position = 0;
+
+        private volatile Exception error;
+
+        private Segment(Resource context) {
+            this.context = context;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if(buffer == null) {
+                buffer = new byte[SEGMENT_CHUNK_SIZE];
+            } else if(position == buffer.length) {
+                flushChunk();
+                buffer = new byte[SEGMENT_CHUNK_SIZE];
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0) {
+                if(buffer == null) {
+                    buffer = new byte[SEGMENT_CHUNK_SIZE];
+                } else if(position == buffer.length) {
+                    flushChunk();
+                    buffer = new byte[SEGMENT_CHUNK_SIZE];
+                }
+                int n = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Closing the stream does not end the segment, see {@link #finish(Exception)}.
+         */
+        @Override
+        public void close() {
+        }
+
+        private void flushChunk() throws IOException {
+            if(position > 0) {
+                put(position == buffer.length ? buffer : Arrays.copyOf(buffer, position));
+                buffer = null;
+                position = 0;
+            }
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                chunks.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("export has been cancelled");
+            }
+        }
+
+        /**
+         * Called by the writer when the segment is complete or the export of the context failed.
+         */
+        private void finish(Exception failure) {
+            try {
+                if(failure == null) {
+                    flushChunk();
+                } else {
+                    error = failure;
+                    chunks.clear();
+                }
+                put(END);
+            } catch (IOException e) {
+                // the export has been cancelled, nobody is waiting for the segment
+            }
+        }
+
+        /**
+         * Copy the segment to the output, waiting for the writer where necessary.
+         */
+        private void transferTo(OutputStream out) throws IOException {
+            try {
+                for(byte[] chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+                    out.write(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("export has been interrupted");
+            }
+            if(error != null) {
+                throw new IOException("error while exporting " + (context != null ? "context " + context : "the statements without context"), error);
+            }
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.services.importer;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * Adds the parsed statements to the repository connection and commits every N statements, reporting the
+ * number of committed statements as offset to the listener. Statements up to the offset of a resumed import are
+ * skipped. Blank node ids are prefixed with an identifier of the import, so that the blank nodes of a resumed
+ * import match the ones committed before (the parser needs to preserve the blank node ids of the data).
+ * <p/>
+ * The connection needs to be active when parsing starts; after parsing, {@link #commit()} commits the last chunk.
+ */
+class ChunkedInserter extends RDFHandlerBase {
+
+    // report the progress at most every N statements between commits
+    static final int PROGRESS_INTERVAL = 10000;
+
+    /**
+     * Receives the progress of a chunked import.
+     */
+    interface Listener {
+
+        /**
+         * Called while skipping the statements committed by a previous run.
+         */
+        void skipping(long remaining);
+
+        /**
+         * Called every {@link #PROGRESS_INTERVAL} statements and after each commit.
+         *
+         * @param seen the number of statements parsed so far, including the skipped ones
+         */
+        void progress(long seen);
+
+        /**
+         * Called after a chunk has been committed.
+         *
+         * @param offset the number of statements of the source that have been committed
+         */
+        void committed(long offset);
+    }
+
+    /**
+     * Thrown when the importing thread is interrupted; the statements of the current chunk are not committed.
+     */
+    static class ImportCancelledException extends RDFHandlerException {
+        ImportCancelledException() {
+            super("import cancelled");
+        }
+    }
+
+    private final RepositoryConnection connection;
+    private final ValueFactory valueFactory;
+    private final Resource[] contexts;
+    private final String bnodePrefix;
+    private final Listener listener;
+
+    private final int commitInterval;
+
+    private final long startOffset;
+
+    private long seen = 0;
+
+    /**
+     * @param connection     the connection to add the statements to
+     * @param context        the context to add the statements to, or null for the contexts given by the data
+     * @param commitInterval the number of statements per commit
+     * @param startOffset    the number of statements committed by a previous run, which are skipped
+     * @param bnodePrefix    a prefix for blank node ids that is the same in each run of the import
+     * @param listener       receives the progress
+     */
+    ChunkedInserter(RepositoryConnection connection, Resource context, int commitInterval, long startOffset, String bnodePrefix, Listener listener) {
+        this.connection = connection;
+        this.valueFactory = connection.getValueFactory();
+        this.contexts = context != null ? new Resource[] { context } : new Resource[0];
+        this.commitInterval = Math.max(1, commitInterval);
+        this.startOffset = startOffset;
+        this.bnodePrefix = bnodePrefix;
+        this.listener = listener;
+    }
+
+    /**
+     * The number of statements parsed so far, including the skipped ones.
+     */
+    long getSeen() {
+        return seen;
+    }
+
+    /**
+     * The number of statements committed by a previous run.
+     */
+    long getStartOffset() {
+        return startOffset;
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+        if(seen < startOffset) {
+            return;
+        }
+        try {
+            if(connection.getNamespace(prefix) == null) {
+                connection.setNamespace(prefix, uri);
+            }
+        } catch (RepositoryException e) {
+            throw new RDFHandlerException(e);
+        }
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        if(Thread.currentThread().isInterrupted()) {
+            throw new ImportCancelledException();
+        }
+
+        if(++seen <= startOffset) {
+            if(seen % PROGRESS_INTERVAL == 0) {
+                listener.skipping(startOffset - seen);
+            }
+            return;
+        }
+
+        try {
+            Resource context = contexts.length == 0 ? st.getContext() : null;
+            if(context != null) {
+                connection.add(convert(st.getSubject()), st.getPredicate(), convert(st.getObject()), context);
+            } else {
+                connection.add(convert(st.getSubject()), st.getPredicate(), convert(st.getObject()), contexts);
+            }
+        } catch (RepositoryException e) {
+            throw new RDFHandlerException(e);
+        }
+
+        if(seen % commitInterval == 0) {
+            commit();
+            try {
+                connection.begin();
+            } catch (RepositoryException e) {
+                throw new RDFHandlerException(e);
+            }
+        } else if(seen % PROGRESS_INTERVAL == 0) {
+            listener.progress(seen);
+        }
+    }
+
+    /**
+     * Commit the current chunk.
+     */
+    void commit() throws RDFHandlerException {
+        try {
+            connection.commit();
+        } catch (RepositoryException e) {
+            throw new RDFHandlerException(e);
+        }
+        listener.committed(Math.max(seen, startOffset));
+        listener.progress(seen);
+    }
+
+    private <T extends Value> T convert(T value) {
+        if(value instanceof BNode) {
+            @SuppressWarnings("unchecked")
+            T bnode = (T) valueFactory.createBNode(bnodePrefix + "-" + ((BNode) value).getID());
+            return bnode;
+        }
+        return value;
+    }
+}
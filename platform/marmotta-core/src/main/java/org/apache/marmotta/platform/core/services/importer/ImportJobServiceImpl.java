@@ -0,0 +1,439 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.services.importer;
+
+import com.google.common.io.CountingInputStream;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.importer.ImportJob;
+import org.apache.marmotta.platform.core.api.importer.ImportJobService;
+import org.apache.marmotta.platform.core.api.task.Task;
+import org.apache.marmotta.platform.core.api.task.TaskManagerService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.events.SystemStartupEvent;
+import org.apache.marmotta.platform.core.exception.io.MarmottaImportException;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.*;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Implementation of asynchronous, chunked and resumable RDF import jobs. The state of each job is stored
+ * in a properties file in the import-jobs directory of the Marmotta home, together with the uploaded data,
+ * so that jobs interrupted by a shutdown can be resumed after a restart.
+ */
+@ApplicationScoped
+public class ImportJobServiceImpl implements ImportJobService {
+
+    private static final String CONFIG_PREFIX = "importer.jobs.";
+    private static final String CONFIG_KEY_COMMIT_INTERVAL = CONFIG_PREFIX + "commit_interval";
+    private static final String CONFIG_KEY_THREADS = CONFIG_PREFIX + "threads";
+    private static final String CONFIG_KEY_QUEUE = CONFIG_PREFIX + "queue";
+    private static final String CONFIG_KEY_RESUME = CONFIG_PREFIX + "resume_on_startup";
+
+    private static final String DIR_JOBS = "import-jobs";
+
+    private static final String TASK_GROUP = "Import Jobs";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private ConfigurationService configurationService;
+
+    @Inject
+    private TaskManagerService taskManagerService;
+
+    @Inject
+    private SesameService sesameService;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final Map<String, Future<?>> futures = new ConcurrentHashMap<>();
+
+    private Path jobDirectory;
+
+    private volatile boolean shuttingDown = false;
+
+    @PostConstruct
+    public void initialise() {
+        final int threads = Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_THREADS, 2));
+        final AtomicInteger counter = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_QUEUE, 16))),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Import Job Thread " + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        jobDirectory = Paths.get(configurationService.getHome(), DIR_JOBS).toAbsolutePath();
+        try {
+            Files.createDirectories(jobDirectory);
+            loadJobs();
+        } catch (IOException e) {
+            log.error("could not read import jobs from {}: {}", jobDirectory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        executor.shutdownNow();
+        for(ImportJob job : jobs.values()) {
+            if(job.getState() == ImportJob.State.QUEUED || job.getState() == ImportJob.State.RUNNING) {
+                job.setState(ImportJob.State.FAILED);
+                job.setMessage("interrupted by shutdown");
+                saveJob(job);
+            }
+        }
+    }
+
+    /**
+     * Resume jobs that have been interrupted by the last shutdown, if configured.
+     */
+    public void onSystemStartup(@Observes SystemStartupEvent event) {
+        if(configurationService.getBooleanConfiguration(CONFIG_KEY_RESUME, true)) {
+            for(ImportJob job : listJobs()) {
+                if(job.getState() == ImportJob.State.FAILED && "interrupted by shutdown".equals(job.getMessage())) {
+                    log.info("resuming import job {} after {} statements", job.getId(), job.getOffset());
+                    try {
+                        resumeJob(job.getId());
+                    } catch (MarmottaImportException | RejectedExecutionException e) {
+                        log.error("could not resume import job {}: {}", job.getId(), e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public ImportJob createJob(InputStream in, String format, URI context) throws MarmottaImportException {
+        checkFormat(format);
+
+        String id = UUID.randomUUID().toString();
+        Path data = jobDirectory.resolve(id + ".data");
+        try {
+            Files.copy(in, data, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new MarmottaImportException("could not store data for import job", e);
+        }
+
+        ImportJob job = new ImportJob(id, data.toUri().toString(), format, context != null ? context.stringValue() : null, new Date());
+        return submit(job);
+    }
+
+    @Override
+    public ImportJob createJob(URL url, String format, URI context) throws MarmottaImportException {
+        checkFormat(format);
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), url.toExternalForm(), format, context != null ? context.stringValue() : null, new Date());
+        return submit(job);
+    }
+
+    @Override
+    public ImportJob resumeJob(String id) throws MarmottaImportException {
+        ImportJob job = jobs.get(id);
+        if(job == null) {
+            throw new MarmottaImportException("import job " + id + " does not exist");
+        } else if(!job.isResumable()) {
+            throw new MarmottaImportException("import job " + id + " cannot be resumed in state " + job.getState());
+        }
+        return submit(job);
+    }
+
+    @Override
+    public boolean cancelJob(String id) {
+        Future<?> future = futures.get(id);
+        if(future != null && future.cancel(true)) {
+            ImportJob job = jobs.get(id);
+            if(job.getState() == ImportJob.State.QUEUED) {
+                // never started, so the import thread will not update the state
+                job.setState(ImportJob.State.CANCELLED);
+                saveJob(job);
+            }
+            executor.remove((Runnable) future);
+            futures.remove(id);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeJob(String id) {
+        ImportJob job = jobs.get(id);
+        if(job == null || job.getState() == ImportJob.State.QUEUED || job.getState() == ImportJob.State.RUNNING) {
+            return false;
+        }
+        jobs.remove(id);
+        try {
+            Files.deleteIfExists(jobDirectory.resolve(id + ".properties"));
+            Files.deleteIfExists(jobDirectory.resolve(id + ".data"));
+        } catch (IOException e) {
+            log.warn("could not delete files of import job {}: {}", id, e.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public ImportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public List<ImportJob> listJobs() {
+        List<ImportJob> result = new ArrayList<>(jobs.values());
+        Collections.sort(result, new Comparator<ImportJob>() {
+            @Override
+            public int compare(ImportJob o1, ImportJob o2) {
+                return o1.getCreated().compareTo(o2.getCreated());
+            }
+        });
+        return result;
+    }
+
+
+    private void checkFormat(String format) throws MarmottaImportException {
+        if(Rio.getParserFormatForMIMEType(format) == null) {
+            throw new MarmottaImportException("unsupported RDF format: " + format);
+        }
+    }
+
+    private ImportJob submit(final ImportJob job) {
+        job.setState(ImportJob.State.QUEUED);
+        job.setMessage(null);
+        jobs.put(job.getId(), job);
+
+        try {
+            futures.put(job.getId(), executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runJob(job);
+                    } finally {
+                        futures.remove(job.getId());
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            job.setState(ImportJob.State.FAILED);
+            job.setMessage("rejected, too many import jobs waiting");
+            saveJob(job);
+            throw e;
+        }
+        saveJob(job);
+        return job;
+    }
+
+    private void runJob(ImportJob job) {
+        final Task task = taskManagerService.createTask("Import Job " + job.getId(), TASK_GROUP);
+        task.updateMessage("importing data");
+        task.updateDetailMessage("source", job.getSource());
+        task.updateDetailMessage("format", job.getFormat());
+        if(job.getContext() != null) {
+            task.updateDetailMessage("context", job.getContext());
+        }
+        if(job.getOffset() > 0) {
+            task.updateDetailMessage("resumed at", String.valueOf(job.getOffset()));
+        }
+
+        job.setState(ImportJob.State.RUNNING);
+        job.setBytesRead(0);
+        saveJob(job);
+
+        try {
+            URLConnection connection = new URL(job.getSource()).openConnection();
+            job.setTotalBytes(connection.getContentLengthLong());
+            if(job.getTotalBytes() > 0) {
+                task.updateTotalSteps(job.getTotalBytes());
+            }
+
+            try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(connection.getInputStream()));
+                 InputStream in = job.getSource().endsWith(".gz") ? new GZIPInputStream(counter) : counter) {
+                RepositoryConnection con = sesameService.getConnection();
+                try {
+                    RDFFormat format = Rio.getParserFormatForMIMEType(job.getFormat());
+                    RDFParser parser = Rio.createParser(format, con.getValueFactory());
+                    parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+
+                    ChunkedInserter inserter = new ChunkedInserter(con,
+                            job.getContext() != null ? con.getValueFactory().createURI(job.getContext()) : null,
+                            configurationService.getIntConfiguration(CONFIG_KEY_COMMIT_INTERVAL, 100000),
+                            job.getOffset(), job.getId(), new JobProgress(job, task, counter));
+                    parser.setRDFHandler(inserter);
+
+                    con.begin();
+                    parser.parse(in, configurationService.getBaseUri() + "resource/");
+                    inserter.commit();
+
+                    job.setState(ImportJob.State.FINISHED);
+                    job.setMessage(String.format("imported %d statements", job.getOffset()));
+                    log.info("import job {} finished after {} statements", job.getId(), job.getOffset());
+                } catch (Exception e) {
+                    if(con.isActive()) {
+                        con.rollback();
+                    }
+                    throw e;
+                } finally {
+                    con.close();
+                }
+            }
+
+            if(job.getSource().equals(jobDirectory.resolve(job.getId() + ".data").toUri().toString())) {
+                Files.deleteIfExists(jobDirectory.resolve(job.getId() + ".data"));
+            }
+        } catch (Exception e) {
+            if(shuttingDown) {
+                job.setState(ImportJob.State.FAILED);
+                job.setMessage("interrupted by shutdown");
+            } else if(Thread.currentThread().isInterrupted() || e instanceof ChunkedInserter.ImportCancelledException || e.getCause() instanceof ChunkedInserter.ImportCancelledException) {
+                log.info("import job {} cancelled after {} statements", job.getId(), job.getOffset());
+                job.setState(ImportJob.State.CANCELLED);
+                job.setMessage("cancelled");
+            } else {
+                log.error("import job {} failed after {} statements: {}", job.getId(), job.getOffset(), e.getMessage());
+                job.setState(ImportJob.State.FAILED);
+                job.setMessage(e.getMessage());
+            }
+        } finally {
+            saveJob(job);
+            taskManagerService.endTask(task);
+        }
+    }
+
+    private void loadJobs() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(jobDirectory, "*.properties")) {
+            for(Path file : files) {
+                Properties p = new Properties();
+                try (InputStream in = Files.newInputStream(file)) {
+                    p.load(in);
+                }
+
+                ImportJob job = new ImportJob(p.getProperty("id"), p.getProperty("source"), p.getProperty("format"),
+                        p.getProperty("context"), new Date(Long.parseLong(p.getProperty("created"))));
+                job.setState(ImportJob.State.valueOf(p.getProperty("state")));
+                job.setOffset(Long.parseLong(p.getProperty("offset", "0")));
+                job.setMessage(p.getProperty("message"));
+
+                // jobs that were still active when the server stopped without a clean shutdown
+                if(job.getState() == ImportJob.State.QUEUED || job.getState() == ImportJob.State.RUNNING) {
+                    job.setState(ImportJob.State.FAILED);
+                    job.setMessage("interrupted by shutdown");
+                }
+                jobs.put(job.getId(), job);
+            }
+        }
+    }
+
+    private synchronized void saveJob(ImportJob job) {
+        Properties p = new Properties();
+        p.setProperty("id", job.getId());
+        p.setProperty("source", job.getSource());
+        p.setProperty("format", job.getFormat());
+        if(job.getContext() != null) {
+            p.setProperty("context", job.getContext());
+        }
+        p.setProperty("created", String.valueOf(job.getCreated().getTime()));
+        p.setProperty("state", job.getState().name());
+        p.setProperty("offset", String.valueOf(job.getOffset()));
+        if(job.getMessage() != null) {
+            p.setProperty("message", job.getMessage());
+        }
+
+        // write to a temporary file first, so a crash never leaves a truncated job file
+        Path file = jobDirectory.resolve(job.getId() + ".properties");
+        Path tmp  = jobDirectory.resolve(job.getId() + ".properties.tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "import job " + job.getId());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("could not store state of import job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+
+    /**
+     * Records the committed statements as offset of the job and reports the progress to the task.
+     */
+    private class JobProgress implements ChunkedInserter.Listener {
+
+        private final ImportJob job;
+        private final Task task;
+        private final CountingInputStream counter;
+
+        private final long startOffset;
+        private final long start;
+
+        private JobProgress(ImportJob job, Task task, CountingInputStream counter) {
+            this.job = job;
+            this.task = task;
+            this.counter = counter;
+            this.startOffset = job.getOffset();
+            this.start = System.currentTimeMillis();
+        }
+
+        @Override
+        public void skipping(long remaining) {
+            task.updateMessage(String.format("skipping %d already imported statements", remaining));
+        }
+
+        @Override
+        public void committed(long offset) {
+            job.setOffset(offset);
+            saveJob(job);
+        }
+
+        @Override
+        public void progress(long seen) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            job.setBytesRead(counter.getCount());
+            job.setStatementsPerSecond(Math.max(0, seen - startOffset) * 1000.0 / elapsed);
+
+            task.updateMessage(String.format("imported %d statements", seen));
+            task.updateProgress(counter.getCount());
+            task.updateDetailMessage("committed", String.valueOf(job.getOffset()));
+            task.updateDetailMessage("statements/sec", String.format("%.1f", job.getStatementsPerSecond()));
+            task.updateDetailMessage("bytes read", String.valueOf(counter.getCount()));
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
@@ -31,14 +32,24 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -56,21 +67,33 @@ import org.apache.marmotta.platform.core.api.importer.ImportWatchService;
 import org.apache.marmotta.platform.core.api.task.Task;
 import org.apache.marmotta.platform.core.api.task.TaskManagerService;
 import org.apache.marmotta.platform.core.api.triplestore.ContextService;
-import org.apache.marmotta.platform.core.api.user.UserService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
 import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
 import org.apache.marmotta.platform.core.events.SystemStartupEvent;
 import org.apache.marmotta.platform.core.exception.io.MarmottaImportException;
 import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
 import org.slf4j.Logger;
 
+import com.google.common.io.CountingInputStream;
 import com.ibm.icu.text.CharsetDetector;
 import com.ibm.icu.text.CharsetMatch;
 
 /**
  * Implementation for watching import directory.
  * This service watches the import directory (see {@link #getImportRoot()}) for (new) files and imports them. 
+ * <p/>
+ * Files are imported in parallel by a bounded number of threads (see {@link #CONFIG_KEY_THREADS}); waiting files are
+ * ordered by the {@code priority} given in the config file of their directory and then by size, so that small files
+ * are not delayed by large dumps. Each import commits in chunks and records a checkpoint after each commit, so that an
+ * import interrupted by a shutdown continues where it stopped after the next startup.
  * 
  * @author Sergio Fernández
  * @author Jakob Frank <jakob@apache.org>
@@ -85,11 +108,16 @@ public class ImportWatchServiceImpl implements ImportWatchService {
     private static final String CONFIG_KEY_IMPORT_DELAY = CONFIG_PREFIX + "importDelay";
     private static final String CONFIG_KEY_DELETE_AFTER_IMPORT = CONFIG_PREFIX + "deleteAfterImport";
     private static final String CONFIG_KEY_SERVICE_ENABLED = CONFIG_PREFIX + "enabled";
+    private static final String CONFIG_KEY_THREADS = CONFIG_PREFIX + "threads";
+    private static final String CONFIG_KEY_COMMIT_INTERVAL = CONFIG_PREFIX + "commitInterval";
+
+    private static final String CHECKPOINT_FILE = "import-watch.checkpoints";
 
     private static final String TASK_GROUP = "Import Watch";
 
     private static final String TASK_DETAIL_PATH = "path";
     private static final String TASK_DETAIL_QUEUE = "import queue";
+    private static final String TASK_DETAIL_THREADS = "threads";
 
     @Inject
     private Logger log;
@@ -107,9 +135,14 @@ public class ImportWatchServiceImpl implements ImportWatchService {
     private ContextService contextService;
 
     @Inject
-    private UserService userService;
+    private SesameService sesameService;
+
+    private volatile ImportWatcher importWatcher = null;
+
+    private final ImportStatistics statistics = new ImportStatistics();
 
-    private ImportWatcher importWatcher = null;
+    // guarded by this
+    private Properties checkpoints = null;
 
     /**
      * Initialize and start the watcher service.
@@ -117,7 +150,7 @@ public class ImportWatchServiceImpl implements ImportWatchService {
     @Override
     public void startup() {
         if (importWatcher == null && configurationService.getBooleanConfiguration(CONFIG_KEY_SERVICE_ENABLED, true)) {
-            importWatcher = new ImportWatcher(getImportRoot());
+            importWatcher = new ImportWatcher(getImportRoot(), getThreads());
             importWatcher.setDeleteAfterImport(configurationService.getBooleanConfiguration(CONFIG_KEY_DELETE_AFTER_IMPORT, true));
             importWatcher.setImportDelay(configurationService.getIntConfiguration(CONFIG_KEY_IMPORT_DELAY, 2500));
             importWatcher.setDirConfigFileName(configurationService.getStringConfiguration(CONFIG_KEY_CONF_FILE, "config"));
@@ -160,10 +193,15 @@ public class ImportWatchServiceImpl implements ImportWatchService {
                 importWatcher.setImportDelay(configurationService.getIntConfiguration(CONFIG_KEY_IMPORT_DELAY, 2500));
                 importWatcher.setDirConfigFileName(configurationService.getStringConfiguration(CONFIG_KEY_CONF_FILE, "config"));
                 importWatcher.setLockFile(configurationService.getStringConfiguration(CONFIG_KEY_LOCK_FILE, "lock"));
+                importWatcher.setThreads(getThreads());
             }
         }
     }
 
+    private int getThreads() {
+        return Math.max(1, configurationService.getIntConfiguration(CONFIG_KEY_THREADS, 2));
+    }
+
     protected void onSystemStartupEvent(@Observes SystemStartupEvent event) {
         shutdown();
         startup();
@@ -181,11 +219,20 @@ public class ImportWatchServiceImpl implements ImportWatchService {
     /**
      * Import the given file.
      * The format of the input file is detected based on the filename, as is an optional compression of the file (known formats: GZip and BZip2)
+     * <p/>
+     * The statements are committed in chunks (see {@link #CONFIG_KEY_COMMIT_INTERVAL}); after each commit a checkpoint
+     * is recorded, so that the import of a file that has been interrupted (e.g. by a shutdown) continues after the last
+     * commit when the same, unmodified file is imported again.
      * @param file the file to import
      * @throws MarmottaImportException if the import failed due to various reasons.
      */
     @Override
     public boolean importFile(Path file) throws MarmottaImportException {
+        final Task task = taskManagerService.createTask("Import " + file.getFileName(), TASK_GROUP);
+        task.updateMessage("importing data");
+        task.updateDetailMessage(TASK_DETAIL_PATH, file.toAbsolutePath().toString());
+        statistics.started();
+        boolean success = false;
         try {
             URI context;
             try {
@@ -195,16 +242,61 @@ public class ImportWatchServiceImpl implements ImportWatchService {
                 context = null;
             }
             String format = detectFormat(file);
-            InputStream is = openStream(file);
-            URI user = userService.getAdminUser();
-            importService.importData(is, format, user, context);
-            is.close();
+            task.updateDetailMessage("format", format);
+            if (context != null) {
+                task.updateDetailMessage("context", context.stringValue());
+            }
+            importChunked(file, Rio.getParserFormatForMIMEType(StringUtils.substringBefore(format, ";").trim()), context, task);
+            success = true;
             return true;
         } catch (IOException e) {
             throw new MarmottaImportException("Could not read input file " + file.toFile().getAbsolutePath(), e);
+        } finally {
+            statistics.finished(success);
+            taskManagerService.endTask(task);
         }
     }
 
+    private void importChunked(Path file, RDFFormat format, URI context, Task task) throws IOException, MarmottaImportException {
+        final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        final Checkpoint checkpoint = getCheckpoint(file, attrs.size(), attrs.lastModifiedTime().toMillis());
+        if (checkpoint.offset > 0) {
+            log.info("resuming import of {} after {} statements", file, checkpoint.offset);
+            task.updateDetailMessage("resumed at", String.valueOf(checkpoint.offset));
+        }
+        task.updateTotalSteps(attrs.size());
+
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file.toFile())));
+             InputStream in = openStream(file, counter)) {
+            final RepositoryConnection con = sesameService.getConnection();
+            try {
+                RDFParser parser = Rio.createParser(format, con.getValueFactory());
+                parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+
+                ChunkedInserter inserter = new ChunkedInserter(con, context,
+                        configurationService.getIntConfiguration(CONFIG_KEY_COMMIT_INTERVAL, 100000),
+                        checkpoint.offset, checkpoint.id, new FileProgress(file, checkpoint, task, counter));
+                parser.setRDFHandler(inserter);
+
+                con.begin();
+                parser.parse(in, configurationService.getBaseUri() + "resource/");
+                inserter.commit();
+
+                log.info("imported {} statements from {}", Math.max(0, inserter.getSeen() - inserter.getStartOffset()), file);
+            } catch (RepositoryException | RDFParseException | RDFHandlerException e) {
+                if (con.isActive()) {
+                    con.rollback();
+                }
+                throw new MarmottaImportException("Could not import " + file + ": " + e.getMessage(), e);
+            } finally {
+                con.close();
+            }
+        } catch (RepositoryException e) {
+            throw new MarmottaImportException("Could not access the repository for importing " + file, e);
+        }
+        removeCheckpoint(file);
+    }
+
     /**
      * Detect the import format of the given file (mime-type)
      * @param file the file to check
@@ -248,7 +340,8 @@ public class ImportWatchServiceImpl implements ImportWatchService {
 
         // encoding detection
         // FIXME: is this required?
-        try (BufferedInputStream bis = new BufferedInputStream(openStream(file))) {
+        try (InputStream fis = new FileInputStream(file.toFile());
+             BufferedInputStream bis = new BufferedInputStream(openStream(file, fis))) {
             CharsetDetector cd = new CharsetDetector();
             cd.setText(bis);
             CharsetMatch cm = cd.detect();
@@ -256,7 +349,6 @@ public class ImportWatchServiceImpl implements ImportWatchService {
                 log.trace("Detected charset {} in {}", cm.getName(), file);
                 format += "; charset=" + cm.getName();
             }
-            bis.close();
         } catch (IOException e) {
             log.error("Error detecting charset for '{}': {}", fileName, e.getMessage());
         }
@@ -264,10 +356,9 @@ public class ImportWatchServiceImpl implements ImportWatchService {
         return format;
     }
 
-    private InputStream openStream(Path file) throws IOException {
+    private InputStream openStream(Path file, InputStream fis) throws IOException {
         final String fName = file.getFileName().toString();
-        final FileInputStream fis = new FileInputStream(file.toFile());
-        
+
         if (GzipUtils.isCompressedFilename(fName)) {
             log.trace("{} looks GZIP compressed,", file);
             return new GZIPInputStream(fis);
@@ -283,11 +374,9 @@ public class ImportWatchServiceImpl implements ImportWatchService {
         // Check for a configFile
         final Path config = importFile.getParent().resolve(configurationService.getStringConfiguration(CONFIG_KEY_CONF_FILE, "config"));
         if (Files.isReadable(config)) {
-            try {
+            try (InputStream inStream = new FileInputStream(config.toFile())) {
                 Properties prop = new Properties();
-                final FileInputStream inStream = new FileInputStream(config.toFile());
                 prop.load(inStream);
-                inStream.close();
                 return prop;
             } catch (IOException e) {
                 log.warn("could not read dirConfigFile {}: {}", config, e.getMessage());
@@ -351,6 +440,208 @@ public class ImportWatchServiceImpl implements ImportWatchService {
         }
     }
 
+    /**
+     * The priority of the given file, from the key {@code priority} of the config file in its directory (default 0).
+     * Files with a higher priority are imported first.
+     */
+    private int getPriority(Path file) {
+        final Properties prop = loadConfigFile(file);
+        if (prop != null && prop.getProperty("priority") != null) {
+            try {
+                return Integer.parseInt(prop.getProperty("priority").trim());
+            } catch (NumberFormatException e) {
+                log.warn("invalid priority {} in config file for {}, ignoring", prop.getProperty("priority"), file);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return the checkpoint of an earlier, interrupted import of the given file, or a new checkpoint if the file has not
+     * been imported before or has been modified since.
+     */
+    private synchronized Checkpoint getCheckpoint(Path file, long size, long lastModified) {
+        final String value = loadCheckpoints().getProperty(file.toAbsolutePath().toString());
+        if (value != null) {
+            final String[] parts = value.split(",");
+            try {
+                if (parts.length == 4 && Long.parseLong(parts[1]) == size && Long.parseLong(parts[2]) == lastModified) {
+                    return new Checkpoint(parts[0], size, lastModified, Long.parseLong(parts[3]));
+                }
+            } catch (NumberFormatException e) {
+                log.warn("invalid checkpoint for {}, ignoring: {}", file, value);
+            }
+            log.debug("{} has been modified since the last import attempt, importing it from the beginning", file);
+        }
+        return new Checkpoint(UUID.randomUUID().toString(), size, lastModified, 0);
+    }
+
+    private synchronized void saveCheckpoint(Path file, Checkpoint checkpoint) {
+        loadCheckpoints().setProperty(file.toAbsolutePath().toString(),
+                String.format("%s,%d,%d,%d", checkpoint.id, checkpoint.size, checkpoint.lastModified, checkpoint.offset));
+        storeCheckpoints();
+    }
+
+    private synchronized void removeCheckpoint(Path file) {
+        if (loadCheckpoints().remove(file.toAbsolutePath().toString()) != null) {
+            storeCheckpoints();
+        }
+    }
+
+    private Properties loadCheckpoints() {
+        if (checkpoints == null) {
+            checkpoints = new Properties();
+            final Path file = Paths.get(configurationService.getHome(), CHECKPOINT_FILE);
+            if (Files.isReadable(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    checkpoints.load(in);
+                } catch (IOException e) {
+                    log.warn("could not read import checkpoints from {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return checkpoints;
+    }
+
+    private void storeCheckpoints() {
+        // write to a temporary file first, so a crash never leaves a truncated checkpoint file
+        final Path file = Paths.get(configurationService.getHome(), CHECKPOINT_FILE);
+        final Path tmp = Paths.get(configurationService.getHome(), CHECKPOINT_FILE + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                checkpoints.store(out, "checkpoints of interrupted file imports");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("could not store import checkpoints to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The number of statements of a file that have been committed by an import; the file is identified by its size and
+     * modification time, the id is used as prefix for the blank nodes of the file.
+     */
+    private static class Checkpoint {
+        private final String id;
+        private final long size;
+        private final long lastModified;
+        private volatile long offset;
+
+        private Checkpoint(String id, long size, long lastModified, long offset) {
+            this.id = id;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Records the committed statements in the checkpoint of the file and reports the progress to the task of the file
+     * and to the aggregated statistics.
+     */
+    private class FileProgress implements ChunkedInserter.Listener {
+
+        private final Path file;
+        private final Checkpoint checkpoint;
+        private final Task task;
+        private final CountingInputStream counter;
+
+        private final long startOffset;
+        private final long start;
+
+        private long reportedStatements = 0;
+        private long reportedBytes = 0;
+
+        private FileProgress(Path file, Checkpoint checkpoint, Task task, CountingInputStream counter) {
+            this.file = file;
+            this.checkpoint = checkpoint;
+            this.task = task;
+            this.counter = counter;
+            this.startOffset = checkpoint.offset;
+            this.start = System.currentTimeMillis();
+        }
+
+        @Override
+        public void skipping(long remaining) {
+            task.updateMessage(String.format("skipping %d already imported statements", remaining));
+        }
+
+        @Override
+        public void committed(long offset) {
+            checkpoint.offset = offset;
+            saveCheckpoint(file, checkpoint);
+        }
+
+        @Override
+        public void progress(long seen) {
+            final long imported = Math.max(0, seen - startOffset);
+            final long bytes = counter.getCount();
+            statistics.imported(imported - reportedStatements, bytes - reportedBytes);
+            reportedStatements = imported;
+            reportedBytes = bytes;
+
+            final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            task.updateMessage(String.format("imported %d statements", seen));
+            task.updateProgress(bytes);
+            task.updateDetailMessage("committed", String.valueOf(checkpoint.offset));
+            task.updateDetailMessage("statements/sec", String.format("%.1f", imported * 1000.0 / elapsed));
+            task.updateDetailMessage("bytes read", String.valueOf(bytes));
+        }
+    }
+
+    /**
+     * Aggregated throughput of all file imports, reported to the task of the import watcher. The rates are computed
+     * over the time in which at least one import was running.
+     */
+    private class ImportStatistics {
+
+        private int running = 0;
+        private long files = 0;
+        private long failed = 0;
+        private long statements = 0;
+        private long bytes = 0;
+
+        private long busyTime = 0;
+        private long busySince = 0;
+
+        private synchronized void started() {
+            if (running++ == 0) {
+                busySince = System.currentTimeMillis();
+            }
+            report();
+        }
+
+        private synchronized void finished(boolean success) {
+            if (success) {
+                files++;
+            } else {
+                failed++;
+            }
+            if (--running == 0) {
+                busyTime += System.currentTimeMillis() - busySince;
+            }
+            report();
+        }
+
+        private synchronized void imported(long statements, long bytes) {
+            this.statements += statements;
+            this.bytes += bytes;
+            report();
+        }
+
+        private void report() {
+            final ImportWatcher watcher = importWatcher;
+            if (watcher != null) {
+                final long elapsed = Math.max(1, busyTime + (running > 0 ? System.currentTimeMillis() - busySince : 0));
+                watcher.task.updateDetailMessage("running imports", String.valueOf(running));
+                watcher.task.updateDetailMessage("imported files", String.format("%d (%d failed)", files, failed));
+                watcher.task.updateDetailMessage("imported statements", String.valueOf(statements));
+                watcher.task.updateDetailMessage("statements/sec", String.format("%.1f", statements * 1000.0 / elapsed));
+                watcher.task.updateDetailMessage("bytes/sec", String.format("%.1f", bytes * 1000.0 / elapsed));
+            }
+        }
+    }
+
     private class ImportWatcher extends SimpleTreeWatcher {
 
         private String dirConfigFileName = null;
@@ -358,22 +649,44 @@ public class ImportWatchServiceImpl implements ImportWatchService {
         private int importDelay = 2500;
         private String lockFile = null;
 
+        // delays the import of a file until it has not been modified for importDelay milliseconds
         private final ScheduledThreadPoolExecutor executor;
         private final Map<Path, ScheduledFuture<?>> fileSchedules;
 
+        // runs the imports in parallel, files with a higher priority and smaller files first
+        private final ThreadPoolExecutor importExecutor;
+        private final Map<Path, FileImport> queuedImports;
+        private final Set<Path> runningImports;
+        private final AtomicLong sequence = new AtomicLong(0);
+
         private final Task task;
 
-        public ImportWatcher(Path target) {
+        public ImportWatcher(Path target, int threads) {
             super(target, true);
 
             executor = new ScheduledThreadPoolExecutor(1);
             executor.setMaximumPoolSize(1);
 
-            fileSchedules = new HashMap<>();
+            final AtomicInteger counter = new AtomicInteger(0);
+            importExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "Import Watch Thread " + counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+
+            fileSchedules = new ConcurrentHashMap<>();
+            queuedImports = new ConcurrentHashMap<>();
+            runningImports = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
 
             task = taskManagerService.createTask("Import Watch", TASK_GROUP);
             task.updateMessage("off");
             task.updateDetailMessage(TASK_DETAIL_PATH, target.toAbsolutePath().toString());
+            task.updateDetailMessage(TASK_DETAIL_THREADS, String.valueOf(threads));
         }
 
         public void setLockFile(String lockFile) {
@@ -396,6 +709,20 @@ public class ImportWatchServiceImpl implements ImportWatchService {
             this.importDelay = importDelay;
         }
 
+        /**
+         * The number of files imported in parallel.
+         */
+        public void setThreads(int threads) {
+            if (threads > importExecutor.getMaximumPoolSize()) {
+                importExecutor.setMaximumPoolSize(threads);
+                importExecutor.setCorePoolSize(threads);
+            } else {
+                importExecutor.setCorePoolSize(threads);
+                importExecutor.setMaximumPoolSize(threads);
+            }
+            task.updateDetailMessage(TASK_DETAIL_THREADS, String.valueOf(threads));
+        }
+
         @Override
         public void run() {
             task.updateMessage("waiting for new files");
@@ -409,6 +736,8 @@ public class ImportWatchServiceImpl implements ImportWatchService {
                 task.updateMessage("shutting down");
                 super.shutdown();
                 executor.shutdownNow();
+                // running imports keep their checkpoint and are resumed after the next startup
+                importExecutor.shutdownNow();
             } finally {
                 task.endTask();
             }
@@ -424,8 +753,15 @@ public class ImportWatchServiceImpl implements ImportWatchService {
                 final ScheduledFuture<?> scheduled = fileSchedules.remove(child);
                 if (scheduled != null) {
                     scheduled.cancel(true);
+                }
+                final FileImport queued = queuedImports.remove(child);
+                if (queued != null) {
+                    importExecutor.remove(queued);
+                }
+                if (scheduled != null || queued != null) {
                     updateQueueSizeMonitor();
                 }
+                removeCheckpoint(child);
             }
         }
 
@@ -479,34 +815,19 @@ public class ImportWatchServiceImpl implements ImportWatchService {
             final ScheduledFuture<?> prevSchedule = fileSchedules.put(file, executor.schedule(new Runnable() {
                 @Override
                 public void run() {
-                    final String threadName = Thread.currentThread().getName();
-                    Thread.currentThread().setName(String.format("%sWorker for %s", ImportWatcher.class.getSimpleName(), file));
-                    try {
-                        task.updateMessage("importing " + file);
-                        if (importFile(file)) {
-                            fileSchedules.remove(file);
-                            updateQueueSizeMonitor();
-                            if (deleteAfterImport) {
-                                Files.delete(file);
-                            }
-                        }
-                    } catch (IOException e) {
-                        log.warn("Could not delete file {} after successful import: {}", file, e.getMessage());
-                    } catch (MarmottaImportException e) {
-                        log.warn("importing {} failed: {}", file, e.getMessage());
-                    } catch (final Throwable t) {
-                        log.error("{} during file-import: {}", t.getClass().getSimpleName(), t.getMessage());
-                        throw t;
-                    } finally {
-                        task.updateMessage("waiting for new files");
-                        Thread.currentThread().setName(threadName);
-                    }
+                    enqueue(file);
                 }
             }, importDelay, TimeUnit.MILLISECONDS));
 
-            // cancel any previously scheduled import for this file.
-            if (prevSchedule != null) {
-                prevSchedule.cancel(true);
+            // cancel any previously scheduled or queued import for this file.
+            final FileImport prevImport = queuedImports.remove(file);
+            if (prevImport != null) {
+                importExecutor.remove(prevImport);
+            }
+            if (prevSchedule != null || prevImport != null) {
+                if (prevSchedule != null) {
+                    prevSchedule.cancel(true);
+                }
                 log.trace("rescheduled {} for import", file);
             } else {
                 log.trace("scheduled {} for import", file);
@@ -515,8 +836,42 @@ public class ImportWatchServiceImpl implements ImportWatchService {
             updateQueueSizeMonitor();
         }
 
+        /**
+         * Queue the import of a file that has not been modified during the import delay.
+         */
+        private void enqueue(Path file) {
+            fileSchedules.remove(file);
+
+            final long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                log.debug("not importing {}, it cannot be read anymore: {}", file, e.getMessage());
+                updateQueueSizeMonitor();
+                return;
+            }
+
+            final FileImport fileImport = new FileImport(file, getPriority(file), size, sequence.incrementAndGet());
+            final FileImport prevImport = queuedImports.put(file, fileImport);
+            if (prevImport != null) {
+                importExecutor.remove(prevImport);
+            }
+            try {
+                importExecutor.execute(fileImport);
+            } catch (RejectedExecutionException e) {
+                queuedImports.remove(file, fileImport);
+                log.debug("not importing {}, the import watcher is shutting down", file);
+            }
+            updateQueueSizeMonitor();
+        }
+
         private void updateQueueSizeMonitor() {
-            task.updateDetailMessage(TASK_DETAIL_QUEUE, executor.getQueue().size() + " files");
+            task.updateDetailMessage(TASK_DETAIL_QUEUE, (fileSchedules.size() + queuedImports.size()) + " files");
+            if (runningImports.isEmpty()) {
+                task.updateMessage("waiting for new files");
+            } else {
+                task.updateMessage("importing " + runningImports.size() + " files");
+            }
         }
 
         @Override
@@ -549,6 +904,73 @@ public class ImportWatchServiceImpl implements ImportWatchService {
             }
         }
 
+        /**
+         * The import of a single file; imports are ordered by the priority of their directory (highest first), then by
+         * their size (smallest first) and finally in the order they have been queued.
+         */
+        private class FileImport implements Runnable, Comparable<FileImport> {
+
+            private final Path file;
+            private final int priority;
+            private final long size;
+            private final long sequence;
+
+            private FileImport(Path file, int priority, long size, long sequence) {
+                this.file = file;
+                this.priority = priority;
+                this.size = size;
+                this.sequence = sequence;
+            }
+
+            @Override
+            public void run() {
+                // cancelled or replaced by a later schedule of the same file
+                if (!queuedImports.remove(file, this)) {
+                    return;
+                }
+                // the file is still being imported after an earlier modification, import it again afterwards
+                if (!runningImports.add(file)) {
+                    scheduleFile(file);
+                    return;
+                }
+
+                final String threadName = Thread.currentThread().getName();
+                Thread.currentThread().setName(String.format("%sWorker for %s", ImportWatcher.class.getSimpleName(), file));
+                try {
+                    updateQueueSizeMonitor();
+                    if (importFile(file) && deleteAfterImport) {
+                        Files.delete(file);
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not delete file {} after successful import: {}", file, e.getMessage());
+                } catch (MarmottaImportException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        log.info("import of {} has been interrupted and will be resumed after the last commit", file);
+                    } else {
+                        log.warn("importing {} failed: {}", file, e.getMessage());
+                    }
+                } catch (final Throwable t) {
+                    log.error("{} during file-import: {}", t.getClass().getSimpleName(), t.getMessage());
+                    throw t;
+                } finally {
+                    runningImports.remove(file);
+                    updateQueueSizeMonitor();
+                    Thread.currentThread().setName(threadName);
+                }
+            }
+
+            @Override
+            public int compareTo(FileImport other) {
+                if (priority != other.priority) {
+                    return priority > other.priority ? -1 : 1;
+                }
+                if (size != other.size) {
+                    return size < other.size ? -1 : 1;
+                }
+                return Long.compare(sequence, other.sequence);
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram for durations in milliseconds, using fixed buckets with roughly exponential
+ * upper bounds (1, 2, 5, 10, 20, 50, ... ms). Percentiles are reported as the upper bound of the bucket
+ * they fall into, which is precise enough for statistics displays and cheap enough to record on every
+ * request.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000, 120000, 300000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    private final AtomicLong count = new AtomicLong(0);
+
+    private final AtomicLong total = new AtomicLong(0);
+
+    private final AtomicLong max   = new AtomicLong(0);
+
+
+    /**
+     * Record a single duration.
+     *
+     * @param millis the duration in milliseconds; negative values are recorded as 0
+     */
+    public void record(long millis) {
+        if(millis < 0) {
+            millis = 0;
+        }
+
+        buckets.incrementAndGet(bucketOf(millis));
+        count.incrementAndGet();
+        total.addAndGet(millis);
+
+        long m = max.get();
+        while(millis > m && !max.compareAndSet(m, millis)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Return the number of recorded durations.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Return the average of all recorded durations in milliseconds, or 0 if nothing has been recorded.
+     */
+    public long getMean() {
+        long c = count.get();
+        return c > 0 ? total.get() / c : 0;
+    }
+
+    /**
+     * Return the largest recorded duration in milliseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Return an upper bound for the given percentile of the recorded durations, i.e. the upper bound of the
+     * bucket the percentile falls into. Durations beyond the last bucket are reported as the maximum.
+     *
+     * @param percentile the percentile to compute, between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        long c = count.get();
+        if(c == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(c * percentile / 100.0);
+        long seen = 0;
+        for(int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets.get(i);
+            if(seen >= rank) {
+                return Math.min(BOUNDS[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Reset all counters to 0.
+     */
+    public void reset() {
+        for(int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static int bucketOf(long millis) {
+        for(int i = 0; i < BOUNDS.length; i++) {
+            if(millis <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, mean=%dms, p50<=%dms, p95<=%dms, p99<=%dms, max=%dms",
+                getCount(), getMean(), getPercentile(50), getPercentile(95), getPercentile(99), getMax());
+    }
+}
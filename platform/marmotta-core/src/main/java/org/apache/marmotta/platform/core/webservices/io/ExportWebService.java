@@ -20,6 +20,7 @@ package org.apache.marmotta.platform.core.webservices.io;
 import org.apache.marmotta.commons.http.ContentType;
 import org.apache.marmotta.commons.http.MarmottaHttpUtils;
 import org.apache.marmotta.commons.util.DateUtils;
+import org.apache.marmotta.platform.core.api.exporter.ExportCompression;
 import org.apache.marmotta.platform.core.api.exporter.ExportService;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
 import org.apache.marmotta.platform.core.exception.io.UnsupportedExporterException;
@@ -80,21 +81,29 @@ public class ExportWebService {
     /**
      * Download the triple data contained in the (optional) context (named graph) in the format specified by the Accept
      * header of the request. If the context parameter is not given, all triples contained in this Apache Marmotta installation will
-     * be written to the response.
+     * be written to the response. The data is streamed to the client and optionally compressed on the fly; full exports in
+     * N-Quads or N-Triples serialise the named graphs in parallel.
      *
      * @param types          list of MIME types the client accepts
      * @param context_string URI of the named graph to export; if null, all named graphs will be exported
      * @param qFormat        MIME type for return format, overrides accept header
+     * @param qCompression   compression of the returned data (gzip or bzip2); if null, the data is not compressed
      * @return the HTTP response
      * @throws IOException   in case writing to the output stream of the connection fails
      *
      * @HTTP 200 in case the triples were written to the output stream correctly
+     * @HTTP 400 in case the requested compression is not supported
      * @HTTP 404 in case the context passed as argument could not be found
      * @HTTP 406 in case the Apache Marmotta could not find any matching serializer for the MIME types in the Accept header
      */
     @GET
     @Path("/download")
-    public Response downloadData(@HeaderParam(ACCEPT) String types, @QueryParam("format") String qFormat, @QueryParam("context") String context_string) throws IOException {
+    public Response downloadData(@HeaderParam(ACCEPT) String types, @QueryParam("format") String qFormat, @QueryParam("context") String context_string, @QueryParam("compression") String qCompression) throws IOException {
+        final ExportCompression compression = ExportCompression.parse(qCompression);
+        if(compression == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("unsupported compression " + qCompression + "; use gzip or bzip2").build();
+        }
+
         List<ContentType> acceptedTypes;
         if(qFormat != null) {
             acceptedTypes = MarmottaHttpUtils.parseAcceptHeader(qFormat);
@@ -119,6 +128,9 @@ public class ExportWebService {
             if(format != null) {
                 fileName += "." + format.getDefaultFileExtension();
             }
+            if(compression.getFileExtension() != null) {
+                fileName += "." + compression.getFileExtension();
+            }
 
             URI context = null;
             if(context_string != null) {
@@ -147,7 +159,7 @@ public class ExportWebService {
                 public void write(OutputStream output) throws IOException, WebApplicationException {
                     try {
                         //FIXME: html should not be exported, but rendered?
-                        exportService.exportData(output,fcontext,bestType.getMime());
+                        exportService.exportData(output,fcontext,bestType.getMime(),compression);
                     } catch (UnsupportedExporterException e) {
                         throw new WebApplicationException(e, Response.Status.NOT_ACCEPTABLE);
                     }
@@ -156,7 +168,7 @@ public class ExportWebService {
 
             return Response
                     .status(Response.Status.OK)
-                    .header(CONTENT_TYPE, bestType.getMime())
+                    .header(CONTENT_TYPE, compression.getMimeType() != null ? compression.getMimeType() : bestType.getMime())
                     .header(CONTENT_DISPOSITION, "attachment; filename=\""+fileName+"\"")
                     .entity(entity)
                     .build();
@@ -17,6 +17,8 @@
  */
 package org.apache.marmotta.platform.core.webservices.io;
 
+import org.apache.marmotta.platform.core.api.importer.ImportJob;
+import org.apache.marmotta.platform.core.api.importer.ImportJobService;
 import org.apache.marmotta.platform.core.api.importer.ImportService;
 import org.apache.marmotta.platform.core.api.task.Task;
 import org.apache.marmotta.platform.core.api.task.TaskInfo;
@@ -42,6 +44,7 @@ import java.net.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 
@@ -60,6 +63,9 @@ public class ImportWebService {
     @Inject
     private ImportService importService;
 
+    @Inject
+    private ImportJobService importJobService;
+
     @Inject
     private ContextService contextService;
 
@@ -264,6 +270,140 @@ public class ImportWebService {
         // return running;
     }
 
+    /**
+     * Upload content and import it as an asynchronous import job, which commits the data in chunks and can be
+     * resumed in case it fails. The uploaded content is stored before the job is started; the job status can be
+     * queried by calling /jobs/{id}.
+     *
+     * @param type the content type of the uploaded content (must be an RDF format)
+     * @param request the request data of the uploaded file
+     * @return the created import job
+     * @HTTP 202 if the import job was created
+     * @HTTP 412 if the content-type header is not present or contains unsupported mime types
+     * @HTTP 503 if too many import jobs are waiting
+     */
+    @POST
+    @Path("/jobs")
+    @Produces("application/json")
+    public Response createUploadJob(@HeaderParam(CONTENT_TYPE) String type, @Context HttpServletRequest request, @QueryParam("context") String context_string) {
+        if(type != null && type.lastIndexOf(';') >= 0) {
+            type = type.substring(0,type.lastIndexOf(';'));
+        }
+        if (type == null || Rio.getParserFormatForMIMEType(type) == null) return Response.status(412).entity("define a valid RDF content-type").build();
+        try {
+            ImportJob job = importJobService.createJob(request.getInputStream(), type, getContext(context_string));
+            return Response.status(Response.Status.ACCEPTED).entity(job).build();
+        } catch (RejectedExecutionException ex) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("too many import jobs waiting").build();
+        } catch (URISyntaxException e) {
+            return Response.status(400).entity("invalid context URI: " + context_string).build();
+        } catch (IOException | MarmottaImportException ex) {
+            log.error("error while creating import job", ex);
+            return Response.status(500).entity("error while creating import job: " + ex.getMessage()).build();
+        }
+    }
+
+    /**
+     * Import the content of an external resource as an asynchronous import job, which commits the data in chunks
+     * and can be resumed in case it fails.
+     *
+     * @param type the content type of the external content (must be an RDF format)
+     * @param url the URL of the remote resource to import
+     * @return the created import job
+     * @HTTP 202 if the import job was created
+     * @HTTP 400 if the URL argument is not valid
+     * @HTTP 412 if the content-type header is not present or contains unsupported mime types
+     * @HTTP 503 if too many import jobs are waiting
+     */
+    @POST
+    @Path("/jobs/external")
+    @Produces("application/json")
+    public Response createExternalJob(@HeaderParam(CONTENT_TYPE) String type, @QueryParam("url") String url, @QueryParam("context") String context_string) {
+        if(type != null && type.lastIndexOf(';') >= 0) {
+            type = type.substring(0,type.lastIndexOf(';'));
+        }
+        if (type == null || Rio.getParserFormatForMIMEType(type) == null) return Response.status(412).entity("define a valid RDF content-type").build();
+        try {
+            ImportJob job = importJobService.createJob(new URL(url), type, getContext(context_string));
+            return Response.status(Response.Status.ACCEPTED).entity(job).build();
+        } catch (RejectedExecutionException ex) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("too many import jobs waiting").build();
+        } catch (MalformedURLException ex) {
+            return Response.status(400).entity("the URL passed as argument is not valid").build();
+        } catch (URISyntaxException e) {
+            return Response.status(400).entity("invalid context URI: " + context_string).build();
+        } catch (MarmottaImportException ex) {
+            log.error("error while creating import job", ex);
+            return Response.status(500).entity("error while creating import job: " + ex.getMessage()).build();
+        }
+    }
+
+    /**
+     * List all import jobs.
+     */
+    @GET
+    @Path("/jobs")
+    @Produces("application/json")
+    public List<ImportJob> listJobs() {
+        return importJobService.listJobs();
+    }
+
+    /**
+     * Get the status of the import job with the given id, including the number of committed statements, the
+     * bytes read and the current import rate.
+     *
+     * @HTTP 200 the job status
+     * @HTTP 404 if the job does not exist
+     */
+    @GET
+    @Path("/jobs/{id}")
+    @Produces("application/json")
+    public Response getJob(@PathParam("id") String id) {
+        ImportJob job = importJobService.getJob(id);
+        if(job == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("import job " + id + " does not exist").build();
+        }
+        return Response.ok(job).build();
+    }
+
+    /**
+     * Resume a failed or cancelled import job after the last committed statement.
+     *
+     * @HTTP 202 if the job has been scheduled again
+     * @HTTP 409 if the job does not exist or cannot be resumed
+     * @HTTP 503 if too many import jobs are waiting
+     */
+    @POST
+    @Path("/jobs/{id}/resume")
+    @Produces("application/json")
+    public Response resumeJob(@PathParam("id") String id) {
+        try {
+            return Response.status(Response.Status.ACCEPTED).entity(importJobService.resumeJob(id)).build();
+        } catch (RejectedExecutionException ex) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("too many import jobs waiting").build();
+        } catch (MarmottaImportException ex) {
+            return Response.status(Response.Status.CONFLICT).entity(ex.getMessage()).build();
+        }
+    }
+
+    /**
+     * Cancel a queued or running import job, or remove a stopped import job and its stored data.
+     *
+     * @HTTP 200 if the job has been cancelled or removed
+     * @HTTP 404 if the job does not exist
+     */
+    @DELETE
+    @Path("/jobs/{id}")
+    public Response deleteJob(@PathParam("id") String id) {
+        if(importJobService.cancelJob(id)) {
+            return Response.ok().entity("import job cancelled").build();
+        } else if(importJobService.removeJob(id)) {
+            return Response.ok().entity("import job removed").build();
+        } else {
+            return Response.status(Response.Status.NOT_FOUND).entity("import job " + id + " does not exist").build();
+        }
+    }
+
     private URI getContext(String context_string) throws URISyntaxException {
         if(context_string != null) {
             return contextService.createContext(context_string);
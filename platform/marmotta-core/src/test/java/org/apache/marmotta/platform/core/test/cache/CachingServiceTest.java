@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.test.cache;
+
+import org.apache.marmotta.platform.core.api.cache.CacheDependency;
+import org.apache.marmotta.platform.core.api.cache.CacheStatistics;
+import org.apache.marmotta.platform.core.api.cache.CachingService;
+import org.apache.marmotta.platform.core.api.cache.DependentCache;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.RepositoryConnection;
+
+/**
+ * Test the invalidation and statistics of dependent caches
+ */
+public class CachingServiceTest {
+
+    private static EmbeddedMarmotta marmotta;
+    private static CachingService cachingService;
+    private static SesameService sesameService;
+
+    @BeforeClass
+    public static void setUp() {
+        marmotta = new EmbeddedMarmotta();
+        cachingService = marmotta.getService(CachingService.class);
+        sesameService = marmotta.getService(SesameService.class);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        marmotta.shutdown();
+        marmotta = null;
+        cachingService = null;
+        sesameService = null;
+    }
+
+    @Test
+    public void testInvalidateOnCommit() throws Exception {
+        ValueFactory vf = sesameService.getValueFactory();
+        URI a = vf.createURI("http://example.com/cache/a");
+        URI b = vf.createURI("http://example.com/cache/b");
+        URI c = vf.createURI("http://example.com/cache/c");
+        URI ctx = vf.createURI("http://example.com/cache/context");
+        URI p = vf.createURI("http://example.com/cache/p");
+
+        DependentCache<String,String> cache = cachingService.getDependentCache("test-dependent");
+        long generation = cache.getGeneration();
+        Assert.assertTrue(cache.put("a", "A", generation, CacheDependency.onResource(a)));
+        Assert.assertTrue(cache.put("b", "B", generation, CacheDependency.onResource(b)));
+        Assert.assertTrue(cache.put("ctx", "CTX", generation, CacheDependency.onContext(ctx)));
+
+        // a changed as object, ctx as context; b is only used as predicate of the statement
+        commit(c, b, a, ctx);
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("B", cache.get("b"));
+        Assert.assertNull(cache.get("ctx"));
+
+        // values computed before the commit are not cached
+        Assert.assertFalse(cache.put("a", "A", generation, CacheDependency.onResource(a)));
+        Assert.assertNull(cache.get("a"));
+
+        // an entry put again after its invalidation is invalidated by the next commit as well
+        generation = cache.getGeneration();
+        Assert.assertTrue(cache.put("ctx", "CTX", generation, CacheDependency.onContext(ctx)));
+        commit(c, p, vf.createLiteral("value"), ctx);
+        Assert.assertNull(cache.get("ctx"));
+
+        CacheStatistics stats = cachingService.getStatistics("test-dependent");
+        Assert.assertNotNull(stats);
+        Assert.assertEquals(1, stats.getSize());
+        Assert.assertEquals(3, stats.getInvalidationCount());
+        Assert.assertTrue(stats.getHitCount() >= 1);
+        Assert.assertTrue(stats.getEstimatedMemory() > 0);
+    }
+
+    @Test
+    public void testUnrelatedCommit() throws Exception {
+        ValueFactory vf = sesameService.getValueFactory();
+        URI changed = vf.createURI("http://example.com/cache/changed");
+        URI unchanged = vf.createURI("http://example.com/cache/unchanged");
+        URI p = vf.createURI("http://example.com/cache/p");
+
+        DependentCache<String,String> cache = cachingService.getDependentCache("test-generations");
+        long generation = cache.getGeneration();
+
+        // a commit happens while the values are computed
+        commit(changed, p, vf.createLiteral("value"), null);
+        Assert.assertTrue(cache.getGeneration() > generation);
+
+        // only the value depending on the changed resource is rejected
+        Assert.assertFalse(cache.put("changed", "CHANGED", generation, CacheDependency.onResource(changed)));
+        Assert.assertTrue(cache.put("unchanged", "UNCHANGED", generation, CacheDependency.onResource(unchanged)));
+        Assert.assertNull(cache.get("changed"));
+        Assert.assertEquals("UNCHANGED", cache.get("unchanged"));
+
+        // the accepted value is still invalidated by later changes
+        commit(unchanged, p, vf.createLiteral("value"), null);
+        Assert.assertNull(cache.get("unchanged"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameConflict() {
+        cachingService.getCacheByName("test-plain");
+        cachingService.getDependentCache("test-plain");
+    }
+
+    private void commit(URI subject, URI predicate, Value object, URI context) throws Exception {
+        RepositoryConnection con = sesameService.getConnection();
+        try {
+            con.begin();
+            con.add(subject, predicate, object, context);
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+}
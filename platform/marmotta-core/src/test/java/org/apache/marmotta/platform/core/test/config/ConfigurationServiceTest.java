@@ -21,7 +21,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import org.apache.marmotta.platform.core.api.config.ConfigurationProperty;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.config.ConfigurationSnapshot;
 import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -149,6 +151,25 @@ public class ConfigurationServiceTest {
 
     }
 
+    @Test
+    public void testProperty() {
+        String key = "foo.propertykey";
+
+        ConfigurationProperty<Integer> property = configurationService.getIntProperty(key, 42);
+        ConfigurationSnapshot before = configurationService.getSnapshot();
+        Assert.assertEquals(42, (int) property.get());
+
+        // handles and snapshots see a new value immediately, old snapshots are unchanged
+        configurationService.setIntConfiguration(key, 17);
+        Assert.assertEquals(17, (int) property.get());
+        Assert.assertTrue(configurationService.getSnapshot().getVersion() > before.getVersion());
+        Assert.assertFalse(before.containsKey(key));
+        Assert.assertEquals(17, configurationService.getSnapshot().getInt(key, 0));
+
+        configurationService.removeConfiguration(key);
+        Assert.assertEquals(42, (int) property.get());
+    }
+
 
     @AfterClass
     public static void tearDown() {
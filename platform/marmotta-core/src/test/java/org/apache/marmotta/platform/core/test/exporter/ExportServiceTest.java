@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.test.exporter;
+
+import org.apache.marmotta.platform.core.api.exporter.ExportCompression;
+import org.apache.marmotta.platform.core.api.exporter.ExportService;
+import org.apache.marmotta.platform.core.api.triplestore.ContextService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Test streaming exports of several contexts in parallel
+ */
+public class ExportServiceTest {
+
+    private static EmbeddedMarmotta marmotta;
+
+    private static URI[] contexts = new URI[3];
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        marmotta = new EmbeddedMarmotta();
+
+        RepositoryConnection con = marmotta.getService(SesameService.class).getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            for(int c = 0; c < contexts.length; c++) {
+                contexts[c] = marmotta.getService(ContextService.class).createContext("http://localhost/context/export" + c);
+                for(int i = 0; i < 1000 * (c + 1); i++) {
+                    con.add(vf.createURI("http://localhost/export/r" + i), vf.createURI("http://localhost/export/p"), vf.createLiteral("value " + c + " " + i), contexts[c]);
+                }
+            }
+            // a statement without context, stored in the default graph
+            con.add(vf.createURI("http://localhost/export/default"), vf.createURI("http://localhost/export/p"), vf.createLiteral("default"));
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        marmotta.shutdown();
+    }
+
+    @Test
+    public void testParallelCompressedExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marmotta.getService(ExportService.class).exportData(out, null, RDFFormat.NQUADS.getDefaultMIMEType(), ExportCompression.GZIP);
+
+        // the segments are separate gzip members, GZIPInputStream reads them as one stream
+        Model model = parse(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+        for(int c = 0; c < contexts.length; c++) {
+            Assert.assertEquals(1000 * (c + 1), model.filter(null, null, null, contexts[c]).size());
+        }
+        // the default graph is exported as a segment of its own
+        Assert.assertEquals(1, model.filter(new URIImpl("http://localhost/export/default"), null, null).size());
+    }
+
+    @Test
+    public void testSingleContextExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marmotta.getService(ExportService.class).exportData(out, contexts[1], RDFFormat.NQUADS.getDefaultMIMEType(), ExportCompression.NONE);
+
+        Model model = parse(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(2000, model.size());
+        Assert.assertEquals(2000, model.filter(null, null, null, contexts[1]).size());
+    }
+
+    private static Model parse(InputStream in) throws Exception {
+        try {
+            return Rio.parse(in, "http://localhost/", RDFFormat.NQUADS);
+        } finally {
+            in.close();
+        }
+    }
+}
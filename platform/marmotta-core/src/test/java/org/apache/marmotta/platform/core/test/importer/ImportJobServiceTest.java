@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.test.importer;
+
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.importer.ImportJob;
+import org.apache.marmotta.platform.core.api.importer.ImportJobService;
+import org.apache.marmotta.platform.core.api.triplestore.ContextService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.exception.io.MarmottaImportException;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test chunked asynchronous import jobs
+ */
+public class ImportJobServiceTest {
+
+    private static EmbeddedMarmotta marmotta;
+
+    @BeforeClass
+    public static void setUp() {
+        marmotta = new EmbeddedMarmotta();
+        marmotta.getService(ConfigurationService.class).setIntConfiguration("importer.jobs.commit_interval", 1000);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        marmotta.shutdown();
+    }
+
+    @Test
+    public void testChunkedImport() throws Exception {
+        ImportJobService importJobService = marmotta.getService(ImportJobService.class);
+        URI context = marmotta.getService(ContextService.class).createContext("http://localhost/context/importjobs");
+
+        // 2500 statements, linked through blank nodes spanning the commit boundaries
+        ImportJob job = importJobService.createJob(stream(chain(2500)), "text/plain", context);
+        awaitJob(job);
+
+        Assert.assertEquals(job.getMessage(), ImportJob.State.FINISHED, job.getState());
+        Assert.assertEquals(2500, job.getOffset());
+        Assert.assertEquals(2500, size(context));
+
+        Assert.assertTrue(importJobService.removeJob(job.getId()));
+        Assert.assertNull(importJobService.getJob(job.getId()));
+    }
+
+    @Test
+    public void testCancelAndResume() throws Exception {
+        ImportJobService importJobService = marmotta.getService(ImportJobService.class);
+        URI context = marmotta.getService(ContextService.class).createContext("http://localhost/context/importjobs-cancel");
+
+        ImportJob job = importJobService.createJob(stream(chain(100000)), "text/plain", context);
+
+        // cancel the job after its first commit
+        for(int i = 0; i < 600 && job.getOffset() == 0 && job.getState() != ImportJob.State.FINISHED; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(importJobService.cancelJob(job.getId()));
+        awaitJob(job);
+
+        Assert.assertEquals(job.getMessage(), ImportJob.State.CANCELLED, job.getState());
+        Assert.assertTrue(job.isResumable());
+        Assert.assertTrue(job.getOffset() > 0);
+        Assert.assertTrue(job.getOffset() < 100000);
+        Assert.assertEquals(job.getOffset(), size(context));
+
+        // the resumed job continues after the committed statements and reuses their blank nodes
+        Assert.assertSame(job, importJobService.resumeJob(job.getId()));
+        awaitJob(job);
+
+        Assert.assertEquals(job.getMessage(), ImportJob.State.FINISHED, job.getState());
+        Assert.assertEquals(100000, job.getOffset());
+        Assert.assertEquals(100000, size(context));
+
+        Assert.assertTrue(importJobService.removeJob(job.getId()));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ImportJobService importJobService = marmotta.getService(ImportJobService.class);
+        URI context = marmotta.getService(ContextService.class).createContext("http://localhost/context/importjobs-failure");
+
+        // the parse error is in the second chunk, so the first chunk stays committed
+        ImportJob job = importJobService.createJob(stream(chain(1500) + "this is not N-Triples\n"), "text/plain", context);
+        awaitJob(job);
+
+        Assert.assertEquals(ImportJob.State.FAILED, job.getState());
+        Assert.assertNotNull(job.getMessage());
+        Assert.assertTrue(job.isResumable());
+        Assert.assertEquals(1000, job.getOffset());
+        Assert.assertEquals(1000, size(context));
+
+        // resuming does not import the committed statements again, but fails at the same error
+        importJobService.resumeJob(job.getId());
+        awaitJob(job);
+
+        Assert.assertEquals(ImportJob.State.FAILED, job.getState());
+        Assert.assertEquals(1000, size(context));
+
+        Assert.assertTrue(importJobService.removeJob(job.getId()));
+    }
+
+    @Test(expected = MarmottaImportException.class)
+    public void testResumeFinished() throws Exception {
+        ImportJobService importJobService = marmotta.getService(ImportJobService.class);
+
+        ImportJob job = importJobService.createJob(stream(chain(10)), "text/plain", null);
+        awaitJob(job);
+        Assert.assertEquals(ImportJob.State.FINISHED, job.getState());
+
+        importJobService.resumeJob(job.getId());
+    }
+
+    private static String chain(int length) {
+        StringBuilder data = new StringBuilder();
+        for(int i = 0; i < length; i++) {
+            data.append(String.format("_:n%d <http://example.com/next> _:n%d .\n", i, i + 1));
+        }
+        return data.toString();
+    }
+
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitJob(ImportJob job) throws InterruptedException {
+        for(int i = 0; i < 1200 && (job.getState() == ImportJob.State.QUEUED || job.getState() == ImportJob.State.RUNNING); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static long size(URI context) throws Exception {
+        RepositoryConnection con = marmotta.getService(SesameService.class).getConnection();
+        try {
+            con.begin();
+            long size = con.size(context);
+            con.commit();
+            return size;
+        } finally {
+            con.close();
+        }
+    }
+}
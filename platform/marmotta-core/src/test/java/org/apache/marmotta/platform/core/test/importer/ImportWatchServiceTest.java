@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.core.test.importer;
+
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.importer.ImportWatchService;
+import org.apache.marmotta.platform.core.api.triplestore.ContextService;
+import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.test.base.EmbeddedMarmotta;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test the scheduling, the parallel execution and the resumption of imports of the import watch service
+ */
+public class ImportWatchServiceTest {
+
+    private static final String CONTEXT_PREFIX = "http://localhost/context/importwatch/";
+
+    private static final long TIMEOUT = 120000;
+
+    private static EmbeddedMarmotta marmotta;
+
+    private static ImportWatchService importWatchService;
+
+    @BeforeClass
+    public static void setUp() {
+        marmotta = new EmbeddedMarmotta();
+
+        ConfigurationService configurationService = marmotta.getService(ConfigurationService.class);
+        configurationService.setIntConfiguration("file-import.importDelay", 200);
+        configurationService.setIntConfiguration("file-import.commitInterval", 1000);
+        configurationService.setBooleanConfiguration("file-import.deleteAfterImport", true);
+
+        importWatchService = marmotta.getService(ImportWatchService.class);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        marmotta.shutdown();
+    }
+
+    @Before
+    public void resetWatcher() {
+        importWatchService.shutdown();
+    }
+
+    @After
+    public void stopWatcher() {
+        importWatchService.shutdown();
+    }
+
+    /**
+     * Files queued while the import thread is busy are imported by priority of their directory, then by size.
+     */
+    @Test
+    public void testImportOrder() throws Exception {
+        marmotta.getService(ConfigurationService.class).setIntConfiguration("file-import.threads", 1);
+
+        Path blocker = createDirectory("order-blocker", 0).resolve("blocker.nt");
+        Path low     = createDirectory("order-low", 0);
+        Path high    = createDirectory("order-high", 10);
+
+        write(blocker, statements("blocker", 100000));
+        importWatchService.startup();
+
+        // wait until the only import thread is busy, then queue the other files
+        awaitSize(context("order-blocker"), 1);
+        List<Path> files = Arrays.asList(low.resolve("large.nt"), low.resolve("small.nt"), high.resolve("high.nt"));
+        write(files.get(0), statements("large", 3000));
+        write(files.get(1), statements("small", 1000));
+        write(files.get(2), statements("high", 5000));
+        Thread.sleep(1000);
+        Assert.assertTrue("the blocking import finished before the other files were queued", Files.exists(blocker));
+
+        List<Path> order = awaitDeleted(Arrays.asList(blocker, files.get(0), files.get(1), files.get(2)));
+        Assert.assertEquals(Arrays.asList(blocker, files.get(2), files.get(1), files.get(0)), order);
+
+        Assert.assertEquals(100000, size(context("order-blocker")));
+        Assert.assertEquals(4000, size(context("order-low")));
+        Assert.assertEquals(5000, size(context("order-high")));
+    }
+
+    /**
+     * With more than one thread, files are imported at the same time.
+     */
+    @Test
+    public void testParallelImport() throws Exception {
+        marmotta.getService(ConfigurationService.class).setIntConfiguration("file-import.threads", 2);
+
+        Path first  = createDirectory("parallel-1", 0).resolve("data.nt");
+        Path second = createDirectory("parallel-2", 0).resolve("data.nt");
+        write(first, statements("first", 50000));
+        write(second, statements("second", 50000));
+        importWatchService.startup();
+
+        // a file is deleted when its import is finished, so both imports are running while both files exist
+        boolean parallel = false;
+        long start = System.currentTimeMillis();
+        while(!parallel && Files.exists(first) && Files.exists(second) && System.currentTimeMillis() - start < TIMEOUT) {
+            parallel = size(context("parallel-1")) > 0 && size(context("parallel-2")) > 0 && Files.exists(first) && Files.exists(second);
+            Thread.sleep(20);
+        }
+        Assert.assertTrue("the files have not been imported in parallel", parallel);
+
+        awaitDeleted(Arrays.asList(first, second));
+        Assert.assertEquals(50000, size(context("parallel-1")));
+        Assert.assertEquals(50000, size(context("parallel-2")));
+    }
+
+    /**
+     * An import interrupted by a shutdown continues after the last commit after the next startup.
+     */
+    @Test
+    public void testResumeImport() throws Exception {
+        marmotta.getService(ConfigurationService.class).setIntConfiguration("file-import.threads", 1);
+
+        // blank nodes spanning the commit boundaries; importing them again from the beginning would duplicate them
+        StringBuilder data = new StringBuilder();
+        for(int i = 0; i < 100000; i++) {
+            data.append(String.format("_:n%d <http://example.com/next> _:n%d .\n", i, i + 1));
+        }
+        Path file = createDirectory("resume", 0).resolve("data.nt");
+        write(file, data.toString());
+        importWatchService.startup();
+
+        awaitSize(context("resume"), 1);
+        importWatchService.shutdown();
+        Thread.sleep(1000);
+
+        long committed = size(context("resume"));
+        Assert.assertTrue("the import finished before it was interrupted", committed < 100000);
+        Assert.assertTrue(Files.exists(file));
+
+        importWatchService.startup();
+        awaitDeleted(Arrays.asList(file));
+
+        Assert.assertEquals(100000, size(context("resume")));
+    }
+
+    private Path createDirectory(String name, int priority) throws IOException {
+        Path dir = importWatchService.getImportRoot().resolve(name);
+        Files.createDirectories(dir);
+        write(dir.resolve("config"), String.format("context=%s\npriority=%d\n", CONTEXT_PREFIX + name, priority));
+        return dir;
+    }
+
+    private URI context(String name) throws URISyntaxException {
+        return marmotta.getService(ContextService.class).createContext(CONTEXT_PREFIX + name);
+    }
+
+    private static String statements(String name, int count) {
+        StringBuilder data = new StringBuilder();
+        for(int i = 0; i < count; i++) {
+            data.append(String.format("<http://localhost/importwatch/%s/%d> <http://example.com/value> \"%d\" .\n", name, i, i));
+        }
+        return data.toString();
+    }
+
+    /**
+     * Write the file outside of the import directory and move it in, so that it is never imported partially.
+     */
+    private static void write(Path target, String data) throws IOException {
+        Path tmp = Files.createTempFile(Paths.get(marmotta.getService(ConfigurationService.class).getHome()), "importwatch", ".tmp");
+        Files.write(tmp, data.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long size(URI context) throws Exception {
+        RepositoryConnection con = marmotta.getService(SesameService.class).getConnection();
+        try {
+            con.begin();
+            long size = con.size(context);
+            con.commit();
+            return size;
+        } finally {
+            con.close();
+        }
+    }
+
+    private static void awaitSize(URI context, long size) throws Exception {
+        long start = System.currentTimeMillis();
+        while(size(context) < size) {
+            Assert.assertTrue("timeout while waiting for " + context, System.currentTimeMillis() - start < TIMEOUT);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Wait until the given files have been deleted after their import and return them in the order of deletion.
+     */
+    private static List<Path> awaitDeleted(List<Path> files) throws InterruptedException {
+        Set<Path> deleted = new LinkedHashSet<>();
+        long start = System.currentTimeMillis();
+        while(deleted.size() < files.size()) {
+            Assert.assertTrue("timeout while waiting for the import of " + files, System.currentTimeMillis() - start < TIMEOUT);
+            for(Path file : files) {
+                if(!Files.exists(file)) {
+                    deleted.add(file);
+                }
+            }
+            Thread.sleep(5);
+        }
+        return new ArrayList<>(deleted);
+    }
+}
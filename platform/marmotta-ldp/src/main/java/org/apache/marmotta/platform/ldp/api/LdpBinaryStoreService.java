@@ -22,6 +22,7 @@ import org.openrdf.model.URI;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.channels.WritableByteChannel;
 
 /**
  *  LDP Store Service
@@ -38,6 +39,28 @@ public interface LdpBinaryStoreService {
 
     InputStream read(URI resource) throws IOException;
 
+    /**
+     * Write (part of) the content of the resource to the channel, using {@link java.nio.channels.FileChannel#transferTo}
+     * so that the content does not need to be copied through a buffer.
+     *
+     * @param offset the first byte to write
+     * @param length the number of bytes to write, or -1 to write up to the end
+     * @return the number of bytes written, or -1 if the resource is not stored
+     */
+    long transferTo(String resource, long offset, long length, WritableByteChannel target) throws IOException;
+
+    long transferTo(URI resource, long offset, long length, WritableByteChannel target) throws IOException;
+
+    /**
+     * The size of the content in bytes, or -1 if the resource is not stored.
+     */
+    long getSize(String resource);
+
+    long getSize(URI uri);
+
+    /**
+     * The digest of the content, computed when it was stored.
+     */
     String getHash(String resource);
 
     String getHash(URI uri);
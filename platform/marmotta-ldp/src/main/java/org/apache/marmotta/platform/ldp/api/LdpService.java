@@ -284,10 +284,55 @@ public interface LdpService {
 
     void exportResource(RepositoryConnection outputConn, URI resource, OutputStream output, RDFFormat format, Preference preference) throws RepositoryException, RDFHandlerException;
 
+    /**
+     * Count the resources contained in a container, but stop counting at the given limit. This does not sort
+     * the members, so it is cheap also for huge containers.
+     *
+     * @return the number of contained resources, or {@code limit} if there are more
+     */
+    int countContainedResources(RepositoryConnection connection, String container, int limit) throws RepositoryException;
+
+    int countContainedResources(RepositoryConnection connection, URI container, int limit) throws RepositoryException;
+
+    /**
+     * List the resources contained in a container ordered by their URI (keyset pagination, LDP Paging).
+     *
+     * @param after only list members whose URI sorts after this one, or null to start with the first member
+     * @param limit the maximum number of members to return
+     */
+    List<URI> listContainedResources(RepositoryConnection connection, String container, URI after, int limit) throws RepositoryException;
+
+    List<URI> listContainedResources(RepositoryConnection connection, URI container, URI after, int limit) throws RepositoryException;
+
+    /**
+     * Export one page of a container (LDP Paging): the page description, the containment triples of the given
+     * members and, on the first page, the remaining triples of the container as selected by the preference.
+     *
+     * @param page the URI of the page
+     * @param members the members on this page, as returned by {@link #listContainedResources}
+     * @param first whether this is the first page of the container
+     */
+    void exportContainerPage(RepositoryConnection connection, String container, String page, List<URI> members, boolean first, OutputStream output, RDFFormat format, Preference preference) throws RepositoryException, RDFHandlerException;
+
+    void exportContainerPage(RepositoryConnection connection, URI container, URI page, List<URI> members, boolean first, OutputStream output, RDFFormat format, Preference preference) throws RepositoryException, RDFHandlerException;
+
     void exportBinaryResource(RepositoryConnection connection, String resource, OutputStream out) throws RepositoryException, IOException;
 
     void exportBinaryResource(RepositoryConnection connection, URI resource, OutputStream out) throws RepositoryException, IOException;
 
+    /**
+     * Export a byte range of a LDP-NR.
+     *
+     * @param offset the first byte to export
+     * @param length the number of bytes to export, or -1 to export up to the end
+     */
+    void exportBinaryResource(RepositoryConnection connection, String resource, OutputStream out, long offset, long length) throws RepositoryException, IOException;
+
+    /**
+     * The size of the content of a LDP-NR in bytes, or -1 if unknown.
+     */
+    long getBinaryResourceSize(RepositoryConnection connection, String resource) throws RepositoryException;
+
     EntityTag generateETag(RepositoryConnection connection, String uri) throws RepositoryException;
 
     EntityTag generateETag(RepositoryConnection connection, URI uri) throws RepositoryException;
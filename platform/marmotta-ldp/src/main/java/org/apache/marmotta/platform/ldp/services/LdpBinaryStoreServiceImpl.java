@@ -17,8 +17,8 @@
  */
 package org.apache.marmotta.platform.ldp.services;
 
+import com.google.common.util.concurrent.Striped;
 import org.apache.commons.io.IOUtils;
-import org.apache.marmotta.commons.util.HashUtils;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
 import org.apache.marmotta.platform.ldp.api.LdpBinaryStoreService;
 import org.openrdf.model.URI;
@@ -31,14 +31,34 @@ import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
- * Very basic disk-based implementation of the LDP Binary Store
+ * Disk-based, content-addressed implementation of the LDP Binary Store.
+ * <p/>
+ * The content of a binary is stored once per distinct SHA-256 digest under {@code data/blobs}; the digest is
+ * computed while the content is streamed in and recorded in a small reference file per resource under
+ * {@code data/refs}, together with the size. Each blob keeps the list of resources referencing it, so that it
+ * is removed once the last of them is deleted. Binaries stored by earlier versions directly under
+ * {@code data/} are still served and are moved into the blob store the first time their hash is requested.
  *
  * @author Sergio Fernández
  */
@@ -47,14 +67,29 @@ public class LdpBinaryStoreServiceImpl implements LdpBinaryStoreService {
 
     private static final Logger log = LoggerFactory.getLogger(LdpBinaryStoreServiceImpl.class);
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
     @Inject
     private ConfigurationService configurationService;
 
-    private Path base;
+    private Path base, blobs, refs, uploads;
+
+    /**
+     * Locks for the reference of a resource; always acquired before the lock of a blob
+     */
+    private final Striped<Lock> resourceLocks = Striped.lock(64);
+
+    /**
+     * Locks for the reference list of a blob
+     */
+    private final Striped<Lock> blobLocks = Striped.lock(64);
 
     @PostConstruct
     public void init() {
-        base = Paths.get(configurationService.getHome(), "data");
+        base    = Paths.get(configurationService.getHome(), "data");
+        blobs   = base.resolve("blobs");
+        refs    = base.resolve("refs");
+        uploads = blobs.resolve("tmp");
 
         log.info("Initialized binary data store over {}", base.toString());
     }
@@ -81,15 +116,18 @@ public class LdpBinaryStoreServiceImpl implements LdpBinaryStoreService {
         return base.resolve(String.format("%s.%d/%s", uri.getHost(), port, uri.getRawPath()));
     }
 
+    Path getRefFile(String resource) throws URISyntaxException {
+        return refs.resolve(base.relativize(getFile(resource)));
+    }
+
+    Path getBlobFile(String digest) {
+        return blobs.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
     @Override
     public boolean store(String resource, InputStream stream)  {
         try {
-            Path file = getFile(resource);
-            Files.createDirectories(file.getParent());
-
-            try (OutputStream outputStream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                IOUtils.copy(stream, outputStream);
-            }
+            store(resource, stream, false);
             return true;
         } catch (URISyntaxException | IOException e) {
             log.error("{} resource cannot be stored on disk: {}", resource, e.getMessage());
@@ -102,14 +140,60 @@ public class LdpBinaryStoreServiceImpl implements LdpBinaryStoreService {
         return store(resource.stringValue(), stream);
     }
 
+    /**
+     * Stream the content into a temporary file while computing its digest, then move it into the blob store
+     * (or drop it if an identical blob already exists) and point the reference of the resource to it.
+     */
+    private Reference store(String resource, InputStream stream, boolean keepLegacy) throws URISyntaxException, IOException {
+        Files.createDirectories(uploads);
+        final Path upload = Files.createTempFile(uploads, "upload-", ".tmp");
+        try {
+            final MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            final long size;
+            try (OutputStream outputStream = Files.newOutputStream(upload, StandardOpenOption.TRUNCATE_EXISTING)) {
+                size = IOUtils.copyLarge(new DigestInputStream(stream, md), outputStream);
+            }
+            final Reference reference = new Reference(String.format("%064x", new BigInteger(1, md.digest())), size);
+
+            final Lock lock = resourceLocks.get(resource);
+            lock.lock();
+            try {
+                final Reference previous = readReference(resource);
+
+                addLink(reference.digest, upload, resource);
+
+                final Path refFile = getRefFile(resource);
+                Files.createDirectories(refFile.getParent());
+                writeAtomically(refFile, Collections.singletonList(reference.toString()));
+
+                if (previous != null && !previous.digest.equals(reference.digest)) {
+                    removeLink(previous.digest, resource);
+                }
+
+                if (!keepLegacy) {
+                    deleteLegacyFile(resource);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            log.debug("stored {} as blob {} ({} bytes)", resource, reference.digest, reference.size);
+            return reference;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("digest algorithm " + DIGEST_ALGORITHM + " not available", e);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
     @Override
     public InputStream read(String resource) throws IOException {
         try {
-            Path file = getFile(resource);
-            if (Files.exists(file)) {
+            final Path file = resolve(resource);
+            if (file != null) {
                 return Files.newInputStream(file, StandardOpenOption.READ);
             } else {
-                log.warn("{} not found in binary storage ({})", resource, file);
+                log.warn("{} not found in binary storage", resource);
                 return null;
             }
         } catch (URISyntaxException e) {
@@ -123,13 +207,79 @@ public class LdpBinaryStoreServiceImpl implements LdpBinaryStoreService {
         return read(resource.stringValue());
     }
 
+    @Override
+    public long transferTo(String resource, long offset, long length, WritableByteChannel target) throws IOException {
+        try {
+            final Path file = resolve(resource);
+            if (file == null) {
+                log.warn("{} not found in binary storage", resource);
+                return -1;
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final long end = length < 0 ? channel.size() : Math.min(channel.size(), offset + length);
+                long position = offset;
+                while (position < end) {
+                    final long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                return position - offset;
+            }
+        } catch (URISyntaxException e) {
+            log.error("Error reading resource {}: {}", resource, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public long transferTo(URI resource, long offset, long length, WritableByteChannel target) throws IOException {
+        return transferTo(resource.stringValue(), offset, length, target);
+    }
+
+    @Override
+    public long getSize(String resource) {
+        try {
+            final Reference reference = readReference(resource);
+            if (reference != null) {
+                return reference.size;
+            }
+            final Path legacy = getFile(resource);
+            return Files.isRegularFile(legacy) ? Files.size(legacy) : -1;
+        } catch (URISyntaxException | IOException e) {
+            log.error("Error reading size of {}: {}", resource, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public long getSize(URI uri) {
+        return getSize(uri.stringValue());
+    }
 
     @Override
     public String getHash(String resource) {
-        try(InputStream is = Files.newInputStream(getFile(resource))) {
-            return HashUtils.md5sum(is);
+        try {
+            final Reference reference = readReference(resource);
+            if (reference != null) {
+                return reference.digest;
+            }
+
+            // binary stored by an earlier version: hash it once while moving it into the blob store
+            final Path legacy = getFile(resource);
+            if (Files.isRegularFile(legacy)) {
+                final Reference migrated;
+                try (InputStream is = Files.newInputStream(legacy)) {
+                    migrated = store(resource, is, true);
+                }
+                deleteLegacyFile(resource);
+                return migrated.digest;
+            }
+            return null;
         } catch (URISyntaxException | IOException e) {
-            log.error("Error calculating file-md5 of {}: {}", resource, e);
+            log.error("Error calculating hash of {}: {}", resource, e);
             return null;
         }
     }
@@ -146,12 +296,144 @@ public class LdpBinaryStoreServiceImpl implements LdpBinaryStoreService {
 
     @Override
     public boolean delete(String resource) {
+        final Lock lock = resourceLocks.get(resource);
+        lock.lock();
         try {
-            final Path file = getFile(resource);
-            return Files.deleteIfExists(file);
+            final Reference reference = readReference(resource);
+            if (reference != null) {
+                Files.deleteIfExists(getRefFile(resource));
+                removeLink(reference.digest, resource);
+                return true;
+            }
+            return deleteLegacyFile(resource);
         } catch (IOException | URISyntaxException e) {
             log.error("Error while deleting {}: {}", resource, e.getMessage());
             return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the file holding the content of the resource, or null if it is not stored.
+     */
+    private Path resolve(String resource) throws URISyntaxException, IOException {
+        final Reference reference = readReference(resource);
+        if (reference != null) {
+            return getBlobFile(reference.digest);
+        }
+        final Path legacy = getFile(resource);
+        return Files.isRegularFile(legacy) ? legacy : null;
+    }
+
+    private Reference readReference(String resource) throws URISyntaxException, IOException {
+        final Path refFile = getRefFile(resource);
+        if (!Files.isRegularFile(refFile)) {
+            return null;
+        }
+        final List<String> lines = Files.readAllLines(refFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return null;
+        }
+        final String[] parts = lines.get(0).trim().split(" ");
+        return new Reference(parts[0], Long.parseLong(parts[1]));
+    }
+
+    private boolean deleteLegacyFile(String resource) throws URISyntaxException, IOException {
+        final Path legacy = getFile(resource);
+        return Files.isRegularFile(legacy) && Files.deleteIfExists(legacy);
+    }
+
+    /**
+     * Register the resource as user of the blob with the given digest; the upload becomes the blob in case it
+     * does not exist yet.
+     */
+    private void addLink(String digest, Path upload, String resource) throws IOException {
+        final Lock lock = blobLocks.get(digest);
+        lock.lock();
+        try {
+            final Path blob = getBlobFile(digest);
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                move(upload, blob);
+            } else {
+                log.debug("blob {} already exists, not storing content of {} again", digest, resource);
+            }
+
+            final Set<String> links = readLinks(digest);
+            if (links.add(resource)) {
+                writeAtomically(getLinksFile(digest), links);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregister the resource as user of the blob with the given digest and remove the blob if it is not used
+     * any more.
+     */
+    private void removeLink(String digest, String resource) throws IOException {
+        final Lock lock = blobLocks.get(digest);
+        lock.lock();
+        try {
+            final Set<String> links = readLinks(digest);
+            links.remove(resource);
+            if (links.isEmpty()) {
+                log.debug("removing unreferenced blob {}", digest);
+                Files.deleteIfExists(getBlobFile(digest));
+                Files.deleteIfExists(getLinksFile(digest));
+            } else {
+                writeAtomically(getLinksFile(digest), links);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path getLinksFile(String digest) {
+        return blobs.resolve(digest.substring(0, 2)).resolve(digest + ".links");
+    }
+
+    private Set<String> readLinks(String digest) throws IOException {
+        final Path linksFile = getLinksFile(digest);
+        if (Files.isRegularFile(linksFile)) {
+            return new LinkedHashSet<>(Files.readAllLines(linksFile, StandardCharsets.UTF_8));
+        } else {
+            return new LinkedHashSet<>();
+        }
+    }
+
+    private void writeAtomically(Path file, Iterable<String> lines) throws IOException {
+        final Path tmp = Files.createTempFile(uploads, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            move(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class Reference {
+        private final String digest;
+        private final long size;
+
+        private Reference(String digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return digest + " " + size;
         }
     }
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldp.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.commons.vocabulary.LDP;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterCommit;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps the members of LDP containers sorted by URI in memory, so that a page of a container (LDP Paging) is read
+ * from the position after the last member of the previous page instead of sorting the whole containment set on
+ * each request.
+ * <p/>
+ * The index of a container is built from its committed containment triples the first time it is paged and is then
+ * kept up to date with the ldp:contains triples added and removed by each commit. Changes made in the transaction of
+ * the requesting connection itself are therefore not visible before they are committed.
+ */
+@ApplicationScoped
+public class LdpContainerIndex {
+
+    @Inject
+    private ConfigurationService configurationService;
+
+    private final String ldpContext = LDP.NAMESPACE;
+
+    /**
+     * incremented on each commit that changes a containment, used to detect indexes built concurrently with a commit;
+     * guarded by this
+     */
+    private long generation = 0;
+
+    private Cache<String, NavigableSet<String>> members;
+
+    @PostConstruct
+    public void initialize() {
+        members = CacheBuilder.newBuilder()
+                .maximumSize(configurationService.getIntConfiguration("ldp.paging.index_size", 1000))
+                .build();
+    }
+
+    /**
+     * List the members of the container whose URI sorts after the given one, in the order of their URIs.
+     *
+     * @param after the URI of the last member of the previous page, or null to start with the first member
+     * @param limit the maximum number of members to return
+     */
+    public List<URI> list(RepositoryConnection connection, URI container, URI after, int limit) throws RepositoryException {
+        NavigableSet<String> index = members.getIfPresent(container.stringValue());
+        if (index == null) {
+            index = build(connection, container);
+        }
+
+        final Collection<String> page = after != null ? index.tailSet(after.stringValue(), false) : index;
+        final List<URI> result = new ArrayList<>(Math.min(limit, 1000));
+        for (String member : page) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(connection.getValueFactory().createURI(member));
+        }
+        return result;
+    }
+
+    private NavigableSet<String> build(RepositoryConnection connection, URI container) throws RepositoryException {
+        final long started;
+        synchronized (this) {
+            started = generation;
+        }
+
+        final NavigableSet<String> index = new ConcurrentSkipListSet<>();
+        final RepositoryResult<Statement> stmts = connection.getStatements(container, LDP.contains, null, false, connection.getValueFactory().createURI(ldpContext));
+        try {
+            while (stmts.hasNext()) {
+                final Statement stmt = stmts.next();
+                if (stmt.getObject() instanceof URI) {
+                    index.add(stmt.getObject().stringValue());
+                }
+            }
+        } finally {
+            stmts.close();
+        }
+
+        // an index read while a containment change was committed may miss that change; use it for this request only
+        synchronized (this) {
+            if (generation == started) {
+                members.put(container.stringValue(), index);
+            }
+        }
+        return index;
+    }
+
+    public void onAfterCommit(@Observes @AfterCommit TransactionData data) {
+        final List<Statement> added = getContainment(data.getAddedTriples()), removed = getContainment(data.getRemovedTriples());
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            generation++;
+            for (Statement stmt : removed) {
+                final NavigableSet<String> index = members.getIfPresent(stmt.getSubject().stringValue());
+                if (index != null) {
+                    index.remove(stmt.getObject().stringValue());
+                }
+            }
+            for (Statement stmt : added) {
+                final NavigableSet<String> index = members.getIfPresent(stmt.getSubject().stringValue());
+                if (index != null) {
+                    index.add(stmt.getObject().stringValue());
+                }
+            }
+        }
+    }
+
+    private List<Statement> getContainment(Collection<Statement> statements) {
+        final List<Statement> result = new ArrayList<>();
+        for (Statement stmt : statements) {
+            final Resource context = stmt.getContext();
+            if (LDP.contains.equals(stmt.getPredicate()) && stmt.getObject() instanceof URI && context != null && ldpContext.equals(context.stringValue())) {
+                result.add(stmt);
+            }
+        }
+        return result;
+    }
+
+    public long size() {
+        return members.size();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.ldp.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
+import org.apache.marmotta.commons.vocabulary.LDP;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterCommit;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterRollback;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the current version and last-modified date of LDP resources in memory, so that ETags and conditional
+ * requests do not need to scan the dcterms:modified statements of a resource on each request.
+ * <p/>
+ * A version is computed the first time a resource is looked up after it changed; each commit drops the versions of
+ * all resources it touched, i.e. the subjects of statements in the LDP context and the contexts holding the content
+ * of RDF sources. The tag of a version is derived from the stored state of the resource (its last-modified date and
+ * a digest of its statements), so it does not change when a version is evicted or the server is restarted and,
+ * qualified with the serialisation format, can be used as strong ETag. A rollback drops the versions of the resources
+ * it touched, since they may have been computed from uncommitted data.
+ */
+@ApplicationScoped
+public class LdpResourceVersionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LdpResourceVersionCache.class);
+
+    /**
+     * commits touching more resources than this simply drop all versions
+     */
+    private static final int MAX_INVALIDATIONS = 10000;
+
+    @Inject
+    private ConfigurationService configurationService;
+
+    private final String ldpContext = LDP.NAMESPACE;
+
+    /**
+     * incremented on each commit or rollback that changes data, used to detect versions computed concurrently with a commit
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private Cache<String, Version> versions;
+
+    @PostConstruct
+    public void initialize() {
+        versions = CacheBuilder.newBuilder()
+                .maximumSize(configurationService.getIntConfiguration("ldp.versions.cache_size", 100000))
+                .build();
+    }
+
+    /**
+     * Return the cached version of the resource, or null if it needs to be computed with {@link #put}.
+     */
+    public Version get(String resource) {
+        return versions.getIfPresent(resource);
+    }
+
+    /**
+     * The current generation; needs to be read before the last-modified date passed to {@link #put} is computed.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Store the version of the resource computed from its statements. The version is only cached if no commit
+     * happened since the given generation was read; otherwise it may describe an outdated state and is only valid
+     * for the current request.
+     */
+    public Version put(String resource, String tag, Date lastModified, long generation) {
+        final Version version = new Version(tag, lastModified);
+        if (this.generation.get() == generation) {
+            versions.put(resource, version);
+        }
+        return version;
+    }
+
+    public void onAfterCommit(@Observes @AfterCommit TransactionData data) {
+        final Set<String> changed = getChanged(data);
+        if (changed == null) {
+            versions.invalidateAll();
+        } else if (!changed.isEmpty()) {
+            versions.invalidateAll(changed);
+        }
+    }
+
+    public void onAfterRollback(@Observes @AfterRollback TransactionData data) {
+        final Set<String> changed = getChanged(data);
+        if (changed == null) {
+            versions.invalidateAll();
+        } else if (!changed.isEmpty()) {
+            versions.invalidateAll(changed);
+        }
+    }
+
+    /**
+     * Collect the resources touched by a transaction, or return null if it touched too many to track them.
+     */
+    private Set<String> getChanged(TransactionData data) {
+        final Collection<Statement> added = data.getAddedTriples(), removed = data.getRemovedTriples();
+        if (added.isEmpty() && removed.isEmpty()) {
+            return Collections.emptySet();
+        }
+        generation.incrementAndGet();
+
+        if (added.size() + removed.size() > MAX_INVALIDATIONS) {
+            log.debug("large transaction ({} added, {} removed), not tracking the changed LDP resources", added.size(), removed.size());
+            return null;
+        }
+
+        final Set<String> changed = new HashSet<>();
+        collectChanged(added, changed);
+        collectChanged(removed, changed);
+        return changed;
+    }
+
+    private void collectChanged(Collection<Statement> statements, Set<String> changed) {
+        for (Statement stmt : statements) {
+            final Resource context = stmt.getContext();
+            if (context == null) {
+                continue;
+            }
+            if (ldpContext.equals(context.stringValue())) {
+                // server-managed properties and containment of the subject
+                if (stmt.getSubject() instanceof URI) {
+                    changed.add(stmt.getSubject().stringValue());
+                }
+            } else {
+                // the content of a RDF source is stored in the context named like the resource
+                changed.add(context.stringValue());
+            }
+        }
+    }
+
+    /**
+     * Drop all versions; they are computed again from the stored state on the next lookup.
+     */
+    public void clear() {
+        versions.invalidateAll();
+    }
+
+    public long size() {
+        return versions.size();
+    }
+
+    public static class Version {
+        private final String tag;
+        private final Date lastModified;
+
+        private Version(String tag, Date lastModified) {
+            this.tag = tag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * An identifier of the state of the resource, derived from its last-modified date and statements.
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * The latest dcterms:modified date of the resource, or null if it has none.
+         */
+        public Date getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -18,7 +18,6 @@
 package org.apache.marmotta.platform.ldp.services;
 
 import info.aduna.iteration.*;
-import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.commons.vocabulary.DCTERMS;
 import org.apache.marmotta.commons.vocabulary.LDP;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
@@ -40,6 +39,11 @@ import org.openrdf.model.*;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
@@ -57,6 +61,12 @@ import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -78,6 +88,12 @@ public class LdpServiceImpl implements LdpService {
     @Inject
     private LdpBinaryStoreService binaryStore;
 
+    @Inject
+    private LdpResourceVersionCache versionCache;
+
+    @Inject
+    private LdpContainerIndex containerIndex;
+
     private final URI ldpContext, ldpInteractionModelProperty, ldpUsed;
 
     public LdpServiceImpl() {
@@ -261,55 +277,168 @@ public class LdpServiceImpl implements LdpService {
     @Override
     public void exportResource(RepositoryConnection connection, final URI resource, OutputStream output, RDFFormat format, final Preference preference) throws RepositoryException, RDFHandlerException {
         // TODO: this should be a little more sophisticated...
-        // TODO: non-membership triples flag / Prefer-header
         final RDFWriter writer = Rio.createWriter(format, output);
+        final CloseableIteration<Statement, RepositoryException> statements = getResourceStatements(connection, resource, preference);
+        try {
+            LdpUtils.exportIteration(writer, resource, statements);
+        } finally {
+            statements.close();
+        }
+    }
+
+    /**
+     * The LDP statements about the resource (filtered according to the preference) followed by its content.
+     */
+    private CloseableIteration<Statement, RepositoryException> getResourceStatements(RepositoryConnection connection, URI resource, final Preference preference) throws RepositoryException {
+        return getResourceStatements(connection, resource, preference, true);
+    }
+
+    /**
+     * The LDP statements about the resource (filtered according to the preference) followed by its content; without
+     * containment, the ldp:contains statements of the resource are excluded by the query itself.
+     */
+    private CloseableIteration<Statement, RepositoryException> getResourceStatements(RepositoryConnection connection, URI resource, final Preference preference, boolean containment) throws RepositoryException {
         final CloseableIteration<Statement, RepositoryException> contentStatements;
         if (preference == null || preference.includeContent()) {
             contentStatements = connection.getStatements(null, null, null, false, resource);
         } else {
             contentStatements = new EmptyIteration<>();
         }
+        CloseableIteration<Statement, RepositoryException> ldpStatements = containment ?
+                connection.getStatements(resource, null, null, false, ldpContext) : getNonContainmentStatements(connection, resource);
+        if (preference != null) {
+            // FIXME: Get the membership predicate from the container. See http://www.w3.org/TR/ldp/#h5_ldpdc-containtriples
+            final URI membershipPred = null;
+            ldpStatements = new FilterIteration<Statement, RepositoryException>(ldpStatements) {
+                @Override
+                protected boolean accept(Statement stmt) throws RepositoryException {
+                    final URI p = stmt.getPredicate();
+
+                    if (p.equals(LDP.contains)) return preference.includeContainment();
+                    if (p.equals(membershipPred)) return preference.includeMembership();
+
+                    return preference.includeMinimalContainer();
+                }
+            };
+        }
+        @SuppressWarnings("unchecked")
+        final CloseableIteration<Statement, RepositoryException> statements = new UnionIteration<>(
+                ldpStatements, contentStatements
+        );
+        return statements;
+    }
+
+    /**
+     * The statements of the resource in the LDP context except its ldp:contains statements.
+     */
+    private CloseableIteration<Statement, RepositoryException> getNonContainmentStatements(RepositoryConnection connection, final URI resource) throws RepositoryException {
+        final String query = "SELECT ?p ?o WHERE { GRAPH ?ldp { ?resource ?p ?o } FILTER(?p != ?contains) }";
+        final ValueFactory vf = connection.getValueFactory();
         try {
-            CloseableIteration<Statement, RepositoryException> ldpStatements = connection.getStatements(resource, null, null, false, ldpContext);
-            if (preference != null) {
-                // FIXME: Get the membership predicate from the container. See http://www.w3.org/TR/ldp/#h5_ldpdc-containtriples
-                final URI membershipPred = null;
-                ldpStatements = new FilterIteration<Statement, RepositoryException>(ldpStatements) {
-                    @Override
-                    protected boolean accept(Statement stmt) throws RepositoryException {
-                        final URI p = stmt.getPredicate();
-                        final Resource s = stmt.getSubject();
-                        final Value o = stmt.getObject();
-
+            final TupleQuery tupleQuery = connection.prepareTupleQuery(QueryLanguage.SPARQL, query);
+            tupleQuery.setBinding("ldp", ldpContext);
+            tupleQuery.setBinding("resource", resource);
+            tupleQuery.setBinding("contains", LDP.contains);
+            return new ExceptionConvertingIteration<Statement, RepositoryException>(
+                    new ConvertingIteration<BindingSet, Statement, QueryEvaluationException>(tupleQuery.evaluate()) {
+                        @Override
+                        protected Statement convert(BindingSet bindings) throws QueryEvaluationException {
+                            return vf.createStatement(resource, (URI) bindings.getValue("p"), bindings.getValue("o"), ldpContext);
+                        }
+                    }) {
+                @Override
+                protected RepositoryException convert(Exception e) {
+                    return new RepositoryException("could not read the statements of " + resource, e);
+                }
+            };
+        } catch (MalformedQueryException | QueryEvaluationException e) {
+            throw new RepositoryException("could not read the statements of " + resource, e);
+        }
+    }
 
-                        if (p.equals(LDP.contains)) return preference.includeContainment();
-                        if (p.equals(membershipPred)) return preference.includeMembership();
+    @Override
+    public int countContainedResources(RepositoryConnection connection, String container, int limit) throws RepositoryException {
+        return countContainedResources(connection, buildURI(container), limit);
+    }
 
-                        return preference.includeMinimalContainer();
-                    }
-                };
+    @Override
+    public int countContainedResources(RepositoryConnection connection, URI container, int limit) throws RepositoryException {
+        int count = 0;
+        final RepositoryResult<Statement> stmts = connection.getStatements(container, LDP.contains, null, false, ldpContext);
+        try {
+            while (count < limit && stmts.hasNext()) {
+                stmts.next();
+                count++;
             }
-            @SuppressWarnings("unchecked")
-            final CloseableIteration<Statement, RepositoryException> statements = new UnionIteration<>(
-                    ldpStatements, contentStatements
-            );
-            LdpUtils.exportIteration(writer, resource, statements);
         } finally {
-            contentStatements.close();
+            stmts.close();
+        }
+        return count;
+    }
+
+    @Override
+    public List<URI> listContainedResources(RepositoryConnection connection, String container, URI after, int limit) throws RepositoryException {
+        return listContainedResources(connection, buildURI(container), after, limit);
+    }
+
+    @Override
+    public List<URI> listContainedResources(RepositoryConnection connection, URI container, URI after, int limit) throws RepositoryException {
+        // keyset pagination on the sorted member index: a page is read starting after the cursor, without sorting
+        // the whole containment set
+        return containerIndex.list(connection, container, after, limit);
+    }
+
+    @Override
+    public void exportContainerPage(RepositoryConnection connection, String container, String page, List<URI> members, boolean first, OutputStream output, RDFFormat format, Preference preference) throws RepositoryException, RDFHandlerException {
+        exportContainerPage(connection, buildURI(container), buildURI(page), members, first, output, format, preference);
+    }
+
+    @Override
+    public void exportContainerPage(RepositoryConnection connection, URI container, URI page, List<URI> members, boolean first, OutputStream output, RDFFormat format, Preference preference) throws RepositoryException, RDFHandlerException {
+        final ValueFactory vf = connection.getValueFactory();
+        final List<Statement> pageStatements = new ArrayList<>(members.size() + 2);
+        pageStatements.add(vf.createStatement(page, RDF.TYPE, LDP.Page));
+        pageStatements.add(vf.createStatement(container, LDP.pageSequence, page));
+        for (URI member : members) {
+            pageStatements.add(vf.createStatement(container, LDP.contains, member, ldpContext));
+        }
+
+        final CloseableIteration<Statement, RepositoryException> containerStatements;
+        if (first) {
+            // the containment triples are spread over the pages, all other triples of the container go to the first one
+            containerStatements = getResourceStatements(connection, container, preference, false);
+        } else {
+            containerStatements = new EmptyIteration<>();
+        }
+
+        final RDFWriter writer = Rio.createWriter(format, output);
+        @SuppressWarnings("unchecked")
+        final CloseableIteration<Statement, RepositoryException> statements = new UnionIteration<>(
+                new CloseableIteratorIteration<Statement, RepositoryException>(pageStatements.iterator()), containerStatements
+        );
+        try {
+            LdpUtils.exportIteration(writer, container, statements);
+        } finally {
+            statements.close();
         }
     }
 
     @Override
     public void exportBinaryResource(RepositoryConnection connection, String resource, OutputStream out) throws RepositoryException, IOException {
+        exportBinaryResource(connection, resource, out, 0, -1);
+    }
+
+    @Override
+    public void exportBinaryResource(RepositoryConnection connection, String resource, OutputStream out, long offset, long length) throws RepositoryException, IOException {
         //TODO: check (resource, dct:format, type)
-        try (InputStream in = binaryStore.read(resource)) {
-            if (in != null) {
-                IOUtils.copy(in, out);
-            } else {
-                throw new IOException("Cannot read resource " + resource);
-            }
+        if (binaryStore.transferTo(resource, offset, length, Channels.newChannel(out)) < 0) {
+            throw new IOException("Cannot read resource " + resource);
         }
+    }
 
+    @Override
+    public long getBinaryResourceSize(RepositoryConnection connection, String resource) throws RepositoryException {
+        return binaryStore.getSize(resource);
     }
 
     @Override
@@ -515,10 +644,37 @@ public class LdpServiceImpl implements LdpService {
                 return null;
             }
         } else {
+            // the version is derived from the statements of the resource, so it can be used as strong ETag
+            final LdpResourceVersionCache.Version version = getVersion(connection, uri);
+            if (version.getLastModified() != null) {
+                return new EntityTag(version.getTag(), false);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public Date getLastModified(RepositoryConnection connection, String resource) throws RepositoryException {
+        return getLastModified(connection, buildURI(resource));
+    }
+
+    @Override
+    public Date getLastModified(RepositoryConnection connection, URI uri) throws RepositoryException {
+        return getVersion(connection, uri).getLastModified();
+    }
+
+    /**
+     * Return the current version of the resource, computing its last-modified date and tag in case it changed since
+     * the last request.
+     */
+    private LdpResourceVersionCache.Version getVersion(RepositoryConnection connection, URI uri) throws RepositoryException {
+        LdpResourceVersionCache.Version version = versionCache.get(uri.stringValue());
+        if (version == null) {
+            final long generation = versionCache.getGeneration();
+            Date latest = null;
             final RepositoryResult<Statement> stmts = connection.getStatements(uri, DCTERMS.modified, null, true, ldpContext);
             try {
-                // TODO: ETag is the last-modified date (explicitly managed) thus only weak.
-                Date latest = null;
                 while (stmts.hasNext()) {
                     Value o = stmts.next().getObject();
                     if (o instanceof Literal) {
@@ -528,40 +684,39 @@ public class LdpServiceImpl implements LdpService {
                         }
                     }
                 }
-                if (latest != null) {
-                    return new EntityTag(String.valueOf(latest.getTime()), true);
-                } else {
-                    return null;
-                }
             } finally {
                 stmts.close();
             }
+            final String tag = (latest != null ? Long.toString(latest.getTime(), 36) : "0") + "-" + digestStatements(connection, uri);
+            version = versionCache.put(uri.stringValue(), tag, latest, generation);
         }
+        return version;
     }
 
-    @Override
-    public Date getLastModified(RepositoryConnection connection, String resource) throws RepositoryException {
-        return getLastModified(connection, buildURI(resource));
-    }
-
-    @Override
-    public Date getLastModified(RepositoryConnection connection, URI uri) throws RepositoryException {
-        final RepositoryResult<Statement> stmts = connection.getStatements(uri, DCTERMS.modified, null, true, ldpContext);
+    /**
+     * An order-independent digest of the statements of the resource (its LDP statements and its content): the sum of
+     * the SHA-256 based hashes of the single statements, so the same set of statements always yields the same digest.
+     */
+    private String digestStatements(RepositoryConnection connection, URI uri) throws RepositoryException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long count = 0, sum = 0;
+        final CloseableIteration<Statement, RepositoryException> stmts = getResourceStatements(connection, uri, null);
         try {
-            Date latest = null;
             while (stmts.hasNext()) {
-                Value o = stmts.next().getObject();
-                if (o instanceof Literal) {
-                    Date d = ((Literal)o).calendarValue().toGregorianCalendar().getTime();
-                    if (latest == null || d.after(latest)) {
-                        latest = d;
-                    }
-                }
+                final Statement stmt = stmts.next();
+                final String nt = stmt.getSubject() + " " + stmt.getPredicate() + " " + stmt.getObject() + " " + stmt.getContext();
+                sum += ByteBuffer.wrap(md.digest(nt.getBytes(StandardCharsets.UTF_8))).getLong();
+                count++;
             }
-            return latest;
         } finally {
             stmts.close();
         }
+        return Long.toString(count, 36) + "-" + Long.toHexString(sum);
     }
 
     @Override
@@ -235,6 +235,46 @@ public class LdpUtils {
         return null;
     }
 
+    /**
+     * Parse a HTTP Range header (RFC 7233) for a representation of the given size. Only single byte ranges are
+     * supported; multiple ranges and malformed headers are ignored, i.e. the full representation is sent.
+     *
+     * @param range the value of the Range header, may be null
+     * @param size the size of the representation in bytes
+     * @return the first and last byte position of the range, an empty array if the range is not satisfiable,
+     *          or null if the full representation should be sent
+     */
+    public static long[] parseRangeHeader(String range, long size) {
+        if (range == null || size < 0) return null;
+
+        final String spec = range.trim();
+        if (!spec.startsWith("bytes=") || spec.indexOf(',') >= 0) return null;
+
+        final String bytes = spec.substring("bytes=".length()).trim();
+        final int dash = bytes.indexOf('-');
+        if (dash < 0) return null;
+
+        try {
+            final String first = bytes.substring(0, dash).trim(), last = bytes.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // suffix range: the last n bytes
+                if (last.isEmpty()) return null;
+                final long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return new long[0];
+                return new long[] { Math.max(0, size - suffix), size - 1 };
+            } else {
+                final long start = Long.parseLong(first);
+                final long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) return null;
+                if (start >= size) return new long[0];
+                return new long[] { start, end };
+            }
+        } catch (NumberFormatException e) {
+            log.debug("ignoring malformed Range header {}", range);
+            return null;
+        }
+    }
+
     public static List<RDFFormat> filterAvailableParsers(List<RDFFormat> rdfFormats) {
         final List<RDFFormat> result = new ArrayList<>();
         final RDFParserRegistry parserRegistry = RDFParserRegistry.getInstance();
@@ -54,9 +54,12 @@ import javax.ws.rs.core.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -80,12 +83,19 @@ public class LdpWebService {
     public static final String LINK_REL_CONTENT = "content";
     public static final String LINK_REL_META = "meta";
     public static final String LINK_REL_TYPE = "type";
+    public static final String LINK_REL_FIRST = "first";
+    public static final String LINK_REL_NEXT = "next";
     public static final String LINK_PARAM_ANCHOR = "anchor";
+    public static final String QUERY_PARAM_PAGE = "ldp-page";
     public static final String HTTP_HEADER_SLUG = "Slug";
     public static final String HTTP_HEADER_ACCEPT_POST = "Accept-Post";
     public static final String HTTP_HEADER_ACCEPT_PATCH = "Accept-Patch";
     public static final String HTTP_HEADER_PREFER = "Prefer";
     public static final String HTTP_HEADER_PREFERENCE_APPLIED = "Preference-Applied";
+    public static final String HTTP_HEADER_RANGE = "Range";
+    public static final String HTTP_HEADER_IF_RANGE = "If-Range";
+    public static final String HTTP_HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    public static final String HTTP_HEADER_CONTENT_RANGE = "Content-Range";
     public static final String HTTP_METHOD_PATCH = "PATCH";
 
     private Logger log = org.slf4j.LoggerFactory.getLogger(this.getClass());
@@ -155,26 +165,30 @@ public class LdpWebService {
     }
 
     @GET
-    public Response GET(@Context final UriInfo uriInfo,
+    public Response GET(@Context final UriInfo uriInfo, @Context Request request,
                         @HeaderParam(HttpHeaders.ACCEPT) @DefaultValue(MediaType.WILDCARD) String type,
-                        @HeaderParam(HTTP_HEADER_PREFER) PreferHeader preferHeader)
+                        @HeaderParam(HTTP_HEADER_PREFER) PreferHeader preferHeader,
+                        @HeaderParam(HTTP_HEADER_RANGE) String range,
+                        @HeaderParam(HTTP_HEADER_IF_RANGE) String ifRange,
+                        @QueryParam(QUERY_PARAM_PAGE) String page)
             throws RepositoryException {
         final String resource = ldpService.getResourceUri(uriInfo);
         log.debug("GET to LDPR <{}>", resource);
-        return buildGetResponse(resource, MarmottaHttpUtils.parseAcceptHeader(type), preferHeader).build();
+        return buildGetResponse(request, resource, MarmottaHttpUtils.parseAcceptHeader(type), preferHeader, range, ifRange, page).build();
     }
 
     @HEAD
-    public Response HEAD(@Context final UriInfo uriInfo,
+    public Response HEAD(@Context final UriInfo uriInfo, @Context Request request,
                          @HeaderParam(HttpHeaders.ACCEPT) @DefaultValue(MediaType.WILDCARD) String type,
-                         @HeaderParam(HTTP_HEADER_PREFER) PreferHeader preferHeader)
+                         @HeaderParam(HTTP_HEADER_PREFER) PreferHeader preferHeader,
+                         @QueryParam(QUERY_PARAM_PAGE) String page)
             throws RepositoryException {
         final String resource = ldpService.getResourceUri(uriInfo);
         log.debug("HEAD to LDPR <{}>", resource);
-        return buildGetResponse(resource, MarmottaHttpUtils.parseAcceptHeader(type), preferHeader).entity(null).build();
+        return buildGetResponse(request, resource, MarmottaHttpUtils.parseAcceptHeader(type), preferHeader, null, null, page).entity(null).build();
     }
 
-    private Response.ResponseBuilder buildGetResponse(final String resource, List<ContentType> acceptedContentTypes, PreferHeader preferHeader) throws RepositoryException {
+    private Response.ResponseBuilder buildGetResponse(Request request, final String resource, List<ContentType> acceptedContentTypes, PreferHeader preferHeader, String range, String ifRange, String page) throws RepositoryException {
         log.trace("LDPR requested media type {}", acceptedContentTypes);
         final RepositoryConnection conn = sesameService.getConnection();
         try {
@@ -206,7 +220,7 @@ public class LdpWebService {
                     if (MarmottaHttpUtils.bestContentType(MarmottaHttpUtils.parseAcceptHeader("*/*"), acceptedContentTypes) != null) {
                         log.trace("Unknown type of LDP-NR <{}> is compatible with wildcard - sending back LDP-NR without Content-Type", resource);
                         // Client will accept anything, send back LDP-NR
-                        final Response.ResponseBuilder resp = buildGetResponseBinaryResource(conn, resource, preferHeader);
+                        final Response.ResponseBuilder resp = buildGetResponseBinaryResource(conn, request, resource, preferHeader, range, ifRange);
                         conn.commit();
                         return resp;
                     } else if (rdfContentType == null) {
@@ -218,7 +232,7 @@ public class LdpWebService {
                         return resp;
                     } else {
                         log.debug("Client is asking for a RDF-Serialisation of LDP-NS <{}>, sending meta-data", resource);
-                        final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, resource, Rio.getWriterFormatForMIMEType(rdfContentType.getMime(), RDFFormat.TURTLE), preferHeader);
+                        final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, request, resource, Rio.getWriterFormatForMIMEType(rdfContentType.getMime(), RDFFormat.TURTLE), preferHeader, null);
                         conn.commit();
                         return resp;
                     }
@@ -233,12 +247,12 @@ public class LdpWebService {
                         return resp;
                     } else {
                         log.debug("Client is asking for a RDF-Serialisation of LDP-NS <{}>, sending meta-data", resource);
-                        final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, resource, Rio.getWriterFormatForMIMEType(rdfContentType.getMime(), RDFFormat.TURTLE), preferHeader);
+                        final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, request, resource, Rio.getWriterFormatForMIMEType(rdfContentType.getMime(), RDFFormat.TURTLE), preferHeader, null);
                         conn.commit();
                         return resp;
                     }
                 } else {
-                    final Response.ResponseBuilder resp = buildGetResponseBinaryResource(conn, resource, preferHeader);
+                    final Response.ResponseBuilder resp = buildGetResponseBinaryResource(conn, request, resource, preferHeader, range, ifRange);
                     conn.commit();
                     return resp;
                 }
@@ -251,7 +265,7 @@ public class LdpWebService {
                     conn.commit();
                     return resp;
                 } else {
-                    final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, resource, Rio.getWriterFormatForMIMEType(bestType.getMime(), RDFFormat.TURTLE), preferHeader);
+                    final Response.ResponseBuilder resp = buildGetResponseSourceResource(conn, request, resource, Rio.getWriterFormatForMIMEType(bestType.getMime(), RDFFormat.TURTLE), preferHeader, page);
                     conn.commit();
                     return resp;
                 }
@@ -275,10 +289,34 @@ public class LdpWebService {
         return addOptionsHeader(connection, resource, response);
     }
 
-    private Response.ResponseBuilder buildGetResponseBinaryResource(RepositoryConnection connection, final String resource, PreferHeader preferHeader) throws RepositoryException {
+    private Response.ResponseBuilder buildGetResponseBinaryResource(RepositoryConnection connection, Request request, final String resource, PreferHeader preferHeader, String range, String ifRange) throws RepositoryException {
+        // Conditional GET: the ETag is the content hash, so a 304 is cheap
+        final Response.ResponseBuilder notModified = evaluatePreconditions(request, ldpService.generateETag(connection, resource), ldpService.getLastModified(connection, resource));
+        if (notModified != null) {
+            log.debug("Conditional request for <{}> answered without content", resource);
+            return createResponse(notModified);
+        }
+
         final String realType = ldpService.getMimeType(connection, resource);
         log.debug("Building response for LDP-NR <{}> with format {}", resource, realType);
         final Preference preference = LdpUtils.parsePreferHeader(preferHeader);
+
+        // Range requests (RFC 7233), only honoured if an If-Range header matches the current ETag
+        final long size = ldpService.getBinaryResourceSize(connection, resource);
+        final long[] byteRange;
+        if (range != null && (ifRange == null || matchesETag(ifRange, ldpService.generateETag(connection, resource)))) {
+            byteRange = LdpUtils.parseRangeHeader(range, size);
+        } else {
+            byteRange = null;
+        }
+        if (byteRange != null && byteRange.length == 0) {
+            log.debug("Range {} not satisfiable for LDP-NR <{}> of {} bytes", range, resource, size);
+            return createResponse(connection, Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE, resource)
+                    .header(HTTP_HEADER_CONTENT_RANGE, "bytes */" + size);
+        }
+        final long offset = byteRange != null ? byteRange[0] : 0;
+        final long length = byteRange != null ? byteRange[1] - byteRange[0] + 1 : -1;
+
         final StreamingOutput entity = new StreamingOutput() {
             @Override
             public void write(OutputStream out) throws IOException, WebApplicationException {
@@ -286,7 +324,7 @@ public class LdpWebService {
                     final RepositoryConnection outputConn = sesameService.getConnection();
                     try {
                         outputConn.begin();
-                        ldpService.exportBinaryResource(outputConn, resource, out);
+                        ldpService.exportBinaryResource(outputConn, resource, out, offset, length);
                         outputConn.commit();
                     } catch (RepositoryException | IOException e) {
                         outputConn.rollback();
@@ -301,18 +339,116 @@ public class LdpWebService {
         };
         // Sec. 4.2.2.2
         final Response.ResponseBuilder resp = addOptionsHeader(connection, resource, createResponse(connection, Response.Status.OK, resource).entity(entity).type(realType));
+        resp.header(HTTP_HEADER_ACCEPT_RANGES, "bytes");
+        if (byteRange != null) {
+            resp.status(Response.Status.PARTIAL_CONTENT)
+                    .header(HTTP_HEADER_CONTENT_RANGE, String.format("bytes %d-%d/%d", byteRange[0], byteRange[1], size))
+                    .header(HttpHeaders.CONTENT_LENGTH, length);
+        } else if (size >= 0) {
+            resp.header(HttpHeaders.CONTENT_LENGTH, size);
+        }
         if (preferHeader != null) {
             if (preference.isMinimal()) {
-                resp.status(Response.Status.NO_CONTENT).entity(null).header(HTTP_HEADER_PREFERENCE_APPLIED, PreferHeader.fromPrefer(preferHeader).parameters(null).build());
+                resp.status(Response.Status.NO_CONTENT).entity(null).header(HTTP_HEADER_PREFERENCE_APPLIED, PreferHeader.fromPrefer(preferHeader).parameters(null).build())
+                        .header(HttpHeaders.CONTENT_LENGTH, null).header(HTTP_HEADER_CONTENT_RANGE, null);
             }
         }
         return resp;
     }
 
-    private Response.ResponseBuilder buildGetResponseSourceResource(RepositoryConnection conn, final String resource, final RDFFormat format, final PreferHeader preferHeader) throws RepositoryException {
+    /**
+     * Evaluate the conditional request headers against the given ETag and last-modified date (each may be null).
+     *
+     * @return a response builder in case the preconditions are not met (e.g. 304 Not Modified), null otherwise
+     */
+    private static Response.ResponseBuilder evaluatePreconditions(Request request, EntityTag eTag, Date lastModified) {
+        if (eTag != null && lastModified != null) {
+            return request.evaluatePreconditions(lastModified, eTag);
+        } else if (eTag != null) {
+            return request.evaluatePreconditions(eTag);
+        } else if (lastModified != null) {
+            return request.evaluatePreconditions(lastModified);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * The ETag of a RDF serialisation of a resource. A strong ETag must differ between the content-negotiated
+     * representations of a resource (RFC 7232, Sec. 2.1), so the format is appended to the version of the resource.
+     */
+    private static EntityTag getVariantETag(EntityTag eTag, RDFFormat format) {
+        if (eTag == null) {
+            return null;
+        }
+        return new EntityTag(eTag.getValue() + "-" + format.getDefaultFileExtension(), eTag.isWeak());
+    }
+
+    /**
+     * Check whether the entity-tag of an If-Match header matches the given ETag of the resource, either directly
+     * or as the ETag of one of its RDF serialisations (see {@link #getVariantETag(EntityTag, RDFFormat)}).
+     */
+    private static boolean matchesVariantETag(EntityTag ifMatch, EntityTag eTag) {
+        if (eTag == null) {
+            return false;
+        } else if (ifMatch.equals(eTag)) {
+            return true;
+        }
+        final String prefix = eTag.getValue() + "-";
+        return ifMatch.isWeak() == eTag.isWeak() && ifMatch.getValue().startsWith(prefix)
+                && Rio.getWriterFormatForFileName("resource." + ifMatch.getValue().substring(prefix.length())) != null;
+    }
+
+    /**
+     * Commit the changes of a write request and create the response in a new transaction. The version cache is only
+     * updated when a transaction commits, so the ETag and last-modified date of the response must be read after
+     * the commit to describe the state of the resource after the change.
+     */
+    private Response.ResponseBuilder commitAndCreateResponse(RepositoryConnection connection, Response.Status status, String resource) throws RepositoryException {
+        connection.commit();
+        connection.begin();
+        final Response.ResponseBuilder rb = createResponse(connection, status, resource);
+        connection.commit();
+        return rb;
+    }
+
+    /**
+     * Check whether the entity-tag of an If-Range header is a strong match of the given ETag.
+     */
+    private static boolean matchesETag(String ifRange, EntityTag eTag) {
+        final String tag = ifRange.trim();
+        return eTag != null && !eTag.isWeak() && tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")
+                && tag.substring(1, tag.length() - 1).equals(eTag.getValue());
+    }
+
+    private Response.ResponseBuilder buildGetResponseSourceResource(RepositoryConnection conn, Request request, final String resource, final RDFFormat format, final PreferHeader preferHeader, String page) throws RepositoryException {
+        // Conditional GET: ETag and last-modified date come from the version cache, so a 304 is cheap
+        final EntityTag eTag = getVariantETag(ldpService.generateETag(conn, resource), format);
+        final Response.ResponseBuilder notModified = evaluatePreconditions(request, eTag, ldpService.getLastModified(conn, resource));
+        if (notModified != null) {
+            log.debug("Conditional request for <{}> answered without content", resource);
+            return createResponse(notModified);
+        }
+
+        final Preference preference = LdpUtils.parsePreferHeader(preferHeader);
+
+        // LDP Paging: containers are paged unless the client asked to omit the containment triples
+        if ((preference == null || preference.includeContainment())
+                && ldpService.getInteractionModel(conn, resource) == LdpService.InteractionModel.LDPC) {
+            final int pageSize = getPageSize(preferHeader);
+            if (pageSize > 0) {
+                if (page != null) {
+                    return buildGetResponseContainerPage(conn, resource, format, preferHeader, preference, page, pageSize).tag(eTag);
+                } else if (ldpService.countContainedResources(conn, resource, pageSize + 1) > pageSize) {
+                    // Sec. 6.2.5 (LDP Paging): redirect to the first page
+                    log.debug("LDPC <{}> has more than {} members, redirecting to the first page", resource, pageSize);
+                    return createResponse(conn, Response.Status.SEE_OTHER, resource).location(java.net.URI.create(buildPageUri(resource, "")));
+                }
+            }
+        }
+
         // Deliver all triples from the <subject> context.
         log.debug("Building response for LDP-RS <{}> with RDF format {}", resource, format.getDefaultMIMEType());
-        final Preference preference = LdpUtils.parsePreferHeader(preferHeader);
         final StreamingOutput entity = new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException, WebApplicationException {
@@ -337,7 +473,7 @@ public class LdpWebService {
             }
         };
         // Sec. 4.2.2.2
-        final Response.ResponseBuilder resp = addOptionsHeader(conn, resource, createResponse(conn, Response.Status.OK, resource).entity(entity).type(format.getDefaultMIMEType()));
+        final Response.ResponseBuilder resp = addOptionsHeader(conn, resource, createResponse(conn, Response.Status.OK, resource).entity(entity).type(format.getDefaultMIMEType()).tag(eTag));
         if (preference != null) {
             if (preference.isMinimal()) {
                 resp.status(Response.Status.NO_CONTENT).entity(null);
@@ -347,6 +483,92 @@ public class LdpWebService {
         return resp;
     }
 
+    /**
+     * Build the response for one page of a container. Pages are keyed by the last member of the previous page
+     * (the empty key denotes the first page), so walking a container never needs more than one page of members
+     * in memory and never skips or repeats members that were not modified in between.
+     */
+    private Response.ResponseBuilder buildGetResponseContainerPage(RepositoryConnection conn, final String resource, final RDFFormat format, PreferHeader preferHeader, final Preference preference, String page, int pageSize) throws RepositoryException {
+        final URI after;
+        if (page.isEmpty()) {
+            after = null;
+        } else {
+            try {
+                after = conn.getValueFactory().createURI(page);
+            } catch (IllegalArgumentException e) {
+                return createResponse(conn, Response.Status.BAD_REQUEST, resource).entity(String.format("Invalid page %s%n", page));
+            }
+        }
+
+        final List<URI> members = ldpService.listContainedResources(conn, resource, after, pageSize + 1);
+        final boolean hasNext = members.size() > pageSize;
+        final List<URI> pageMembers = hasNext ? new ArrayList<>(members.subList(0, pageSize)) : members;
+        final String pageUri = buildPageUri(resource, page);
+        log.debug("Building response for page <{}> of LDPC <{}> with {} members", pageUri, resource, pageMembers.size());
+
+        final StreamingOutput entity = new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                try {
+                    final RepositoryConnection outputConn = sesameService.getConnection();
+                    try {
+                        outputConn.begin();
+                        ldpService.exportContainerPage(outputConn, resource, pageUri, pageMembers, after == null, output, format, preference);
+                        outputConn.commit();
+                    } catch (RDFHandlerException e) {
+                        outputConn.rollback();
+                        throw new NoLogWebApplicationException(e, createResponse(Response.status(Response.Status.INTERNAL_SERVER_ERROR)).entity(e.getMessage()).build());
+                    } catch (final Throwable t) {
+                        outputConn.rollback();
+                        throw t;
+                    } finally {
+                        outputConn.close();
+                    }
+                } catch (RepositoryException e) {
+                    throw new WebApplicationException(e, createResponse(Response.status(Response.Status.INTERNAL_SERVER_ERROR)).entity(e).build());
+                }
+            }
+        };
+        final Response.ResponseBuilder resp = addOptionsHeader(conn, resource, createResponse(conn, Response.Status.OK, resource).entity(entity).type(format.getDefaultMIMEType()));
+        resp.link(LDP.Page.stringValue(), LINK_REL_TYPE);
+        resp.link(buildPageUri(resource, ""), LINK_REL_FIRST);
+        if (hasNext) {
+            resp.link(buildPageUri(resource, pageMembers.get(pageMembers.size() - 1).stringValue()), LINK_REL_NEXT);
+        }
+        if (preference != null) {
+            resp.header(HTTP_HEADER_PREFERENCE_APPLIED, PreferHeader.fromPrefer(preferHeader).parameters(null).build());
+        }
+        return resp;
+    }
+
+    /**
+     * The number of members per container page: the configured page size, lowered to the client hint
+     * ({@code Prefer: return=representation; max-member-count="n"}) if one is given.
+     */
+    private int getPageSize(PreferHeader preferHeader) {
+        final int pageSize = configurationService.getIntConfiguration("ldp.paging.page_size", 1000);
+        final String hint = preferHeader != null ? preferHeader.getParamValue(PreferHeader.RETURN_PARAM_MAX_MEMBER_COUNT) : null;
+        if (hint != null) {
+            try {
+                final int maxMembers = Integer.parseInt(hint.trim());
+                if (maxMembers > 0) {
+                    return pageSize > 0 ? Math.min(pageSize, maxMembers) : maxMembers;
+                }
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring invalid {} hint: {}", PreferHeader.RETURN_PARAM_MAX_MEMBER_COUNT, hint);
+            }
+        }
+        return pageSize;
+    }
+
+    private static String buildPageUri(String resource, String after) {
+        try {
+            return resource + "?" + QUERY_PARAM_PAGE + "=" + URLEncoder.encode(after, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * LDP Post Request.
      *
@@ -435,11 +657,10 @@ public class LdpWebService {
         //checking if resource (container) exists is done later in the service
         try {
             String location = ldpService.addResource(connection, container, newResource, interactionModel, mimeType, requestBody);
-            final Response.ResponseBuilder response = createResponse(connection, Response.Status.CREATED, container).location(java.net.URI.create(location));
+            final Response.ResponseBuilder response = commitAndCreateResponse(connection, Response.Status.CREATED, container).location(java.net.URI.create(location));
             if (newResource.compareTo(location) != 0) {
                 response.links(Link.fromUri(newResource).rel(LINK_REL_DESCRIBEDBY).param(LINK_PARAM_ANCHOR, location).build());
             }
-            connection.commit();
             return response.build();
         } catch (IOException | RDFParseException e) {
             final Response.ResponseBuilder resp = createResponse(connection, Response.Status.BAD_REQUEST, container).entity(e.getClass().getSimpleName() + ": " + e.getMessage());
@@ -484,7 +705,7 @@ public class LdpWebService {
                     // check ETag -> 412 Precondition Failed (Sec. 4.2.4.5)
                     log.trace("Checking If-Match: {}", eTag);
                     EntityTag hasTag = ldpService.generateETag(conn, resource);
-                    if (!eTag.equals(hasTag)) {
+                    if (!matchesVariantETag(eTag, hasTag)) {
                         log.trace("If-Match header did not match, expected {}", hasTag);
                         resp = createResponse(conn, Response.Status.PRECONDITION_FAILED, resource);
                         conn.rollback();
@@ -494,8 +715,7 @@ public class LdpWebService {
 
                 newResource = ldpService.updateResource(conn, resource, postBody, mimeType);
                 log.debug("PUT update for <{}> successful", newResource);
-                resp = createResponse(conn, Response.Status.OK, resource);
-                conn.commit();
+                resp = commitAndCreateResponse(conn, Response.Status.OK, resource);
                 return resp.build();
             } else if (ldpService.isReusedURI(conn, resource)) {
                 log.debug("<{}> has been deleted, we should not re-use the URI!", resource);
@@ -606,7 +826,7 @@ public class LdpWebService {
                 // check ETag if present
                 log.trace("Checking If-Match: {}", eTag);
                 EntityTag hasTag = ldpService.generateETag(con, resource);
-                if (!eTag.equals(hasTag)) {
+                if (!matchesVariantETag(eTag, hasTag)) {
                     log.trace("If-Match header did not match, expected {}", hasTag);
                     final Response.ResponseBuilder resp = createResponse(con, Response.Status.PRECONDITION_FAILED, resource);
                     con.rollback();
@@ -624,8 +844,7 @@ public class LdpWebService {
 
             try {
                 ldpService.patchResource(con, resource, postBody, false);
-                final Response.ResponseBuilder resp = createResponse(con, Response.Status.NO_CONTENT, resource);
-                con.commit();
+                final Response.ResponseBuilder resp = commitAndCreateResponse(con, Response.Status.NO_CONTENT, resource);
                 return resp.build();
             } catch (ParseException | InvalidPatchDocumentException e) {
                 final Response.ResponseBuilder resp = createResponse(con, Response.Status.BAD_REQUEST, resource).entity(e.getMessage() + "\n");
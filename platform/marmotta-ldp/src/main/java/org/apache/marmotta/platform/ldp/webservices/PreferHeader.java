@@ -46,6 +46,9 @@ public class PreferHeader {
     public static final String RETURN_PARAM_INCLUDE = "include";
     public static final String RETURN_PARAM_OMIT = "omit";
 
+    /** LDP Paging client hint, see http://www.w3.org/TR/ldp-paging/#ldpp-hint */
+    public static final String RETURN_PARAM_MAX_MEMBER_COUNT = "max-member-count";
+
     public static Logger log = LoggerFactory.getLogger(PreferHeader.class);
 
     private String preference, preferenceValue;
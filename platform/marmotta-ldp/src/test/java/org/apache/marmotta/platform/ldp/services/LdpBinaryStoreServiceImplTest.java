@@ -26,6 +26,13 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class LdpBinaryStoreServiceImplTest {
 
     private static AbstractMarmotta marmotta;
@@ -51,4 +58,50 @@ public class LdpBinaryStoreServiceImplTest {
 
         // There might be more testing like this here...
     }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        final LdpBinaryStoreServiceImpl store = marmotta.getService(LdpBinaryStoreServiceImpl.class);
+
+        final byte[] content = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        final String r1 = "http://localhost:8080/ldp/dedup/r1", r2 = "http://localhost:8080/ldp/dedup/r2";
+
+        Assert.assertTrue(store.store(r1, new ByteArrayInputStream(content)));
+        Assert.assertTrue(store.store(r2, new ByteArrayInputStream(content)));
+
+        final String hash = store.getHash(r1);
+        Assert.assertEquals("d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592", hash);
+        Assert.assertEquals(hash, store.getHash(r2));
+        Assert.assertEquals(content.length, store.getSize(r2));
+
+        final Path blob = store.getBlobFile(hash);
+        Assert.assertTrue(Files.exists(blob));
+
+        // the blob is kept as long as it is referenced
+        Assert.assertTrue(store.delete(r1));
+        Assert.assertNull(store.getHash(r1));
+        Assert.assertTrue(Files.exists(blob));
+
+        Assert.assertTrue(store.delete(r2));
+        Assert.assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void testTransferRange() throws Exception {
+        final LdpBinaryStoreServiceImpl store = marmotta.getService(LdpBinaryStoreServiceImpl.class);
+
+        final String resource = "http://localhost:8080/ldp/range/r1";
+        Assert.assertTrue(store.store(resource, new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8))));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(4, store.transferTo(resource, 3, 4, Channels.newChannel(out)));
+        Assert.assertEquals("3456", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        out.reset();
+        Assert.assertEquals(2, store.transferTo(resource, 8, -1, Channels.newChannel(out)));
+        Assert.assertEquals("89", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        Assert.assertEquals(-1, store.transferTo("http://localhost:8080/ldp/range/missing", 0, -1, Channels.newChannel(out)));
+        Assert.assertTrue(store.delete(resource));
+    }
 }
\ No newline at end of file
@@ -49,6 +49,7 @@ import org.slf4j.Logger;
 public class ReasoningSailProvider implements TransactionalSailProvider {
 
     public static final String REASONING_ENABLED = "reasoning.enabled";
+    public static final String REASONING_QUEUE_SIZE = "reasoning.listener.queue_size";
     @Inject
     private Logger log;
 
@@ -81,6 +82,7 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
         ReasoningConfiguration config = new ReasoningConfiguration();
         config.setBatchSize(configurationService.getIntConfiguration("reasoning.batchsize",1000));
         config.setRemoveDuplicateJustifications(configurationService.getBooleanConfiguration("reasoning.remove_duplicate_justifications",false));
+        config.setListenerQueueSize(configurationService.getIntConfiguration(REASONING_QUEUE_SIZE,0));
 
         sail = new KiWiReasoningSail(parent,config);
 
@@ -99,7 +101,7 @@ public class ReasoningSailProvider implements TransactionalSailProvider {
 
 
     public void configurationChanged(@Observes ConfigurationChangedEvent e) {
-        if(e.containsChangedKey(REASONING_ENABLED)) {
+        if(e.containsChangedKey(REASONING_ENABLED) || e.containsChangedKey(REASONING_QUEUE_SIZE)) {
             sesameService.restart();
 
             if(!isEnabled()) {
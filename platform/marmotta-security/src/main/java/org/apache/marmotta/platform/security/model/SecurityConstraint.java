@@ -102,17 +102,58 @@ public class SecurityConstraint implements Comparable<SecurityConstraint> {
      * @return
      */
     public boolean matches(HttpServletRequest request) {
-        return enabled && matchesMethod(request) && matchesAddress(request) && matchesUrl(request) && matchesRoles(request);
+        return matches(request.getMethod(), getRequestPath(request), request.getRemoteAddr(), getUserRoles(request));
+    }
+
+    /**
+     * Check whether the security constraint matches with a request given by its parts.
+     *
+     * @param method     the HTTP method of the request
+     * @param path       the request path relative to the application root, see {@link #getRequestPath(HttpServletRequest)};
+     *                   null never matches
+     * @param remoteAddr the IP address of the client
+     * @param userRoles  the roles of the authenticated user, may be null
+     * @return
+     */
+    public boolean matches(String method, String path, String remoteAddr, Set<String> userRoles) {
+        return enabled && matchesMethod(method) && matchesAddress(remoteAddr) && matchesUrl(path) && matchesRoles(userRoles);
+    }
+
+    /**
+     * Return the path of the request relative to the application root, or null if the request is outside of
+     * the application.
+     */
+    public static String getRequestPath(HttpServletRequest request) {
+        try {
+            URL url = new URL(request.getRequestURL().toString());
+            String prefix = request.getContextPath();
+            if(url.getPath().startsWith(prefix)) {
+                return url.getPath().substring(prefix.length());
+            } else {
+                return null;
+            }
+        } catch(MalformedURLException ex) {
+            log.error("the request URL {} was invalid",request.getRequestURL().toString());
+            return null;
+        }
+    }
+
+    /**
+     * Return the roles of the authenticated user as set by the authentication filter, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public static Set<String> getUserRoles(HttpServletRequest request) {
+        return (Set<String>)request.getAttribute("user.roles");
     }
 
 
-    private boolean matchesMethod(HttpServletRequest request) {
+    private boolean matchesMethod(String requestMethod) {
         // match any method
         if(methods.size() == 0) {
             return true;
         }
 
-        HTTPMethods method = HTTPMethods.parse(request.getMethod());
+        HTTPMethods method = HTTPMethods.parse(requestMethod);
 
         if(method != null) {
             return methods.contains(method);
@@ -123,43 +164,23 @@ public class SecurityConstraint implements Comparable<SecurityConstraint> {
         }
     }
 
-    private boolean matchesUrl(HttpServletRequest request) {
-        try {
-            URL url = new URL(request.getRequestURL().toString());
-            String prefix = request.getContextPath();
-            String path = null;
-            if(url.getPath().startsWith(prefix)) {
-                path = url.getPath().substring(prefix.length());
-
-                return path.matches(urlPattern);
-
-            } else {
-                return false;
-            }
-
-
-
-        } catch(MalformedURLException ex) {
-            log.error("the request URL {} was invalid",request.getRequestURL().toString());
-            return false;
-        }
-
-
+    private boolean matchesUrl(String path) {
+        return path != null && path.matches(urlPattern);
     }
 
     /**
      * Check whether the remote address of the request matches one of the host patterns (CIDR)
-     * @param request
+     * @param remoteAddr
      * @return true if there are no host patterns configured or one of the host patterns matches the remote address
      */
-    private boolean matchesAddress(HttpServletRequest request) {
+    private boolean matchesAddress(String remoteAddr) {
         if(hostPatterns.size() == 0) {
             return true;
         }
 
 
         for(SubnetInfo hostPattern : hostPatterns) {
-            if(hostPattern.getHostAddress().equals(request.getRemoteAddr()) || hostPattern.isInRange(request.getRemoteAddr())) {
+            if(hostPattern.getHostAddress().equals(remoteAddr) || hostPattern.isInRange(remoteAddr)) {
                 return true;
             }
         }
@@ -168,14 +189,13 @@ public class SecurityConstraint implements Comparable<SecurityConstraint> {
 
     /**
      * Check whether the request user is in one of the specified roles.
-     * @param request
+     * @param userRoles
      * @return true if no roles are set or the user is in one of the configured roles
      */
-    private boolean matchesRoles(HttpServletRequest request) {
+    public boolean matchesRoles(Set<String> userRoles) {
         if(roles.size() == 0) {
             return true;
         } else {
-            Set<String> userRoles = (Set<String>)request.getAttribute("user.roles");
             if(userRoles != null) {
                 for(String role : roles) {
                     if(userRoles.contains(role)) {
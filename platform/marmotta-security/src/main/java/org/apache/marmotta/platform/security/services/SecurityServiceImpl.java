@@ -19,6 +19,7 @@ package org.apache.marmotta.platform.security.services;
 
 import org.apache.marmotta.platform.security.api.SecurityService;
 import org.apache.marmotta.platform.security.model.SecurityConstraint;
+import org.apache.marmotta.platform.security.util.SecurityConstraintMatcher;
 import org.apache.marmotta.platform.security.util.SubnetInfo;
 import com.google.common.collect.Lists;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
@@ -66,7 +67,12 @@ public class SecurityServiceImpl implements SecurityService {
 
     private boolean profileLoading = false;
 
-    private List<SecurityConstraint> constraints;
+    private volatile List<SecurityConstraint> constraints = Collections.emptyList();
+
+    /**
+     * the compiled form of the constraints, replaced as a whole when the configuration changes
+     */
+    private volatile SecurityConstraintMatcher matcher = new SecurityConstraintMatcher(Collections.<SecurityConstraint>emptyList());
 
     @PostConstruct
     public void initialise() {
@@ -76,10 +82,10 @@ public class SecurityServiceImpl implements SecurityService {
 
     /**
      * Parse the security configuration contained in the configuration file into a list of SecurityConstraints, ordered
-     * by priority. This list will be evaluated for each request to the system.
+     * by priority, and compile them for evaluating requests.
      */
     private void initSecurityConstraints() {
-        constraints = new ArrayList<SecurityConstraint>();
+        List<SecurityConstraint> constraints = new ArrayList<SecurityConstraint>();
 
         if(configurationService.getBooleanConfiguration("security.enabled",true)) {
 
@@ -131,6 +137,9 @@ public class SecurityServiceImpl implements SecurityService {
 
             }
         }
+
+        this.matcher = new SecurityConstraintMatcher(constraints);
+        this.constraints = constraints;
     }
 
     /**
@@ -252,15 +261,14 @@ public class SecurityServiceImpl implements SecurityService {
             }
 
 
-            for(SecurityConstraint constraint : constraints) {
-                if(constraint.matches(request)) {
-                    if(constraint.getType() == SecurityConstraint.Type.PERMISSION) {
-                        log.debug("access to {} granted; {}", request.getRequestURL(), constraint);
-                        return true;
-                    } else {
-                        log.debug("access to {} denied; {}", request.getRequestURL(), constraint);
-                        return false;
-                    }
+            SecurityConstraint constraint = matcher.match(request);
+            if(constraint != null) {
+                if(constraint.getType() == SecurityConstraint.Type.PERMISSION) {
+                    log.debug("access to {} granted; {}", request.getRequestURL(), constraint);
+                    return true;
+                } else {
+                    log.debug("access to {} denied; {}", request.getRequestURL(), constraint);
+                    return false;
                 }
             }
 
@@ -32,8 +32,19 @@ public class IPv4SubnetInfo extends SubnetInfo {
 
     private SubnetUtils.SubnetInfo apacheInfo;
 
+    private byte[] networkBytes;
+
+    private int prefixLength;
+
     public IPv4SubnetInfo(Inet4Address address, int netmask) {
         apacheInfo = new SubnetUtils(address.getHostAddress()+"/"+netmask).getInfo();
+        prefixLength = netmask;
+
+        networkBytes = address.getAddress();
+        for(int i=0; i<networkBytes.length; i++) {
+            int bits = Math.min(8, Math.max(0, netmask - 8*i));
+            networkBytes[i] &= (byte) (0xff << (8 - bits));
+        }
     }
 
     /**
@@ -66,6 +77,16 @@ public class IPv4SubnetInfo extends SubnetInfo {
         return apacheInfo.getCidrSignature();
     }
 
+    @Override
+    public byte[] getNetworkAddressBytes() {
+        return networkBytes.clone();
+    }
+
+    @Override
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
     /**
      * Return true if the IP address string representation passed as argument is in the range
      * of the subnet represented by this SubnetInfo.
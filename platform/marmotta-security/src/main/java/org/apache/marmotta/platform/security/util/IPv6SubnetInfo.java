@@ -91,6 +91,16 @@ public class IPv6SubnetInfo extends SubnetInfo {
         return networkAddress.getHostAddress()+"/"+prefixLength;
     }
 
+    @Override
+    public byte[] getNetworkAddressBytes() {
+        return networkAddress.getAddress();
+    }
+
+    @Override
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
     /**
      * Return true if the IP hostAddress string representation passed as argument is in the range
      * of the subnet represented by this SubnetInfo.
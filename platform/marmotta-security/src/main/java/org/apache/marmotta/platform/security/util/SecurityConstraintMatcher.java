@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.security.util;
+
+import com.google.common.net.InetAddresses;
+import org.apache.marmotta.platform.security.model.HTTPMethods;
+import org.apache.marmotta.platform.security.model.SecurityConstraint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable, compiled form of a priority-ordered list of security constraints. Instead of testing every
+ * constraint against a request, the matcher narrows down the candidates with three indexes and only evaluates
+ * the URL pattern and roles of the remaining ones:
+ * <ul>
+ *     <li>a trie over the path segments of the literal prefix of each URL pattern</li>
+ *     <li>a bitmask of the constraints applying to each HTTP method</li>
+ *     <li>a binary radix tree over the IPv4 and IPv6 subnets of the host patterns</li>
+ * </ul>
+ * Candidates are kept as bitsets indexed by priority order, so the first candidate that matches is the
+ * constraint that decides. The result is the same as evaluating {@link SecurityConstraint#matches} on each
+ * constraint in order, except that CIDR ranges also include their network and broadcast address and that
+ * constraints with an invalid URL pattern never match.
+ */
+public final class SecurityConstraintMatcher {
+
+    private static Logger log = LoggerFactory.getLogger(SecurityConstraintMatcher.class);
+
+    private static final String REGEX_META = "\\.[]{}()*+?^$|";
+
+    private final SecurityConstraint[] constraints;
+
+    /**
+     * the compiled URL pattern of each constraint, null if the pattern is a literal path
+     */
+    private final Pattern[] patterns;
+
+    /**
+     * the URL pattern of each constraint if it is a literal path, null otherwise
+     */
+    private final String[] literals;
+
+    private final PathNode paths = new PathNode();
+
+    private final BitSet[] byMethod = new BitSet[HTTPMethods.values().length];
+
+    private final BitSet anyMethod = new BitSet();
+
+    private final BitSet anyHost = new BitSet();
+
+    private final AddressNode ipv4 = new AddressNode(), ipv6 = new AddressNode();
+
+    /**
+     * Compile the given constraints.
+     *
+     * @param sortedConstraints the constraints, ordered by priority (highest first)
+     */
+    public SecurityConstraintMatcher(List<SecurityConstraint> sortedConstraints) {
+        constraints = sortedConstraints.toArray(new SecurityConstraint[sortedConstraints.size()]);
+        patterns = new Pattern[constraints.length];
+        literals = new String[constraints.length];
+        for(int m = 0; m < byMethod.length; m++) {
+            byMethod[m] = new BitSet();
+        }
+
+        for(int i = 0; i < constraints.length; i++) {
+            SecurityConstraint constraint = constraints[i];
+            String urlPattern = constraint.getUrlPattern();
+            if(!constraint.isEnabled()) {
+                continue;
+            }
+            if(urlPattern == null) {
+                log.warn("security constraint {} has no URL pattern and will never match", constraint.getName());
+                continue;
+            }
+
+            // URL: index by the literal part of the pattern
+            String key;
+            if(isLiteral(urlPattern)) {
+                literals[i] = urlPattern;
+                key = urlPattern;
+            } else {
+                try {
+                    patterns[i] = Pattern.compile(urlPattern);
+                } catch (PatternSyntaxException ex) {
+                    log.warn("security constraint {} has an invalid URL pattern and will never match: {}", constraint.getName(), ex.getMessage());
+                    continue;
+                }
+                String prefix = literalPrefix(urlPattern);
+                key = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+            }
+            paths.insert(key).constraints.set(i);
+
+            // methods
+            if(constraint.getMethods().isEmpty()) {
+                anyMethod.set(i);
+                for(BitSet methodSet : byMethod) {
+                    methodSet.set(i);
+                }
+            } else {
+                for(HTTPMethods method : constraint.getMethods()) {
+                    if(method != null) {
+                        byMethod[method.ordinal()].set(i);
+                    }
+                }
+            }
+
+            // hosts
+            if(constraint.getHostPatterns().isEmpty()) {
+                anyHost.set(i);
+            } else {
+                for(SubnetInfo subnet : constraint.getHostPatterns()) {
+                    byte[] network = subnet.getNetworkAddressBytes();
+                    (network.length == 4 ? ipv4 : ipv6).insert(network, subnet.getPrefixLength()).set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of compiled constraints.
+     */
+    public int size() {
+        return constraints.length;
+    }
+
+    /**
+     * Return the constraint with the highest priority that matches the request, or null if none matches.
+     */
+    public SecurityConstraint match(HttpServletRequest request) {
+        return match(request.getMethod(), SecurityConstraint.getRequestPath(request), request.getRemoteAddr(), SecurityConstraint.getUserRoles(request));
+    }
+
+    /**
+     * Return the constraint with the highest priority that matches a request given by its parts, or null if
+     * none matches.
+     *
+     * @see SecurityConstraint#matches(String, String, String, java.util.Set)
+     */
+    public SecurityConstraint match(String method, String path, String remoteAddr, Set<String> userRoles) {
+        if(path == null) {
+            return null;
+        }
+
+        BitSet candidates = new BitSet(constraints.length);
+        paths.collect(path, candidates);
+
+        HTTPMethods httpMethod = HTTPMethods.parse(method);
+        candidates.and(httpMethod != null ? byMethod[httpMethod.ordinal()] : anyMethod);
+        if(candidates.isEmpty()) {
+            return null;
+        }
+
+        BitSet hosts = (BitSet) anyHost.clone();
+        byte[] address = parseAddress(remoteAddr);
+        if(address != null) {
+            (address.length == 4 ? ipv4 : ipv6).collect(address, hosts);
+        }
+        candidates.and(hosts);
+
+        for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            boolean urlMatches = literals[i] != null ? literals[i].equals(path) : patterns[i].matcher(path).matches();
+            if(urlMatches && constraints[i].matchesRoles(userRoles)) {
+                return constraints[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(String regex) {
+        for(int i = 0; i < regex.length(); i++) {
+            if(REGEX_META.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a string every match of the regular expression starts with.
+     */
+    private static String literalPrefix(String regex) {
+        if(hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        for(int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(REGEX_META.indexOf(c) >= 0) {
+                // a quantifier applies to the preceding character, which is therefore not part of every match
+                if((c == '*' || c == '?' || c == '{' || c == '+') && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for(int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(inClass) {
+                inClass = c != ']';
+            } else if(c == '[') {
+                inClass = true;
+            } else if(c == '(') {
+                depth++;
+            } else if(c == ')') {
+                depth--;
+            } else if(c == '|' && depth <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a numeric IPv4 or IPv6 address without name resolution; returns null if it is not an IP address.
+     */
+    private static byte[] parseAddress(String address) {
+        if(address == null) {
+            return null;
+        }
+        String literal = address;
+        if(literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        int scope = literal.indexOf('%');
+        if(scope >= 0) {
+            literal = literal.substring(0, scope);
+        }
+        if(!InetAddresses.isInetAddress(literal)) {
+            return null;
+        }
+        // IPv4-mapped IPv6 addresses are returned as IPv4 addresses
+        return InetAddresses.forString(literal).getAddress();
+    }
+
+    /**
+     * Trie over path segments; each node holds the constraints whose URL pattern starts with the path of the node.
+     */
+    private static final class PathNode {
+        private final BitSet constraints = new BitSet();
+        private final Map<String, PathNode> children = new HashMap<String, PathNode>();
+
+        private PathNode insert(String path) {
+            PathNode node = this;
+            int start = path.startsWith("/") ? 1 : 0;
+            while(start < path.length()) {
+                int end = path.indexOf('/', start);
+                if(end < 0) {
+                    end = path.length();
+                }
+                String segment = path.substring(start, end);
+                PathNode child = node.children.get(segment);
+                if(child == null) {
+                    child = new PathNode();
+                    node.children.put(segment, child);
+                }
+                node = child;
+                start = end + 1;
+            }
+            return node;
+        }
+
+        private void collect(String path, BitSet result) {
+            PathNode node = this;
+            result.or(node.constraints);
+            int start = path.startsWith("/") ? 1 : 0;
+            while(start <= path.length() && !node.children.isEmpty()) {
+                int end = path.indexOf('/', start);
+                if(end < 0) {
+                    end = path.length();
+                }
+                node = node.children.get(path.substring(start, end));
+                if(node == null) {
+                    return;
+                }
+                result.or(node.constraints);
+                start = end + 1;
+            }
+        }
+    }
+
+    /**
+     * Binary radix tree over address bits; each node holds the constraints with a subnet of that prefix.
+     */
+    private static final class AddressNode {
+        private AddressNode zero, one;
+        private BitSet constraints;
+
+        private BitSet insert(byte[] address, int prefixLength) {
+            AddressNode node = this;
+            for(int bit = 0; bit < prefixLength && bit < address.length * 8; bit++) {
+                if(isSet(address, bit)) {
+                    if(node.one == null) {
+                        node.one = new AddressNode();
+                    }
+                    node = node.one;
+                } else {
+                    if(node.zero == null) {
+                        node.zero = new AddressNode();
+                    }
+                    node = node.zero;
+                }
+            }
+            if(node.constraints == null) {
+                node.constraints = new BitSet();
+            }
+            return node.constraints;
+        }
+
+        private void collect(byte[] address, BitSet result) {
+            AddressNode node = this;
+            for(int bit = 0; node != null; bit++) {
+                if(node.constraints != null) {
+                    result.or(node.constraints);
+                }
+                if(bit >= address.length * 8) {
+                    break;
+                }
+                node = isSet(address, bit) ? node.one : node.zero;
+            }
+        }
+
+        private static boolean isSet(byte[] address, int bit) {
+            return (address[bit >> 3] & (0x80 >> (bit & 7))) != 0;
+        }
+    }
+}
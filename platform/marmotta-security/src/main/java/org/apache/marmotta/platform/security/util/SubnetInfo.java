@@ -62,6 +62,23 @@ public abstract class SubnetInfo {
      * @return
      */
     public abstract String getCidrSignature();
+
+
+    /**
+     * Return the network address (with the netmask applied) in network byte order, i.e. 4 bytes for IPv4 and
+     * 16 bytes for IPv6 subnets.
+     *
+     * @return
+     */
+    public abstract byte[] getNetworkAddressBytes();
+
+
+    /**
+     * Return the number of bits significant for the network (the netmask in CIDR notation).
+     *
+     * @return
+     */
+    public abstract int getPrefixLength();
     
     
     public static SubnetInfo getSubnetInfo(InetAddress address, int netmask) throws UnknownHostException {
@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.security.test;
+
+import org.apache.marmotta.platform.security.model.HTTPMethods;
+import org.apache.marmotta.platform.security.model.SecurityConstraint;
+import org.apache.marmotta.platform.security.util.SecurityConstraintMatcher;
+import org.apache.marmotta.platform.security.util.SubnetInfo;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test the compiled security constraint matcher against the evaluation of the single constraints, and
+ * compare the decision throughput with few and many rules.
+ */
+public class SecurityConstraintMatcherTest {
+
+    private static Logger log = LoggerFactory.getLogger(SecurityConstraintMatcherTest.class);
+
+    private static final String[] METHODS = { "GET", "PUT", "POST", "DELETE", "OPTIONS", "HEAD", "PATCH" };
+
+    private static final String[] ROLES = { "manager", "editor", "user" };
+
+    @Test
+    public void testLiteralPatterns() throws UnknownHostException {
+        List<SecurityConstraint> constraints = new ArrayList<SecurityConstraint>();
+        constraints.add(new SecurityConstraint(SecurityConstraint.Type.PERMISSION, "select", "/sparql/select", true, 10));
+        constraints.add(new SecurityConstraint(SecurityConstraint.Type.RESTRICTION, "sparql", "/sparql/.*", true, 5));
+        constraints.add(new SecurityConstraint(SecurityConstraint.Type.PERMISSION, "either", "/a/.*|/b/.*", true, 3));
+        constraints.add(new SecurityConstraint(SecurityConstraint.Type.PERMISSION, "optional", "/files?/.*", true, 2));
+        SecurityConstraint local = new SecurityConstraint(SecurityConstraint.Type.PERMISSION, "local", "/.*", true, 1);
+        local.getHostPatterns().add(SubnetInfo.getSubnetInfo("127.0.0.1/32"));
+        local.getHostPatterns().add(SubnetInfo.getSubnetInfo("::1/128"));
+        constraints.add(local);
+        Collections.sort(constraints);
+
+        SecurityConstraintMatcher matcher = new SecurityConstraintMatcher(constraints);
+
+        Assert.assertEquals("select", matcher.match("GET", "/sparql/select", "10.0.0.1", null).getName());
+        Assert.assertEquals("sparql", matcher.match("GET", "/sparql/update", "10.0.0.1", null).getName());
+        Assert.assertEquals("either", matcher.match("GET", "/b/x", "10.0.0.1", null).getName());
+        Assert.assertEquals("optional", matcher.match("GET", "/file/x", "10.0.0.1", null).getName());
+        Assert.assertEquals("optional", matcher.match("GET", "/files/x", "10.0.0.1", null).getName());
+        Assert.assertEquals("local", matcher.match("GET", "/other", "127.0.0.1", null).getName());
+        Assert.assertEquals("local", matcher.match("GET", "/other", "0:0:0:0:0:0:0:1", null).getName());
+        Assert.assertNull(matcher.match("GET", "/other", "10.0.0.1", null));
+        Assert.assertNull(matcher.match("GET", null, "127.0.0.1", null));
+    }
+
+    @Test
+    public void testEquivalence() throws UnknownHostException {
+        Random random = new Random(42);
+        List<SecurityConstraint> constraints = createConstraints(random, 300);
+        SecurityConstraintMatcher matcher = new SecurityConstraintMatcher(constraints);
+
+        for(int i = 0; i < 20000; i++) {
+            String method = METHODS[random.nextInt(METHODS.length)];
+            String path = createPath(random);
+            String address = createAddress(random);
+            Set<String> roles = createRoles(random);
+
+            SecurityConstraint expected = null;
+            for(SecurityConstraint constraint : constraints) {
+                if(constraint.matches(method, path, address, roles)) {
+                    expected = constraint;
+                    break;
+                }
+            }
+            Assert.assertSame(method + " " + path + " from " + address + " as " + roles, expected, matcher.match(method, path, address, roles));
+        }
+    }
+
+    /**
+     * Measure the decisions per second with 100 and 1000 rules; with the compiled matcher, the rate should
+     * hardly depend on the number of rules (the linear evaluation is shown for comparison). This is a benchmark
+     * that only logs the measured rates, so it is not run with the unit tests.
+     */
+    @Test
+    @Ignore("benchmark, run manually")
+    public void testPerformance() throws UnknownHostException {
+        for(int rules : new int[] { 100, 1000 }) {
+            Random random = new Random(rules);
+            final List<SecurityConstraint> constraints = createConstraints(random, rules);
+            final SecurityConstraintMatcher matcher = new SecurityConstraintMatcher(constraints);
+
+            String[][] requests = new String[1000][];
+            for(int i = 0; i < requests.length; i++) {
+                requests[i] = new String[] { METHODS[random.nextInt(METHODS.length)], createPath(random), createAddress(random) };
+            }
+
+            long compiled = measure(requests, new Decision() {
+                @Override
+                public Object decide(String method, String path, String address) {
+                    return matcher.match(method, path, address, null);
+                }
+            });
+            long linear = measure(requests, new Decision() {
+                @Override
+                public Object decide(String method, String path, String address) {
+                    for(SecurityConstraint constraint : constraints) {
+                        if(constraint.matches(method, path, address, null)) {
+                            return constraint;
+                        }
+                    }
+                    return null;
+                }
+            });
+            log.info("{} rules: {} decisions/sec compiled, {} decisions/sec linear", rules, compiled, linear);
+        }
+    }
+
+    private interface Decision {
+        Object decide(String method, String path, String address);
+    }
+
+    private long measure(String[][] requests, Decision decision) {
+        // warm up
+        for(int i = 0; i < 10 * requests.length; i++) {
+            String[] r = requests[i % requests.length];
+            decision.decide(r[0], r[1], r[2]);
+        }
+
+        long count = 0;
+        long start = System.currentTimeMillis();
+        while(System.currentTimeMillis() < start + 1000) {
+            for(String[] r : requests) {
+                decision.decide(r[0], r[1], r[2]);
+            }
+            count += requests.length;
+        }
+        return count * 1000 / Math.max(1, System.currentTimeMillis() - start);
+    }
+
+    private List<SecurityConstraint> createConstraints(Random random, int count) throws UnknownHostException {
+        List<SecurityConstraint> constraints = new ArrayList<SecurityConstraint>();
+        for(int i = 0; i < count; i++) {
+            int service = random.nextInt(50);
+            String pattern;
+            switch (random.nextInt(5)) {
+                case 0:  pattern = "/svc" + service + "/action" + random.nextInt(5); break;
+                case 1:  pattern = "/svc" + service + "/.*"; break;
+                case 2:  pattern = "/(svc" + service + "|alt" + service + ")/.*"; break;
+                case 3:  pattern = "/svc" + service + "/.*/update"; break;
+                default: pattern = "/.*"; break;
+            }
+            SecurityConstraint.Type type = random.nextBoolean() ? SecurityConstraint.Type.PERMISSION : SecurityConstraint.Type.RESTRICTION;
+            SecurityConstraint constraint = new SecurityConstraint(type, "rule" + i, pattern, random.nextInt(10) > 0, random.nextInt(100));
+
+            if(random.nextInt(3) == 0) {
+                constraint.getMethods().add(HTTPMethods.values()[random.nextInt(HTTPMethods.values().length)]);
+            }
+            if(random.nextInt(3) == 0) {
+                constraint.getHostPatterns().add(SubnetInfo.getSubnetInfo("10." + random.nextInt(4) + ".0.0/16"));
+            }
+            if(random.nextInt(5) == 0) {
+                constraint.getHostPatterns().add(SubnetInfo.getSubnetInfo("2001:db8:" + random.nextInt(4) + "::/48"));
+            }
+            if(random.nextInt(4) == 0) {
+                constraint.getRoles().add(ROLES[random.nextInt(ROLES.length)]);
+            }
+            constraints.add(constraint);
+        }
+        Collections.sort(constraints);
+        return constraints;
+    }
+
+    private String createPath(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:  return "/svc" + random.nextInt(60) + "/action" + random.nextInt(6);
+            case 1:  return "/alt" + random.nextInt(60) + "/x/y";
+            case 2:  return "/svc" + random.nextInt(60) + "/core" + random.nextInt(3) + "/update";
+            default: return "/other/" + random.nextInt(10);
+        }
+    }
+
+    private String createAddress(Random random) {
+        if(random.nextBoolean()) {
+            // avoid network and broadcast addresses, see SecurityConstraintMatcher
+            return "10." + random.nextInt(6) + "." + (1 + random.nextInt(254)) + "." + (1 + random.nextInt(254));
+        } else {
+            return "2001:db8:" + random.nextInt(6) + ":0:0:0:0:" + (1 + random.nextInt(1000));
+        }
+    }
+
+    private Set<String> createRoles(Random random) {
+        Set<String> roles = new HashSet<String>();
+        for(String role : ROLES) {
+            if(random.nextBoolean()) {
+                roles.add(role);
+            }
+        }
+        return random.nextInt(4) == 0 ? null : roles;
+    }
+}
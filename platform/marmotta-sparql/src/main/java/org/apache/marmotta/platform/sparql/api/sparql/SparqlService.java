@@ -77,6 +77,21 @@ public interface SparqlService {
      * @throws MarmottaException
 	 */
 	void query(QueryLanguage language, String query, OutputStream output, String format, int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException;
+
+	/**
+	 * Evaluate a SPARQL query on the KiWi TripleStore on behalf of the given client. Writes the query
+	 * results to the stream passed in the format requested. Queries are queued fairly per client, so
+	 * a client issuing many expensive queries does not delay the queries of other clients.
+	 *
+	 * @param query query
+	 * @param output strem to write
+	 * @param format mimetype
+	 * @param timeoutInSeconds maximum time for waiting in the queue and evaluating the query
+	 * @param client identifier of the client (e.g. user name or IP address), may be null
+	 * @throws MarmottaException
+	 * @throws java.util.concurrent.RejectedExecutionException in case too many queries are waiting for execution
+	 */
+	void query(QueryLanguage language, String query, OutputStream output, String format, int timeoutInSeconds, String client) throws MarmottaException, TimeoutException, MalformedQueryException;
 	
     /**
      * Evaluate a SPARQL ASK query on the KiWi TripleStore
@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.sparql.services.sparql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.query.algebra.DescribeOperator;
+import org.openrdf.query.algebra.Service;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.ZeroLengthPath;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+import org.openrdf.query.parser.ParsedQuery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * A cache for serialized SPARQL query results, keyed by the normalized query string, the base URI and the
+ * result format. The cache is bounded by the total size of the cached results; least recently used results
+ * are evicted first.
+ * <p/>
+ * Cached results are invalidated when a transaction changing the triple store is committed. In global mode,
+ * every such commit clears the cache. In fine-grained mode, a commit only invalidates results of queries
+ * whose statement patterns could match one of the added or removed triples, based on the constant predicates
+ * and contexts used in the query.
+ * <p/>
+ * Results are only stored if no commit happened while they were computed (see {@link #getGeneration()}), so
+ * a result computed against an outdated snapshot is never cached.
+ */
+public class QueryResultCache {
+
+    // queries with non-deterministic functions or federated parts must not be cached
+    private static final Pattern UNCACHEABLE = Pattern.compile("\\b(NOW|RAND|UUID|STRUUID|BNODE)\\s*\\(|\\bSERVICE\\b", Pattern.CASE_INSENSITIVE);
+
+    private final Cache<String, CachedResult> cache;
+
+    private final int maxEntrySize;
+
+    private final boolean fineGrained;
+
+    private final int maxInvalidationTriples;
+
+    private long generation = 0;
+
+
+    /**
+     * Create a new result cache.
+     *
+     * @param maxSize                maximum total size of all cached results in bytes
+     * @param maxEntrySize           maximum size of a single result in bytes; larger results are not cached
+     * @param ttl                    maximum time in seconds a result is kept, as safety net for changes that
+     *                               bypass the transaction layer; 0 for no limit
+     * @param fineGrained            true for per predicate/context invalidation, false for global invalidation
+     * @param maxInvalidationTriples commits changing more triples than this clear the whole cache
+     */
+    public QueryResultCache(long maxSize, int maxEntrySize, long ttl, boolean fineGrained, int maxInvalidationTriples) {
+        this.maxEntrySize           = maxEntrySize;
+        this.fineGrained            = fineGrained;
+        this.maxInvalidationTriples = maxInvalidationTriples;
+
+        CacheBuilder<String, CachedResult> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher(new Weigher<String, CachedResult>() {
+                    @Override
+                    public int weigh(String key, CachedResult value) {
+                        return 2 * key.length() + value.data.length;
+                    }
+                })
+                .recordStats();
+        if(ttl > 0) {
+            builder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+        }
+        cache = builder.build();
+    }
+
+    /**
+     * Create the cache key for the query given as argument, or null if the query must not be cached. Two
+     * queries only differing in whitespace outside of string literals get the same key.
+     */
+    public String createKey(String language, String query, String baseUri, String format) {
+        String normalized = normalize(query);
+        if(UNCACHEABLE.matcher(normalized).find()) {
+            return null;
+        }
+        return language + "\n" + baseUri + "\n" + format + "\n" + normalized;
+    }
+
+    /**
+     * Return the cached result for the key, or null.
+     */
+    public byte[] get(String key) {
+        CachedResult result = cache.getIfPresent(key);
+        return result != null ? result.data : null;
+    }
+
+    /**
+     * Return the current generation of the cache, which is increased by every commit that changes data. Callers
+     * need to take the generation before evaluating a query and pass it to {@link #put}.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache the query result for the given key, unless the data has changed since the given generation or the
+     * result is too large.
+     *
+     * @param key        the cache key as returned by {@link #createKey}
+     * @param data       the serialized query result
+     * @param query      the parsed query, used to determine the predicates and contexts the result depends on;
+     *                   may be null, in which case the result depends on all data
+     * @param generation the generation at the time the query evaluation started
+     */
+    public void put(String key, byte[] data, ParsedQuery query, long generation) {
+        if(data.length > maxEntrySize) {
+            return;
+        }
+
+        CachedResult result = new CachedResult(data);
+        if(fineGrained && query != null) {
+            DependencyCollector collector = new DependencyCollector();
+            query.getTupleExpr().visit(collector);
+            result.predicates = collector.predicates;
+            result.contexts   = collector.contexts;
+        }
+
+        synchronized (this) {
+            if(this.generation == generation) {
+                cache.put(key, result);
+            }
+        }
+    }
+
+    /**
+     * Invalidate all results that may be affected by the added and removed triples.
+     */
+    public synchronized void invalidate(Collection<? extends Statement> added, Collection<? extends Statement> removed) {
+        if(added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        generation++;
+
+        if(!fineGrained || added.size() + removed.size() > maxInvalidationTriples) {
+            cache.invalidateAll();
+            return;
+        }
+
+        Set<Value> predicates = new HashSet<>();
+        Set<Value> contexts   = new HashSet<>();
+        for(Statement stmt : added) {
+            predicates.add(stmt.getPredicate());
+            contexts.add(stmt.getContext());
+        }
+        for(Statement stmt : removed) {
+            predicates.add(stmt.getPredicate());
+            contexts.add(stmt.getContext());
+        }
+
+        for(Iterator<CachedResult> it = cache.asMap().values().iterator(); it.hasNext(); ) {
+            CachedResult result = it.next();
+            if(result.dependsOn(predicates, contexts)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Return an output stream that writes through to the given stream and keeps a copy of the data written as
+     * long as it does not exceed the maximum entry size of this cache.
+     */
+    public CapturingOutputStream capture(OutputStream out) {
+        return new CapturingOutputStream(out, maxEntrySize);
+    }
+
+
+    /**
+     * Collapse whitespace outside of string literals and strip the whitespace at the beginning and end.
+     */
+    protected static String normalize(String query) {
+        StringBuilder result = new StringBuilder(query.length());
+
+        int i = 0, len = query.length();
+        boolean space = false;
+        while(i < len) {
+            char c = query.charAt(i);
+            if(c == '"' || c == '\'') {
+                if(space && result.length() > 0) {
+                    result.append(' ');
+                }
+                space = false;
+
+                // copy the literal verbatim, including long ("""...""") literals and escapes
+                boolean isLong = i + 2 < len && query.charAt(i+1) == c && query.charAt(i+2) == c;
+                int start = i;
+                i += isLong ? 3 : 1;
+                while(i < len) {
+                    char d = query.charAt(i);
+                    if(d == '\\') {
+                        i += 2;
+                    } else if(d == c && (!isLong || (i + 2 < len && query.charAt(i+1) == c && query.charAt(i+2) == c))) {
+                        i += isLong ? 3 : 1;
+                        break;
+                    } else {
+                        i++;
+                    }
+                }
+                result.append(query, start, Math.min(i, len));
+            } else if(Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else {
+                if(space && result.length() > 0) {
+                    result.append(' ');
+                }
+                space = false;
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+
+    private static class CachedResult {
+
+        private final byte[] data;
+
+        // constant predicates and contexts of the query patterns; null means the result may depend on any value
+        private Set<Value> predicates;
+        private Set<Value> contexts;
+
+        private CachedResult(byte[] data) {
+            this.data = data;
+        }
+
+        private boolean dependsOn(Set<Value> changedPredicates, Set<Value> changedContexts) {
+            return (predicates == null || !Collections.disjoint(predicates, changedPredicates))
+                    && (contexts == null || !Collections.disjoint(contexts, changedContexts));
+        }
+    }
+
+    /**
+     * Collects the constant predicates and contexts of all statement patterns in a query. If a pattern has a
+     * variable predicate or context (or the query contains constructs not expressed as statement patterns, like
+     * DESCRIBE or zero-length paths), the corresponding set is null.
+     */
+    private static class DependencyCollector extends QueryModelVisitorBase<RuntimeException> {
+
+        private Set<Value> predicates = new HashSet<>();
+        private Set<Value> contexts   = new HashSet<>();
+
+        @Override
+        public void meet(StatementPattern node) {
+            if(predicates != null) {
+                if(node.getPredicateVar().hasValue()) {
+                    predicates.add(node.getPredicateVar().getValue());
+                } else {
+                    predicates = null;
+                }
+            }
+            if(contexts != null) {
+                if(node.getContextVar() != null && node.getContextVar().hasValue() && node.getContextVar().getValue() instanceof Resource) {
+                    contexts.add(node.getContextVar().getValue());
+                } else {
+                    contexts = null;
+                }
+            }
+            super.meet(node);
+        }
+
+        @Override
+        public void meet(ZeroLengthPath node) {
+            predicates = null;
+            contexts   = null;
+            super.meet(node);
+        }
+
+        @Override
+        public void meet(DescribeOperator node) {
+            predicates = null;
+            contexts   = null;
+            super.meet(node);
+        }
+
+        @Override
+        public void meet(Service node) {
+            predicates = null;
+            contexts   = null;
+            super.meet(node);
+        }
+    }
+
+    /**
+     * Writes through to another output stream and keeps a copy of the data up to a maximum size.
+     */
+    public static class CapturingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+
+        private final int limit;
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream delegate, int limit) {
+            this.delegate = delegate;
+            this.limit    = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            if(copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            if(copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        private void checkLimit() {
+            if(copy.size() > limit) {
+                copy = null;
+            }
+        }
+
+        /**
+         * Return the data written so far, or null if it exceeded the limit.
+         */
+        public byte[] getData() {
+            return copy != null ? copy.toByteArray() : null;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.sparql.services.sparql;
+
+import org.apache.marmotta.platform.core.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for SPARQL queries. Queries are executed by a fixed number of worker threads; queries
+ * that cannot be started immediately wait in a bounded queue, and are rejected with a
+ * {@link RejectedExecutionException} when the queue is full.
+ * <p/>
+ * Waiting queries are kept in two lanes: the {@link Lane#INTERACTIVE} lane for cheap queries (ASK and
+ * SELECT with a small LIMIT) and the {@link Lane#BATCH} lane for everything else. Interactive queries are
+ * preferred, but at most every {@link #BATCH_SHARE}th dispatch is given to a waiting batch query so that
+ * batch queries cannot starve. Batch queries may only occupy a limited number of workers, so there are
+ * always workers left for interactive queries. Within a lane, clients (e.g. IP addresses or user names)
+ * are served round-robin, so a single client submitting many queries cannot block all others.
+ * <p/>
+ * Cancelling the future of a waiting query removes it from the queue; cancelling a running query interrupts
+ * the worker thread, which the KiWi triple store answers by cancelling and closing the JDBC statement
+ * currently executed.
+ */
+public class QueryScheduler {
+
+    private static Logger log = LoggerFactory.getLogger(QueryScheduler.class);
+
+    /**
+     * After this many interactive queries in a row, a waiting batch query is dispatched first.
+     */
+    public static final int BATCH_SHARE = 4;
+
+    public enum Lane {
+        /** ASK queries and SELECT queries with a small LIMIT */
+        INTERACTIVE,
+        /** CONSTRUCT and DESCRIBE queries and SELECT queries without (or with a large) LIMIT */
+        BATCH
+    }
+
+    private final int workers;
+
+    private final int batchWorkers;
+
+    private final int maxQueued;
+
+    private final int maxQueuedPerClient;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition dispatchable = lock.newCondition();
+
+    // per lane, the queues of waiting queries of each client in round-robin order
+    private final EnumMap<Lane, LinkedHashMap<String, ArrayDeque<ScheduledQuery<?>>>> queues;
+
+    private final int[] queued  = new int[Lane.values().length];
+    private final int[] running = new int[Lane.values().length];
+
+    private int interactiveStreak = 0;
+
+    private boolean shutdown = false;
+
+    private final List<Thread> threads;
+
+    private final EnumMap<Lane, LatencyHistogram> waitTimes;
+    private final EnumMap<Lane, LatencyHistogram> executionTimes;
+
+    private final AtomicLong rejected  = new AtomicLong(0);
+    private final AtomicLong cancelled = new AtomicLong(0);
+
+    /**
+     * Create a new scheduler and start its worker threads.
+     *
+     * @param name               prefix for the names of the worker threads
+     * @param workers            number of queries executed concurrently
+     * @param batchWorkers       maximum number of workers executing batch queries at the same time
+     * @param maxQueued          maximum number of waiting queries over all clients
+     * @param maxQueuedPerClient maximum number of waiting queries of a single client
+     */
+    public QueryScheduler(String name, int workers, int batchWorkers, int maxQueued, int maxQueuedPerClient) {
+        this.workers            = Math.max(1, workers);
+        this.batchWorkers       = Math.max(1, Math.min(batchWorkers, this.workers));
+        this.maxQueued          = Math.max(0, maxQueued);
+        this.maxQueuedPerClient = Math.max(1, maxQueuedPerClient);
+
+        queues         = new EnumMap<>(Lane.class);
+        waitTimes      = new EnumMap<>(Lane.class);
+        executionTimes = new EnumMap<>(Lane.class);
+        for(Lane lane : Lane.values()) {
+            queues.put(lane, new LinkedHashMap<String, ArrayDeque<ScheduledQuery<?>>>());
+            waitTimes.put(lane, new LatencyHistogram());
+            executionTimes.put(lane, new LatencyHistogram());
+        }
+
+        threads = new ArrayList<>(this.workers);
+        for(int i = 0; i < this.workers; i++) {
+            Thread t = new Thread(new Worker(), name + " " + (i+1));
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Submit a query for execution.
+     *
+     * @param client identifier of the client issuing the query, used for fair queuing
+     * @param lane   the lane the query is scheduled in
+     * @param task   the query execution
+     * @return a future for the query result; cancelling it dequeues or interrupts the query
+     * @throws RejectedExecutionException in case the queue (or the client's share of it) is full
+     */
+    public <T> Future<T> submit(String client, Lane lane, Callable<T> task) throws RejectedExecutionException {
+        if(client == null) {
+            client = "";
+        }
+        ScheduledQuery<T> query = new ScheduledQuery<>(client, lane, task);
+
+        lock.lock();
+        try {
+            if(shutdown) {
+                throw new RejectedExecutionException("SPARQL query scheduler has been shut down");
+            }
+            if(queued[0] + queued[1] >= maxQueued && !canDispatchImmediately(lane)) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("too many SPARQL queries waiting for execution (" + maxQueued + ")");
+            }
+
+            LinkedHashMap<String, ArrayDeque<ScheduledQuery<?>>> clients = queues.get(lane);
+            ArrayDeque<ScheduledQuery<?>> clientQueue = clients.get(client);
+            if(clientQueue == null) {
+                clientQueue = new ArrayDeque<>();
+                clients.put(client, clientQueue);
+            } else if(clientQueue.size() >= maxQueuedPerClient) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("too many SPARQL queries of client " + client + " waiting for execution (" + maxQueuedPerClient + ")");
+            }
+            clientQueue.add(query);
+            queued[lane.ordinal()]++;
+
+            dispatchable.signal();
+        } finally {
+            lock.unlock();
+        }
+        return query;
+    }
+
+    /**
+     * Stop all workers. Waiting queries are cancelled, running queries are interrupted.
+     */
+    public void shutdown() {
+        List<ScheduledQuery<?>> waiting = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for(Lane lane : Lane.values()) {
+                for(ArrayDeque<ScheduledQuery<?>> clientQueue : queues.get(lane).values()) {
+                    waiting.addAll(clientQueue);
+                }
+                queues.get(lane).clear();
+                queued[lane.ordinal()] = 0;
+            }
+            dispatchable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for(ScheduledQuery<?> query : waiting) {
+            query.cancel(false);
+        }
+        for(Thread t : threads) {
+            t.interrupt();
+        }
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getBatchWorkers() {
+        return batchWorkers;
+    }
+
+    public int getQueued(Lane lane) {
+        lock.lock();
+        try {
+            return queued[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning(Lane lane) {
+        lock.lock();
+        try {
+            return running[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of queries rejected because the queue was full.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of queries cancelled while waiting or running (e.g. because of a timeout).
+     */
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Histogram of the time queries of the given lane spent waiting for a worker.
+     */
+    public LatencyHistogram getWaitTimes(Lane lane) {
+        return waitTimes.get(lane);
+    }
+
+    /**
+     * Histogram of the time workers spent executing queries of the given lane.
+     */
+    public LatencyHistogram getExecutionTimes(Lane lane) {
+        return executionTimes.get(lane);
+    }
+
+
+    // must hold the lock
+    private boolean canDispatchImmediately(Lane lane) {
+        int busy = running[0] + running[1];
+        int waiting = queued[0] + queued[1];
+        return busy + waiting < workers && (lane == Lane.INTERACTIVE || running[Lane.BATCH.ordinal()] < batchWorkers);
+    }
+
+    // must hold the lock
+    private ScheduledQuery<?> poll() {
+        boolean batchAllowed = running[Lane.BATCH.ordinal()] < batchWorkers;
+
+        ScheduledQuery<?> query = null;
+        if(batchAllowed && interactiveStreak >= BATCH_SHARE) {
+            query = poll(Lane.BATCH);
+        }
+        if(query == null) {
+            query = poll(Lane.INTERACTIVE);
+        }
+        if(query == null && batchAllowed) {
+            query = poll(Lane.BATCH);
+        }
+
+        if(query != null) {
+            if(query.lane == Lane.BATCH) {
+                interactiveStreak = 0;
+            } else {
+                interactiveStreak++;
+            }
+        }
+        return query;
+    }
+
+    // must hold the lock; takes the first query of the next client and moves the client to the end
+    private ScheduledQuery<?> poll(Lane lane) {
+        Iterator<Map.Entry<String, ArrayDeque<ScheduledQuery<?>>>> it = queues.get(lane).entrySet().iterator();
+        if(!it.hasNext()) {
+            return null;
+        }
+
+        Map.Entry<String, ArrayDeque<ScheduledQuery<?>>> entry = it.next();
+        ScheduledQuery<?> query = entry.getValue().poll();
+        it.remove();
+        if(!entry.getValue().isEmpty()) {
+            queues.get(lane).put(entry.getKey(), entry.getValue());
+        }
+        queued[lane.ordinal()]--;
+        return query;
+    }
+
+    private void dequeue(ScheduledQuery<?> query) {
+        lock.lock();
+        try {
+            LinkedHashMap<String, ArrayDeque<ScheduledQuery<?>>> clients = queues.get(query.lane);
+            ArrayDeque<ScheduledQuery<?>> clientQueue = clients.get(query.client);
+            if(clientQueue != null && clientQueue.remove(query)) {
+                queued[query.lane.ordinal()]--;
+                if(clientQueue.isEmpty()) {
+                    clients.remove(query.client);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private class ScheduledQuery<T> extends FutureTask<T> {
+
+        private final String client;
+
+        private final Lane lane;
+
+        private final long submitted;
+
+        private ScheduledQuery(String client, Lane lane, Callable<T> callable) {
+            super(callable);
+            this.client    = client;
+            this.lane      = lane;
+            this.submitted = System.currentTimeMillis();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            dequeue(this);
+
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if(result) {
+                cancelled.incrementAndGet();
+            }
+            return result;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while(true) {
+                ScheduledQuery<?> query;
+
+                lock.lock();
+                try {
+                    while((query = poll()) == null) {
+                        if(shutdown) {
+                            return;
+                        }
+                        dispatchable.await();
+                    }
+                    running[query.lane.ordinal()]++;
+                } catch (InterruptedException e) {
+                    if(shutdown) {
+                        return;
+                    }
+                    continue;
+                } finally {
+                    lock.unlock();
+                }
+
+                long start = System.currentTimeMillis();
+                waitTimes.get(query.lane).record(start - query.submitted);
+                try {
+                    query.run();
+                } catch (RuntimeException ex) {
+                    log.error("unexpected error while executing SPARQL query", ex);
+                } finally {
+                    executionTimes.get(query.lane).record(System.currentTimeMillis() - start);
+
+                    // a cancellation may have interrupted this worker; do not let it affect the next query
+                    Thread.interrupted();
+
+                    lock.lock();
+                    try {
+                        running[query.lane.ordinal()]--;
+                        dispatchable.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+}
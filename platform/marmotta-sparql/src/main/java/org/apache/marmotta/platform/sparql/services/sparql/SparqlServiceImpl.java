@@ -19,12 +19,17 @@ package org.apache.marmotta.platform.sparql.services.sparql;
 
 import info.aduna.lang.FileFormat;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
 import org.apache.marmotta.commons.vocabulary.SPARQL_SD;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsModule;
+import org.apache.marmotta.platform.core.api.statistics.StatisticsService;
 import org.apache.marmotta.platform.core.api.templating.TemplatingService;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
 import org.apache.marmotta.platform.core.exception.InvalidArgumentException;
 import org.apache.marmotta.platform.core.exception.MarmottaException;
+import org.apache.marmotta.platform.core.qualifiers.event.transaction.AfterCommit;
 import org.apache.marmotta.platform.sparql.api.sparql.QueryType;
 import org.apache.marmotta.platform.sparql.api.sparql.SparqlService;
 import org.apache.marmotta.platform.sparql.services.sparqlio.rdf.SPARQLGraphResultWriter;
@@ -34,6 +39,9 @@ import org.openrdf.model.*;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.query.*;
+import org.openrdf.query.algebra.Slice;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.UnaryTupleOperator;
 import org.openrdf.query.parser.*;
 import org.openrdf.query.resultio.*;
 import org.openrdf.repository.RepositoryConnection;
@@ -43,7 +51,9 @@ import org.openrdf.rio.*;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -98,18 +108,61 @@ public class SparqlServiceImpl implements SparqlService {
     @Inject
     private SesameService sesameService;
 
-    private ExecutorService executorService;
+    @Inject
+    private StatisticsService statisticsService;
+
+    private QueryScheduler scheduler;
 
-    private long queryId = 0;
+    private volatile QueryResultCache resultCache;
 
     @PostConstruct
     public void initialize() {
-        executorService = Executors.newCachedThreadPool(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                return new Thread(r, "SPARQL Query Thread " + (++queryId));
-            }
-        });
+        int workers = configurationService.getIntConfiguration("sparql.scheduler.workers", 8);
+        scheduler = new QueryScheduler("SPARQL Query Thread",
+                workers,
+                configurationService.getIntConfiguration("sparql.scheduler.workers.batch", Math.max(1, workers / 2)),
+                configurationService.getIntConfiguration("sparql.scheduler.queue", 100),
+                configurationService.getIntConfiguration("sparql.scheduler.queue.client", 20));
+
+        initResultCache();
+
+        statisticsService.registerModule(SparqlService.class.getSimpleName(), new StatisticsProvider());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        statisticsService.unregisterModule(SparqlService.class.getSimpleName());
+        scheduler.shutdown();
+    }
+
+    private void initResultCache() {
+        if (configurationService.getBooleanConfiguration("sparql.cache.enabled", true)) {
+            resultCache = new QueryResultCache(
+                    configurationService.getLongConfiguration("sparql.cache.size", 64) * 1024 * 1024,
+                    configurationService.getIntConfiguration("sparql.cache.max_entry", 1024) * 1024,
+                    configurationService.getLongConfiguration("sparql.cache.ttl", 3600),
+                    "fine".equalsIgnoreCase(configurationService.getStringConfiguration("sparql.cache.invalidation", "fine")),
+                    configurationService.getIntConfiguration("sparql.cache.invalidation.max_triples", 10000));
+        } else {
+            resultCache = null;
+        }
+    }
+
+    public void onConfigurationChange(@Observes ConfigurationChangedEvent e) {
+        if (e.containsChangedKeyWithPrefix("sparql.cache")) {
+            log.info("SPARQL result cache configuration changed, reinitialising cache");
+            initResultCache();
+        }
+    }
+
+    /**
+     * Invalidate cached query results affected by the data changed in a transaction.
+     */
+    public void onAfterCommit(@Observes @AfterCommit TransactionData data) {
+        QueryResultCache cache = resultCache;
+        if (cache != null) {
+            cache.invalidate(data.getAddedTriples(), data.getRemovedTriples());
+        }
     }
 
     @Override
@@ -143,11 +196,12 @@ public class SparqlServiceImpl implements SparqlService {
 
     @Override
     @Deprecated
-    public void query(final QueryLanguage queryLanguage, final String query, final TupleQueryResultWriter tupleWriter, final BooleanQueryResultWriter booleanWriter, final SPARQLGraphResultWriter graphWriter, int timeoutInSeconds) throws MarmottaException, MalformedQueryException, QueryEvaluationException, TimeoutException {
+    public void query(final QueryLanguage queryLanguage, final String query, final TupleQueryResultWriter tupleWriter, final BooleanQueryResultWriter booleanWriter, final SPARQLGraphResultWriter graphWriter, final int timeoutInSeconds) throws MarmottaException, MalformedQueryException, QueryEvaluationException, TimeoutException {
 
         log.debug("executing SPARQL query:\n{}", query);
 
-        Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+        execute(null, getLane(parse(queryLanguage, query)), new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
@@ -155,7 +209,7 @@ public class SparqlServiceImpl implements SparqlService {
                     RepositoryConnection connection = sesameService.getConnection();
                     try {
                         connection.begin();
-                        Query sparqlQuery = connection.prepareQuery(queryLanguage, query, configurationService.getBaseUri());
+                        Query sparqlQuery = prepareQuery(connection, queryLanguage, query, deadline);
 
                         if (sparqlQuery instanceof TupleQuery) {
                             query((TupleQuery) sparqlQuery, tupleWriter);
@@ -187,32 +241,16 @@ public class SparqlServiceImpl implements SparqlService {
 
                 return Boolean.TRUE;
             }
-        });
-
-        try {
-            future.get(timeoutInSeconds, TimeUnit.SECONDS);
-        } catch (InterruptedException | TimeoutException e) {
-            log.info("SPARQL query execution aborted due to timeout");
-            future.cancel(true);
-            throw new TimeoutException("SPARQL query execution aborted due to timeout (" + configurationService.getIntConfiguration("sparql.timeout",60)+"s)");
-        } catch (ExecutionException e) {
-            log.info("SPARQL query execution aborted due to exception");
-            log.debug("exception details",e);
-            if(e.getCause() instanceof MarmottaException) {
-                throw (MarmottaException)e.getCause();
-            } else if(e.getCause() instanceof MalformedQueryException) {
-                throw (MalformedQueryException)e.getCause();
-            } else {
-                throw new MarmottaException("unknown exception while evaluating SPARQL query",e.getCause());
-            }
-        }
+        }, timeoutInSeconds);
     }
 
     @Override
     @Deprecated
     public void query(final QueryLanguage queryLanguage, final String query, final QueryResultWriter writer, final int timeoutInSeconds) throws MarmottaException, MalformedQueryException, QueryEvaluationException, TimeoutException {
         log.debug("executing SPARQL query:\n{}", query);
-        Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+        execute(null, getLane(parse(queryLanguage, query)), new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
@@ -220,7 +258,7 @@ public class SparqlServiceImpl implements SparqlService {
                     RepositoryConnection connection = sesameService.getConnection();
                     try {
                         connection.begin();
-                        Query sparqlQuery = connection.prepareQuery(queryLanguage, query, configurationService.getBaseUri());
+                        Query sparqlQuery = prepareQuery(connection, queryLanguage, query, deadline);
 
                         if (sparqlQuery instanceof TupleQuery) {
                             query((TupleQuery) sparqlQuery, (TupleQueryResultWriter)writer);
@@ -252,31 +290,40 @@ public class SparqlServiceImpl implements SparqlService {
 
                 return Boolean.TRUE;
             }
-        });
+        }, timeoutInSeconds);
+    }
 
-        try {
-            future.get(timeoutInSeconds, TimeUnit.SECONDS);
-        } catch (InterruptedException | TimeoutException e) {
-            log.info("SPARQL query execution aborted due to timeout");
-            future.cancel(true);
-            throw new TimeoutException("SPARQL query execution aborted due to timeout (" + timeoutInSeconds+"s)");
-        } catch (ExecutionException e) {
-            log.info("SPARQL query execution aborted due to exception");
-            log.debug("exception details", e);
-            if(e.getCause() instanceof MarmottaException) {
-                throw (MarmottaException)e.getCause();
-            } else if(e.getCause() instanceof MalformedQueryException) {
-                throw (MalformedQueryException)e.getCause();
-            } else {
-                throw new MarmottaException("unknown exception while evaluating SPARQL query",e.getCause());
-            }
-        }    	
+    @Override
+    public void query(QueryLanguage language, String query, OutputStream output, String format, int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException {
+        query(language, query, output, format, timeoutInSeconds, null);
     }
 
     @Override
-    public void query(final QueryLanguage language, final String query, final OutputStream output, final String format, int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException {
+    public void query(final QueryLanguage language, final String query, OutputStream output, final String format, int timeoutInSeconds, String client) throws MarmottaException, TimeoutException, MalformedQueryException {
         log.debug("executing SPARQL query:\n{}", query);
-        Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+
+        final QueryResultCache cache = resultCache;
+        final String cacheKey = cache != null ? cache.createKey(language.getName(), query, configurationService.getBaseUri(), format) : null;
+        if (cacheKey != null) {
+            byte[] cached = cache.get(cacheKey);
+            if (cached != null) {
+                log.debug("SPARQL query result served from cache");
+                try {
+                    output.write(cached);
+                } catch (IOException e) {
+                    throw new MarmottaException("error while writing cached query result", e);
+                }
+                return;
+            }
+        }
+
+        final ParsedQuery parsedQuery = parse(language, query);
+        final long generation = cacheKey != null ? cache.getGeneration() : 0;
+        final QueryResultCache.CapturingOutputStream captured = cacheKey != null ? cache.capture(output) : null;
+        final OutputStream out = captured != null ? captured : output;
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+        execute(client, getLane(parsedQuery), new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
@@ -284,14 +331,14 @@ public class SparqlServiceImpl implements SparqlService {
                     RepositoryConnection connection = sesameService.getConnection();
                     try {
                         connection.begin();
-                        Query sparqlQuery = connection.prepareQuery(language, query, configurationService.getBaseUri());
+                        Query sparqlQuery = prepareQuery(connection, language, query, deadline);
 
                         if (sparqlQuery instanceof TupleQuery) {
-                            query((TupleQuery)sparqlQuery, output, format);
+                            query((TupleQuery)sparqlQuery, out, format);
                         } else if (sparqlQuery instanceof BooleanQuery) {
-                            query((BooleanQuery)sparqlQuery, output, format);
+                            query((BooleanQuery)sparqlQuery, out, format);
                         } else if (sparqlQuery instanceof GraphQuery) {
-                            query((GraphQuery)sparqlQuery, output, format);
+                            query((GraphQuery)sparqlQuery, out, format);
                         } else {
                             throw new InvalidArgumentException("SPARQL query type " + sparqlQuery.getClass() + " not supported!");
                         }
@@ -317,14 +364,31 @@ public class SparqlServiceImpl implements SparqlService {
                 log.debug("SPARQL execution took {}ms", System.currentTimeMillis()-start);
                 return Boolean.TRUE;
             }
-        });
+        }, timeoutInSeconds);
+
+        if (captured != null && captured.getData() != null) {
+            cache.put(cacheKey, captured.getData(), parsedQuery, generation);
+        }
+    }
+
+    /**
+     * Run a query execution through the scheduler and wait at most the given timeout (including the time
+     * the query waits in the queue) for it to complete. On timeout, the query is dequeued or, if it is
+     * already running, interrupted.
+     *
+     * @throws RejectedExecutionException in case the scheduler queue is full
+     */
+    private void execute(String client, QueryScheduler.Lane lane, Callable<Boolean> task, int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException {
+        Future<Boolean> future = scheduler.submit(client, lane, task);
 
         try {
             future.get(timeoutInSeconds, TimeUnit.SECONDS);
         } catch (InterruptedException | TimeoutException e) {
             log.info("SPARQL query execution aborted due to timeout");
             future.cancel(true);
-            throw new TimeoutException("SPARQL query execution aborted due to timeout (" + configurationService.getIntConfiguration("sparql.timeout",60)+"s)");
+            throw new TimeoutException("SPARQL query execution aborted due to timeout (" + timeoutInSeconds+"s)");
+        } catch (CancellationException e) {
+            throw new TimeoutException("SPARQL query execution has been cancelled");
         } catch (ExecutionException e) {
             log.info("SPARQL query execution aborted due to exception");
             log.debug("exception details", e);
@@ -336,7 +400,55 @@ public class SparqlServiceImpl implements SparqlService {
                 throw new MarmottaException("unknown exception while evaluating SPARQL query",e.getCause());
             }
         }
+    }
+
+    /**
+     * Prepare the query and limit its evaluation to the time remaining until the deadline, so that the
+     * evaluation gives up by itself in case the interrupt on timeout is not noticed.
+     */
+    private Query prepareQuery(RepositoryConnection connection, QueryLanguage language, String query, long deadline) throws RepositoryException, MalformedQueryException {
+        Query sparqlQuery = connection.prepareQuery(language, query, configurationService.getBaseUri());
+
+        long remaining = deadline - System.currentTimeMillis();
+        sparqlQuery.setMaxQueryTime((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining)));
+
+        return sparqlQuery;
+    }
+
+    /**
+     * Parse the query for scheduling and caching decisions, returning null in case it is malformed (the
+     * evaluation will then report the error).
+     */
+    private ParsedQuery parse(QueryLanguage language, String query) {
+        try {
+            return QueryParserUtil.parseQuery(language, query, configurationService.getBaseUri());
+        } catch (MalformedQueryException e) {
+            return null;
+        }
+    }
 
+    /**
+     * Determine the scheduler lane of a query: ASK queries and SELECT queries with a LIMIT up to
+     * sparql.scheduler.interactive_limit are interactive, everything else is batch. Queries that cannot be
+     * parsed are scheduled as interactive, they will fail quickly anyways.
+     */
+    private QueryScheduler.Lane getLane(ParsedQuery parsedQuery) {
+        if (parsedQuery == null || parsedQuery instanceof ParsedBooleanQuery) {
+            return QueryScheduler.Lane.INTERACTIVE;
+        } else if (parsedQuery instanceof ParsedTupleQuery) {
+            TupleExpr expr = parsedQuery.getTupleExpr();
+            while (expr instanceof UnaryTupleOperator) {
+                if (expr instanceof Slice) {
+                    Slice slice = (Slice) expr;
+                    if (slice.hasLimit() && slice.getLimit() <= configurationService.getIntConfiguration("sparql.scheduler.interactive_limit", 1000)) {
+                        return QueryScheduler.Lane.INTERACTIVE;
+                    }
+                    break;
+                }
+                expr = ((UnaryTupleOperator) expr).getArg();
+            }
+        }
+        return QueryScheduler.Lane.BATCH;
     }
 
     private void query(TupleQuery query, TupleQueryResultWriter writer) throws QueryEvaluationException {
@@ -615,4 +727,70 @@ public class SparqlServiceImpl implements SparqlService {
         } 
         return QueryResultIO.createWriter(resultFormat, os);
     }
+
+    private class StatisticsProvider implements StatisticsModule {
+
+        private final String[] KEYS = {
+                "workers", "workers for batch queries",
+                "queued interactive queries", "queued batch queries",
+                "running interactive queries", "running batch queries",
+                "rejected queries", "cancelled queries",
+                "queue wait (interactive)", "queue wait (batch)",
+                "execution time (interactive)", "execution time (batch)",
+                "cached results", "result cache hit rate", "result cache evictions"
+        };
+
+        private boolean enabled = true;
+
+        @Override
+        public void enable() {
+            enabled = true;
+        }
+
+        @Override
+        public void disable() {
+            enabled = false;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public List<String> getPropertyNames() {
+            return Collections.unmodifiableList(Arrays.asList(KEYS));
+        }
+
+        @Override
+        public Map<String, String> getStatistics() {
+            int i = 0;
+            final Map<String, String> data = new LinkedHashMap<String, String>();
+            data.put(KEYS[i++], String.valueOf(scheduler.getWorkers()));
+            data.put(KEYS[i++], String.valueOf(scheduler.getBatchWorkers()));
+            data.put(KEYS[i++], String.valueOf(scheduler.getQueued(QueryScheduler.Lane.INTERACTIVE)));
+            data.put(KEYS[i++], String.valueOf(scheduler.getQueued(QueryScheduler.Lane.BATCH)));
+            data.put(KEYS[i++], String.valueOf(scheduler.getRunning(QueryScheduler.Lane.INTERACTIVE)));
+            data.put(KEYS[i++], String.valueOf(scheduler.getRunning(QueryScheduler.Lane.BATCH)));
+            data.put(KEYS[i++], String.valueOf(scheduler.getRejected()));
+            data.put(KEYS[i++], String.valueOf(scheduler.getCancelled()));
+            data.put(KEYS[i++], scheduler.getWaitTimes(QueryScheduler.Lane.INTERACTIVE).toString());
+            data.put(KEYS[i++], scheduler.getWaitTimes(QueryScheduler.Lane.BATCH).toString());
+            data.put(KEYS[i++], scheduler.getExecutionTimes(QueryScheduler.Lane.INTERACTIVE).toString());
+            data.put(KEYS[i++], scheduler.getExecutionTimes(QueryScheduler.Lane.BATCH).toString());
+
+            final QueryResultCache cache = resultCache;
+            if (cache != null) {
+                data.put(KEYS[i++], String.valueOf(cache.size()));
+                data.put(KEYS[i++], String.format("%.1f%%", cache.getStats().hitRate() * 100));
+                data.put(KEYS[i++], String.valueOf(cache.getStats().evictionCount()));
+            }
+            return data;
+        }
+
+        @Override
+        public String getName() {
+            return SparqlService.class.getSimpleName();
+        }
+    }
 }
@@ -58,6 +58,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -267,7 +268,7 @@ public class SparqlWebService {
 	            if (bestType == null) {
 	            	return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).entity("no result format specified or unsupported result format").build();
 	            } else {
-	            	return buildQueryResponse(bestType, query, queryType);
+	            	return buildQueryResponse(bestType, query, queryType, getClient(request));
 	            }
 	    	}
         } catch (InvalidArgumentException e) {
@@ -502,12 +503,14 @@ public class SparqlWebService {
         return Response.ok(entity, new MediaType(returnType.getType(), returnType.getSubtype(), returnType.getCharset().name())).build();
     }
     
-	private Response buildQueryResponse(final ContentType format, final String query, final QueryType queryType) throws Exception {		
+	private Response buildQueryResponse(final ContentType format, final String query, final QueryType queryType, final String client) throws Exception {		
         StreamingOutput entity = new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException, WebApplicationException {
                 try {
-                	sparqlService.query(QueryLanguage.SPARQL, query, output, format.getMime(), configurationService.getIntConfiguration("sparql.timeout", 60));
+                	sparqlService.query(QueryLanguage.SPARQL, query, output, format.getMime(), configurationService.getIntConfiguration("sparql.timeout", 60), client);
+                } catch (RejectedExecutionException e) {
+                    throw new WebApplicationException(e, Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", 10).entity(WebServiceUtil.jsonErrorResponse(e)).build());
                 } catch (MarmottaException ex) {
                     throw new WebApplicationException(ex.getCause(), Response.status(Response.Status.BAD_REQUEST).entity(WebServiceUtil.jsonErrorResponse(ex)).build());
                 } catch (MalformedQueryException e) {
@@ -526,6 +529,18 @@ public class SparqlWebService {
         return responseBuilder.build();
 	}
 
+    /**
+     * The client identity used for fair scheduling of queries: the authenticated user if any, the remote
+     * address otherwise.
+     */
+    private String getClient(HttpServletRequest request) {
+        if (request.getRemoteUser() != null) {
+            return request.getRemoteUser();
+        } else {
+            return request.getRemoteAddr();
+        }
+    }
+
     private static Pattern subTypePattern = Pattern.compile("[a-z]+/([a-z0-9-._]+\\+)?([a-z0-9-._]+)(;.*)?");
     private String parseSubType(String mimeType) {
         Matcher matcher = subTypePattern.matcher(mimeType);
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.sparql.services.sparql;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for keying, size limits and commit-driven invalidation of the SPARQL result cache.
+ */
+public class QueryResultCacheTest {
+
+    private static final String BASE = "http://localhost/";
+
+    private static final String NAME_QUERY = "SELECT ?n WHERE { ?s <http://xmlns.com/foaf/0.1/name> ?n }";
+    private static final String ANY_QUERY  = "SELECT ?p WHERE { ?s ?p ?o }";
+
+    private ValueFactory vf = new ValueFactoryImpl();
+
+    private QueryResultCache cache;
+
+    @Before
+    public void setup() {
+        cache = new QueryResultCache(1024 * 1024, 1024, 0, true, 100);
+    }
+
+    @Test
+    public void testKeyNormalization() {
+        String k1 = cache.createKey("SPARQL", "SELECT ?s\n  WHERE { ?s ?p \"a  b\" }", BASE, "application/sparql-results+json");
+        String k2 = cache.createKey("SPARQL", " SELECT ?s WHERE {\t?s ?p \"a  b\" } ", BASE, "application/sparql-results+json");
+        String k3 = cache.createKey("SPARQL", "SELECT ?s WHERE { ?s ?p \"a b\" }", BASE, "application/sparql-results+json");
+        String k4 = cache.createKey("SPARQL", "SELECT ?s WHERE { ?s ?p \"a  b\" }", BASE, "text/csv");
+
+        Assert.assertEquals(k1, k2);
+        Assert.assertFalse("whitespace in literals is significant", k1.equals(k3));
+        Assert.assertFalse("result format is part of the key", k1.equals(k4));
+
+        Assert.assertNull(cache.createKey("SPARQL", "SELECT (NOW() AS ?t) WHERE {}", BASE, null));
+        Assert.assertNull(cache.createKey("SPARQL", "SELECT * WHERE { SERVICE <http://example.com/sparql> { ?s ?p ?o } }", BASE, null));
+    }
+
+    @Test
+    public void testFineGrainedInvalidation() throws Exception {
+        String nameKey = cache.createKey("SPARQL", NAME_QUERY, BASE, null);
+        String anyKey  = cache.createKey("SPARQL", ANY_QUERY, BASE, null);
+
+        cache.put(nameKey, new byte[] {1}, parse(NAME_QUERY), cache.getGeneration());
+        cache.put(anyKey, new byte[] {2}, parse(ANY_QUERY), cache.getGeneration());
+        Assert.assertNotNull(cache.get(nameKey));
+        Assert.assertNotNull(cache.get(anyKey));
+
+        // a change to another predicate only affects the query with a variable predicate
+        cache.invalidate(triples("http://xmlns.com/foaf/0.1/mbox"), Collections.<Statement>emptyList());
+        Assert.assertNotNull(cache.get(nameKey));
+        Assert.assertNull(cache.get(anyKey));
+
+        cache.invalidate(Collections.<Statement>emptyList(), triples("http://xmlns.com/foaf/0.1/name"));
+        Assert.assertNull(cache.get(nameKey));
+    }
+
+    @Test
+    public void testStaleResultsNotCached() throws Exception {
+        String key = cache.createKey("SPARQL", NAME_QUERY, BASE, null);
+
+        long generation = cache.getGeneration();
+        cache.invalidate(triples("http://xmlns.com/foaf/0.1/mbox"), Collections.<Statement>emptyList());
+        cache.put(key, new byte[] {1}, parse(NAME_QUERY), generation);
+
+        Assert.assertNull("result computed before a commit must not be cached", cache.get(key));
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        QueryResultCache.CapturingOutputStream small = cache.capture(target);
+        small.write(new byte[100]);
+        Assert.assertEquals(100, small.getData().length);
+
+        QueryResultCache.CapturingOutputStream large = cache.capture(target);
+        large.write(new byte[2000]);
+        Assert.assertNull("results larger than the entry limit are not captured", large.getData());
+        Assert.assertEquals(2100, target.size());
+    }
+
+
+    private ParsedQuery parse(String query) throws Exception {
+        return QueryParserUtil.parseQuery(QueryLanguage.SPARQL, query, BASE);
+    }
+
+    private List<Statement> triples(String predicate) {
+        return Collections.singletonList(vf.createStatement(vf.createURI("http://example.com/s"), vf.createURI(predicate), vf.createLiteral("o")));
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.sparql.services.sparql;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Tests for admission control, fair queuing and cancellation in the SPARQL query scheduler.
+ */
+public class QuerySchedulerTest {
+
+    private QueryScheduler scheduler;
+
+    private CountDownLatch blocker;
+
+    @Before
+    public void setup() {
+        // a single worker, so the execution order reflects the scheduling order
+        scheduler = new QueryScheduler("Test Query Thread", 1, 1, 10, 5);
+        blocker   = new CountDownLatch(1);
+    }
+
+    @After
+    public void shutdown() {
+        blocker.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFairQueuing() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        Future<?> blocking = scheduler.submit("x", QueryScheduler.Lane.INTERACTIVE, blockingTask());
+
+        List<Future<?>> futures = new ArrayList<>();
+        for(String client : new String[] {"a", "a", "a", "b", "b", "c"}) {
+            futures.add(scheduler.submit(client, QueryScheduler.Lane.INTERACTIVE, recordingTask(order, client)));
+        }
+        blocker.countDown();
+        blocking.get(10, TimeUnit.SECONDS);
+        for(Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(6, order.size());
+        Assert.assertEquals("round-robin over clients", "a,b,c,a,b,a", join(order));
+    }
+
+    @Test
+    public void testInteractivePreferred() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        Future<?> blocking = scheduler.submit("x", QueryScheduler.Lane.INTERACTIVE, blockingTask());
+
+        Future<?> batch = scheduler.submit("a", QueryScheduler.Lane.BATCH, recordingTask(order, "batch"));
+        Future<?> interactive = scheduler.submit("b", QueryScheduler.Lane.INTERACTIVE, recordingTask(order, "interactive"));
+
+        blocker.countDown();
+        blocking.get(10, TimeUnit.SECONDS);
+        batch.get(10, TimeUnit.SECONDS);
+        interactive.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("interactive,batch", join(order));
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        scheduler.submit("x", QueryScheduler.Lane.INTERACTIVE, blockingTask());
+        awaitRunning();
+
+        for(int i = 0; i < 5; i++) {
+            scheduler.submit("a", QueryScheduler.Lane.INTERACTIVE, recordingTask(new ArrayList<String>(), "a"));
+        }
+        try {
+            scheduler.submit("a", QueryScheduler.Lane.INTERACTIVE, recordingTask(new ArrayList<String>(), "a"));
+            Assert.fail("per-client queue limit not enforced");
+        } catch (RejectedExecutionException ex) {
+        }
+
+        for(int i = 0; i < 5; i++) {
+            scheduler.submit("b", QueryScheduler.Lane.INTERACTIVE, recordingTask(new ArrayList<String>(), "b"));
+        }
+        try {
+            scheduler.submit("c", QueryScheduler.Lane.INTERACTIVE, recordingTask(new ArrayList<String>(), "c"));
+            Assert.fail("total queue limit not enforced");
+        } catch (RejectedExecutionException ex) {
+        }
+
+        Assert.assertEquals(2, scheduler.getRejected());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        Future<?> blocking = scheduler.submit("x", QueryScheduler.Lane.INTERACTIVE, blockingTask());
+        awaitRunning();
+        Future<?> queued = scheduler.submit("a", QueryScheduler.Lane.INTERACTIVE, recordingTask(order, "a"));
+
+        Assert.assertEquals(1, scheduler.getQueued(QueryScheduler.Lane.INTERACTIVE));
+        queued.cancel(true);
+        Assert.assertEquals(0, scheduler.getQueued(QueryScheduler.Lane.INTERACTIVE));
+
+        // cancelling the running query interrupts the worker
+        blocking.cancel(true);
+
+        Future<?> next = scheduler.submit("b", QueryScheduler.Lane.INTERACTIVE, recordingTask(order, "b"));
+        next.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("b", join(order));
+        Assert.assertEquals(2, scheduler.getCancelled());
+    }
+
+
+    private void awaitRunning() throws InterruptedException {
+        for(int i = 0; i < 1000 && scheduler.getRunning(QueryScheduler.Lane.INTERACTIVE) == 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, scheduler.getRunning(QueryScheduler.Lane.INTERACTIVE));
+    }
+
+    private Callable<Boolean> blockingTask() {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return blocker.await(10, TimeUnit.SECONDS);
+            }
+        };
+    }
+
+    private Callable<Boolean> recordingTask(final List<String> order, final String name) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                order.add(name);
+                return Boolean.TRUE;
+            }
+        };
+    }
+
+    private static String join(List<String> list) {
+        StringBuilder b = new StringBuilder();
+        for(String s : list) {
+            if(b.length() > 0) {
+                b.append(",");
+            }
+            b.append(s);
+        }
+        return b.toString();
+    }
+}
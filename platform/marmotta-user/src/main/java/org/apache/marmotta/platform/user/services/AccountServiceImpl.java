@@ -60,6 +60,9 @@ public class AccountServiceImpl implements AccountService {
     @MarmottaCache("user-cache")
     private ConcurrentMap userCache;
 
+    @Inject
+    private AuthenticationCache authenticationCache;
+
     private PasswordHash         hashAlgo;
 
 
@@ -177,6 +180,7 @@ public class AccountServiceImpl implements AccountService {
         }
         userCache.remove(account.getLogin());
         userCache.remove(account.getWebId());
+        authenticationCache.invalidate(account.getLogin());
     }
 
     @Override
@@ -239,6 +243,7 @@ public class AccountServiceImpl implements AccountService {
     public UserAccount setPassword(UserAccount account, String passwd) {
         account.setPasswd(hashAlgo, passwd);
         save(account);
+        authenticationCache.invalidate(account.getLogin());
         return account;
     }
 
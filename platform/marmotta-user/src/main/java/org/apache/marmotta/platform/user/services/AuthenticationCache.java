@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.user.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of recently verified credentials, so that clients sending HTTP Basic credentials with every
+ * request do not pay for password hashing or an LDAP bind each time.
+ * <p/>
+ * The cache never stores passwords: entries are keyed by a SHA-256 digest of login and password, salted with a
+ * random value that is created on startup and never leaves the process. Only successful authentications are
+ * cached; entries expire after a configurable time and are dropped as soon as the password of the account is
+ * changed or the account is deleted. A verification that ran concurrently with such a change is not cached: the
+ * caller reads the {@link #getGeneration(String) generation} of the login before checking the password and passes it
+ * to {@link #setVerified(String, String, long)}.
+ */
+@ApplicationScoped
+public class AuthenticationCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private ConfigurationService configurationService;
+
+    private final byte[] salt = new byte[32];
+
+    /**
+     * digest of the credentials -> login, null in case the cache is disabled
+     */
+    private volatile Cache<String, String> verified;
+
+    /**
+     * incremented on each invalidation
+     */
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * login -> value of {@link #changes} at the last invalidation of the login
+     */
+    private final ConcurrentMap<String, Long> invalidated = new ConcurrentHashMap<>();
+
+    /**
+     * value of {@link #changes} at the last invalidation of all logins
+     */
+    private volatile long invalidatedAll = 0;
+
+    public AuthenticationCache() {
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @PostConstruct
+    protected void initialize() {
+        final int size = configurationService.getIntConfiguration("user.auth.cache.size", 1000);
+        final int ttl  = configurationService.getIntConfiguration("user.auth.cache.ttl", 300);
+
+        if (size > 0 && ttl > 0) {
+            log.debug("caching up to {} verified credentials for {} seconds", size, ttl);
+            verified = CacheBuilder.newBuilder()
+                    .maximumSize(size)
+                    .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                    .build();
+        } else {
+            log.debug("caching of verified credentials is disabled");
+            verified = null;
+        }
+    }
+
+    protected void onConfigurationChange(@Observes ConfigurationChangedEvent event) {
+        // a different authentication provider may not accept the cached credentials
+        if (event.containsChangedKey("user.auth.cache.size") || event.containsChangedKey("user.auth.cache.ttl") || event.containsChangedKey("user.auth.provider")) {
+            invalidateAll();
+            initialize();
+        } else {
+            // password hashes edited directly in the configuration
+            for (String key : event.getKeys()) {
+                if (key.startsWith("user.") && key.endsWith(".pwhash") && key.length() > 12) {
+                    invalidate(key.substring(5, key.length() - 7));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the given credentials have been verified recently.
+     */
+    public boolean isVerified(String login, String password) {
+        final Cache<String, String> cache = verified;
+        return cache != null && login != null && password != null && cache.getIfPresent(digest(login, password)) != null;
+    }
+
+    /**
+     * The generation of the cached credentials of the given login; changes whenever they are invalidated.
+     */
+    public long getGeneration(String login) {
+        final Long last = login != null ? invalidated.get(login) : null;
+        return Math.max(last != null ? last : 0, invalidatedAll);
+    }
+
+    /**
+     * Remember that the given credentials have been verified successfully, unless the credentials of the login have
+     * been invalidated since the given generation was read.
+     */
+    public void setVerified(String login, String password, long generation) {
+        final Cache<String, String> cache = verified;
+        if (cache != null && login != null && password != null && getGeneration(login) == generation) {
+            final String key = digest(login, password);
+            cache.put(key, login);
+            // an invalidation bumps the generation before dropping the entries, so either it removes this entry or
+            // the generation has already changed here
+            if (getGeneration(login) != generation) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Forget all verified credentials of the given login, e.g. because its password has been changed.
+     */
+    public void invalidate(String login) {
+        if (login != null) {
+            invalidated.put(login, changes.incrementAndGet());
+        }
+        final Cache<String, String> cache = verified;
+        if (cache != null && login != null) {
+            for (Iterator<String> it = cache.asMap().values().iterator(); it.hasNext(); ) {
+                if (login.equals(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget all verified credentials.
+     */
+    public void invalidateAll() {
+        invalidatedAll = changes.incrementAndGet();
+        final Cache<String, String> cache = verified;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private String digest(String login, String password) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            md.update(login.getBytes(UTF8));
+            // separator, so that login "ab" with password "c" differs from login "a" with password "bc"
+            md.update((byte) 0);
+            md.update(password.getBytes(UTF8));
+            return Hex.encodeHexString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -55,6 +55,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Inject
     private ConfigurationService configurationService;
 
+    @Inject
+    private AuthenticationCache authenticationCache;
+
     @Inject @Any
     private Instance<AuthenticationProvider> providers;
 
@@ -107,8 +110,18 @@ public class AuthenticationServiceImpl implements AuthenticationService {
      */
     @Override
     public boolean authenticateUser(String login, String password) {
+        if (authenticationCache.isVerified(login, password)) {
+            log.debug("AUTH {} from cache", login);
+            return true;
+        }
+        // a password change while the password is checked must not be overwritten by the outdated result
+        final long generation = authenticationCache.getGeneration(login);
         log.debug("AUTH {} with {}", login, authenticationProvider != null ? authenticationProvider.getClass().getSimpleName() : null);
-        return authenticationProvider.checkPassword(accountService.getAccount(login), password);
+        final boolean success = authenticationProvider.checkPassword(accountService.getAccount(login), password);
+        if (success) {
+            authenticationCache.setVerified(login, password, generation);
+        }
+        return success;
     }
 
 
@@ -124,6 +137,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     public void setUserPassword(String login, String password) {
         final UserAccount a = accountService.getAccount(login);
         authenticationProvider.updatePassword(a, password);
+        authenticationCache.invalidate(login);
     }
 
     /**
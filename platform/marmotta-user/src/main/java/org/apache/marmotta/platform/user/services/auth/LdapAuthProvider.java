@@ -20,18 +20,28 @@ package org.apache.marmotta.platform.user.services.auth;
 import org.apache.marmotta.platform.user.api.AuthenticationProvider;
 import org.apache.marmotta.platform.user.model.UserAccount;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
 import org.slf4j.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.naming.AuthenticationException;
 import javax.naming.Context;
+import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.BasicAttribute;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.ModificationItem;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
 import java.util.Hashtable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Pattern;
 
 /**
@@ -50,6 +60,10 @@ import java.util.regex.Pattern;
  * <dt>user.auth.ldap.dn
  * <dd>Pattern to build the DN for auth. <code>{login}</code> will be replaced by the account
  * name/login (default: <b>{login}</b>)
+ * <dt>user.auth.ldap.pool.size
+ * <dd>number of LDAP connections kept open for authentication; each login re-binds an idle connection
+ * with the credentials to check instead of opening a new one. <b>0</b> (the default) opens a new
+ * connection for each login.
  * </dl>
  * 
  * @author Jakob Frank <jakob.frank@salzburgresearch.at>
@@ -64,6 +78,7 @@ public class LdapAuthProvider implements AuthenticationProvider {
     static final String          CONF_SERVER = "user.auth." + QUALIFIER + ".server";
     static final String          CONF_PORT   = "user.auth." + QUALIFIER + ".port";
     static final String          CONF_DN     = "user.auth." + QUALIFIER + ".dn";
+    static final String          CONF_POOL   = "user.auth." + QUALIFIER + ".pool.size";
 
 
     @Inject
@@ -72,6 +87,37 @@ public class LdapAuthProvider implements AuthenticationProvider {
     @Inject
     private Logger               log;
 
+    /**
+     * idle connections for re-binding, null if pooling is disabled
+     */
+    private volatile BlockingQueue<LdapContext> pool;
+
+    @PostConstruct
+    protected void initialize() {
+        final int size = configurationService.getIntConfiguration(CONF_POOL, 0);
+        final BlockingQueue<LdapContext> old = pool;
+        pool = size > 0 ? new ArrayBlockingQueue<LdapContext>(size) : null;
+        if (old != null) {
+            closeAll(old);
+        }
+    }
+
+    protected void onConfigurationChange(@Observes ConfigurationChangedEvent event) {
+        // server, port or pool size changed: pooled connections are no longer valid
+        if (event.containsChangedKeyWithPrefix("user.auth." + QUALIFIER)) {
+            initialize();
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        final BlockingQueue<LdapContext> old = pool;
+        pool = null;
+        if (old != null) {
+            closeAll(old);
+        }
+    }
+
     @Override
     public boolean checkPassword(UserAccount login, String passwd) {
         return login != null && login(login.getLogin(), passwd);
@@ -101,17 +147,21 @@ public class LdapAuthProvider implements AuthenticationProvider {
     }
 
     private boolean login(String login, String secret) {
+        // a simple bind with an empty password is an anonymous bind (RFC 4513, 5.1.2), which would always succeed
+        if (secret == null || secret.isEmpty()) {
+            log.info("LDAP-Login for {} failed: empty password", login);
+            return false;
+        }
+        final String dn = configurationService.getStringConfiguration(CONF_DN, "{login}").replace("{login}", login);
+        final BlockingQueue<LdapContext> connections = pool;
+        if (connections != null) {
+            return pooledLogin(connections, login, dn, secret);
+        }
         try {
             // Set up the environment for creating the initial context
-            Hashtable<String, String> env = new Hashtable<String, String>();
-            env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-            env.put(Context.PROVIDER_URL, String.format("ldap://%s:%d",
-                    configurationService.getStringConfiguration(CONF_SERVER, configurationService.getServerName()),
-                    configurationService.getIntConfiguration(CONF_PORT, 389)));
-
+            Hashtable<String, String> env = createEnvironment();
             env.put(Context.SECURITY_AUTHENTICATION, "simple");
-            env.put(Context.SECURITY_PRINCIPAL, configurationService.getStringConfiguration(CONF_DN, "{login}")
-                    .replaceAll(Pattern.quote("{login}"), login));
+            env.put(Context.SECURITY_PRINCIPAL, dn);
             env.put(Context.SECURITY_CREDENTIALS, secret);
 
             // Create the initial context
@@ -131,4 +181,80 @@ public class LdapAuthProvider implements AuthenticationProvider {
         }
     }
 
+    /**
+     * Check the credentials by re-binding an idle pooled connection (LDAPv3 allows several binds on one
+     * connection), so that a login costs one round-trip instead of a new TCP (and possibly TLS) connection.
+     */
+    private boolean pooledLogin(BlockingQueue<LdapContext> connections, String login, String dn, String secret) {
+        LdapContext ctx = connections.poll();
+        try {
+            if (ctx == null) {
+                // new anonymous connection, authenticated below
+                ctx = new InitialLdapContext(createEnvironment(), null);
+            }
+            ctx.addToEnvironment(Context.SECURITY_AUTHENTICATION, "simple");
+            ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, dn);
+            ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, secret);
+            ctx.reconnect(null);
+
+            log.trace("LDAP-Login successful for {} (pooled)", login);
+            release(connections, ctx);
+            ctx = null;
+            return true;
+        } catch (AuthenticationException e) {
+            // wrong credentials: the connection itself is still usable
+            log.info("LDAP-Login for {} failed: {}", login, e.getMessage());
+            release(connections, ctx);
+            ctx = null;
+            return false;
+        } catch (NamingException e) {
+            log.info("LDAP-Login for {} failed: {}", login, e.getMessage());
+            return false;
+        } finally {
+            if (ctx != null) {
+                close(ctx);
+            }
+        }
+    }
+
+    private void release(BlockingQueue<LdapContext> connections, LdapContext ctx) {
+        // do not keep the credentials of the last login in the environment of an idle connection
+        try {
+            ctx.removeFromEnvironment(Context.SECURITY_PRINCIPAL);
+            ctx.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+        } catch (NamingException e) {
+            log.debug("error while resetting LDAP connection: {}", e.getMessage());
+            close(ctx);
+            return;
+        }
+        // the pool may have been replaced in the meantime, or be full
+        if (connections != pool || !connections.offer(ctx)) {
+            close(ctx);
+        }
+    }
+
+    private void closeAll(BlockingQueue<LdapContext> connections) {
+        LdapContext ctx;
+        while ((ctx = connections.poll()) != null) {
+            close(ctx);
+        }
+    }
+
+    private void close(LdapContext ctx) {
+        try {
+            ctx.close();
+        } catch (NamingException e) {
+            log.debug("error while closing LDAP connection: {}", e.getMessage());
+        }
+    }
+
+    private Hashtable<String, String> createEnvironment() {
+        Hashtable<String, String> env = new Hashtable<String, String>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, String.format("ldap://%s:%d",
+                configurationService.getStringConfiguration(CONF_SERVER, configurationService.getServerName()),
+                configurationService.getIntConfiguration(CONF_PORT, 389)));
+        return env;
+    }
+
 }
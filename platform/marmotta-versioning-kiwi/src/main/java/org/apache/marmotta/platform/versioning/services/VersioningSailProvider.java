@@ -56,6 +56,8 @@ import org.slf4j.Logger;
 public class VersioningSailProvider implements TransactionalSailProvider {
 
     public static final String VERSIONING_ENABLED = "versioning.enabled";
+
+    public static final String VERSIONING_QUEUE_SIZE = "versioning.listener.queue_size";
     @Inject
     private Logger                    log;
 
@@ -94,7 +96,7 @@ public class VersioningSailProvider implements TransactionalSailProvider {
 
 
     public void configurationChanged(@Observes ConfigurationChangedEvent e) {
-        if(e.containsChangedKey(VERSIONING_ENABLED)) {
+        if(e.containsChangedKey(VERSIONING_ENABLED) || e.containsChangedKey(VERSIONING_QUEUE_SIZE)) {
             sesameService.restart();
         }
     }
@@ -146,7 +148,7 @@ public class VersioningSailProvider implements TransactionalSailProvider {
             sFilters.add(f);
         }
 
-        sail = new KiWiVersioningSail(parent, new AllOfFilter<Statement>(sFilters));
+        sail = new KiWiVersioningSail(parent, new AllOfFilter<Statement>(sFilters), configurationService.getIntConfiguration(VERSIONING_QUEUE_SIZE, 0));
 
         return sail;
     }